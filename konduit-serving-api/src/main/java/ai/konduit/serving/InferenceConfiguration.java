@@ -23,6 +23,7 @@
 package ai.konduit.serving;
 
 import ai.konduit.serving.config.MemMapConfig;
+import ai.konduit.serving.config.ResultCacheConfig;
 import ai.konduit.serving.config.ServingConfig;
 import ai.konduit.serving.config.TextConfig;
 import ai.konduit.serving.pipeline.PipelineStep;
@@ -42,6 +43,8 @@ public class InferenceConfiguration implements Serializable, TextConfig {
     private List<PipelineStep> steps;
     private ServingConfig servingConfig;
     private MemMapConfig memMapConfig;
+    //optional cache of encoded responses, disabled when null
+    private ResultCacheConfig resultCacheConfig;
 
     /**
      * Create a configuration from  a yaml string
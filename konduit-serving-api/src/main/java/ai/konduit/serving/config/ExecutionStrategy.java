@@ -0,0 +1,45 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+
+package ai.konduit.serving.config;
+
+/**
+ * How the blocking parts of a request (batch parsing and inference)
+ * are scheduled by the inference server.
+ *
+ * @author Adam Gibson
+ */
+public enum ExecutionStrategy {
+    /**
+     * Run on the vert.x worker pool, one blocking call at a time per verticle context.
+     */
+    ORDERED,
+    /**
+     * Run on the vert.x worker pool without ordering, so requests run concurrently.
+     */
+    WORKER_POOL,
+    /**
+     * Run without ordering on a named worker pool of
+     * {@link ServingConfig#getWorkerPoolSize()} threads dedicated to the pipeline.
+     */
+    DEDICATED_WORKER_POOL
+}
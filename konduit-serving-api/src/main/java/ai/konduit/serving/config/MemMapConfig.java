@@ -54,10 +54,15 @@ public class MemMapConfig implements Serializable, TextConfig {
     public final static String WORKSPACE_NAME = "memMapWorkspace";
 
     private String arrayPath, unkVectorPath;
+    //initialMemmapSize and workSpaceName configured the per thread mmap workspaces used before the
+    //array file was mapped directly. They are kept so existing configurations still load, but are unused
     @Builder.Default
     private long initialMemmapSize = DEFAULT_INITIAL_SIZE;
     @Builder.Default
     private String workSpaceName = WORKSPACE_NAME;
+    //number of most recently gathered rows to keep on heap, 0 reads every row from the mapping
+    @Builder.Default
+    private int hotRowCacheSize = 0;
 
     public static MemMapConfig fromJson(String json){
         return ObjectMappers.fromJson(json, MemMapConfig.class);
@@ -37,6 +37,17 @@ public class Output {
         ARROW,
     }
 
+    /**
+     * How binary responses with more than one output are packed.
+     * {@link #ZIP}, the default, writes one zip entry per output.
+     * {@link #FRAMED} writes a length prefixed header followed by the raw
+     * output buffers, see {@code ai.konduit.serving.util.MultiOutputFraming}.
+     */
+    public enum MultiOutputFormat {
+        FRAMED,
+        ZIP
+    }
+
 
     /**
      * Used by {@link ai.konduit.serving.output.adapter.OutputAdapter}.
@@ -56,6 +56,18 @@ public class ParallelInferenceConfig implements Serializable, TextConfig {
     private int maxTrainEpochs = 1;
     @Builder.Default
     private InferenceMode inferenceMode = ParallelInference.DEFAULT_INFERENCE_MODE;
+    //latency budget in milliseconds for forming a batch in BATCHED mode, counted from when
+    //the batch is opened. A partial batch is flushed once it runs out. 0 disables waiting
+    @Builder.Default
+    private long maxBatchWaitMillis = 0;
+    //p99 latency in milliseconds the batch size is adapted to in BATCHED mode,
+    //with batchLimit as the upper bound. 0 keeps the batch size fixed at batchLimit
+    @Builder.Default
+    private long targetLatencyMillis = 0;
+    //DL4J models only: serve through DL4J's ParallelInference (using inferenceMode, batchLimit,
+    //queueLimit and workers) instead of a pool of model replicas, one per worker, sharing their weights
+    @Builder.Default
+    private boolean useParallelInference = false;
 
     //config json for vertx: used for configuring
     //the retrainer and revision manager
@@ -0,0 +1,64 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+package ai.konduit.serving.config;
+
+import ai.konduit.serving.util.ObjectMappers;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Configuration for caching encoded inference responses.
+ * Responses are keyed by a hash of the raw request body, the endpoint
+ * (prediction type and input format) and the output format, and kept off heap.
+ * When the total size of the cached responses exceeds maxSizeBytes,
+ * the least recently used responses are evicted.
+ * Responses older than ttlMillis are not returned, 0 means they don't expire.
+ * With collapseConcurrentRequests set, identical requests arriving while
+ * one is being computed wait for that result instead of running the pipeline again.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResultCacheConfig implements Serializable, TextConfig {
+
+    public final static long DEFAULT_MAX_SIZE_BYTES = 64L * 1024 * 1024;
+
+    @Builder.Default
+    private long maxSizeBytes = DEFAULT_MAX_SIZE_BYTES;
+    @Builder.Default
+    private long ttlMillis = 0;
+    @Builder.Default
+    private boolean collapseConcurrentRequests = true;
+
+    public static ResultCacheConfig fromJson(String json){
+        return ObjectMappers.fromJson(json, ResultCacheConfig.class);
+    }
+
+    public static ResultCacheConfig fromYaml(String yaml){
+        return ObjectMappers.fromYaml(yaml, ResultCacheConfig.class);
+    }
+}
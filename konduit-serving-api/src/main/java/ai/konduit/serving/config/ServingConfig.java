@@ -52,15 +52,59 @@ public class ServingConfig implements TextConfig {
     @Builder.Default
     private Output.DataFormat outputDataFormat = Output.DataFormat.JSON;
 
+    //format of binary responses with more than one output. FRAMED avoids the zip copies but clients must opt in
+    @Builder.Default
+    private Output.MultiOutputFormat multiOutputFormat = Output.MultiOutputFormat.ZIP;
+
     @Builder.Default
     private String uploadsDirectory = "file-uploads/";
 
+    //decode multipart uploads in memory as they arrive instead of spooling them to uploadsDirectory.
+    //Requests larger than maxInMemoryUploadBytes, or without a content length, are still spooled to disk
+    @Builder.Default
+    private boolean streamUploads = true;
+
+    @Builder.Default
+    private long maxInMemoryUploadBytes = 64 * 1024 * 1024;
+
     @Builder.Default
     private boolean logTimings = false;
 
+    //indent json responses. Responses are written compact by default
+    @Builder.Default
+    private boolean prettyPrintJson = false;
+
     @Builder.Default
     private boolean createLoggingEndpoints = false;
 
+    //create the runners of the pipeline steps on parallel threads at startup. Python steps are always
+    //created on the calling thread. Leave disabled for models bound to the device of the creating thread
+    @Builder.Default
+    private boolean createStepsInParallel = false;
+
+    @Builder.Default
+    private ExecutionStrategy executionStrategy = ExecutionStrategy.WORKER_POOL;
+
+    //name and number of threads of the worker pool used with ExecutionStrategy.DEDICATED_WORKER_POOL.
+    //Pools with the same name are shared, when no name is set each pipeline gets its own pool
+    private String workerPoolName;
+
+    @Builder.Default
+    private int workerPoolSize = 20;
+
+    //maximum number of blocking calls waiting for a worker thread before
+    //new requests are rejected with 503. 0 means the queue is unbounded
+    @Builder.Default
+    private int maxQueuedRequests = 0;
+
+    //limits in bytes on the off-heap arrow memory used to convert json input, across all requests
+    //and for a single request respectively. 0 means unbounded
+    @Builder.Default
+    private long maxArrowMemoryBytes = 0;
+
+    @Builder.Default
+    private long maxArrowRequestMemoryBytes = 256 * 1024 * 1024;
+
     @Builder.Default
     private List<MetricsConfig> metricsConfigurations = new ArrayList<>(0);
 
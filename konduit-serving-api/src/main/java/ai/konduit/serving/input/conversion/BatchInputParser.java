@@ -23,6 +23,7 @@
 package ai.konduit.serving.input.conversion;
 
 import ai.konduit.serving.input.adapter.InputAdapter;
+import ai.konduit.serving.verticles.VerticleConstants;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.ext.web.FileUpload;
 import io.vertx.ext.web.RoutingContext;
@@ -99,8 +100,7 @@ public class BatchInputParser {
             List<BatchPartInfo> batch = partInfo.get(inputParts.get(i));
             for (int j = 0; j < batch.size(); j++) {
                 Pair<String, Integer> partNameAndIndex = partNameAndIndex(batch.get(j).getPartName());
-                Buffer buffer = loadBuffer(routingContext,
-                        batch.get(j).getFileUploadPath());
+                Buffer buffer = loadBuffer(routingContext, batch.get(j));
                 Object convert = convert(buffer, partNameAndIndex.getFirst(), null, routingContext);
                 Preconditions.checkNotNull(convert, "Converted writable was null!");
                 //set the name
@@ -137,6 +137,8 @@ public class BatchInputParser {
      * name per input in to a computation graph
      * such that each part name is:
      * inputName[index]
+     * Parts decoded in memory ({@link VerticleConstants#STREAMED_UPLOADS})
+     * are used when present, otherwise the uploaded files.
      *
      * @param ctx the context to get the part info
      *            from
@@ -144,44 +146,28 @@ public class BatchInputParser {
      * for each input
      */
     private Map<String, List<BatchPartInfo>> partInfoForUploads(RoutingContext ctx) {
-        if (ctx.fileUploads().isEmpty()) {
-            throw new IllegalStateException("No files found for part info!");
-        } else {
-            log.debug("Found " + ctx.fileUploads().size() + " file uploads");
-        }
-
         Map<String, List<BatchPartInfo>> ret = new LinkedHashMap<>();
-        //parse each file upload all at once
-        for (FileUpload upload : ctx.fileUploads()) {
-            //the part name: inputName[index]
-            String name = upload.name();
-            //likely a colon for a tensorflow name got passed in
-            //verify against the name in the configuration and set it to that
-            if (name.contains(" ")) {
-                name = name.replace(" ", ":");
-                String inputName = name;
-                if(inputName.contains("[")) {
-                    inputName = inputName.substring(0, name.lastIndexOf("["));
-                }
-                if (!inputParts.contains(inputName)) {
-                    throw new IllegalStateException("Illegal name for multi part passed in " + upload.name());
-                } else {
-                    log.warn("Corrected input name " + upload.name() + " to " + name);
-                }
+        List<StreamedUpload> streamedUploads = ctx.get(VerticleConstants.STREAMED_UPLOADS);
+        if (streamedUploads != null) {
+            if (streamedUploads.isEmpty()) {
+                throw new IllegalStateException("No files found for part info!");
             }
 
-            //split the input name and the index
-            Pair<String, Integer> partNameAndIndex = partNameAndIndex(name);
-            //the part info for this particular file
-            BatchPartInfo batchPartInfo = new BatchPartInfo(
-                    partNameAndIndex.getRight(), upload.uploadedFileName(), name);
-            //add the input name and accumulate the part info for each input
-            if (!ret.containsKey(partNameAndIndex.getFirst())) {
-                ret.put(partNameAndIndex.getFirst(), new ArrayList<>());
+            log.debug("Found " + streamedUploads.size() + " streamed uploads");
+            for (StreamedUpload upload : streamedUploads) {
+                addPartInfo(ret, upload.getName(), null, upload.getContent());
+            }
+        } else {
+            if (ctx.fileUploads().isEmpty()) {
+                throw new IllegalStateException("No files found for part info!");
+            } else {
+                log.debug("Found " + ctx.fileUploads().size() + " file uploads");
             }
 
-            List<BatchPartInfo> batchPartInfos = ret.get(partNameAndIndex.getFirst());
-            batchPartInfos.add(batchPartInfo);
+            //parse each file upload all at once
+            for (FileUpload upload : ctx.fileUploads()) {
+                addPartInfo(ret, upload.name(), upload.uploadedFileName(), null);
+            }
         }
 
         //sort based on index
@@ -192,6 +178,38 @@ public class BatchInputParser {
         return ret;
     }
 
+    private void addPartInfo(Map<String, List<BatchPartInfo>> ret, String uploadName, String fileUploadPath, Buffer content) {
+        //the part name: inputName[index]
+        String name = uploadName;
+        //likely a colon for a tensorflow name got passed in
+        //verify against the name in the configuration and set it to that
+        if (name.contains(" ")) {
+            name = name.replace(" ", ":");
+            String inputName = name;
+            if(inputName.contains("[")) {
+                inputName = inputName.substring(0, name.lastIndexOf("["));
+            }
+            if (!inputParts.contains(inputName)) {
+                throw new IllegalStateException("Illegal name for multi part passed in " + uploadName);
+            } else {
+                log.warn("Corrected input name " + uploadName + " to " + name);
+            }
+        }
+
+        //split the input name and the index
+        Pair<String, Integer> partNameAndIndex = partNameAndIndex(name);
+        //the part info for this particular file
+        BatchPartInfo batchPartInfo = new BatchPartInfo(
+                partNameAndIndex.getRight(), fileUploadPath, name, content);
+        //add the input name and accumulate the part info for each input
+        if (!ret.containsKey(partNameAndIndex.getFirst())) {
+            ret.put(partNameAndIndex.getFirst(), new ArrayList<>());
+        }
+
+        List<BatchPartInfo> batchPartInfos = ret.get(partNameAndIndex.getFirst());
+        batchPartInfos.add(batchPartInfo);
+    }
+
     /**
      * Use the converter specified
      * by name to convert a
@@ -216,14 +234,19 @@ public class BatchInputParser {
     }
 
     /**
-     * Load the buffer from each file
+     * Load the buffer for each part, reading it
+     * from disk unless it was decoded in memory
      *
-     * @param ctx              the context to load from
-     * @param uploadedFileName the uploaded file path
-     * @return the file contents for the file part
+     * @param ctx           the context to load from
+     * @param batchPartInfo the part to load
+     * @return the contents of the part
      */
-    private Buffer loadBuffer(RoutingContext ctx, String uploadedFileName) {
-        return ctx.vertx().fileSystem().readFileBlocking(uploadedFileName);
+    private Buffer loadBuffer(RoutingContext ctx, BatchPartInfo batchPartInfo) {
+        if (batchPartInfo.getContent() != null) {
+            return batchPartInfo.getContent();
+        }
+
+        return ctx.vertx().fileSystem().readFileBlocking(batchPartInfo.getFileUploadPath());
     }
 
     private Pair<String, Integer> partNameAndIndex(String name) {
@@ -244,6 +267,12 @@ public class BatchInputParser {
         private int index;
         private String fileUploadPath;
         private String partName;
+        //the part contents when decoded in memory, null when the part is on disk
+        private Buffer content;
+
+        public BatchPartInfo(int index, String fileUploadPath, String partName) {
+            this(index, fileUploadPath, partName, null);
+        }
 
         @Override
         public int compareTo(BatchPartInfo batchPartInfo) {
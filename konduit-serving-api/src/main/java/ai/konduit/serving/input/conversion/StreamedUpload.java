@@ -0,0 +1,42 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+
+package ai.konduit.serving.input.conversion;
+
+import io.vertx.core.buffer.Buffer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A multipart upload decoded in memory rather than
+ * spooled to the uploads directory.
+ * Read by {@link BatchInputParser} in place of
+ * {@link io.vertx.ext.web.FileUpload}s.
+ *
+ * @author Adam Gibson
+ */
+@Data
+@AllArgsConstructor
+public class StreamedUpload {
+    private String name;
+    private Buffer content;
+}
@@ -42,6 +42,9 @@ public class PmmlConfig extends ModelConfig {
     public final static String DEFAULT_EVALUATOR_FACTORY = "org.jpmml.evaluator.ModelEvaluatorFactory";
     @Builder.Default
     private String evaluatorFactoryName = DEFAULT_EVALUATOR_FACTORY;
+    //load the model once and share the evaluator between all inference workers
+    @Builder.Default
+    private boolean sharedEvaluator = false;
 
     public PmmlConfig(){
         this.evaluatorFactoryName = DEFAULT_EVALUATOR_FACTORY;
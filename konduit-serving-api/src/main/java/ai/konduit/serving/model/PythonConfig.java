@@ -36,6 +36,12 @@ import java.util.Map;
  *   4. pythonInputs/pythonOutputs/extraInputs: a map of variable name to python type
  *   5. returnAllInputs: rather than specifying outputs explicitly, the python execution
  *   will just return all created python variables during execution
+ *   6. batchMode: run the code once for all records of a request, with each input
+ *   passed as a column for the whole batch (ndarrays are stacked along a new first dimension)
+ *   7. pythonWorkers: when positive, run the code in this many separate python processes
+ *   (started with pythonExecutable, python3 by default) instead of the embedded interpreter
+ *   8. pythonWorkerTimeoutMillis: when positive, the time to wait for a python worker process to
+ *   start or respond. A worker exceeding it is killed, fails the request and is restarted on its next use
  *
  *
  * @author Adam Gibson
@@ -57,6 +63,14 @@ public class PythonConfig implements Serializable {
 
     private boolean setupAndRun;
 
+    private boolean batchMode;
+
+    private int pythonWorkers;
+
+    private long pythonWorkerTimeoutMillis;
+
+    private String pythonExecutable;
+
     private static String defaultPythonPath;
 
 
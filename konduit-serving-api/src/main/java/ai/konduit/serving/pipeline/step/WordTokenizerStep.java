@@ -38,6 +38,8 @@ public class WordTokenizerStep extends BasePipelineStep<WordTokenizerStep> imple
 {
     protected String vocabPath;
     protected int sentenceMaxLen;
+    //number of recently tokenized sentences to cache, 0 disables the cache
+    protected int tokenCacheSize;
 
     @Override
     public Input.DataFormat[] validInputTypes() {
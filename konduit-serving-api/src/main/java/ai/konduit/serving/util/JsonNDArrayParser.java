@@ -0,0 +1,214 @@
+/*
+ *       Copyright (c) 2020 Konduit AI.
+ *
+ *       This program and the accompanying materials are made available under the
+ *       terms of the Apache License, Version 2.0 which is available at
+ *       https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *       Unless required by applicable law or agreed to in writing, software
+ *       distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *       WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *       License for the specific language governing permissions and limitations
+ *       under the License.
+ *
+ *       SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package ai.konduit.serving.util;
+
+import org.nd4j.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.shade.jackson.core.JsonParser;
+import org.nd4j.shade.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Decodes nested json number arrays such as {@code [[1, 2], [3, 4]]}
+ * into an {@link INDArray} straight from the jackson token stream,
+ * without building a {@link io.vertx.core.json.JsonArray} tree or
+ * boxing each value.
+ * <p>
+ * When the shape is known up front the values are written directly into the
+ * {@link DataBuffer} of the target array. Otherwise the shape is inferred
+ * while parsing: the values are collected in a primitive array and copied
+ * into the result in a single bulk copy.
+ *
+ * @author Adam Gibson
+ */
+public class JsonNDArrayParser {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private JsonNDArrayParser() {
+    }
+
+    /**
+     * Parse a json number array into an {@link INDArray}
+     *
+     * @param json      the json array
+     * @param dataType  the data type of the result
+     * @return the parsed array
+     * @throws IOException if the json is malformed or not a rectangular array of numbers
+     */
+    public static INDArray parse(String json, DataType dataType) throws IOException {
+        try (JsonParser parser = ObjectMappers.json().getFactory().createParser(json)) {
+            parser.nextToken();
+            return parse(parser, dataType);
+        }
+    }
+
+    /**
+     * Parse the array the parser is positioned on. The current token
+     * must be {@link JsonToken#START_ARRAY}. On return the current token
+     * is the matching {@link JsonToken#END_ARRAY}.
+     *
+     * @param parser   the parser
+     * @param dataType the data type of the result
+     * @return the parsed array
+     * @throws IOException if the json is malformed or not a rectangular array of numbers
+     */
+    public static INDArray parse(JsonParser parser, DataType dataType) throws IOException {
+        Values values = new Values();
+        long[] shape = parse(parser, values);
+        INDArray ret = Nd4j.createUninitialized(dataType, shape, 'c');
+        ret.data().setData(values.trimmed());
+        return ret;
+    }
+
+    /**
+     * Parse the array the parser is positioned on into a preallocated array.
+     * The json array must have the same shape as the target.
+     *
+     * @param parser the parser, positioned on {@link JsonToken#START_ARRAY}
+     * @param target a c ordered array to write the values to
+     * @return the target array
+     * @throws IOException if the json is malformed or does not match the shape of the target
+     */
+    public static INDArray parseInto(JsonParser parser, INDArray target) throws IOException {
+        Preconditions.checkState(target.ordering() == 'c' && !target.isView(), "Target array must be a c ordered array that is not a view");
+        Target values = new Target(target.data(), target.length());
+        long[] shape = parse(parser, values);
+        if (!Arrays.equals(shape, target.shape())) {
+            throw new IOException("Json array of shape " + Arrays.toString(shape)
+                    + " does not match target shape " + Arrays.toString(target.shape()));
+        }
+
+        return target;
+    }
+
+    private static long[] parse(JsonParser parser, Sink values) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Expected start of json array but found " + parser.getCurrentToken());
+        }
+
+        //elements seen so far at each depth, and the size each depth must have
+        long[] counts = new long[8];
+        long[] shape = new long[8];
+        Arrays.fill(shape, -1);
+        int depth = 1;
+        int rank = -1;
+        while (depth > 0) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                throw new IOException("Unexpected end of json array");
+            }
+
+            switch (token) {
+                case START_ARRAY:
+                    if (rank > 0 && depth >= rank) {
+                        throw new IOException("Json array is not rectangular: nested array found at depth " + depth);
+                    }
+
+                    counts[depth - 1]++;
+                    depth++;
+                    if (depth > counts.length) {
+                        counts = Arrays.copyOf(counts, counts.length * 2);
+                        int oldLength = shape.length;
+                        shape = Arrays.copyOf(shape, shape.length * 2);
+                        Arrays.fill(shape, oldLength, shape.length, -1);
+                    }
+
+                    counts[depth - 1] = 0;
+                    break;
+                case END_ARRAY:
+                    long size = counts[depth - 1];
+                    if (shape[depth - 1] < 0) {
+                        shape[depth - 1] = size;
+                    } else if (shape[depth - 1] != size) {
+                        throw new IOException("Json array is not rectangular: expected " + shape[depth - 1]
+                                + " elements at depth " + depth + " but found " + size);
+                    }
+
+                    depth--;
+                    break;
+                case VALUE_NUMBER_INT:
+                case VALUE_NUMBER_FLOAT:
+                    if (rank < 0) {
+                        rank = depth;
+                    } else if (rank != depth) {
+                        throw new IOException("Json array is not rectangular: number found at depth " + depth);
+                    }
+
+                    counts[depth - 1]++;
+                    values.add(parser.getDoubleValue());
+                    break;
+                default:
+                    throw new IOException("Expected a number or array but found " + token);
+            }
+        }
+
+        if (rank < 0) {
+            throw new IOException("Unable to infer the shape of an empty json array");
+        }
+
+        return Arrays.copyOf(shape, rank);
+    }
+
+    private interface Sink {
+        void add(double value) throws IOException;
+    }
+
+    private static class Values implements Sink {
+        private double[] values = new double[INITIAL_CAPACITY];
+        private int size;
+
+        @Override
+        public void add(double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+
+            values[size++] = value;
+        }
+
+        private double[] trimmed() {
+            return size == values.length ? values : Arrays.copyOf(values, size);
+        }
+    }
+
+    private static class Target implements Sink {
+        private final DataBuffer buffer;
+        private final long length;
+        private long index;
+
+        private Target(DataBuffer buffer, long length) {
+            this.buffer = buffer;
+            this.length = length;
+        }
+
+        @Override
+        public void add(double value) throws IOException {
+            if (index == length) {
+                throw new IOException("Json array has more than the " + length + " elements of the target array");
+            }
+
+            buffer.put(index++, value);
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.datavec.api.records.Record;
 import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.writable.*;
 import org.nd4j.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.serde.json.JsonMappers;
@@ -257,6 +258,8 @@ public class JsonSerdeUtils {
     /**
      * Converts an {@link JsonArray}
      * to a {@link INDArray} with a {@link org.nd4j.linalg.api.buffer.DataType#FLOAT}
+     * When the json is still a string, prefer {@link JsonNDArrayParser}
+     * which doesn't need the intermediate {@link JsonArray}.
      *
      * @param arr the {@link JsonArray} to convert
      * @return an equivalent {@link INDArray}
@@ -280,29 +283,35 @@ public class JsonSerdeUtils {
             shape[i] = shapeList.get(i).longValue();
         }
 
-        INDArray ndArray = Nd4j.zeros(shape);
-        INDArray flatNdArray = ndArray.reshape(-1);
-        int idx = 0;
-        Stack<JsonArray> stack = new Stack<>();
-        stack.push(arr);
-        while(!stack.isEmpty()) {
-            JsonArray popped = stack.pop();
-            Object first = popped.getValue(0);
-            if (first instanceof JsonArray) {
-                for (int i = popped.size()-1; i >= 0; i--) {
-                    stack.push(popped.getJsonArray(i));
-                }
-            }
-            else{
-                for (int i = 0; i < popped.size(); i++) {
-                    flatNdArray.putScalar(idx++, ((Number)popped.getValue(i)).doubleValue());
-                }
-            }
+        long length = 1;
+        for (long l : shape) {
+            length *= l;
         }
 
+        Preconditions.checkState(length <= Integer.MAX_VALUE, "Json array of shape " + Arrays.toString(shape) + " is too large");
+        double[] values = new double[(int) length];
+        int written = flatten(arr, values, 0);
+        Preconditions.checkState(written == values.length, "Json array is not rectangular, expected shape " + Arrays.toString(shape));
+
+        INDArray ndArray = Nd4j.createUninitialized(DataType.FLOAT, shape, 'c');
+        ndArray.data().setData(values);
         return ndArray;
     }
 
+    private static int flatten(JsonArray arr, double[] values, int idx) {
+        for (int i = 0; i < arr.size(); i++) {
+            Object value = arr.getValue(i);
+            if (value instanceof JsonArray) {
+                idx = flatten((JsonArray) value, values, idx);
+            } else {
+                Preconditions.checkState(idx < values.length, "Json array is not rectangular");
+                values[idx++] = ((Number) value).doubleValue();
+            }
+        }
+
+        return idx;
+    }
+
     /**
      * Convert a json object to a {@link Record}
      * by dynamically creating the record based on the passed in
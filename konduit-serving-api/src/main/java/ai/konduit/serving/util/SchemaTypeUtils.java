@@ -30,6 +30,7 @@ import org.datavec.api.records.Record;
 import org.datavec.api.transform.ColumnType;
 import org.datavec.api.transform.metadata.BinaryMetaData;
 import org.datavec.api.transform.metadata.ColumnMetaData;
+import org.datavec.api.transform.metadata.NDArrayMetaData;
 import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.transform.schema.Schema.Builder;
 import org.datavec.api.writable.DoubleWritable;
@@ -49,6 +50,9 @@ import java.util.*;
  */
 public class SchemaTypeUtils {
 
+    //the shape given to NDArray columns configured without one, their arrays may have any shape
+    private final static long[] UNKNOWN_SHAPE = {1, 1};
+
     /**
      * Returns true if the passed in array is null or empty
      * @param array the array to check
@@ -283,6 +287,33 @@ public class SchemaTypeUtils {
         return SchemaType.valueOf(columnType.name());
     }
 
+    /**
+     * The fixed shape of an {@link ColumnType#NDArray} column: the shape of its
+     * {@link NDArrayMetaData} when every dimension is known. The placeholder shape
+     * {@link #toSchema(SchemaType[], List)} gives NDArray columns does not count as known.
+     *
+     * @param metaData the column metadata
+     * @return the shape, or null if the column is not an NDArray column of a fixed shape
+     */
+    public static long[] fixedShape(ColumnMetaData metaData) {
+        if (!(metaData instanceof NDArrayMetaData)) {
+            return null;
+        }
+
+        long[] shape = ((NDArrayMetaData) metaData).getShape();
+        if (shape == null || shape.length == 0 || Arrays.equals(shape, UNKNOWN_SHAPE)) {
+            return null;
+        }
+
+        for (long size : shape) {
+            if (size <= 0) {
+                return null;
+            }
+        }
+
+        return shape.clone();
+    }
+
     /**
      * See {@link #toSchema(SchemaType[], List)}
      */
@@ -307,7 +338,7 @@ public class SchemaTypeUtils {
             Preconditions.checkNotNull(types[i], "Type " + i + " was null!");
             switch (types[i]) {
                 case NDArray:
-                    builder.addColumnNDArray(names.get(i), new long[]{1, 1});
+                    builder.addColumnNDArray(names.get(i), new long[]{UNKNOWN_SHAPE[0], UNKNOWN_SHAPE[1]});
                     break;
                 case String:
                     builder.addColumnString(names.get(i));
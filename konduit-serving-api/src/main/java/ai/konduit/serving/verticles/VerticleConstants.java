@@ -37,6 +37,19 @@ public class VerticleConstants {
     public final static String CONVERTED_INFERENCE_DATA = "convertedInferenceData";
     public final static String HTTP_PORT_KEY = "httpPort";
     public final static String TRANSACTION_ID = "transactionId";
+    //request scoped prediction type and input data format parsed from the path
+    public final static String PREDICTION_TYPE = "predictionType";
+    public final static String INPUT_DATA_FORMAT = "inputDataFormat";
+    //multipart parts decoded in memory, a list of StreamedUpload
+    public final static String STREAMED_UPLOADS = "streamedUploads";
+    //the reference counted buffers behind the streamed uploads, retained by blocking calls reading them
+    public final static String STREAMED_UPLOAD_BUFFERS = "streamedUploadBuffers";
+    //hash of the names and contents of the streamed uploads, set when a result cache is configured
+    public final static String STREAMED_UPLOADS_HASH = "streamedUploadsHash";
+    //the result cache key a multipart request's response is stored under
+    public final static String RESULT_CACHE_KEY = "resultCacheKey";
+    //the encoded response body written by the pipeline executioner, for caching
+    public final static String RESPONSE_BODY = "responseBody";
     //keys for the routing context when doing object recognition
     public final static String ORIGINAL_IMAGE_HEIGHT = "originalImageHeight";
     public final static String ORIGINAL_IMAGE_WIDTH = "originalImageWidth";
@@ -26,6 +26,8 @@ import ai.konduit.serving.model.PythonConfig;
 import org.junit.Test;
 import org.nd4j.jackson.objectmapper.holder.ObjectMapperHolder;
 
+import static org.junit.Assert.assertEquals;
+
 public class ConfigSerializationTests {
 
     @Test
@@ -39,6 +41,17 @@ public class ConfigSerializationTests {
 
     }
 
+    @Test
+    public void testSerializationExecutionStrategy() {
+        ServingConfig servingConfig = ServingConfig.builder()
+                .executionStrategy(ExecutionStrategy.DEDICATED_WORKER_POOL)
+                .workerPoolSize(4)
+                .maxQueuedRequests(100)
+                .build();
+
+        assertEquals(servingConfig, ServingConfig.fromJson(servingConfig.toJson()));
+    }
+
 
     private String trySerialize(Object o) throws Exception {
         return ObjectMapperHolder.getJsonMapper().writeValueAsString(o);
@@ -0,0 +1,109 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+package ai.konduit.serving.benchmarks;
+
+import ai.konduit.serving.input.adapter.InputAdapter;
+import ai.konduit.serving.input.conversion.BatchInputParser;
+import ai.konduit.serving.input.conversion.StreamedUpload;
+import ai.konduit.serving.pipeline.handlers.converter.multi.converter.impl.numpy.VertxBufferNumpyInputAdapter;
+import ai.konduit.serving.verticles.VerticleConstants;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.web.RoutingContext;
+import org.datavec.api.records.Record;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creation of a batch from multipart numpy uploads decoded in memory, see
+ * {@link BatchInputParser#createBatch(RoutingContext)}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchInputParserBenchmark {
+
+    @Param({"1", "4"})
+    public int inputs;
+
+    @Param({"1x128", "32x128", "1x3x224x224"})
+    public String shape;
+
+    private BatchInputParser parser;
+    private RoutingContext ctx;
+
+    @Setup
+    public void setup() {
+        long[] dims = Arrays.stream(shape.split("x")).mapToLong(Long::parseLong).toArray();
+        byte[] npy = Nd4j.toNpyByteArray(Nd4j.rand(DataType.FLOAT, dims));
+
+        List<String> inputNames = new ArrayList<>();
+        Map<String, InputAdapter<Buffer, ?>> converters = new HashMap<>();
+        List<StreamedUpload> uploads = new ArrayList<>();
+        VertxBufferNumpyInputAdapter adapter = new VertxBufferNumpyInputAdapter();
+        for (int i = 0; i < inputs; i++) {
+            inputNames.add("input" + i);
+            converters.put("input" + i, adapter);
+            uploads.add(new StreamedUpload("input" + i + "[0]", Buffer.buffer(npy)));
+        }
+
+        parser = BatchInputParser.builder()
+                .converters(converters)
+                .converterArgs(Collections.emptyMap())
+                .inputParts(inputNames)
+                .build();
+
+        Map<String, Object> data = new HashMap<>();
+        data.put(VerticleConstants.STREAMED_UPLOADS, uploads);
+        ctx = routingContext(data);
+    }
+
+    @Benchmark
+    public Record[] createBatch() throws IOException {
+        return parser.createBatch(ctx);
+    }
+
+    /**
+     * A routing context holding only the given data: the parser reads nothing else from it
+     */
+    private static RoutingContext routingContext(Map<String, Object> data) {
+        return (RoutingContext) Proxy.newProxyInstance(RoutingContext.class.getClassLoader(), new Class[]{RoutingContext.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "get":
+                            return data.get(args[0]);
+                        case "data":
+                            return data;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+package ai.konduit.serving.benchmarks;
+
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Writes the tiny models used by the benchmarks, so no model has to be downloaded.
+ * Every model computes {@code output = relu(input x W)} (a linear regression for PMML)
+ * over {@code features} float inputs with a variable batch size.
+ * The input is named {@value #INPUT_NAME} and the output {@value #OUTPUT_NAME}.
+ */
+public class BenchmarkModels {
+
+    public static final String INPUT_NAME = "input";
+    public static final String OUTPUT_NAME = "output";
+
+    private static final long SEED = 12345;
+
+    private BenchmarkModels() {
+    }
+
+    /**
+     * @return a new temporary directory for benchmark models, deleted on exit
+     */
+    public static File tempDir() throws IOException {
+        File dir = Files.createTempDirectory("konduit-benchmarks").toFile();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    /**
+     * Write a samediff flat buffers model
+     *
+     * @param dir      the directory to write to
+     * @param features the number of input and output features
+     * @return the model file
+     */
+    public static File sameDiff(File dir, int features) throws IOException {
+        Nd4j.getRandom().setSeed(SEED);
+        SameDiff sd = SameDiff.create();
+        SDVariable input = sd.placeHolder(INPUT_NAME, DataType.FLOAT, -1, features);
+        SDVariable weights = sd.var("weights", Nd4j.rand(DataType.FLOAT, features, features));
+        sd.nn().relu(OUTPUT_NAME, input.mmul(weights), 0.0);
+
+        File file = new File(dir, "samediff-" + features + ".fb");
+        sd.asFlatFile(file);
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * Write an onnx model (ir version 6, opset 11) made of a MatMul and a Relu node.
+     * The protobuf is encoded here, which avoids a dependency on the onnx java classes.
+     *
+     * @param dir      the directory to write to
+     * @param features the number of input and output features
+     * @return the model file
+     */
+    public static File onnx(File dir, int features) throws IOException {
+        Random random = new Random(SEED);
+        ByteBuffer weights = ByteBuffer.allocate(4 * features * features).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < features * features; i++) {
+            weights.putFloat(random.nextFloat());
+        }
+
+        Proto weightsTensor = new Proto()
+                .int64(1, features)
+                .int64(1, features)
+                .int64(2, 1) //FLOAT
+                .string(8, "weights")
+                .bytes(9, weights.array());
+
+        Proto graph = new Proto()
+                .message(1, new Proto().string(1, INPUT_NAME).string(1, "weights").string(2, "hidden").string(3, "matmul").string(4, "MatMul"))
+                .message(1, new Proto().string(1, "hidden").string(2, OUTPUT_NAME).string(3, "relu").string(4, "Relu"))
+                .string(2, "benchmark")
+                .message(5, weightsTensor)
+                .message(11, valueInfo(INPUT_NAME, features))
+                .message(12, valueInfo(OUTPUT_NAME, features));
+
+        Proto model = new Proto()
+                .int64(1, 6)
+                .string(2, "konduit-serving-benchmarks")
+                .message(7, graph)
+                .message(8, new Proto().string(1, "").int64(2, 11));
+
+        File file = new File(dir, "onnx-" + features + ".onnx");
+        Files.write(file.toPath(), model.toByteArray());
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * Write a pmml regression model over the input fields {@code x0...x(features - 1)}
+     * with the target field {@code y}
+     *
+     * @param dir      the directory to write to
+     * @param features the number of input fields
+     * @return the model file
+     */
+    public static File pmml(File dir, int features) throws IOException {
+        Random random = new Random(SEED);
+        StringBuilder dataFields = new StringBuilder();
+        StringBuilder miningFields = new StringBuilder();
+        StringBuilder predictors = new StringBuilder();
+        for (int i = 0; i < features; i++) {
+            dataFields.append("    <DataField name=\"x").append(i).append("\" optype=\"continuous\" dataType=\"double\"/>\n");
+            miningFields.append("      <MiningField name=\"x").append(i).append("\"/>\n");
+            predictors.append("      <NumericPredictor name=\"x").append(i).append("\" coefficient=\"").append(random.nextDouble()).append("\"/>\n");
+        }
+
+        String pmml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<PMML xmlns=\"http://www.dmg.org/PMML-4_3\" version=\"4.3\">\n" +
+                "  <Header/>\n" +
+                "  <DataDictionary numberOfFields=\"" + (features + 1) + "\">\n" +
+                dataFields +
+                "    <DataField name=\"y\" optype=\"continuous\" dataType=\"double\"/>\n" +
+                "  </DataDictionary>\n" +
+                "  <RegressionModel functionName=\"regression\">\n" +
+                "    <MiningSchema>\n" +
+                miningFields +
+                "      <MiningField name=\"y\" usageType=\"target\"/>\n" +
+                "    </MiningSchema>\n" +
+                "    <RegressionTable intercept=\"0.5\">\n" +
+                predictors +
+                "    </RegressionTable>\n" +
+                "  </RegressionModel>\n" +
+                "</PMML>\n";
+
+        File file = new File(dir, "pmml-" + features + ".pmml");
+        Files.write(file.toPath(), pmml.getBytes(StandardCharsets.UTF_8));
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static Proto valueInfo(String name, int features) {
+        Proto shape = new Proto()
+                .message(1, new Proto().string(2, "batch"))
+                .message(1, new Proto().int64(1, features));
+        Proto tensorType = new Proto()
+                .int64(1, 1) //FLOAT
+                .message(2, shape);
+        return new Proto()
+                .string(1, name)
+                .message(2, new Proto().message(1, tensorType));
+    }
+
+    /**
+     * Minimal protobuf writer: varint and length delimited fields only
+     */
+    private static class Proto {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Proto int64(int field, long value) {
+            varint(field << 3);
+            varint(value);
+            return this;
+        }
+
+        Proto string(int field, String value) {
+            return bytes(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Proto message(int field, Proto value) {
+            return bytes(field, value.toByteArray());
+        }
+
+        Proto bytes(int field, byte[] value) {
+            varint((field << 3) | 2);
+            varint(value.length);
+            out.write(value, 0, value.length);
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        private void varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+
+            out.write((int) value);
+        }
+    }
+}
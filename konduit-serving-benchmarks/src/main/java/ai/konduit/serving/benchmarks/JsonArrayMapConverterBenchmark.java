@@ -0,0 +1,99 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+package ai.konduit.serving.benchmarks;
+
+import ai.konduit.serving.pipeline.handlers.converter.JsonArrayMapConverter;
+import ai.konduit.serving.util.ArrowAllocators;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.apache.arrow.memory.BufferAllocator;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.arrow.recordreader.ArrowWritableRecordBatch;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of json columnar input to arrow records, see
+ * {@link JsonArrayMapConverter#convert(BufferAllocator, Schema, JsonArray, org.datavec.api.transform.TransformProcess)}
+ * and the streaming {@link JsonArrayMapConverter#convert(BufferAllocator, Schema, String, org.datavec.api.transform.TransformProcess)}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonArrayMapConverterBenchmark {
+
+    @Param({"1", "32", "256"})
+    public int batchSize;
+
+    @Param({"4", "64"})
+    public int columns;
+
+    private final JsonArrayMapConverter converter = new JsonArrayMapConverter();
+    private Schema schema;
+    private JsonArray rows;
+    private String json;
+
+    @Setup
+    public void setup() {
+        Schema.Builder builder = new Schema.Builder();
+        for (int i = 0; i < columns; i++) {
+            builder.addColumnDouble("column" + i);
+        }
+        schema = builder.build();
+
+        Random random = new Random(12345);
+        rows = new JsonArray();
+        for (int i = 0; i < batchSize; i++) {
+            JsonObject row = new JsonObject();
+            for (int j = 0; j < columns; j++) {
+                row.put("column" + j, random.nextDouble());
+            }
+            rows.add(row);
+        }
+        json = rows.encode();
+    }
+
+    @Benchmark
+    public int convertJsonArray() {
+        BufferAllocator allocator = ArrowAllocators.newRequestAllocator("benchmark");
+        try (ArrowWritableRecordBatch batch = converter.convert(allocator, schema, rows, null)) {
+            return batch.size();
+        } finally {
+            ArrowAllocators.closeQuietly(allocator);
+        }
+    }
+
+    @Benchmark
+    public int convertJsonText() {
+        BufferAllocator allocator = ArrowAllocators.newRequestAllocator("benchmark");
+        try (ArrowWritableRecordBatch batch = converter.convert(allocator, schema, json, null)) {
+            return batch.size();
+        } finally {
+            ArrowAllocators.closeQuietly(allocator);
+        }
+    }
+}
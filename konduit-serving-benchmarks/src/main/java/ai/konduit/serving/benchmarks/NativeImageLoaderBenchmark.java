@@ -0,0 +1,97 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+package ai.konduit.serving.benchmarks;
+
+import ai.konduit.serving.util.image.NativeImageLoader;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of encoded images to arrays, see {@link NativeImageLoader#asMatrix(ByteBuffer)}
+ * and {@link NativeImageLoader#asMatrix(java.io.InputStream)}.
+ * Images are decoded and resized to the target size of the loader.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NativeImageLoaderBenchmark {
+
+    @Param({"224x224", "1024x768"})
+    public String imageSize;
+
+    @Param({"jpg", "png"})
+    public String format;
+
+    @Param({"224"})
+    public int targetSize;
+
+    private NativeImageLoader loader;
+    private byte[] encoded;
+    private ByteBuffer direct;
+
+    @Setup
+    public void setup() throws IOException {
+        String[] size = imageSize.split("x");
+        int width = Integer.parseInt(size[0]), height = Integer.parseInt(size[1]);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(12345);
+        //smooth gradients with some noise, close to the compression ratio of a photo
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (x * 255 / width + random.nextInt(16)) & 0xFF;
+                int g = (y * 255 / height + random.nextInt(16)) & 0xFF;
+                int b = ((x + y) * 255 / (width + height) + random.nextInt(16)) & 0xFF;
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        encoded = out.toByteArray();
+        direct = ByteBuffer.allocateDirect(encoded.length);
+        direct.put(encoded).flip();
+
+        loader = new NativeImageLoader(targetSize, targetSize, 3);
+    }
+
+    @Benchmark
+    public INDArray asMatrixDirectBuffer() throws IOException {
+        return loader.asMatrix(direct.duplicate());
+    }
+
+    @Benchmark
+    public INDArray asMatrixInputStream() throws IOException {
+        return loader.asMatrix(new ByteArrayInputStream(encoded));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+package ai.konduit.serving.benchmarks;
+
+import ai.konduit.serving.model.loader.OnnxModelLoader;
+import ai.konduit.serving.threadpool.onnx.ONNXThreadPool;
+import org.deeplearning4j.parallelism.inference.InferenceMode;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Submission of requests to an {@link ONNXThreadPool} running a tiny generated model
+ * (see {@link BenchmarkModels#onnx(File, int)}), so the time measured is mostly
+ * queueing, batching and conversion rather than the model itself.
+ * The number of calling threads defaults to 4 and can be changed with {@code -t}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class OnnxThreadPoolBenchmark {
+
+    @Param({"1", "4"})
+    public int workers;
+
+    @Param({"1", "32"})
+    public int batchSize;
+
+    @Param({"16", "256"})
+    public int features;
+
+    @Param({"SEQUENTIAL", "BATCHED"})
+    public InferenceMode inferenceMode;
+
+    private ONNXThreadPool threadPool;
+    private Map<String, INDArray> input;
+
+    @Setup
+    public void setup() throws IOException {
+        File model = BenchmarkModels.onnx(BenchmarkModels.tempDir(), features);
+        threadPool = new ONNXThreadPool.Builder(new OnnxModelLoader(model.getAbsolutePath()))
+                .workers(workers)
+                .inferenceMode(inferenceMode)
+                .build();
+        input = Collections.singletonMap(BenchmarkModels.INPUT_NAME, Nd4j.rand(DataType.FLOAT, batchSize, features));
+    }
+
+    @TearDown
+    public void tearDown() {
+        threadPool.shutdown();
+    }
+
+    @Benchmark
+    public Map<String, INDArray> output() {
+        return threadPool.output(input);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+package ai.konduit.serving.benchmarks;
+
+import ai.konduit.serving.config.Output;
+import ai.konduit.serving.executioner.PipelineExecutioner;
+import ai.konduit.serving.output.types.BatchOutput;
+import ai.konduit.serving.output.types.NDArrayOutput;
+import ai.konduit.serving.util.JsonResponseEncoder;
+import io.vertx.core.buffer.Buffer;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding of model outputs into response bodies: the binary formats of
+ * {@link PipelineExecutioner#convertBatchOutput(INDArray, Output.DataFormat)}
+ * and the json written by {@code PipelineExecutioner#writeResponse} for raw outputs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutputEncodingBenchmark {
+
+    @Param({"1", "32", "256"})
+    public int batchSize;
+
+    @Param({"10", "1000"})
+    public int features;
+
+    @Param({"NUMPY", "ND4J", "ARROW"})
+    public Output.DataFormat format;
+
+    private INDArray output;
+    private Map<String, BatchOutput> adapted;
+
+    @Setup
+    public void setup() {
+        output = Nd4j.rand(DataType.FLOAT, batchSize, features);
+        adapted = Collections.singletonMap("output", NDArrayOutput.builder().ndArray(output).build());
+    }
+
+    @Benchmark
+    public Buffer convertBatchOutput() {
+        return PipelineExecutioner.convertBatchOutput(output, format);
+    }
+
+    @Benchmark
+    public Buffer encodeJson() throws IOException {
+        return JsonResponseEncoder.encode(adapted, false);
+    }
+}
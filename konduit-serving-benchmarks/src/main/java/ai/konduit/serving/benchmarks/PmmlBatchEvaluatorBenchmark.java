@@ -0,0 +1,91 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+package ai.konduit.serving.benchmarks;
+
+import ai.konduit.serving.model.loader.pmml.PmmlModelLoader;
+import ai.konduit.serving.threadpool.pmml.PmmlBatchEvaluator;
+import org.dmg.pmml.FieldName;
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.ModelEvaluatorFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of a batch of rows with a tiny generated PMML regression model
+ * (see {@link BenchmarkModels#pmml(File, int)}) by a {@link PmmlBatchEvaluator}.
+ * With more than one thread the batch is split across a {@link ForkJoinPool}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PmmlBatchEvaluatorBenchmark {
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"1", "32", "1024"})
+    public int batchSize;
+
+    @Param({"4", "64"})
+    public int features;
+
+    private ForkJoinPool pool;
+    private PmmlBatchEvaluator batchEvaluator;
+    private List<Map<FieldName, Object>> rows;
+
+    @Setup
+    public void setup() throws Exception {
+        File model = BenchmarkModels.pmml(BenchmarkModels.tempDir(), features);
+        Evaluator evaluator = new PmmlModelLoader(ModelEvaluatorFactory.newInstance(), model).loadModel();
+        evaluator.verify();
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        batchEvaluator = new PmmlBatchEvaluator(evaluator, pool, PmmlBatchEvaluator.DEFAULT_MIN_ROWS_PER_TASK);
+
+        Random random = new Random(12345);
+        rows = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            Map<FieldName, Object> row = new HashMap<>();
+            for (int j = 0; j < features; j++) {
+                row.put(FieldName.create("x" + j), random.nextDouble());
+            }
+            rows.add(row);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool != null)
+            pool.shutdown();
+    }
+
+    @Benchmark
+    public List<Map<FieldName, Object>> evaluate() {
+        return batchEvaluator.evaluate(rows);
+    }
+}
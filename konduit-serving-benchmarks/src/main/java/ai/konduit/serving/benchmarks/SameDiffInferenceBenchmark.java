@@ -0,0 +1,83 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+package ai.konduit.serving.benchmarks;
+
+import ai.konduit.serving.config.ParallelInferenceConfig;
+import ai.konduit.serving.executioner.inference.SameDiffInferenceExecutioner;
+import ai.konduit.serving.model.loader.samediff.SameDiffModelLoader;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execution of a tiny generated SameDiff model (see {@link BenchmarkModels#sameDiff(File, int)})
+ * through the replica pool of {@link SameDiffInferenceExecutioner}.
+ * The number of calling threads defaults to 4 and can be changed with {@code -t}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class SameDiffInferenceBenchmark {
+
+    @Param({"1", "4"})
+    public int workers;
+
+    @Param({"1", "32"})
+    public int batchSize;
+
+    @Param({"16", "256"})
+    public int features;
+
+    private SameDiffInferenceExecutioner executioner;
+    private INDArray[] input;
+
+    @Setup
+    public void setup() throws IOException {
+        File model = BenchmarkModels.sameDiff(BenchmarkModels.tempDir(), features);
+        executioner = new SameDiffInferenceExecutioner();
+        executioner.initialize(new SameDiffModelLoader(model,
+                        Collections.singletonList(BenchmarkModels.INPUT_NAME),
+                        Collections.singletonList(BenchmarkModels.OUTPUT_NAME)),
+                ParallelInferenceConfig.builder().workers(workers).build());
+        input = new INDArray[]{Nd4j.rand(DataType.FLOAT, batchSize, features)};
+    }
+
+    @TearDown
+    public void tearDown() {
+        executioner.stop();
+    }
+
+    @Benchmark
+    public INDArray[] execute() {
+        return executioner.execute(input);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+package ai.konduit.serving.benchmarks;
+
+import ai.konduit.serving.util.SchemaTypeUtils;
+import org.datavec.api.records.Record;
+import org.datavec.api.writable.NDArrayWritable;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction of the input arrays of a model from pipeline records, see {@link SchemaTypeUtils#toArrays(Record[])}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchemaTypeUtilsBenchmark {
+
+    @Param({"1", "32", "256"})
+    public int batchSize;
+
+    @Param({"128", "3x224x224"})
+    public String shape;
+
+    private Record[] records;
+
+    @Setup
+    public void setup() {
+        long[] dims = Arrays.stream(shape.split("x")).mapToLong(Long::parseLong).toArray();
+        records = new Record[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            INDArray array = Nd4j.rand(DataType.FLOAT, dims);
+            records[i] = new org.datavec.api.records.impl.Record(Collections.singletonList(new NDArrayWritable(array)), null);
+        }
+    }
+
+    @Benchmark
+    public INDArray[] toArrays() {
+        return SchemaTypeUtils.toArrays(records);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+
+package ai.konduit.serving.configprovider;
+
+import ai.konduit.serving.config.ExecutionStrategy;
+import ai.konduit.serving.config.ServingConfig;
+import ai.konduit.serving.verticles.VerticleConstants;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.ReferenceCounted;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.ext.web.RoutingContext;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the blocking parts of a pipeline request according to the
+ * {@link ExecutionStrategy} of a {@link ServingConfig}.
+ * <p>
+ * Blocking calls waiting for a worker thread are counted. When
+ * {@link ServingConfig#getMaxQueuedRequests()} is positive and the queue is full,
+ * the request is answered with 503 instead of being queued.
+ * The queue depth and the time spent waiting for a worker thread are
+ * published as the {@code blocking_queue_depth} and {@code blocking_queue_wait} metrics,
+ * tagged with the {@code pool} name so that several pipelines can share a registry.
+ * <p>
+ * Uploads decoded in memory by the {@link StreamingUploadHandler} are retained
+ * while a blocking call for their request runs.
+ *
+ * @author Adam Gibson
+ */
+@Slf4j
+public class BlockingRequestExecutor {
+
+    public final static String DEFAULT_POOL_NAME_PREFIX = "konduit-serving-pipeline-";
+
+    private final static AtomicInteger POOL_IDS = new AtomicInteger();
+
+    @Getter
+    private final ExecutionStrategy executionStrategy;
+    @Getter
+    private final String poolName;
+    private final int maxQueuedRequests;
+    private final WorkerExecutor workerExecutor;
+    private final AtomicInteger queued = new AtomicInteger();
+    private Timer queueWaitTimer;
+
+    /**
+     * @param vertx         the vertx instance to run the blocking calls on
+     * @param servingConfig the serving configuration to read the strategy from
+     * @param registry      the registry to publish the queue metrics to, may be null
+     */
+    public BlockingRequestExecutor(@NonNull Vertx vertx, @NonNull ServingConfig servingConfig, MeterRegistry registry) {
+        this.executionStrategy = servingConfig.getExecutionStrategy() == null ?
+                ExecutionStrategy.WORKER_POOL : servingConfig.getExecutionStrategy();
+        this.maxQueuedRequests = servingConfig.getMaxQueuedRequests();
+        //shared worker executors are looked up by name, so unnamed pipelines must not collide
+        this.poolName = servingConfig.getWorkerPoolName() != null ? servingConfig.getWorkerPoolName() :
+                DEFAULT_POOL_NAME_PREFIX + POOL_IDS.incrementAndGet();
+        if (executionStrategy == ExecutionStrategy.DEDICATED_WORKER_POOL) {
+            this.workerExecutor = vertx.createSharedWorkerExecutor(poolName,
+                    Math.max(1, servingConfig.getWorkerPoolSize()));
+        } else {
+            this.workerExecutor = null;
+        }
+
+        if (registry != null) {
+            Gauge.builder("blocking_queue_depth", queued, AtomicInteger::get)
+                    .tag("pool", poolName)
+                    .register(registry);
+            queueWaitTimer = Timer.builder("blocking_queue_wait")
+                    .tag("pool", poolName)
+                    .register(registry);
+        }
+
+        log.info("Running blocking pipeline calls on " + poolName + " with execution strategy " + executionStrategy);
+    }
+
+    /**
+     * Run the given blocking code for a request.
+     * If the queue is full, the request is ended with 503 and neither
+     * the blocking code nor the result handler are called.
+     *
+     * @param ctx           the request the blocking code is run for
+     * @param blockingCode  the blocking code to run
+     * @param resultHandler called on the request context with the result of the blocking code
+     * @param <T>           the result type
+     */
+    public <T> void executeBlocking(RoutingContext ctx, Handler<Promise<T>> blockingCode, Handler<AsyncResult<T>> resultHandler) {
+        int depth = queued.incrementAndGet();
+        if (maxQueuedRequests > 0 && depth > maxQueuedRequests) {
+            queued.decrementAndGet();
+            log.warn("Rejecting request: " + maxQueuedRequests + " blocking calls are already queued");
+            ctx.response().setStatusCode(503);
+            ctx.response().setStatusMessage("Too many queued requests");
+            ctx.response().end();
+            return;
+        }
+
+        //keep in memory uploads alive even if the client disconnects while the call runs
+        ReferenceCounted uploadBuffers = ctx.get(VerticleConstants.STREAMED_UPLOAD_BUFFERS);
+        if (uploadBuffers != null) {
+            if (uploadBuffers.refCnt() == 0) {
+                queued.decrementAndGet();
+                log.debug("Connection closed before the blocking call started, skipping it");
+                return;
+            }
+
+            uploadBuffers.retain();
+        }
+
+        long queuedNanos = System.nanoTime();
+        Handler<Promise<T>> timedCode = promise -> {
+            queued.decrementAndGet();
+            if (queueWaitTimer != null) {
+                queueWaitTimer.record(System.nanoTime() - queuedNanos, TimeUnit.NANOSECONDS);
+            }
+
+            blockingCode.handle(promise);
+        };
+
+        Handler<AsyncResult<T>> releasingHandler = uploadBuffers == null ? resultHandler : result -> {
+            try {
+                resultHandler.handle(result);
+            } finally {
+                uploadBuffers.release();
+            }
+        };
+
+        boolean ordered = executionStrategy == ExecutionStrategy.ORDERED;
+        if (workerExecutor != null) {
+            workerExecutor.executeBlocking(timedCode, ordered, releasingHandler);
+        } else {
+            ctx.vertx().executeBlocking(timedCode, ordered, releasingHandler);
+        }
+    }
+
+    /**
+     * @return the number of blocking calls waiting for a worker thread
+     */
+    public int queueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * Release the dedicated worker pool, if any.
+     */
+    public void close() {
+        if (workerExecutor != null) {
+            workerExecutor.close();
+        }
+    }
+}
@@ -25,10 +25,12 @@ package ai.konduit.serving.configprovider;
 
 import ai.konduit.serving.InferenceConfiguration;
 import ai.konduit.serving.config.MemMapConfig;
+import ai.konduit.serving.util.MemMapArrayStore;
+import ai.konduit.serving.util.ObjectMappers;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
-import io.vertx.core.json.JsonArray;
 import io.vertx.ext.healthchecks.HealthCheckHandler;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
@@ -37,33 +39,27 @@ import org.apache.commons.io.FileUtils;
 import org.bytedeco.javacpp.BytePointer;
 import org.bytedeco.javacpp.Pointer;
 import org.nd4j.base.Preconditions;
-import org.nd4j.linalg.api.memory.MemoryWorkspace;
-import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
-import org.nd4j.linalg.api.memory.enums.LocationPolicy;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
-import org.nd4j.linalg.indexing.INDArrayIndex;
-import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.serde.binary.BinarySerde;
+import org.nd4j.shade.jackson.core.JsonParser;
+import org.nd4j.shade.jackson.core.JsonToken;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 
 /**
  * MemMap Route Definer handles implementing
  * endpoints for returning views of a large
- * memory mapped {@link INDArray}
- * loaded via nd4j's {@link LocationPolicy#MMAP}
- * this means that nd4j will use a memory mapped
- * workspace for loading an array from disk.
+ * memory mapped {@link INDArray}.
  * <p>
- * This route definer keeps a {@link ThreadLocal}
- * of {@link INDArray} in memory using nd4j's
- * workspace described above.
- * When this class is initialized, an array will
- * be loaded from disk based on the passed in {@link MemMapConfig}
+ * The array file from the {@link MemMapConfig} is mapped
+ * read only on first use through {@link MemMapArrayStore#shared(File)}.
+ * All threads read from that single mapping, so memory use
+ * and startup time don't depend on the number of threads.
  *
  * @author Adam Gibson
  */
@@ -71,11 +67,11 @@ import java.util.List;
 public class MemMapRouteDefiner {
 
     private INDArray unknownVector;
-    private ThreadLocal<INDArray> arr;
+    private volatile MemMapArrayStore store;
+    //the unknown vector as raw row bytes in the data type of the store
+    private ByteBuffer unknownRow;
     private MemMapConfig memMapConfig;
 
-    private WorkspaceConfiguration mmap;
-
     /**
      * Define the routes implementing
      * memory mapped operations.
@@ -93,8 +89,11 @@ public class MemMapRouteDefiner {
      * /array/indices/:arrayType : where arrayType is a parameter value of json or binary.
      * If json is specified {@link #writeArrayJson(INDArray, RoutingContext)}
      * is called otherwise {@link #writeArrayBinary(INDArray, RoutingContext)} is called.
-     * Indices expects a post body of a json array containing a list of indices to return.
-     * The indices will be used to determine what slices to return from an {@link INDArray}
+     * Indices expects a post body of a json array containing a list of indices to return,
+     * or an application/octet-stream body of little endian int64 indices (int32 with ?indexType=int32).
+     * The rows for all indices are gathered in one pass, a negative index returns the unknown vector
+     * and an index past the last row is answered with 400.
+     * For numpy the rows are copied straight from the mapping into the response.
      * <br>
      * <p>
      * /array/range/:from/:to/:arrayType where arrayType is a parameter value of json or binary.
@@ -109,7 +108,6 @@ public class MemMapRouteDefiner {
      * @return the router with the endpoints defined
      */
     public Router defineRoutes(Vertx vertx, InferenceConfiguration inferenceConfiguration) {
-        Long initialSize = inferenceConfiguration.getMemMapConfig().getInitialMemmapSize();
         Router router = Router.router(vertx);
         memMapConfig = inferenceConfiguration.getMemMapConfig();
 
@@ -123,26 +121,6 @@ public class MemMapRouteDefiner {
            }
        }
 
-        File tempFile = new File(System.getProperty("user.home"), ".mmap-temp-file");
-        if (!tempFile.exists()) {
-            try {
-                Preconditions.checkState(tempFile.createNewFile(), "Memmap temp file at path %s wasn't able to be created successfully. " +
-                        "Check that if you have write permissions to that file location", tempFile.getAbsolutePath());
-            } catch (IOException e) {
-                log.error("Unable to create file at location: {}", tempFile.getAbsolutePath(), e);
-            }
-        }
-
-        Preconditions.checkState(tempFile.canWrite() && tempFile.canRead(), "Unable to either read or write to %s for memmap temp file.",
-                tempFile.getAbsolutePath());
-
-        arr = new ThreadLocal<>();
-        mmap = WorkspaceConfiguration.builder()
-                .initialSize(initialSize)
-                .policyLocation(LocationPolicy.MMAP)
-                .tempFilePath(tempFile.getAbsolutePath())
-                .build();
-
         PipelineRouteDefiner.generalHandler(inferenceConfiguration, router, log);
 
 
@@ -171,7 +149,7 @@ public class MemMapRouteDefiner {
 
         router.post("/array/:arrayType")
                 .handler(ctx -> {
-                    INDArray write  = getOrSetArrForContext();
+                    INDArray write  = getOrSetArrForContext().getArray();
                     String paramType = ctx.pathParam("arrayType");
                     if(paramType.equals("json"))
                         writeArrayJson(write,ctx);
@@ -183,12 +161,41 @@ public class MemMapRouteDefiner {
 
         router.post("/array/indices/:arrayType")
                 .handler(ctx -> {
-                    INDArray write  = getArrayFromContext(ctx);
+                    long[] indices;
+                    try {
+                        indices = parseIndices(ctx);
+                    } catch (Exception e) {
+                        log.error("Unable to parse indices", e);
+                        ctx.response().setStatusCode(400);
+                        ctx.response().setStatusMessage("Invalid indices: " + e.getMessage());
+                        ctx.response().end();
+                        return;
+                    }
+
+                    MemMapArrayStore arr = getOrSetArrForContext();
+                    if (unknownRow == null && hasUnknownIndex(indices)) {
+                        ctx.response().setStatusCode(400);
+                        ctx.response().setStatusMessage("Unknown vector specified, but server did not have one " +
+                                "configured. Please specify a vector upon startup.");
+                        ctx.response().end();
+                        return;
+                    }
+
+                    long outOfRange = firstIndexOutOfRange(indices, arr.rows());
+                    if (outOfRange >= 0) {
+                        ctx.response().setStatusCode(400);
+                        ctx.response().setStatusMessage("Index " + outOfRange + " out of range for array with " + arr.rows() + " rows");
+                        ctx.response().end();
+                        return;
+                    }
+
                     String paramType = ctx.pathParam("arrayType");
-                    if(paramType.equals("json"))
-                        writeArrayJson(write,ctx);
+                    if (paramType.equals("numpy"))
+                        writeGatheredNumpy(arr, indices, ctx);
+                    else if (paramType.equals("json"))
+                        writeArrayJson(arr.gather(indices, unknownRow), ctx);
                     else
-                        writeArrayBinary(write,ctx);
+                        writeArrayBinary(arr.gather(indices, unknownRow), ctx);
                 });
 
         router.post("/array/range/:from/:to/:arrayType")
@@ -255,82 +262,119 @@ public class MemMapRouteDefiner {
         int from = Integer.parseInt(ctx.pathParam("from"));
         int to = Integer.parseInt(ctx.pathParam("to"));
 
-        INDArray arr = getOrSetArrForContext();
-        if (arr.isVector()) {
-            INDArrayIndex[] indices = new INDArrayIndex[1];
-            indices[0] = NDArrayIndex.interval(from, to);
-            INDArray write = arr.get(indices);
-            return write;
-        } else {
-            INDArrayIndex[] indices = new INDArrayIndex[arr.rank()];
-            for (int i = 0; i < indices.length; i++) {
-                indices[i] = NDArrayIndex.all();
-            }
+        return getOrSetArrForContext().getRows(from, to);
+    }
 
-            indices[0] = NDArrayIndex.interval(from, to);
-            INDArray write = arr.get(indices);
-            return write;
-        }
+    private MemMapArrayStore getOrSetArrForContext() {
+        MemMapArrayStore ret = store;
+        if (ret == null) {
+            synchronized (this) {
+                if (store == null) {
+                    try {
+                        MemMapArrayStore opened = MemMapArrayStore.shared(new File(memMapConfig.getArrayPath()));
+                        opened.setHotRowCacheSize(memMapConfig.getHotRowCacheSize());
+                        if (unknownVector != null) {
+                            unknownRow = opened.toRowBytes(unknownVector);
+                        }
+
+                        store = opened;
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Unable to memory map array at path " + memMapConfig.getArrayPath(), e);
+                    }
+                }
 
+                ret = store;
+            }
+        }
 
+        return ret;
     }
 
-    private INDArray getOrSetArrForContext() {
-        String path = memMapConfig.getArrayPath();
+    /**
+     * Read the indices to gather from the request body: little endian int64
+     * values (int32 with the {@code indexType=int32} query parameter) for
+     * {@code application/octet-stream}, a json array for any other content type
+     */
+    private long[] parseIndices(RoutingContext ctx) throws IOException {
+        Buffer body = ctx.getBody();
+        if (body == null || body.length() == 0) {
+            throw new IllegalStateException("No body found!");
+        }
 
+        String contentType = ctx.request().getHeader("Content-Type");
+        if (contentType == null || !contentType.toLowerCase().startsWith("application/octet-stream")) {
+            long[] ret = new long[64];
+            int size = 0;
+            try (JsonParser parser = ObjectMappers.json().getFactory().createParser(body.getBytes())) {
+                Preconditions.checkState(parser.nextToken() == JsonToken.START_ARRAY, "Expected a json array of indices");
+                while (parser.nextToken() == JsonToken.VALUE_NUMBER_INT) {
+                    if (size == ret.length)
+                        ret = Arrays.copyOf(ret, ret.length * 2);
+                    ret[size++] = parser.getLongValue();
+                }
+
+                Preconditions.checkState(parser.getCurrentToken() == JsonToken.END_ARRAY, "Indices must be integers");
+            }
 
-        File loadFrom = new File(path);
-        if (!loadFrom.exists()) {
-            throw new IllegalStateException("File not found at path " + path);
+            return Arrays.copyOf(ret, size);
         }
 
-        if (arr.get() == null) {
-            try (MemoryWorkspace ws = Nd4j.getWorkspaceManager().getAndActivateWorkspace(mmap, memMapConfig.getWorkSpaceName())) {
-                if (path.endsWith("npy"))
-                    arr.set((Nd4j.createFromNpyFile(loadFrom)));
-                else {
-                    arr.set(BinarySerde.readFromDisk(loadFrom));
-                }
-            } catch (IOException e) {
-                log.error("Error creating nd4j array", e);
+        ByteBuffer bytes = body.getByteBuf().nioBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        if ("int32".equals(ctx.request().getParam("indexType"))) {
+            Preconditions.checkState(bytes.remaining() % 4 == 0, "Body of %s bytes is not a list of int32 indices", bytes.remaining());
+            long[] ret = new long[bytes.remaining() / 4];
+            for (int i = 0; i < ret.length; i++) {
+                ret[i] = bytes.getInt();
             }
+
+            return ret;
         }
 
-        return arr.get();
+        Preconditions.checkState(bytes.remaining() % 8 == 0, "Body of %s bytes is not a list of int64 indices", bytes.remaining());
+        long[] ret = new long[bytes.remaining() / 8];
+        bytes.asLongBuffer().get(ret);
+        return ret;
     }
 
-    private INDArray getArrayFromContext(RoutingContext ctx) {
-        ctx.response().setStatusCode(200);
-        ctx.response().setChunked(false);
-        JsonArray bodyAsJson = ctx.getBodyAsJsonArray();
-
-        if (bodyAsJson == null) {
-            throw new IllegalStateException("No body found!");
+    private static long firstIndexOutOfRange(long[] indices, long rows) {
+        for (long index : indices) {
+            if (index >= rows)
+                return index;
         }
 
-        INDArray arr = getOrSetArrForContext();
+        return -1;
+    }
+
+    private static boolean hasUnknownIndex(long[] indices) {
+        for (long index : indices) {
+            if (index < 0)
+                return true;
+        }
 
+        return false;
+    }
 
-        JsonArray jsonArray = bodyAsJson;
-        List<INDArray> slices = new ArrayList<>();
-        for (int i = 0; i < jsonArray.size(); i++) {
-            int idx = jsonArray.getInteger(i);
-            if(idx < 0) {
-                if(unknownVector != null) {
-                    slices.add(unknownVector);
-                }
-                else {
-                    ctx.response().setStatusCode(400);
-                    ctx.response().setStatusMessage("Unknown vector specified, but server did not have one " +
-                            "configured. Please specify a vector upon startup.");
-                    ctx.response().setChunked(false);
-                }
-            } else
-                slices.add(arr.slice(idx));
+    /**
+     * Write the gathered rows as a numpy array, copying each row from
+     * the mapping straight into the response buffer after the header
+     */
+    private void writeGatheredNumpy(MemMapArrayStore arr, long[] indices, RoutingContext ctx) {
+        long[] shape = arr.gatherShape(indices.length);
+        if (indices.length == 1 && shape.length == 1) {
+            shape = new long[]{1, 1};
         }
 
-        INDArray write = Nd4j.concat(0, slices.toArray(new INDArray[slices.size()]));
-        return write;
+        byte[] header = MemMapArrayStore.numpyHeader(arr.dataType(), shape);
+        long dataLength = indices.length * arr.rowBytes();
+        Preconditions.checkState(header.length + dataLength <= Integer.MAX_VALUE, "Response of %s bytes is too large", dataLength);
+        ByteBuf out = Unpooled.buffer(header.length + (int) dataLength);
+        out.writeBytes(header);
+        arr.gather(indices, unknownRow, out.nioBuffer(out.writerIndex(), (int) dataLength));
+        out.writerIndex(out.writerIndex() + (int) dataLength);
+
+        ctx.response().putHeader("Content-Type", "application/octet-stream");
+        ctx.response().setChunked(false);
+        ctx.response().end(Buffer.buffer(out));
     }
 
 }
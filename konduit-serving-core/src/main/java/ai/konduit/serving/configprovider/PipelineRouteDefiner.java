@@ -33,6 +33,7 @@ import ai.konduit.serving.config.metrics.impl.ClassificationMetricsConfig;
 import ai.konduit.serving.config.metrics.impl.MetricsBinderRendererAdapter;
 import ai.konduit.serving.config.metrics.impl.MultiLabelMetricsConfig;
 import ai.konduit.serving.config.metrics.impl.RegressionMetricsConfig;
+import ai.konduit.serving.executioner.Pipeline;
 import ai.konduit.serving.executioner.PipelineExecutioner;
 import ai.konduit.serving.input.adapter.InputAdapter;
 import ai.konduit.serving.input.conversion.BatchInputParser;
@@ -47,12 +48,15 @@ import ai.konduit.serving.pipeline.step.ModelStep;
 import ai.konduit.serving.pipeline.step.PythonStep;
 import ai.konduit.serving.pipeline.step.TransformProcessStep;
 import ai.konduit.serving.pipeline.step.WordTokenizerStep;
+import ai.konduit.serving.util.ArrowAllocators;
+import ai.konduit.serving.util.InferenceResultCache;
 import ai.konduit.serving.util.LogUtils;
 import ai.konduit.serving.util.SchemaTypeUtils;
 import ai.konduit.serving.verticles.VerticleConstants;
 import io.micrometer.core.instrument.LongTaskTimer;
 import io.micrometer.core.instrument.LongTaskTimer.Sample;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
 import io.micrometer.core.instrument.binder.MeterBinder;
 import io.micrometer.core.instrument.binder.jvm.ClassLoaderMetrics;
 import io.micrometer.core.instrument.binder.jvm.JvmGcMetrics;
@@ -60,16 +64,18 @@ import io.micrometer.core.instrument.binder.jvm.JvmMemoryMetrics;
 import io.micrometer.core.instrument.binder.jvm.JvmThreadMetrics;
 import io.micrometer.core.instrument.binder.logging.LogbackMetrics;
 import io.micrometer.core.instrument.binder.system.ProcessorMetrics;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.healthchecks.HealthCheckHandler;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
-import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.micrometer.backends.BackendRegistries;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.arrow.memory.BufferAllocator;
 import org.apache.commons.io.FileUtils;
 import org.apache.http.HttpHeaders;
 import org.datavec.api.records.Record;
@@ -82,6 +88,7 @@ import org.slf4j.Logger;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -93,16 +100,17 @@ import java.util.concurrent.TimeUnit;
 @Getter
 public class PipelineRouteDefiner {
 
-    protected Input.DataFormat inputDataFormat;
-    protected PredictionType predictionType;
-    protected Output.DataFormat outputDataFormat;
-
     protected PipelineExecutioner pipelineExecutioner;
     protected InferenceConfiguration inferenceConfiguration;
     //cached for columnar inputs, not used in binary endpoints
     protected Schema inputSchema, outputSchema = null;
     protected LongTaskTimer inferenceExecutionTimer, batchCreationTimer;
     protected HealthCheckHandler healthCheckHandler;
+    protected BlockingRequestExecutor blockingRequestExecutor;
+    //null unless InferenceConfiguration#getResultCacheConfig() is set
+    protected InferenceResultCache resultCache;
+    //the id the shared result cache was obtained with, released in stop()
+    private String resultCacheId;
     private static JsonArrayMapConverter mapConverter = new JsonArrayMapConverter();
     private List<MetricsRenderer> metricsRenderers;
 
@@ -142,6 +150,11 @@ public class PipelineRouteDefiner {
     public Router defineRoutes(Vertx vertx, InferenceConfiguration inferenceConfiguration) {
         Router router = Router.router(vertx);
 
+        ServingConfig servingConfig = inferenceConfiguration.getServingConfig();
+        if (servingConfig != null) {
+            ArrowAllocators.configure(servingConfig.getMaxArrowMemoryBytes(), servingConfig.getMaxArrowRequestMemoryBytes());
+        }
+
         MeterRegistry registry = BackendRegistries.getDefaultNow();
         if (registry != null) {
             log.info("Using metrics registry " + registry.getClass().getName() + " for inference");
@@ -157,6 +170,13 @@ public class PipelineRouteDefiner {
             log.info("Not using metrics registry.");
         }
 
+        if (inferenceConfiguration.getResultCacheConfig() != null) {
+            resultCacheId = inferenceConfiguration.toJson();
+            resultCache = InferenceResultCache.shared(resultCacheId, inferenceConfiguration.getResultCacheConfig());
+            if (registry != null)
+                resultCache.bindTo(registry);
+        }
+
         metricsRenderers = new ArrayList<>();
         if (inferenceConfiguration.getServingConfig().getMetricTypes() != null && registry != null) {
             //don't add more than one type
@@ -347,13 +367,15 @@ public class PipelineRouteDefiner {
                 });
 
         Preconditions.checkNotNull(inferenceConfiguration.getServingConfig(), "Please define a serving configuration.");
+        if (blockingRequestExecutor == null) {
+            blockingRequestExecutor = new BlockingRequestExecutor(vertx, inferenceConfiguration.getServingConfig(), registry);
+        }
+
         generalHandler(inferenceConfiguration, router, log);
 
 
-        router.post().handler(BodyHandler.create()
-                .setUploadsDirectory(inferenceConfiguration.getServingConfig().getUploadsDirectory())
-                .setDeleteUploadedFilesOnEnd(true)
-                .setMergeFormAttributes(true))
+        router.post().handler(new StreamingUploadHandler(inferenceConfiguration.getServingConfig(),
+                inferenceConfiguration.getResultCacheConfig() != null))
                 .failureHandler(failureHandlder -> {
                     if (failureHandlder.statusCode() == 404) {
                         log.warn("404 at route " + failureHandlder.request().path());
@@ -383,8 +405,8 @@ public class PipelineRouteDefiner {
         router.post("/:predictionType/:inputDataFormat")
                 .consumes("application/json")
                 .produces("application/json").handler(ctx -> {
-            predictionType = PredictionType.valueOf(ctx.pathParam("predictionType").toUpperCase());
-            inputDataFormat = Input.DataFormat.valueOf(ctx.pathParam("inputDataFormat").toUpperCase());
+            PredictionType predictionType = PredictionType.valueOf(ctx.pathParam("predictionType").toUpperCase());
+            Input.DataFormat inputDataFormat = Input.DataFormat.valueOf(ctx.pathParam("inputDataFormat").toUpperCase());
 
             Preconditions.checkState(inputDataFormat.equals(Input.DataFormat.JSON),
                     "content-type: application/json only accepts JSON as " +
@@ -392,44 +414,17 @@ public class PipelineRouteDefiner {
 
             initializeSchemas(inferenceConfiguration, true);
 
-            try {
-                LongTaskTimer.Sample start = null;
-                if (inferenceExecutionTimer != null) {
-                    start = inferenceExecutionTimer.start();
-                }
-                String jsonString = ctx.getBody().toString();
-                Record[] records = pipelineExecutioner.doInference(
-                        ctx,
-                        predictionType,
-                        jsonString,
-                        inputSchema,
-                        null,
-                        outputSchema,
-			inputDataFormat,
-                        inferenceConfiguration.getServingConfig().getOutputDataFormat());
-
-                if (start != null)
-                    start.stop();
-
-                vertx.runOnContext(handler -> {
-                    log.debug("Updating metrics post inference");
-                    for(MetricsRenderer metricsRenderer : metricsRenderers) {
-                        metricsRenderer.updateMetrics(records);
-                    }
-
-                    log.debug("Done updating metrics post inference");
-
-
-                });
-
-
-
-            } catch (Exception e) {
-                log.error("Unable to perform json inference", e);
-                ctx.response().setStatusCode(500);
-                ctx.response().setStatusMessage("Failed to perform json inference");
-                ctx.response().end();
+            Output.DataFormat outputDataFormat = inferenceConfiguration.getServingConfig().getOutputDataFormat();
+            if (resultCache == null) {
+                jsonInference(vertx, ctx, predictionType, inputDataFormat, outputDataFormat, null);
+                return;
             }
+
+            InferenceResultCache.Key key = InferenceResultCache.key(ctx.request().path(),
+                    String.valueOf(outputDataFormat),
+                    ctx.getBody());
+            cachedInference(vertx, ctx, key,
+                    cacheKey -> jsonInference(vertx, ctx, predictionType, inputDataFormat, outputDataFormat, cacheKey));
         });
 
 
@@ -439,17 +434,22 @@ public class PipelineRouteDefiner {
         router.post("/:predictionType/:inputDataFormat")
                 .consumes("multipart/form-data")
                 .consumes("multipart/mixed").handler(ctx -> {
-            inputDataFormat = Input.DataFormat.valueOf(ctx.pathParam("inputDataFormat").toUpperCase());
+            Input.DataFormat inputDataFormat = Input.DataFormat.valueOf(ctx.pathParam("inputDataFormat").toUpperCase());
 
+            PredictionType predictionType;
             try {
                 // Sometimes we have predictionType coming in as outputDataFormat if that's the case
                 // then the right place for the pipelineExecutioner to be initialized is at the
                 // "/:outputDataFormat/:inputDataFormat" route
-                outputDataFormat = Output.DataFormat.valueOf(ctx.pathParam("predictionType").toUpperCase());
+                Output.DataFormat.valueOf(ctx.pathParam("predictionType").toUpperCase());
                 predictionType = PredictionType.RAW;
             } catch(Exception e) {
                 predictionType = PredictionType.valueOf(ctx.pathParam("predictionType").toUpperCase());
             }
+
+            //request scoped: the handlers below read these from the context rather than from shared fields
+            ctx.put(VerticleConstants.PREDICTION_TYPE, predictionType);
+            ctx.put(VerticleConstants.INPUT_DATA_FORMAT, inputDataFormat);
             pipelineExecutioner.init();
 
             Map<String, InputAdapter<io.vertx.core.buffer.Buffer, ?>> adapters = getInputAdapterMap(ctx);
@@ -459,38 +459,50 @@ public class PipelineRouteDefiner {
                     .converters(adapters)
                     .inputParts(inputNames()).build();
 
-            ctx.vertx().executeBlocking(handler -> {
+            //the response is cached when the uploads were hashed, see StreamingUploadHandler
+            Handler<InferenceResultCache.Key> createBatch = cacheKey -> {
+                if (cacheKey != null)
+                    ctx.put(VerticleConstants.RESULT_CACHE_KEY, cacheKey);
 
-                long nanos = System.nanoTime();
-                Record[] batch = null;
-                try {
-                    LongTaskTimer.Sample start = null;
-                    if (batchCreationTimer != null) {
-                        start = batchCreationTimer.start();
+                blockingRequestExecutor.executeBlocking(ctx, handler -> {
+
+                    long nanos = System.nanoTime();
+                    Record[] batch = null;
+                    try {
+                        LongTaskTimer.Sample start = null;
+                        if (batchCreationTimer != null) {
+                            start = batchCreationTimer.start();
+                        }
+
+                        batch = batchInputParser.createBatch(ctx);
+                        if (start != null)
+                            start.stop();
+                    } catch (Exception e) {
+                        log.error("Unable to convert data for batch", e);
                     }
 
-                    batch = batchInputParser.createBatch(ctx);
-                    if (start != null)
-                        start.stop();
-                } catch (Exception e) {
-                    log.error("Unable to convert data for batch", e);
-                }
+                    long endNanos = System.nanoTime();
+                    if (inferenceConfiguration.serving().isLogTimings()) {
+                        log.info("Timing for batch creation was " + TimeUnit.NANOSECONDS.toMillis((endNanos - nanos)) + " milliseconds");
+                    }
+                    if (batch == null) {
+                        ctx.response().setStatusCode(400);
+                        ctx.response().setStatusMessage("NDArrays failed to de serialize.");
+                        handler.complete();
+                    } else {
+                        log.debug("Created batch for request ");
+                    }
 
-                long endNanos = System.nanoTime();
-                if (inferenceConfiguration.serving().isLogTimings()) {
-                    log.info("Timing for batch creation was " + TimeUnit.NANOSECONDS.toMillis((endNanos - nanos)) + " milliseconds");
-                }
-                if (batch == null) {
-                    ctx.response().setStatusCode(400);
-                    ctx.response().setStatusMessage("NDArrays failed to de serialize.");
+                    ctx.put(VerticleConstants.CONVERTED_INFERENCE_DATA, batch);
                     handler.complete();
-                } else {
-                    log.debug("Created batch for request ");
-                }
+                }, result -> ctx.next());
+            };
 
-                ctx.put(VerticleConstants.CONVERTED_INFERENCE_DATA, batch);
-                handler.complete();
-            }, true, result -> ctx.next());
+            InferenceResultCache.Key key = multipartCacheKey(ctx);
+            if (key == null)
+                createBatch.handle(null);
+            else
+                cachedInference(vertx, ctx, key, createBatch);
 
         });
 
@@ -504,6 +516,8 @@ public class PipelineRouteDefiner {
 
             log.debug("Processing transaction id " + transactionUUID);
             Record[] inputs = ctx.get(VerticleConstants.CONVERTED_INFERENCE_DATA);
+            PredictionType predictionType = ctx.get(VerticleConstants.PREDICTION_TYPE);
+            Input.DataFormat inputDataFormat = ctx.get(VerticleConstants.INPUT_DATA_FORMAT);
 
             if (inputs == null) {
                 ctx.response().setStatusCode(400);
@@ -517,7 +531,7 @@ public class PipelineRouteDefiner {
                 return;
             }
 
-            ctx.vertx().executeBlocking(blockingCall -> {
+            blockingRequestExecutor.executeBlocking(ctx, blockingCall -> {
                 try {
                     long nanos = System.nanoTime();
                     LongTaskTimer.Sample start = null;
@@ -533,7 +547,7 @@ public class PipelineRouteDefiner {
                             outputSchema,
 			    inputDataFormat,
                             inferenceConfiguration.getServingConfig().getOutputDataFormat());
-
+                    cacheResponse(ctx, ctx.get(VerticleConstants.RESULT_CACHE_KEY));
 
                     if (start != null)
                         start.stop();
@@ -555,11 +569,12 @@ public class PipelineRouteDefiner {
                     blockingCall.complete();
                 } catch (Exception e) {
                     log.error("Failed to do inference ", e);
+                    failCachedResponse(ctx.get(VerticleConstants.RESULT_CACHE_KEY));
                     ctx.fail(e);
                     blockingCall.fail(e);
                 }
 
-            }, true, result -> {
+            }, result -> {
                 if (result.failed()) {
                     ctx.fail(result.cause());
                 }
@@ -573,7 +588,7 @@ public class PipelineRouteDefiner {
             Map<String, InputAdapter<Buffer, ?>> adapters = getInputAdapterMap(ctx);
 
             String transactionUUID = UUID.randomUUID().toString();
-            ctx.vertx().executeBlocking(handler -> {
+            blockingRequestExecutor.executeBlocking(ctx, handler -> {
                 BatchInputParser batchInputParser = BatchInputParser.builder()
                         .converters(adapters)
                         .converterArgs(pipelineExecutioner.getArgs())
@@ -607,7 +622,7 @@ public class PipelineRouteDefiner {
                     log.error("Unable to convert inputs", e);
                     handler.fail(e);
                 }
-            }, true, result -> ctx.next());
+            }, result -> ctx.next());
         });
 
         router.post("/:outputDataFormat/:inputDataFormat")
@@ -616,6 +631,8 @@ public class PipelineRouteDefiner {
                 .produces("application/octet-stream").handler((RoutingContext ctx) -> {
 
             Record[] inputs = ctx.get(VerticleConstants.CONVERTED_INFERENCE_DATA);
+            PredictionType predictionType = ctx.get(VerticleConstants.PREDICTION_TYPE);
+            Input.DataFormat inputDataFormat = ctx.get(VerticleConstants.INPUT_DATA_FORMAT);
             if (inputs == null) {
                 log.warn("No inputs found. Bad request");
                 ctx.response().setStatusCode(400);
@@ -625,7 +642,7 @@ public class PipelineRouteDefiner {
 
             String outputDataFormatString = ctx.pathParam("outputDataFormat");
             Output.DataFormat dataFormat = Output.DataFormat.valueOf(outputDataFormatString.toUpperCase());
-            ctx.vertx().executeBlocking(handler -> {
+            blockingRequestExecutor.executeBlocking(ctx, handler -> {
                 try {
                     long nanos = System.nanoTime();
                     Sample start = null;
@@ -633,6 +650,7 @@ public class PipelineRouteDefiner {
                         start = batchCreationTimer.start();
                     }
                     INDArray[] outputs = pipelineExecutioner.doInference(ctx, predictionType, inputDataFormat, dataFormat, inputs);
+                    cacheResponse(ctx, ctx.get(VerticleConstants.RESULT_CACHE_KEY));
                     if (start != null)
                         start.stop();
                     long endNanos = System.nanoTime();
@@ -658,11 +676,12 @@ public class PipelineRouteDefiner {
                     handler.complete();
                 } catch (Exception e) {
                     log.error("Failed to do inference ", e);
+                    failCachedResponse(ctx.get(VerticleConstants.RESULT_CACHE_KEY));
                     ctx.fail(e);
                     handler.fail(e);
                 }
 
-            }, true, result -> {});
+            }, result -> {});
         });
 
         if (pipelineExecutioner == null) {
@@ -674,6 +693,12 @@ public class PipelineRouteDefiner {
                 pipelineExecutioner.init();
             } catch (Exception e) {
                 log.error("Failed to initialize. Shutting down.", e);
+                throw new IllegalStateException("Failed to initialize the pipeline", e);
+            }
+
+            if (registry != null) {
+                registerStartupMetrics(registry, pipelineExecutioner.getPipeline(), inferenceConfiguration.getSteps());
+                pipelineExecutioner.getPipeline().bindMetrics(registry);
             }
         } else {
             log.debug("Web server and endpoint already initialized.");
@@ -682,11 +707,149 @@ public class PipelineRouteDefiner {
         return router;
     }
 
+    /**
+     * Release resources shared with other verticles, called when the verticle stops.
+     */
+    public void stop() {
+        if (resultCacheId != null) {
+            InferenceResultCache.release(resultCacheId);
+            resultCacheId = null;
+        }
+    }
+
+    /**
+     * Answer a request from the {@link #resultCache}, or wait for an identical request being computed.
+     * Otherwise {@code compute} runs the request, with the key to cache its response under,
+     * or with null when the response of an identical request could not be cached.
+     */
+    private void cachedInference(Vertx vertx, RoutingContext ctx, InferenceResultCache.Key key,
+                                 Handler<InferenceResultCache.Key> compute) {
+        if (resultCache.respond(ctx, key))
+            return;
+
+        CompletableFuture<Void> inFlight = resultCache.joinInFlight(key);
+        if (inFlight == null) {
+            //requests failing before their response is cached must not keep identical requests waiting
+            ctx.addBodyEndHandler(v -> resultCache.fail(key));
+            compute.handle(key);
+        } else {
+            //an identical request is running, reuse its response once it is cached
+            Context context = vertx.getOrCreateContext();
+            inFlight.whenComplete((ignored, error) -> context.runOnContext(handler -> {
+                if (!resultCache.respond(ctx, key))
+                    compute.handle(null);
+            }));
+        }
+    }
+
+    /**
+     * The result cache key of a multipart request, null when there is no cache
+     * or the uploads were not hashed because they were spooled to disk
+     */
+    private InferenceResultCache.Key multipartCacheKey(RoutingContext ctx) {
+        InferenceResultCache.ContentHasher hasher = ctx.get(VerticleConstants.STREAMED_UPLOADS_HASH);
+        if (resultCache == null || hasher == null)
+            return null;
+
+        //the accept header selects between json and binary responses
+        return hasher.key(ctx.request().path() + ";" + ctx.request().getHeader(HttpHeaders.ACCEPT),
+                String.valueOf(inferenceConfiguration.getServingConfig().getOutputDataFormat()));
+    }
+
+    /**
+     * Store the response written for the request under the key, if it succeeded,
+     * and release identical requests waiting on it
+     */
+    private void cacheResponse(RoutingContext ctx, InferenceResultCache.Key key) {
+        if (key == null)
+            return;
+
+        Buffer responseBody = ctx.get(VerticleConstants.RESPONSE_BODY);
+        if (ctx.response().getStatusCode() == 200 && responseBody != null)
+            resultCache.complete(key, ctx.response().headers().get("Content-Type"), responseBody);
+        else
+            resultCache.fail(key);
+    }
+
+    private void failCachedResponse(InferenceResultCache.Key key) {
+        if (key != null)
+            resultCache.fail(key);
+    }
+
+    /**
+     * Run the pipeline for a json request and write the response.
+     * If a cache key is given, the response is stored in the {@link #resultCache}
+     * and any identical requests waiting on it are released.
+     */
+    private void jsonInference(Vertx vertx, RoutingContext ctx, PredictionType predictionType,
+                               Input.DataFormat inputDataFormat, Output.DataFormat outputDataFormat,
+                               InferenceResultCache.Key key) {
+        //the converted input vectors are released once the metrics have seen the records
+        BufferAllocator requestAllocator = ArrowAllocators.newRequestAllocator("json-inference");
+        Record[] pipelineInput = null;
+        try {
+            LongTaskTimer.Sample start = null;
+            if (inferenceExecutionTimer != null) {
+                start = inferenceExecutionTimer.start();
+            }
+            pipelineInput = PipelineExecutioner.createInput(ctx.getBody().toString(), null, inputSchema, requestAllocator,
+                    pipelineExecutioner.inputColumnDataTypes());
+            Record[] records = pipelineExecutioner.doInference(
+                    ctx,
+                    predictionType,
+                    pipelineInput,
+                    inputSchema,
+                    null,
+                    outputSchema,
+                    inputDataFormat,
+                    outputDataFormat);
+
+            if (start != null)
+                start.stop();
+
+            cacheResponse(ctx, key);
+
+            Record[] converted = pipelineInput;
+            vertx.runOnContext(handler -> {
+                try {
+                    log.debug("Updating metrics post inference");
+                    for (MetricsRenderer metricsRenderer : metricsRenderers) {
+                        metricsRenderer.updateMetrics(records);
+                    }
+
+                    log.debug("Done updating metrics post inference");
+                } finally {
+                    ArrowAllocators.release(requestAllocator, converted);
+                }
+            });
+        } catch (Exception e) {
+            ArrowAllocators.release(requestAllocator, pipelineInput);
+            failCachedResponse(key);
+            log.error("Unable to perform json inference", e);
+            ctx.response().setStatusCode(500);
+            ctx.response().setStatusMessage("Failed to perform json inference");
+            ctx.response().end();
+        }
+    }
+
+    /**
+     * Exposes the time taken to create each pipeline step as a
+     * {@code pipeline_step_startup} gauge tagged with the step index and type.
+     */
+    private static void registerStartupMetrics(MeterRegistry registry, Pipeline pipeline, List<PipelineStep> steps) {
+        List<Long> stepStartupMillis = pipeline.getStepStartupMillis();
+        for (int i = 0; i < stepStartupMillis.size() && i < steps.size(); i++) {
+            int step = i;
+            TimeGauge.builder("pipeline_step_startup", stepStartupMillis, TimeUnit.MILLISECONDS, l -> l.get(step))
+                    .tag("step", String.valueOf(i))
+                    .tag("type", steps.get(i).getClass().getSimpleName())
+                    .register(registry);
+        }
+    }
+
     static void generalHandler(InferenceConfiguration inferenceConfiguration, Router router, Logger log) {
-        router.post().handler(BodyHandler.create()
-                .setUploadsDirectory(inferenceConfiguration.getServingConfig().getUploadsDirectory())
-                .setDeleteUploadedFilesOnEnd(true)
-                .setMergeFormAttributes(true))
+        router.post().handler(new StreamingUploadHandler(inferenceConfiguration.getServingConfig(),
+                inferenceConfiguration.getResultCacheConfig() != null))
                 .failureHandler(failureHandlder -> {
                     if (failureHandlder.statusCode() == 404) {
                         log.warn("404 at route " + failureHandlder.request().path());
@@ -703,7 +866,7 @@ public class PipelineRouteDefiner {
 
 
 
-    private void initializeSchemas(InferenceConfiguration inferenceConfiguration, boolean inputRequired) {
+    private synchronized void initializeSchemas(InferenceConfiguration inferenceConfiguration, boolean inputRequired) {
         if (inputSchema == null && inputRequired) {
             for (PipelineStep pipelineStep : inferenceConfiguration.getSteps()) {
                 if (pipelineStep instanceof ModelStep || pipelineStep instanceof PythonStep || pipelineStep
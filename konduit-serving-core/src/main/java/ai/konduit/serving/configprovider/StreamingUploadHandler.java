@@ -0,0 +1,210 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+
+package ai.konduit.serving.configprovider;
+
+import ai.konduit.serving.config.ServingConfig;
+import ai.konduit.serving.input.conversion.StreamedUpload;
+import ai.konduit.serving.util.InferenceResultCache;
+import ai.konduit.serving.verticles.VerticleConstants;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.ReferenceCounted;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.BodyHandler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A body handler that decodes multipart uploads in memory as they arrive.
+ * Each part is accumulated in a pooled direct buffer and handed to the
+ * {@link ai.konduit.serving.input.conversion.BatchInputParser} as a
+ * {@link StreamedUpload} under {@link VerticleConstants#STREAMED_UPLOADS}.
+ * The buffers are released once the response has been written or the connection is closed,
+ * and no blocking call run through {@link BlockingRequestExecutor} still reads them.
+ * When hashing is enabled, the parts are also hashed as they arrive, for looking up
+ * the request in the result cache, see {@link VerticleConstants#STREAMED_UPLOADS_HASH}.
+ * <p>
+ * Multipart requests larger than {@link ServingConfig#getMaxInMemoryUploadBytes()},
+ * or without a content length, and all other requests are handled by a
+ * {@link BodyHandler} spooling uploads to {@link ServingConfig#getUploadsDirectory()}.
+ *
+ * @author Adam Gibson
+ */
+@Slf4j
+public class StreamingUploadHandler implements Handler<RoutingContext> {
+
+    private final BodyHandler bodyHandler;
+    private final boolean streamUploads;
+    private final long maxInMemoryUploadBytes;
+    private final boolean hashUploads;
+
+    public StreamingUploadHandler(ServingConfig servingConfig) {
+        this(servingConfig, false);
+    }
+
+    /**
+     * @param servingConfig the serving configuration
+     * @param hashUploads   whether to hash the streamed uploads for the result cache
+     */
+    public StreamingUploadHandler(ServingConfig servingConfig, boolean hashUploads) {
+        this.bodyHandler = BodyHandler.create()
+                .setUploadsDirectory(servingConfig.getUploadsDirectory())
+                .setDeleteUploadedFilesOnEnd(true)
+                .setMergeFormAttributes(true);
+        this.streamUploads = servingConfig.isStreamUploads();
+        this.maxInMemoryUploadBytes = servingConfig.getMaxInMemoryUploadBytes();
+        this.hashUploads = hashUploads;
+    }
+
+    @Override
+    public void handle(RoutingContext ctx) {
+        if (ctx.get(VerticleConstants.STREAMED_UPLOADS) != null) {
+            //already decoded by a previous handler in the chain
+            ctx.next();
+        } else if (streamUploads && isMultipart(ctx.request()) && fitsInMemory(ctx.request())) {
+            streamUploads(ctx);
+        } else {
+            bodyHandler.handle(ctx);
+        }
+    }
+
+    private void streamUploads(RoutingContext ctx) {
+        HttpServerRequest request = ctx.request();
+        List<StreamedUpload> uploads = new ArrayList<>();
+        UploadBuffers buffers = new UploadBuffers();
+        ctx.put(VerticleConstants.STREAMED_UPLOAD_BUFFERS, buffers);
+
+        //the request holds one reference, blocking calls reading the uploads retain their own
+        AtomicBoolean released = new AtomicBoolean(false);
+        Handler<Void> release = v -> {
+            if (released.compareAndSet(false, true)) {
+                buffers.release();
+            }
+        };
+        ctx.addBodyEndHandler(release);
+        ctx.response().closeHandler(release);
+
+        //a failed upload must not also be dispatched to the next handler
+        AtomicBoolean done = new AtomicBoolean(false);
+        Handler<Throwable> fail = t -> {
+            if (done.compareAndSet(false, true)) {
+                ctx.fail(t);
+            }
+        };
+
+        //parts arrive one after another, so they can be hashed as they are read
+        InferenceResultCache.ContentHasher hasher = hashUploads ? new InferenceResultCache.ContentHasher() : null;
+        request.setExpectMultipart(true);
+        request.uploadHandler(upload -> {
+            ByteBuf content = buffers.add(PooledByteBufAllocator.DEFAULT.directBuffer());
+            if (hasher != null)
+                hasher.startPart(upload.name());
+
+            upload.handler(chunk -> {
+                if (hasher != null)
+                    hasher.putBytes(chunk.getByteBuf());
+                content.writeBytes(chunk.getByteBuf());
+            });
+            upload.endHandler(v -> {
+                if (hasher != null)
+                    hasher.endPart();
+                uploads.add(new StreamedUpload(upload.name(), Buffer.buffer(content)));
+            });
+            upload.exceptionHandler(fail);
+        });
+        request.exceptionHandler(fail);
+        request.endHandler(v -> {
+            if (done.compareAndSet(false, true)) {
+                ctx.put(VerticleConstants.STREAMED_UPLOADS, uploads);
+                if (hasher != null) {
+                    //plain form fields are part of the request too
+                    for (Map.Entry<String, String> attribute : request.formAttributes()) {
+                        hasher.startPart(attribute.getKey());
+                        hasher.putBytes(Unpooled.wrappedBuffer(attribute.getValue().getBytes(StandardCharsets.UTF_8)));
+                        hasher.endPart();
+                    }
+                    ctx.put(VerticleConstants.STREAMED_UPLOADS_HASH, hasher);
+                }
+                ctx.next();
+            }
+        });
+        request.resume();
+    }
+
+    private boolean isMultipart(HttpServerRequest request) {
+        String contentType = request.getHeader(HttpHeaders.CONTENT_TYPE);
+        return contentType != null && contentType.toLowerCase().startsWith("multipart/");
+    }
+
+    private boolean fitsInMemory(HttpServerRequest request) {
+        String contentLength = request.getHeader(HttpHeaders.CONTENT_LENGTH);
+        if (contentLength == null) {
+            return false;
+        }
+
+        try {
+            return Long.parseLong(contentLength) <= maxInMemoryUploadBytes;
+        } catch (NumberFormatException e) {
+            log.warn("Invalid content length " + contentLength + ", spooling uploads to disk");
+            return false;
+        }
+    }
+
+    /**
+     * The pooled buffers holding the parts of one request,
+     * released together once the last reference is dropped.
+     */
+    static class UploadBuffers extends AbstractReferenceCounted {
+
+        private final List<ByteBuf> contents = new ArrayList<>();
+
+        synchronized ByteBuf add(ByteBuf content) {
+            contents.add(content);
+            return content;
+        }
+
+        @Override
+        protected synchronized void deallocate() {
+            for (ByteBuf content : contents) {
+                content.release();
+            }
+            contents.clear();
+        }
+
+        @Override
+        public ReferenceCounted touch(Object hint) {
+            return this;
+        }
+    }
+}
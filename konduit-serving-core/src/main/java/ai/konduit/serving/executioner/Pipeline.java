@@ -25,14 +25,24 @@ package ai.konduit.serving.executioner;
 import ai.konduit.serving.pipeline.BasePipelineStep;
 import ai.konduit.serving.pipeline.PipelineStep;
 import ai.konduit.serving.pipeline.PipelineStepRunner;
+import ai.konduit.serving.pipeline.step.PythonStep;
 import ai.konduit.serving.util.SchemaTypeUtils;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Singular;
+import lombok.extern.slf4j.Slf4j;
 import org.datavec.api.records.Record;
 import org.nd4j.linalg.api.ndarray.INDArray;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Run a pipeline. A pipeline
@@ -41,31 +51,172 @@ import java.util.List;
  * created from a set of {@link BasePipelineStep}
  */
 @Builder
+@Slf4j
 public class Pipeline {
 
     @Singular
     @Getter
     private List<PipelineStepRunner> steps;
 
+    //time in milliseconds taken to create the runner of each step, in step order. Empty when built directly
+    @Getter
+    @Builder.Default
+    private List<Long> stepStartupMillis = Collections.emptyList();
+
+    //per step timers and counters, null until bindMetrics is called
+    private volatile PipelineMetrics metrics;
+
 
     /**
      * Create a pipeline from a list of pipeline steps.
      * All this does is calls a constructor present on each {@link PipelineStepRunner}
      * that takes in a parameter of {@link BasePipelineStep}
      * and adds it to the {@link #steps}
-     * list in a created Pipeline instance
+     * list in a created Pipeline instance.
+     * The runners are created one after another on the calling thread.
      *
      * @param configurations the list of {@link BasePipelineStep}
      *                       to create a pipeline from
      * @return the created pipeline
      */
     public static Pipeline getPipeline(List<PipelineStep> configurations) {
+        return getPipeline(configurations, false);
+    }
+
+    /**
+     * Create a pipeline from a list of pipeline steps, see {@link #getPipeline(List)}.
+     * <p>
+     * With {@code parallel} set, runners are created on at most one thread per available
+     * processor. Steps bound to the thread that creates them, like {@link PythonStep}s,
+     * are still created on the calling thread. Models placed on a device by the
+     * creating thread should not be created in parallel.
+     * <p>
+     * If a step fails, the runners created so far, and any finishing later, are closed.
+     * The time taken for each step is logged and available from {@link #getStepStartupMillis()}.
+     *
+     * @param configurations the list of {@link BasePipelineStep}
+     *                       to create a pipeline from
+     * @param parallel       whether to create runners in parallel
+     * @return the created pipeline
+     */
+    public static Pipeline getPipeline(List<PipelineStep> configurations, boolean parallel) {
+        long start = System.nanoTime();
+        int numThreads = parallel ? Math.min(configurations.size(), Runtime.getRuntime().availableProcessors()) : 1;
+        StepCreation creation = new StepCreation();
+        TimedRunner[] runners = new TimedRunner[configurations.size()];
+        ExecutorService executorService = numThreads > 1 ? Executors.newFixedThreadPool(numThreads) : null;
+        try {
+            List<Future<TimedRunner>> futures = new ArrayList<>(configurations.size());
+            for (PipelineStep config : configurations) {
+                futures.add(executorService != null && !isThreadBound(config) ?
+                        executorService.submit(() -> creation.create(config)) : null);
+            }
+
+            for (int i = 0; i < runners.length; i++) {
+                runners[i] = futures.get(i) == null ? creation.create(configurations.get(i)) : futures.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            creation.abandon();
+            throw new IllegalStateException("Interrupted while creating pipeline steps", e);
+        } catch (ExecutionException e) {
+            creation.abandon();
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new IllegalStateException("Unable to create pipeline step", e.getCause());
+        } catch (RuntimeException e) {
+            creation.abandon();
+            throw e;
+        } finally {
+            if (executorService != null) {
+                executorService.shutdownNow();
+            }
+        }
+
         PipelineBuilder builder = Pipeline.builder();
-        for (PipelineStep config : configurations) {
-            builder = builder.step(config.createRunner());
+        List<Long> stepStartupMillis = new ArrayList<>(runners.length);
+        for (int i = 0; i < runners.length; i++) {
+            builder = builder.step(runners[i].runner);
+            stepStartupMillis.add(runners[i].millis);
+            log.info("Created pipeline step " + i + " (" + configurations.get(i).getClass().getSimpleName()
+                    + ") in " + runners[i].millis + " milliseconds");
         }
 
-        return builder.build();
+        log.info("Created " + runners.length + " pipeline steps in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " milliseconds");
+        return builder.stepStartupMillis(Collections.unmodifiableList(stepStartupMillis)).build();
+    }
+
+    private static boolean isThreadBound(PipelineStep config) {
+        //python interpreter state is tied to the thread that initialized it
+        return config instanceof PythonStep;
+    }
+
+    /**
+     * Tracks the runners created for a pipeline, so that they can be closed
+     * when another step fails. Runners finishing after that are closed right away.
+     */
+    private static class StepCreation {
+        private final List<PipelineStepRunner> created = new ArrayList<>();
+        private boolean abandoned;
+
+        private TimedRunner create(PipelineStep config) {
+            long start = System.nanoTime();
+            PipelineStepRunner runner = config.createRunner();
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            synchronized (this) {
+                if (!abandoned) {
+                    created.add(runner);
+                    return new TimedRunner(runner, millis);
+                }
+            }
+
+            close(runner);
+            throw new IllegalStateException("Pipeline creation failed before step " + config.getClass().getSimpleName() + " was created");
+        }
+
+        private void abandon() {
+            List<PipelineStepRunner> toClose;
+            synchronized (this) {
+                abandoned = true;
+                toClose = new ArrayList<>(created);
+                created.clear();
+            }
+
+            for (PipelineStepRunner runner : toClose) {
+                close(runner);
+            }
+        }
+
+        private static void close(PipelineStepRunner runner) {
+            try {
+                runner.close();
+            } catch (Exception e) {
+                log.warn("Unable to close pipeline step runner " + runner.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    private static class TimedRunner {
+        private final PipelineStepRunner runner;
+        private final long millis;
+
+        private TimedRunner(PipelineStepRunner runner, long millis) {
+            this.runner = runner;
+            this.millis = millis;
+        }
+    }
+
+    /**
+     * Publish the latency, record counts and allocations of each step
+     * to the given registry, see {@link PipelineMetrics}
+     *
+     * @param registry the registry to publish to
+     */
+    public void bindMetrics(MeterRegistry registry) {
+        metrics = new PipelineMetrics(registry, steps);
     }
 
     public void close() {
@@ -81,8 +232,11 @@ public class Pipeline {
      * @return the output set of records
      */
     public Record[] doPipeline(Record[] inputs) {
-        for (PipelineStepRunner pipelineStepRunner : steps)
-            inputs = pipelineStepRunner.transform(inputs);
+        PipelineMetrics metrics = this.metrics;
+        for (int i = 0; i < steps.size(); i++) {
+            PipelineStepRunner pipelineStepRunner = steps.get(i);
+            inputs = metrics == null ? pipelineStepRunner.transform(inputs) : metrics.transform(i, pipelineStepRunner, inputs);
+        }
 
         return inputs;
     }
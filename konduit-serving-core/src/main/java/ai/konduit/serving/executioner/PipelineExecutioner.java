@@ -39,18 +39,23 @@ import ai.konduit.serving.pipeline.config.ObjectDetectionConfig;
 import ai.konduit.serving.pipeline.handlers.converter.JsonArrayMapConverter;
 import ai.konduit.serving.pipeline.step.ImageLoadingStep;
 import ai.konduit.serving.pipeline.step.ModelStep;
+import ai.konduit.serving.pipeline.step.PmmlStep;
+import ai.konduit.serving.util.ArrowAllocators;
 import ai.konduit.serving.util.ArrowUtils;
+import ai.konduit.serving.util.JsonResponseEncoder;
 import ai.konduit.serving.util.JsonSerdeUtils;
-import ai.konduit.serving.util.ObjectMappers;
+import ai.konduit.serving.util.MultiOutputFraming;
 import ai.konduit.serving.util.SchemaTypeUtils;
+import ai.konduit.serving.verticles.VerticleConstants;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.vertx.core.buffer.Buffer;
-import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.arrow.flatbuf.Tensor;
+import org.apache.arrow.memory.BufferAllocator;
 import org.datavec.api.records.Record;
 import org.datavec.api.transform.TransformProcess;
 import org.datavec.api.transform.schema.Schema;
@@ -62,14 +67,15 @@ import org.datavec.arrow.recordreader.ArrowWritableRecordBatch;
 import org.deeplearning4j.zoo.util.Labels;
 import org.nd4j.arrow.ArrowSerde;
 import org.nd4j.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.serde.binary.BinarySerde;
-import org.nd4j.shade.jackson.core.JsonProcessingException;
 
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -99,12 +105,15 @@ public class PipelineExecutioner implements Closeable {
     @Getter
     protected InferenceConfiguration config;
     @Getter
-    private Pipeline pipeline;
+    private volatile Pipeline pipeline;
     private TensorDataTypesConfig tensorDataTypesConfig;
     private Schema inputSchema = null;
     private Schema outputSchema = null;
     private ModelConfig modelConfig = null;
     private ObjectDetectionConfig objectDetectionConfig = null;
+    //output adapters and labels are built once per object detection configuration and reused across requests.
+    //A configuration change swaps in a new, empty set of adapters
+    private volatile OutputAdapters outputAdapters = new OutputAdapters(null, null);
     @Getter
     private static JsonArrayMapConverter mapConverter = new JsonArrayMapConverter();
 
@@ -131,8 +140,8 @@ public class PipelineExecutioner implements Closeable {
                 ZipEntry zipEntry = new ZipEntry(outputEntry.getKey());
                 try {
                     out.putNextEntry(zipEntry);
-                    Buffer write = convertBatchOutput(outputEntry.getValue(), responseOutputType);
-                    out.write(write.getBytes(), 0, write.getBytes().length);
+                    byte[] write = convertBatchOutput(outputEntry.getValue(), responseOutputType).getBytes();
+                    out.write(write, 0, write.length);
                     out.closeEntry();
                 } catch (IOException e) {
                     log.error("Unable to zip the buffer",e);
@@ -152,6 +161,25 @@ public class PipelineExecutioner implements Closeable {
 
     }
 
+    /**
+     * Create a framed buffer based on the given adapted output.
+     * Each output is serialized once and the buffers are packed
+     * with {@link MultiOutputFraming} without being copied again.
+     *
+     * @param adapt              the adapted output, a map from String to {@link BatchOutput}
+     * from {@link RawMultiOutputAdapter}
+     * @param responseOutputType the response type
+     * @return the framed buffer with each output's name in the header
+     */
+    public static Buffer framedBuffer(Map<String, BatchOutput> adapt, Output.DataFormat responseOutputType) {
+        Map<String, ByteBuf> outputs = new LinkedHashMap<>(adapt.size());
+        for (Map.Entry<String, BatchOutput> outputEntry : adapt.entrySet()) {
+            outputs.put(outputEntry.getKey(), convertBatchOutput(outputEntry.getValue(), responseOutputType).getByteBuf());
+        }
+
+        return MultiOutputFraming.frame(outputs);
+    }
+
     /**
      * Convert a batch output {@link NDArrayOutput}
      * given a {@link Output.DataFormat}
@@ -246,17 +274,29 @@ public class PipelineExecutioner implements Closeable {
 
     /**
      * Init the pipeline executioner.
+     * Safe to call from concurrent requests: the pipeline is only
+     * published once all the other state has been initialized.
      */
     public void init(){
         if(this.pipeline != null) {
             log.debug("Pipeline already enabled.");
             return;
         }
+
+        synchronized (this) {
+            if(this.pipeline == null) {
+                doInit();
+            }
+        }
+    }
+
+    private void doInit() {
         if(config.getSteps().isEmpty()) {
             log.warn("No pipeline steps configured.");
         }
 
-        this.pipeline = Pipeline.getPipeline(config.getSteps());
+        Pipeline pipeline = Pipeline.getPipeline(config.getSteps(),
+                config.getServingConfig() != null && config.getServingConfig().isCreateStepsInParallel());
 
         for (int i = 0; i < config.getSteps().size(); i++) {
             PipelineStep pipelineStep = config.getSteps().get(i);
@@ -288,12 +328,19 @@ public class PipelineExecutioner implements Closeable {
 
         initDataTypes();
 
+        try {
+            reloadOutputAdapters(objectDetectionConfig);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to load labels from " + objectDetectionConfig.getLabelsPath(), e);
+        }
+
         if (modelConfig != null && modelConfig.getModelConfigType().getModelType() != ModelConfig.ModelType.PMML
                 && (inputNames == null || inputNames.isEmpty())) {
             throw new IllegalStateException(
                     "No inputs defined! Please specify input names for your verticle via the model configuration.");
         }
 
+        this.pipeline = pipeline;
     }
 
     public List<String> inputNames() {
@@ -304,54 +351,79 @@ public class PipelineExecutioner implements Closeable {
         return outputNames;
     }
 
-    private MultiOutputAdapter outputAdapterFor(Output.PredictionType predictionType,
-                                                ObjectDetectionConfig objectDetectionConfig) throws Exception {
-        MultiOutputAdapter multiOutputAdapter;
-        //custom labels input stream for custom labels for yolo and ssd
-        InputStream customLabelsInputStream = null;
+    /**
+     * Get the output adapter for a prediction type.
+     * Adapters are created on first use and cached until the object detection configuration changes.
+     *
+     * @param predictionType        the prediction type to get the adapter for
+     * @param objectDetectionConfig the object detection configuration for YOLO and SSD adapters
+     * @return the output adapter
+     */
+    MultiOutputAdapter outputAdapterFor(Output.PredictionType predictionType,
+                                        ObjectDetectionConfig objectDetectionConfig) throws IOException {
+        OutputAdapters adapters = outputAdapters;
+        if (!Objects.equals(objectDetectionConfig, adapters.config)) {
+            adapters = reloadOutputAdapters(objectDetectionConfig);
+        }
 
+        OutputAdapters current = adapters;
+        return current.adapters.computeIfAbsent(predictionType,
+                type -> createOutputAdapter(type, current.config, current.labels));
+    }
+
+    private synchronized OutputAdapters reloadOutputAdapters(ObjectDetectionConfig objectDetectionConfig) throws IOException {
+        OutputAdapters adapters = outputAdapters;
+        if (adapters.config != null && adapters.config.equals(objectDetectionConfig)) {
+            return adapters;
+        }
+
+        Labels labels = null;
+        //custom labels for yolo and ssd
         if (objectDetectionConfig != null && objectDetectionConfig.getLabelsPath() != null) {
-            customLabelsInputStream = new FileInputStream(objectDetectionConfig.getLabelsPath());
-            ssdLabels = SSDOutputAdapter.getLabels(customLabelsInputStream, objectDetectionConfig.getNumLabels());
-            yoloLabels = ssdLabels;
+            try (InputStream customLabelsInputStream = new FileInputStream(objectDetectionConfig.getLabelsPath())) {
+                labels = SSDOutputAdapter.getLabels(customLabelsInputStream, objectDetectionConfig.getNumLabels());
+            }
         }
 
+        ssdLabels = labels;
+        yoloLabels = labels;
+        adapters = new OutputAdapters(objectDetectionConfig, labels);
+        outputAdapters = adapters;
+        return adapters;
+    }
+
+    private static MultiOutputAdapter createOutputAdapter(Output.PredictionType predictionType,
+                                                          ObjectDetectionConfig objectDetectionConfig,
+                                                          Labels labels) {
         switch (predictionType) {
             case CLASSIFICATION:
-                multiOutputAdapter = new ClassificationMultiOutputAdapter();
-                break;
+                return new ClassificationMultiOutputAdapter();
             case YOLO:
                 Preconditions.checkState(objectDetectionConfig != null,
                         "Missing object recognition configuration!");
-                multiOutputAdapter = YOLOOutputAdapter.builder()
-                        .labels(yoloLabels)
+                return YOLOOutputAdapter.builder()
+                        .labels(labels)
                         .boundingBoxPriors(objectDetectionConfig.getPriors())
                         .inputShape(objectDetectionConfig.getInputShape())
                         .numLabels(objectDetectionConfig.getNumLabels())
                         .threshold(objectDetectionConfig.getThreshold())
                         .build();
-                break;
             case SSD:
                 Preconditions.checkState(objectDetectionConfig != null,
                         "Missing object recognition configuration!");
-                if (customLabelsInputStream == null)
-                    multiOutputAdapter = new SSDOutputAdapter(objectDetectionConfig.getThreshold(),
+                if (labels == null)
+                    return new SSDOutputAdapter(objectDetectionConfig.getThreshold(),
                             objectDetectionConfig.getNumLabels());
                 else
-                    multiOutputAdapter = new SSDOutputAdapter(objectDetectionConfig.getThreshold(),
-                            customLabelsInputStream, objectDetectionConfig.getNumLabels());
-                break;
+                    return new SSDOutputAdapter(objectDetectionConfig.getThreshold(),
+                            labels, objectDetectionConfig.getNumLabels());
             case RAW:
-                multiOutputAdapter = new RawMultiOutputAdapter();
-                break;
+                return new RawMultiOutputAdapter();
             case REGRESSION:
-                multiOutputAdapter = new RegressionMultiOutputAdapter();
-                break;
+                return new RegressionMultiOutputAdapter();
             default:
                 throw new IllegalStateException("Illegal type for output type " + predictionType);
         }
-
-        return multiOutputAdapter;
     }
 
     /**
@@ -407,7 +479,7 @@ public class PipelineExecutioner implements Closeable {
             /*
              * Note that this handles binary responses.
              */
-            Map<String, BatchOutput> namedBatchOutput = new HashMap<>();
+            Map<String, BatchOutput> namedBatchOutput = new LinkedHashMap<>();
             for (int i = 0; i < outputNames.size(); i++) {
                 namedBatchOutput.put(outputNames.get(i), NDArrayOutput.builder().ndArray(arrays[i]).build());
             }
@@ -449,6 +521,7 @@ public class PipelineExecutioner implements Closeable {
             ctx.response().putHeader("Content-Type", "application/json");
             Buffer buffer = writeJson.toBuffer();
             ctx.response().putHeader("Content-Length", String.valueOf(buffer.length()));
+            ctx.put(VerticleConstants.RESPONSE_BODY, buffer);
             ctx.response().end(buffer);
         }
 
@@ -460,10 +533,21 @@ public class PipelineExecutioner implements Closeable {
      * Perform inference. Two endpoints in the pipeline route definer use this inference runner, both produce
      * JSON output, but take either JSON or multi-part input. See
      * {@link ai.konduit.serving.configprovider.PipelineRouteDefiner} for more information.
+     * <p>
+     * The json response depends on the pipeline output:
+     * <ul>
+     *     <li>ndarray outputs are written as an object from output name to the adapted output</li>
+     *     <li>a single record of text values is written as one object from output column name to the
+     *     value, embedded as json when it holds a json object or array, e.g. {@code {"output": "text"}}</li>
+     *     <li>all other records, and the typed records of a pipeline ending in a PMML step
+     *     (see {@link #isTextObjectRecord(Record[], PipelineStep)}), are written as an array
+     *     with one object per record, e.g. {@code [{"class": "Iris-setosa"}]}</li>
+     * </ul>
      *
      * @param ctx               the routing context
      * @param predictionType    the prediction type, determines the output adapter used after prediction
-     * @param input             the input string (json generally)
+     * @param input             the input string (json generally), or records already converted with
+     *                          {@link #createInput(Object, TransformProcess, Schema, BufferAllocator)}
      * @param conversionSchema  the schema to convert the json
      * @param transformProcess  the transform process to use
      * @param outputSchema      the output schema
@@ -501,86 +585,82 @@ public class PipelineExecutioner implements Closeable {
 
             writeResponse(adapt, outputDataFormat, UUID.randomUUID().toString(), ctx);
 
-        } else if (records.length == 1 && records[0].getRecord().get(0) instanceof Text) {
+        } else if (isTextObjectRecord(records, lastStep())) {
+            //a single record of text or serialized json values, see JsonResponseEncoder#encodeText
             if (outputDataFormat == Output.DataFormat.JSON) {
-                JsonObject writeJson = new JsonObject();
-                for (int i = 0; i < records[0].getRecord().size(); i++) {
-                    Text text = (Text) records[0].getRecord().get(i);
-
-                    if (text.toString().charAt(0) == '{') {
-                        JsonObject jsonObject1 = new JsonObject(text.toString());
-                        writeJson.put(outputSchema.getName(i), jsonObject1);
-                    } else if (text.toString().charAt(0) == '[') {
-                        JsonArray jsonObject = new JsonArray(text.toString());
-                        writeJson.put(outputSchema.getName(i), jsonObject);
-                    } else {
-                        writeJson.put(outputSchema.getName(i), text.toString());
-                    }
+                try {
+                    writeJson(JsonResponseEncoder.encodeText(records[0], outputSchema, config.serving().isPrettyPrintJson()), ctx);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unable to write json response", e);
                 }
-
-                String write = writeJson.encodePrettily();
-                ctx.response().putHeader("Content-Type", "application/json");
-                ctx.response().putHeader("Content-Length", String.valueOf(write.getBytes().length));
-                ctx.response().end(write);
             } else if (outputDataFormat == Output.DataFormat.ARROW) {
-                ArrowRecord arrowRecord = (ArrowRecord) records[0].getRecord();
-                ArrowWritableRecordBatch  convert =  ArrowUtils.getBatchFromRecord(arrowRecord);
-                writeArrowResponse(ctx, outputSchema, convert);
+                writeArrowResponse(ctx, outputSchema, toBatch(records));
             } else {
                 throw new IllegalStateException("Illegal data type response " + outputDataFormat);
             }
 
 
         } else if (outputDataFormat == Output.DataFormat.JSON) {
-            JsonArray newArray = new JsonArray();
-            for (Record record : records) {
-                JsonObject row = new JsonObject();
-                List<Writable> writables = record.getRecord();
-                if (outputSchema != null) {
-                    for (int i = 0; i < writables.size(); i++) {
-                        switch (outputSchema.getType(i)) {
-                            case Integer:
-                            case Long:
-                                row.put(outputSchema.getName(i), writables.get(i).toInt());
-                                break;
-                            case Float:
-                                row.put(outputSchema.getName(i), writables.get(i).toFloat());
-                                break;
-                            case Double:
-                                row.put(outputSchema.getName(i), writables.get(i).toDouble());
-                                break;
-                            case Boolean:
-                                row.put(outputSchema.getName(i), Boolean.parseBoolean(writables.get(i).toString()));
-                                break;
-                            default:
-                                row.put(outputSchema.getName(i), writables.get(i).toString());
-
-                        }
-                    }
-                } else {
-                    for (int i = 0; i < writables.size(); i++) {
-                        row.put(String.valueOf(i), writables.get(i).toString());
-                    }
-                }
-
-                newArray.add(row);
-            }
-
             log.debug("Writing json response.");
-            String write = newArray.encodePrettily();
-            ctx.response().putHeader("Content-Type", "application/json");
-            ctx.response().putHeader("Content-Length", String.valueOf(write.getBytes().length));
-            ctx.response().end(write);
+            try {
+                writeJson(JsonResponseEncoder.encode(records, outputSchema, config.serving().isPrettyPrintJson()), ctx);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to write json response", e);
+            }
 
         } else if (outputDataFormat == Output.DataFormat.ARROW) {
-            ArrowRecord arrowRecord = (ArrowRecord) records[0].getRecord();
-            ArrowWritableRecordBatch  convert =  ArrowUtils.getBatchFromRecord(arrowRecord);
-            writeArrowResponse(ctx, outputSchema, convert);
+            writeArrowResponse(ctx, outputSchema, toBatch(records));
         }
 
         return records;
     }
 
+    /**
+     * @param records  the pipeline output
+     * @param lastStep the step that produced the output, may be null
+     * @return true for a single record of text, for example from a python step, which is written
+     * as one json object. PMML steps return typed records, always written as an array of rows
+     */
+    static boolean isTextObjectRecord(Record[] records, PipelineStep lastStep) {
+        return records.length == 1 && records[0].getRecord().get(0) instanceof Text && !isPmmlStep(lastStep);
+    }
+
+    private static boolean isPmmlStep(PipelineStep step) {
+        if (step instanceof PmmlStep) {
+            return true;
+        }
+
+        if (!(step instanceof ModelStep)) {
+            return false;
+        }
+
+        ModelConfig modelConfig = ((ModelStep) step).getModelConfig();
+        return modelConfig != null && modelConfig.getModelConfigType() != null
+                && modelConfig.getModelConfigType().getModelType() == ModelConfig.ModelType.PMML;
+    }
+
+    private PipelineStep lastStep() {
+        List<PipelineStep> steps = config.getSteps();
+        return steps == null || steps.isEmpty() ? null : steps.get(steps.size() - 1);
+    }
+
+    /**
+     * The rows of the given records as a batch: the underlying arrow batch
+     * for {@link ArrowRecord}s, otherwise the writables of each record
+     */
+    private static List<List<Writable>> toBatch(Record[] records) {
+        if (records[0] instanceof ArrowRecord) {
+            return ArrowUtils.getBatchFromRecord((ArrowRecord) records[0]);
+        }
+
+        List<List<Writable>> ret = new ArrayList<>(records.length);
+        for (Record record : records) {
+            ret.add(record.getRecord());
+        }
+
+        return ret;
+    }
+
     /**
      * Destroys the executioner (shuts down {@link ai.konduit.serving.executioner.inference.InferenceExecutioner}
      * among other components)
@@ -599,20 +679,59 @@ public class PipelineExecutioner implements Closeable {
      * @return
      */
     public static Record[] createInput(Object input,TransformProcess transformProcess,Schema conversionSchema) {
+        if (!(input instanceof String)) {
+            return createInput(input, transformProcess, conversionSchema, ArrowAllocators.root());
+        }
+
+        //copy the converted rows to the heap so the arrow vectors can be released right away
+        BufferAllocator allocator = ArrowAllocators.newRequestAllocator("json-input");
+        Record[] converted = null;
+        try {
+            converted = createInput(input, transformProcess, conversionSchema, allocator);
+            Record[] ret = new Record[converted.length];
+            for (int i = 0; i < ret.length; i++) {
+                ret[i] = new org.datavec.api.records.impl.Record(new ArrayList<>(converted[i].getRecord()), null);
+            }
+
+            return ret;
+        } finally {
+            ArrowAllocators.release(allocator, converted);
+        }
+    }
+
+    /**
+     * Creates input for use in the {@link PipelineExecutioner}
+     * @param input the input object
+     * @param transformProcess the {@link TransformProcess} to use
+     * @param conversionSchema The {@link Schema} to use
+     * @param allocator the allocator used for the arrow vectors of json input
+     * @return records backed by arrow vectors for json input, release them with
+     * {@link ArrowAllocators#release(BufferAllocator, Record[])} once the response is written
+     */
+    public static Record[] createInput(Object input, TransformProcess transformProcess, Schema conversionSchema, BufferAllocator allocator) {
+        return createInput(input, transformProcess, conversionSchema, allocator, Collections.emptyMap());
+    }
+
+    /**
+     * Same as {@link #createInput(Object, TransformProcess, Schema, BufferAllocator)}
+     * parsing json arrays with the given data types, see {@link #inputColumnDataTypes()}
+     * @param input the input object
+     * @param transformProcess the {@link TransformProcess} to use
+     * @param conversionSchema The {@link Schema} to use
+     * @param allocator the allocator used for the arrow vectors of json input
+     * @param dataTypes the data type of each NDArray column by column name
+     * @return records backed by arrow vectors for json input
+     */
+    public static Record[] createInput(Object input, TransformProcess transformProcess, Schema conversionSchema, BufferAllocator allocator,
+                                       Map<String, DataType> dataTypes) {
         Preconditions.checkNotNull(input, "Input data was null!");
 
         if(input instanceof String) {
+            //a single json object is converted as one row by the streaming parser
             String inputJson = (String) input;
-            if (inputJson.charAt(0) == '{') {
-                //json object
-                log.info("Auto converting json object to json array");
-                inputJson = "[" + input + "]";
-            }
-
-            JsonArray jsonArray = new JsonArray(inputJson);
             ArrowWritableRecordBatch convert = null;
             try {
-                convert = mapConverter.convert(conversionSchema, jsonArray, transformProcess);
+                convert = mapConverter.convert(allocator, conversionSchema, inputJson, transformProcess, dataTypes);
             } catch (Exception e) {
                 log.error("Error performing conversion", e);
                 throw e;
@@ -634,13 +753,14 @@ public class PipelineExecutioner implements Closeable {
 
     }
 
-    private void writeArrowResponse(RoutingContext ctx, Schema outputSchema, ArrowWritableRecordBatch convert) {
+    private void writeArrowResponse(RoutingContext ctx, Schema outputSchema, List<List<Writable>> convert) {
         log.debug("Writing arrow response.");
         ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
         ArrowUtils.writeRecordBatchTo(convert, outputSchema, byteArrayOutputStream);
         Buffer write = Buffer.buffer(byteArrayOutputStream.toByteArray());
         ctx.response().putHeader("Content-Type", "application/octet-stream");
-        ctx.response().putHeader("Content-Length", String.valueOf(write.getBytes().length));
+        ctx.response().putHeader("Content-Length", String.valueOf(write.length()));
+        ctx.put(VerticleConstants.RESPONSE_BODY, write);
         ctx.response().end(write);
     }
 
@@ -692,35 +812,26 @@ public class PipelineExecutioner implements Closeable {
                 return;
             }
 
-            JsonObject jsonObject = new JsonObject();
-            for (Map.Entry<String, BatchOutput> entry : adapt.entrySet()) {
-
-                entry.getValue().setBatchId(batchId);
-
-                try {
-                    jsonObject.put(entry.getKey(),
-                            new JsonObject(ObjectMappers.json()
-                                    .writeValueAsString(entry.getValue())));
-                } catch (JsonProcessingException e) {
-                    log.error("Unable to process json for value " + entry.getValue(), e);
-                    ctx.response().setStatusCode(500);
-                    ctx.response().end("Unable to process json for value " + entry.getValue());
-                    return;
-                }
+            for (BatchOutput batchOutput : adapt.values()) {
+                batchOutput.setBatchId(batchId);
             }
 
-            String resp = jsonObject.encodePrettily();
+            Buffer buffer;
             try {
-                ctx.response().putHeader("Content-Type", "application/json");
-                ctx.response().putHeader("Content-Length", String.valueOf(resp.getBytes().length));
-                ctx.response().end(jsonObject.encodePrettily());
-                log.info("Json response end");
-            } catch (Exception e) {
-                ctx.fail(e);
+                buffer = JsonResponseEncoder.encode(adapt, config.serving().isPrettyPrintJson());
+            } catch (IOException e) {
+                log.error("Unable to process json for values " + adapt.keySet(), e);
+                ctx.response().setStatusCode(500);
+                ctx.response().end("Unable to process json for values " + adapt.keySet());
+                return;
             }
+
+            writeJson(buffer, ctx);
+            log.debug("Json response end");
         } else {
             if (adapt.size() > 1) {
-                Buffer buffer = zipBuffer(adapt, responseOutputType);
+                Buffer buffer = config.serving().getMultiOutputFormat() == Output.MultiOutputFormat.ZIP ?
+                        zipBuffer(adapt, responseOutputType) : framedBuffer(adapt, responseOutputType);
                 writeBinary(buffer, ctx);
             } else {
                 Map.Entry<String, BatchOutput> entry = adapt.entrySet().iterator().next();
@@ -730,10 +841,22 @@ public class PipelineExecutioner implements Closeable {
 
     }
 
+    private void writeJson(Buffer buffer, RoutingContext ctx) {
+        try {
+            ctx.response().putHeader("Content-Type", "application/json");
+            ctx.response().putHeader("Content-Length", String.valueOf(buffer.length()));
+            ctx.put(VerticleConstants.RESPONSE_BODY, buffer);
+            ctx.response().end(buffer);
+        } catch (Exception e) {
+            ctx.fail(e);
+        }
+    }
+
     private void writeBinary(Buffer buffer,RoutingContext ctx) {
         try {
             ctx.response().putHeader("Content-Type", "application/octet-stream");
             ctx.response().putHeader("Content-Length", String.valueOf(buffer.length()));
+            ctx.put(VerticleConstants.RESPONSE_BODY, buffer);
             ctx.response().end(buffer);
         } catch (Exception e) {
             ctx.fail(e);
@@ -756,6 +879,26 @@ public class PipelineExecutioner implements Closeable {
 
     }
 
+    /**
+     * The configured input data types as nd4j data types, by input name.
+     * Json arrays for NDArray columns named after an input are parsed with its data type.
+     *
+     * @return the input data types, empty if none are configured
+     */
+    public Map<String, DataType> inputColumnDataTypes() {
+        Map<String, TensorDataType> types = inputDataTypes;
+        if (types == null || types.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, DataType> ret = new HashMap<>(types.size() * 2);
+        for (Map.Entry<String, TensorDataType> entry : types.entrySet()) {
+            ret.put(entry.getKey(), TensorDataType.toNd4jType(entry.getValue()));
+        }
+
+        return ret;
+    }
+
     private Map<String, TensorDataType> initDataTypes(List<String> namesValidation,
                                                       Map<String, TensorDataType> types,
                                                       String inputOrOutputType) {
@@ -775,5 +918,18 @@ public class PipelineExecutioner implements Closeable {
         return ret;
     }
 
+    /**
+     * The output adapters built for one object detection configuration
+     */
+    private static class OutputAdapters {
+        private final ObjectDetectionConfig config;
+        private final Labels labels;
+        private final Map<PredictionType, MultiOutputAdapter> adapters = new ConcurrentHashMap<>();
+
+        private OutputAdapters(ObjectDetectionConfig config, Labels labels) {
+            this.config = config;
+            this.labels = labels;
+        }
+    }
 
 }
@@ -0,0 +1,173 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+package ai.konduit.serving.executioner;
+
+import ai.konduit.serving.model.ModelConfig;
+import ai.konduit.serving.pipeline.PipelineStep;
+import ai.konduit.serving.pipeline.PipelineStepRunner;
+import ai.konduit.serving.pipeline.step.ModelStep;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.datavec.api.records.Record;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per step metrics of a {@link Pipeline}, see {@link Pipeline#bindMetrics(MeterRegistry)}.
+ * For each step, tagged with the step index, the step type and the model name
+ * (the file name of the model for a {@link ModelStep}, "none" otherwise):
+ * <ul>
+ *     <li>{@value #STEP_LATENCY}: a timer of {@link PipelineStepRunner#transform(Record[])}
+ *     publishing a percentile histogram</li>
+ *     <li>{@value #STEP_RECORDS_IN} and {@value #STEP_RECORDS_OUT}: counters of the records passed
+ *     to and returned by the step</li>
+ *     <li>{@value #STEP_ALLOCATED}: a summary of the heap bytes allocated by the calling thread during the step.
+ *     Only published when the JVM supports thread allocation counting. Allocations made by worker threads
+ *     of the step, such as parallel inference workers, are not included.</li>
+ * </ul>
+ */
+@Slf4j
+public class PipelineMetrics {
+
+    public final static String STEP_LATENCY = "pipeline_step_latency";
+    public final static String STEP_RECORDS_IN = "pipeline_step_records_in";
+    public final static String STEP_RECORDS_OUT = "pipeline_step_records_out";
+    public final static String STEP_ALLOCATED = "pipeline_step_allocated";
+
+    private static final com.sun.management.ThreadMXBean ALLOCATION_MX_BEAN = allocationMXBean();
+
+    private final Timer[] latency;
+    private final Counter[] recordsIn, recordsOut;
+    //null when thread allocation counting isn't available
+    private final DistributionSummary[] allocated;
+
+    /**
+     * @param registry the registry to publish to
+     * @param steps    the runners of the pipeline, in step order
+     */
+    public PipelineMetrics(MeterRegistry registry, List<PipelineStepRunner> steps) {
+        latency = new Timer[steps.size()];
+        recordsIn = new Counter[steps.size()];
+        recordsOut = new Counter[steps.size()];
+        allocated = ALLOCATION_MX_BEAN != null ? new DistributionSummary[steps.size()] : null;
+
+        for (int i = 0; i < steps.size(); i++) {
+            Tags tags = tags(i, steps.get(i));
+            latency[i] = Timer.builder(STEP_LATENCY)
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            recordsIn[i] = Counter.builder(STEP_RECORDS_IN)
+                    .tags(tags)
+                    .register(registry);
+            recordsOut[i] = Counter.builder(STEP_RECORDS_OUT)
+                    .tags(tags)
+                    .register(registry);
+            if (allocated != null) {
+                allocated[i] = DistributionSummary.builder(STEP_ALLOCATED)
+                        .tags(tags)
+                        .baseUnit("bytes")
+                        .register(registry);
+            }
+        }
+
+        if (allocated == null)
+            log.info("Thread allocation counting is not supported by this JVM, not publishing " + STEP_ALLOCATED);
+    }
+
+    /**
+     * Run the transform of a step, recording its metrics
+     *
+     * @param index  the index of the step in the pipeline
+     * @param runner the runner of the step
+     * @param inputs the inputs of the step
+     * @return the outputs of the step
+     */
+    public Record[] transform(int index, PipelineStepRunner runner, Record[] inputs) {
+        long threadId = Thread.currentThread().getId();
+        long allocatedStart = allocated != null ? ALLOCATION_MX_BEAN.getThreadAllocatedBytes(threadId) : -1;
+        long start = System.nanoTime();
+
+        Record[] outputs = runner.transform(inputs);
+
+        latency[index].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (allocatedStart >= 0) {
+            long allocatedEnd = ALLOCATION_MX_BEAN.getThreadAllocatedBytes(threadId);
+            if (allocatedEnd >= allocatedStart)
+                allocated[index].record(allocatedEnd - allocatedStart);
+        }
+
+        recordsIn[index].increment(inputs == null ? 0 : inputs.length);
+        recordsOut[index].increment(outputs == null ? 0 : outputs.length);
+        return outputs;
+    }
+
+    /**
+     * @return true if the heap bytes allocated by each step are published
+     */
+    public boolean isAllocationTracked() {
+        return allocated != null;
+    }
+
+    private static Tags tags(int index, PipelineStepRunner runner) {
+        PipelineStep<?> step = runner.getPipelineStep();
+        String type = step != null ? step.getClass().getSimpleName() : runner.getClass().getSimpleName();
+        return Tags.of("step", String.valueOf(index), "type", type, "model", modelName(step));
+    }
+
+    private static String modelName(PipelineStep<?> step) {
+        if (!(step instanceof ModelStep))
+            return "none";
+
+        ModelConfig modelConfig = ((ModelStep) step).getModelConfig();
+        if (modelConfig == null || modelConfig.getModelConfigType() == null
+                || modelConfig.getModelConfigType().getModelLoadingPath() == null)
+            return "none";
+
+        return new File(modelConfig.getModelConfigType().getModelLoadingPath()).getName();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationMXBean() {
+        try {
+            java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            if (!(threadMXBean instanceof com.sun.management.ThreadMXBean))
+                return null;
+
+            com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (!allocationMXBean.isThreadAllocatedMemorySupported())
+                return null;
+            if (!allocationMXBean.isThreadAllocatedMemoryEnabled())
+                allocationMXBean.setThreadAllocatedMemoryEnabled(true);
+
+            return allocationMXBean;
+        } catch (LinkageError | UnsupportedOperationException | SecurityException e) {
+            return null;
+        }
+    }
+}
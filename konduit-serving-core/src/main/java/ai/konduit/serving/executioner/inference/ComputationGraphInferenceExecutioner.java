@@ -24,8 +24,10 @@ package ai.konduit.serving.executioner.inference;
 
 import ai.konduit.serving.config.ParallelInferenceConfig;
 import ai.konduit.serving.model.loader.ModelLoader;
+import ai.konduit.serving.threadpool.replicas.ModelReplicaPool;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.nn.api.Model;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.parallelism.ParallelInference;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -33,7 +35,12 @@ import org.nd4j.linalg.api.ndarray.INDArray;
 /**
  * An {@link InferenceExecutioner}
  * using {@link org.deeplearning4j.nn.graph.ComputationGraph}
- * and {@link ParallelInference} for multi threaded inference.
+ * for multi threaded inference.
+ * <p>
+ * By default requests run on a {@link ModelReplicaPool} of
+ * {@link ParallelInferenceConfig#getWorkers()} replicas sharing one parameter array.
+ * When {@link ParallelInferenceConfig#isUseParallelInference()} is set,
+ * requests are served by {@link ParallelInference} instead.
  *
  * @author Adam Gibson
  */
@@ -45,6 +52,9 @@ public class ComputationGraphInferenceExecutioner implements InferenceExecutione
     @Getter
     private ModelLoader<ComputationGraph> computationGraphModelLoader;
 
+    private ModelReplicaPool<ComputationGraph> replicas;
+    private ParallelInference parallelInference;
+
     @Override
     public ModelLoader<ComputationGraph> modelLoader() {
         return computationGraphModelLoader;
@@ -59,17 +69,61 @@ public class ComputationGraphInferenceExecutioner implements InferenceExecutione
     public void initialize(ModelLoader<ComputationGraph> model, ParallelInferenceConfig parallelInferenceConfig) throws Exception {
         this.computationGraph = model.loadModel();
         this.computationGraphModelLoader = model;
+        if (parallelInferenceConfig.isUseParallelInference()) {
+            this.parallelInference = parallelInference(computationGraph, parallelInferenceConfig);
+        } else {
+            this.replicas = new ModelReplicaPool<>(computationGraph, Math.max(1, parallelInferenceConfig.getWorkers()),
+                    ComputationGraphInferenceExecutioner::replicate);
+        }
     }
 
     @Override
     public INDArray execute(INDArray input) {
-        synchronized (computationGraph) {
-            return computationGraph.output(input)[0];
+        if (parallelInference != null) {
+            return parallelInference.output(input);
         }
 
+        return replicas.execute(replica -> replica.output(input)[0]);
     }
 
     @Override
     public void stop() {
+        if (parallelInference != null) {
+            parallelInference.shutdown();
+        }
+    }
+
+    /**
+     * Create a replica of the given graph for inference.
+     * The replica has its own layer state but shares the parameters of the graph.
+     *
+     * @param computationGraph the graph to replicate
+     * @return the replica
+     */
+    static ComputationGraph replicate(ComputationGraph computationGraph) {
+        ComputationGraph replica = new ComputationGraph(computationGraph.getConfiguration().clone());
+        if (computationGraph.params() != null) {
+            replica.init(computationGraph.params(), false);
+        } else {
+            replica.init();
+        }
+
+        return replica;
+    }
+
+    /**
+     * Create a {@link ParallelInference} for the given model from the configuration.
+     *
+     * @param model                   the model to serve
+     * @param parallelInferenceConfig the configuration to use
+     * @return the parallel inference instance
+     */
+    static ParallelInference parallelInference(Model model, ParallelInferenceConfig parallelInferenceConfig) {
+        return new ParallelInference.Builder(model)
+                .inferenceMode(parallelInferenceConfig.getInferenceMode())
+                .batchLimit(parallelInferenceConfig.getBatchLimit())
+                .queueLimit(parallelInferenceConfig.getQueueLimit())
+                .workers(Math.max(1, parallelInferenceConfig.getWorkers()))
+                .build();
     }
 }
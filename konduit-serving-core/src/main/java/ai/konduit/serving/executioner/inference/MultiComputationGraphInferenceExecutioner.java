@@ -24,6 +24,7 @@ package ai.konduit.serving.executioner.inference;
 
 import ai.konduit.serving.config.ParallelInferenceConfig;
 import ai.konduit.serving.model.loader.ModelLoader;
+import ai.konduit.serving.threadpool.replicas.ModelReplicaPool;
 import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.parallelism.ParallelInference;
@@ -32,7 +33,12 @@ import org.nd4j.linalg.api.ndarray.INDArray;
 /**
  * An {@link InferenceExecutioner}
  * using {@link org.deeplearning4j.nn.graph.ComputationGraph}
- * and {@link ParallelInference} for multi threaded inference.
+ * with multiple inputs and outputs for multi threaded inference.
+ * <p>
+ * By default requests run on a {@link ModelReplicaPool} of
+ * {@link ParallelInferenceConfig#getWorkers()} replicas sharing one parameter array.
+ * When {@link ParallelInferenceConfig#isUseParallelInference()} is set,
+ * requests are served by {@link ParallelInference} instead.
  *
  * @author Adam Gibson
  */
@@ -41,6 +47,8 @@ public class MultiComputationGraphInferenceExecutioner implements InferenceExecu
         ModelLoader<ComputationGraph>, INDArray[], INDArray[], ParallelInferenceConfig, ComputationGraph> {
     private ComputationGraph computationGraph;
     private ModelLoader<ComputationGraph> computationGraphModelLoader;
+    private ModelReplicaPool<ComputationGraph> replicas;
+    private ParallelInference parallelInference;
 
     @Override
     public ModelLoader<ComputationGraph> modelLoader() {
@@ -57,17 +65,28 @@ public class MultiComputationGraphInferenceExecutioner implements InferenceExecu
     public void initialize(ModelLoader<ComputationGraph> model, ParallelInferenceConfig parallelInferenceConfig) throws Exception {
         this.computationGraph = model.loadModel();
         this.computationGraphModelLoader = model;
+        if (parallelInferenceConfig.isUseParallelInference()) {
+            this.parallelInference = ComputationGraphInferenceExecutioner.parallelInference(computationGraph, parallelInferenceConfig);
+        } else {
+            this.replicas = new ModelReplicaPool<>(computationGraph, Math.max(1, parallelInferenceConfig.getWorkers()),
+                    ComputationGraphInferenceExecutioner::replicate);
+        }
     }
 
 
     @Override
     public INDArray[] execute(INDArray[] input) {
-        synchronized (computationGraph) {
-            return computationGraph.output(input);
+        if (parallelInference != null) {
+            return parallelInference.output(input);
         }
+
+        return replicas.execute(replica -> replica.output(input));
     }
 
     @Override
     public void stop() {
+        if (parallelInference != null) {
+            parallelInference.shutdown();
+        }
     }
 }
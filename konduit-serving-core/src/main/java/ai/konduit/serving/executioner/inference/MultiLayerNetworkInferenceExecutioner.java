@@ -24,6 +24,7 @@ package ai.konduit.serving.executioner.inference;
 
 import ai.konduit.serving.config.ParallelInferenceConfig;
 import ai.konduit.serving.model.loader.ModelLoader;
+import ai.konduit.serving.threadpool.replicas.ModelReplicaPool;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
@@ -32,7 +33,12 @@ import org.nd4j.linalg.api.ndarray.INDArray;
 
 /**
  * An {@link InferenceExecutioner}
- * for use with the {@link ParallelInference}
+ * using {@link MultiLayerNetwork} for multi threaded inference.
+ * <p>
+ * By default requests run on a {@link ModelReplicaPool} of
+ * {@link ParallelInferenceConfig#getWorkers()} replicas sharing one parameter array.
+ * When {@link ParallelInferenceConfig#isUseParallelInference()} is set,
+ * requests are served by {@link ParallelInference} instead.
  *
  * @author Adam Gibson
  */
@@ -43,6 +49,8 @@ public class MultiLayerNetworkInferenceExecutioner implements
     private MultiLayerNetwork multiLayerNetwork;
     @Getter
     private ModelLoader<MultiLayerNetwork> modelLoader;
+    private ModelReplicaPool<MultiLayerNetwork> replicas;
+    private ParallelInference parallelInference;
 
     @Override
     public ModelLoader<MultiLayerNetwork> modelLoader() {
@@ -59,16 +67,45 @@ public class MultiLayerNetworkInferenceExecutioner implements
     public void initialize(ModelLoader<MultiLayerNetwork> model, ParallelInferenceConfig parallelInferenceConfig) throws Exception {
         this.multiLayerNetwork = model.loadModel();
         this.modelLoader = model;
+        if (parallelInferenceConfig.isUseParallelInference()) {
+            this.parallelInference = ComputationGraphInferenceExecutioner.parallelInference(multiLayerNetwork, parallelInferenceConfig);
+        } else {
+            this.replicas = new ModelReplicaPool<>(multiLayerNetwork, Math.max(1, parallelInferenceConfig.getWorkers()),
+                    MultiLayerNetworkInferenceExecutioner::replicate);
+        }
     }
 
     @Override
     public INDArray[] execute(INDArray[] input) {
-        synchronized (multiLayerNetwork) {
-            return new INDArray[] { multiLayerNetwork.output(input[0]) };
+        if (parallelInference != null) {
+            return new INDArray[] { parallelInference.output(input[0]) };
         }
+
+        return replicas.execute(replica -> new INDArray[] { replica.output(input[0]) });
     }
 
     @Override
     public void stop() {
+        if (parallelInference != null) {
+            parallelInference.shutdown();
+        }
+    }
+
+    /**
+     * Create a replica of the given network for inference.
+     * The replica has its own layer state but shares the parameters of the network.
+     *
+     * @param multiLayerNetwork the network to replicate
+     * @return the replica
+     */
+    static MultiLayerNetwork replicate(MultiLayerNetwork multiLayerNetwork) {
+        MultiLayerNetwork replica = new MultiLayerNetwork(multiLayerNetwork.getLayerWiseConfigurations().clone());
+        if (multiLayerNetwork.params() != null) {
+            replica.init(multiLayerNetwork.params(), false);
+        } else {
+            replica.init();
+        }
+
+        return replica;
     }
 }
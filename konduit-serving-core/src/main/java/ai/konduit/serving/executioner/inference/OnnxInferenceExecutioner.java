@@ -37,6 +37,10 @@ import java.util.Map;
 /**
  * An {@link InferenceExecutioner}
  * for use with the {@link ONNXThreadPool}
+ * <p>
+ * Input names are resolved once on {@link #initialize(ModelLoader, ParallelInferenceConfig)}.
+ * {@link #execute(INDArray[])} holds no lock, so concurrent callers
+ * are handed straight to the thread pool's queue.
  *
  * @author Adam Gibson, Alex Merritt
  */
@@ -55,6 +59,7 @@ public class OnnxInferenceExecutioner implements
     }
 
     private Session model;
+    private String[] inputNames;
 
     @Override
     public Session model() {
@@ -75,27 +80,31 @@ public class OnnxInferenceExecutioner implements
                 .batchLimit(config.getBatchLimit())
                 .queueLimit(config.getQueueLimit())
                 .inferenceMode(config.getInferenceMode())
+                .maxBatchWaitMillis(config.getMaxBatchWaitMillis())
+                .targetLatencyMillis(config.getTargetLatencyMillis())
                 .workers(config.getWorkers())
                 .build();
+
+        try (AllocatorWithDefaultOptions allocator = new AllocatorWithDefaultOptions()) {
+            this.inputNames = new String[(int) this.model.GetInputCount()];
+            for (int i = 0; i < inputNames.length; i++) {
+                inputNames[i] = this.model.GetInputName(i, allocator.asOrtAllocator()).getString();
+            }
+        }
     }
 
     @Override
     public INDArray[] execute(INDArray[] input) {
         Preconditions.checkNotNull(input, "Inputs must not be null!");
-        Preconditions.checkState(input.length == this.model.GetInputCount(), "Number of inputs %s did not equal number of model inputs %s!", input.length, model.GetInputCount());
-        synchronized (this.model) {
-            try (AllocatorWithDefaultOptions allocator = new AllocatorWithDefaultOptions()) {
-
-                Map<String, INDArray> inputs = new LinkedHashMap<>(input.length);
+        Preconditions.checkState(input.length == inputNames.length, "Number of inputs %s did not equal number of model inputs %s!", input.length, inputNames.length);
 
-                for (int i = 0; i < this.model.GetInputCount(); i++) {
-                    inputs.put(this.model.GetInputName(i, allocator.asOrtAllocator()).getString(), input[i]);
-                }
-
-                Map<String, INDArray> ret = inference.output(inputs);
-                return ret.values().toArray(new INDArray[0]);
-            }
+        Map<String, INDArray> inputs = new LinkedHashMap<>(input.length);
+        for (int i = 0; i < inputNames.length; i++) {
+            inputs.put(inputNames[i], input[i]);
         }
+
+        Map<String, INDArray> ret = inference.output(inputs);
+        return ret.values().toArray(new INDArray[0]);
     }
 
     @Override
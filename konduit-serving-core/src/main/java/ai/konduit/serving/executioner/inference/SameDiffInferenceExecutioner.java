@@ -25,16 +25,14 @@ package ai.konduit.serving.executioner.inference;
 import ai.konduit.serving.config.ParallelInferenceConfig;
 import ai.konduit.serving.model.loader.ModelLoader;
 import ai.konduit.serving.model.loader.samediff.SameDiffModelLoader;
+import ai.konduit.serving.threadpool.replicas.ModelReplicaPool;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import org.nd4j.autodiff.execution.NativeGraphExecutioner;
-import org.nd4j.autodiff.execution.conf.ExecutionMode;
-import org.nd4j.autodiff.execution.conf.ExecutorConfiguration;
-import org.nd4j.autodiff.execution.conf.OutputMode;
+import org.nd4j.autodiff.samediff.SDVariable;
 import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.autodiff.samediff.VariableType;
 import org.nd4j.base.Preconditions;
 import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.api.ops.executioner.OpExecutioner;
 
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -43,7 +41,15 @@ import java.util.Map;
 
 /**
  * An {@link InferenceExecutioner}
- * for use with the {@link TensorFlowThreadPool}
+ * for use with {@link SameDiff} models.
+ * <p>
+ * A pool of {@link ParallelInferenceConfig#getWorkers()} model replicas
+ * is created on {@link #initialize(ModelLoader, ParallelInferenceConfig)}.
+ * The model is loaded once and the replicas share its weights and constants,
+ * see {@link #replicate(SameDiff)}.
+ * Each call to {@link #execute(INDArray[])} borrows a replica, runs a single
+ * forward pass with the inputs passed as placeholders and returns the replica,
+ * so up to workers requests execute concurrently without sharing graph state.
  *
  * @author Adam Gibson
  */
@@ -53,17 +59,9 @@ public class SameDiffInferenceExecutioner implements InferenceExecutioner<ModelL
 
     @Getter
     private ModelLoader<SameDiff> modelLoader;
-    private NativeGraphExecutioner nativeGraphExecutioner;
-    private static ExecutorConfiguration configuration = ExecutorConfiguration.builder()
-            .executionMode(ExecutionMode.SEQUENTIAL)
-            .outputMode(OutputMode.EXPLICIT)
-            .profilingMode(OpExecutioner.ProfilingMode.DISABLED)
-            .gatherTimings(true)
-            .build();
-
-
-    private List<String> inputs,outputs;
+    private List<String> inputs, outputs;
     private SameDiff model;
+    private ModelReplicaPool<SameDiff> replicas;
 
     @Override
     public ModelLoader<SameDiff> modelLoader() {
@@ -81,13 +79,16 @@ public class SameDiffInferenceExecutioner implements InferenceExecutioner<ModelL
 
     @Override
     public void initialize(ModelLoader<SameDiff> model, ParallelInferenceConfig config) {
-        nativeGraphExecutioner = new NativeGraphExecutioner();
         this.modelLoader = model;
         this.model = model();
         SameDiffModelLoader sameDiffModelLoader = (SameDiffModelLoader) model;
         this.inputs = sameDiffModelLoader.getInputNames();
         this.outputs = sameDiffModelLoader.getOutputNames();
-        log.info("Inference execution loaded with inputs " + inputs + " and outputs " + outputs);
+
+        int workers = Math.max(1, config.getWorkers());
+        this.replicas = new ModelReplicaPool<>(this.model, workers, SameDiffInferenceExecutioner::replicate);
+
+        log.info("Inference execution loaded with inputs " + inputs + " and outputs " + outputs + " using " + workers + " model replicas");
     }
 
     @Override
@@ -95,26 +96,45 @@ public class SameDiffInferenceExecutioner implements InferenceExecutioner<ModelL
         Preconditions.checkNotNull(input,"Inputs must not be null!");
         Preconditions.checkState(input.length == this.model.inputs().size(),"Number of inputs %s did not equal number of model inputs %s!",input.length,model.inputs().size());
 
-        synchronized (this.model) {
-            Map<String, INDArray> inputs = new LinkedHashMap(input.length);
-
+        return replicas.execute(replica -> {
+            List<String> inputNames = replica.inputs();
+            Map<String, INDArray> inputs = new LinkedHashMap<>(input.length);
             for (int i = 0; i < input.length; i++) {
-                inputs.put(this.model.inputs().get(i), input[i]);
-                this.model.associateArrayWithVariable(input[i], this.model.inputs().get(i));
+                inputs.put(inputNames.get(i), input[i]);
             }
 
-            model.output(inputs,outputs);
-            Map<String, INDArray> ret =  model.output(inputs,outputs);
+            Map<String, INDArray> ret = replica.output(inputs, outputs);
             INDArray[] returnOutput = new INDArray[outputs.size()];
             for(int i = 0; i < returnOutput.length; i++) {
                 returnOutput[i] = ret.get(outputs.get(i));
             }
 
             return returnOutput;
-        }
+        });
     }
 
     @Override
     public void stop() {
     }
+
+    /**
+     * Create a replica of the model that shares its weights and constants, so they are held
+     * in memory once no matter the number of workers, like the DL4J replicas initialized with
+     * the parameters of the loaded model. Only the graph structure and the arrays computed
+     * during a forward pass belong to the replica.
+     *
+     * @param prototype the loaded model
+     * @return the replica
+     */
+    static SameDiff replicate(SameDiff prototype) {
+        SameDiff replica = prototype.dup();
+        for (SDVariable variable : prototype.variables()) {
+            if (variable.getVariableType() == VariableType.VARIABLE || variable.getVariableType() == VariableType.CONSTANT) {
+                //the copies made by dup() are released in favour of the prototype arrays
+                replica.associateArrayWithVariable(variable.getArr(), variable.name());
+            }
+        }
+
+        return replica;
+    }
 }
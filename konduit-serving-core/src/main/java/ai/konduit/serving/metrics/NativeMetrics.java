@@ -24,9 +24,11 @@ package ai.konduit.serving.metrics;
 
 import ai.konduit.serving.config.metrics.MetricsConfig;
 import ai.konduit.serving.config.metrics.MetricsRenderer;
+import ai.konduit.serving.util.ArrowAllocators;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tag;
+import org.apache.arrow.memory.BufferAllocator;
 import org.deeplearning4j.perf.listener.DeviceMetric;
 import org.deeplearning4j.perf.listener.HardwareMetric;
 import oshi.json.SystemInfo;
@@ -79,6 +81,26 @@ public class NativeMetrics implements MetricsRenderer {
                 .register(registry);
 
 
+        Gauge.builder("arrow.memory.allocated", ArrowAllocators.root(), BufferAllocator::getAllocatedMemory)
+                .tags(tags)
+                .description("Off-heap memory currently allocated for arrow vectors")
+                .baseUnit("bytes")
+                .register(registry);
+
+
+        Gauge.builder("arrow.memory.peak", ArrowAllocators.root(), BufferAllocator::getPeakMemoryAllocation)
+                .tags(tags)
+                .description("Peak off-heap memory allocated for arrow vectors")
+                .baseUnit("bytes")
+                .register(registry);
+
+
+        Gauge.builder("arrow.allocators.open", ArrowAllocators.root(), allocator -> allocator.getChildAllocators().size())
+                .tags(tags)
+                .description("Request arrow allocators that have not been closed yet")
+                .register(registry);
+
+
         if (hardwareMetric.getGpuMetrics() != null)
             for (Map.Entry<Integer, DeviceMetric> entry : hardwareMetric.getGpuMetrics().entrySet()) {
                 DeviceMetric deviceMetric = hardwareMetric.getGpuMetrics().get(entry.getKey());
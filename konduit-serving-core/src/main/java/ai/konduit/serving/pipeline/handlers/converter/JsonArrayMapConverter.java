@@ -22,28 +22,39 @@
 
 package ai.konduit.serving.pipeline.handlers.converter;
 
+import ai.konduit.serving.util.ArrowAllocators;
 import ai.konduit.serving.util.ArrowUtils;
+import ai.konduit.serving.util.JsonNDArrayParser;
 import ai.konduit.serving.util.JsonSerdeUtils;
+import ai.konduit.serving.util.ObjectMappers;
+import ai.konduit.serving.util.SchemaTypeUtils;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.arrow.memory.BufferAllocator;
-import org.apache.arrow.memory.RootAllocator;
 import org.apache.arrow.vector.FieldVector;
 import org.datavec.api.transform.ColumnType;
 import org.datavec.api.transform.TransformProcess;
+import org.datavec.api.transform.metadata.ColumnMetaData;
+import org.datavec.api.transform.metadata.NDArrayMetaData;
 import org.datavec.api.transform.schema.Schema;
 import org.datavec.api.writable.NDArrayWritable;
+import org.datavec.api.writable.Writable;
 import org.datavec.arrow.ArrowConverter;
 import org.datavec.arrow.recordreader.ArrowWritableRecordBatch;
 import org.datavec.local.transforms.LocalTransformExecutor;
 import org.dmg.pmml.FieldName;
 import org.nd4j.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.primitives.Pair;
+import org.nd4j.shade.jackson.core.JsonParser;
+import org.nd4j.shade.jackson.core.JsonToken;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -51,13 +62,18 @@ import java.util.Map;
 /**
  * Conversion utility for handling converting arrays of
  * maps to feature vectors for use with inference.
+ * <p>
+ * The returned {@link ArrowWritableRecordBatch} owns off-heap arrow vectors.
+ * Callers should pass a request scoped allocator from
+ * {@link ArrowAllocators#newRequestAllocator(String)} and close it
+ * once the converted records are no longer used.
  *
  * @author Adam Gibson
  */
 @Slf4j
 public class JsonArrayMapConverter extends BaseJsonArrayConverter {
 
-    public static BufferAllocator bufferAllocator = new RootAllocator(Long.MAX_VALUE);
+    public static BufferAllocator bufferAllocator = ArrowAllocators.root();
 
     /**
      * {@inheritDoc}
@@ -134,61 +150,205 @@ public class JsonArrayMapConverter extends BaseJsonArrayConverter {
      */
     @Override
     public ArrowWritableRecordBatch convert(Schema schema, JsonArray jsonArray, TransformProcess transformProcess) {
+        return convert(bufferAllocator, schema, jsonArray, transformProcess);
+    }
+
+    /**
+     * Same as {@link #convert(Schema, JsonArray, TransformProcess)}, allocating
+     * the arrow vectors of the result from the given allocator.
+     * Intermediate vectors are released before returning.
+     */
+    public ArrowWritableRecordBatch convert(BufferAllocator allocator, Schema schema, JsonArray jsonArray, TransformProcess transformProcess) {
         Preconditions.checkNotNull(schema, "Please specify a schema for conversion!");
         log.debug("Converting " + jsonArray);
-        List<FieldVector> vectors = ArrowUtils.createFieldVectors(bufferAllocator, schema, jsonArray.size());
-        //all numbers case, convert to json object
-        if (jsonArray.getValue(0) instanceof JsonArray) {
-            Preconditions.checkNotNull(schema, "Schema must not be null when specifying all numerical values. A schema is needed for names.");
-            JsonArray newInput = new JsonArray();
-            for (int i = 0; i < jsonArray.size(); i++) {
-                JsonObject jsonObject = new JsonObject();
+        List<Object[]> rows = new ArrayList<>(jsonArray.size());
+        //all numbers case, values are positional
+        boolean positional = jsonArray.getValue(0) instanceof JsonArray;
+        for (int i = 0; i < jsonArray.size(); i++) {
+            Object[] row = new Object[schema.numColumns()];
+            if (positional) {
                 JsonArray currInputRow = jsonArray.getJsonArray(i);
                 Preconditions.checkState(currInputRow.size() == schema.numColumns(), "Invalid row " + i + " did not match schema!");
                 for (int j = 0; j < currInputRow.size(); j++) {
-                    jsonObject.put(schema.getName(j), currInputRow.getValue(j));
+                    row[j] = currInputRow.getValue(j);
                 }
+            } else {
+                JsonObject jsonObject = jsonArray.getJsonObject(i);
+                for (int j = 0; j < schema.numColumns(); j++) {
+                    row[j] = jsonObject.getValue(schema.getName(j));
+                }
+            }
 
-                newInput.add(jsonObject);
+            rows.add(row);
+        }
+
+        return convertRows(allocator, schema, rows, transformProcess);
+    }
+
+    /**
+     * Same as {@link #convert(BufferAllocator, Schema, JsonArray, TransformProcess)}
+     * reading the json text directly with a streaming parser. No {@link JsonArray}
+     * or {@link JsonObject} is built: {@link ColumnType#NDArray} values are decoded
+     * straight into arrays with {@link JsonNDArrayParser}.
+     * <p>
+     * The json may be a single object, an array of objects or,
+     * when all values are positional, an array of arrays.
+     *
+     * @param allocator        the allocator for the vectors of the result
+     * @param schema           the schema of the input
+     * @param json             the json text
+     * @param transformProcess the transform process to execute, may be null
+     * @return the converted records
+     */
+    public ArrowWritableRecordBatch convert(BufferAllocator allocator, Schema schema, String json, TransformProcess transformProcess) {
+        return convert(allocator, schema, json, transformProcess, Collections.emptyMap());
+    }
+
+    /**
+     * Same as {@link #convert(BufferAllocator, Schema, String, TransformProcess)} with the
+     * data types of the {@link ColumnType#NDArray} columns. Arrays of a column whose
+     * {@link NDArrayMetaData} has a fixed shape are parsed into an array preallocated
+     * from the schema, see {@link SchemaTypeUtils#fixedShape(ColumnMetaData)}.
+     *
+     * @param allocator        the allocator for the vectors of the result
+     * @param schema           the schema of the input
+     * @param json             the json text
+     * @param transformProcess the transform process to execute, may be null
+     * @param dataTypes        the data type of each NDArray column by column name, float when missing
+     * @return the converted records
+     */
+    public ArrowWritableRecordBatch convert(BufferAllocator allocator, Schema schema, String json, TransformProcess transformProcess,
+                                            Map<String, DataType> dataTypes) {
+        Preconditions.checkNotNull(schema, "Please specify a schema for conversion!");
+        Preconditions.checkNotNull(dataTypes, "Data types must not be null!");
+        List<Object[]> rows = new ArrayList<>();
+        try (JsonParser parser = ObjectMappers.json().getFactory().createParser(json)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                rows.add(readObjectRow(parser, schema, dataTypes));
+            } else if (token == JsonToken.START_ARRAY) {
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == JsonToken.START_OBJECT) {
+                        rows.add(readObjectRow(parser, schema, dataTypes));
+                    } else if (token == JsonToken.START_ARRAY) {
+                        rows.add(readArrayRow(parser, schema, rows.size(), dataTypes));
+                    } else {
+                        throw new IllegalArgumentException("Invalid row " + rows.size() + ": expected a json object or array but found " + token);
+                    }
+                }
+            } else {
+                throw new IllegalArgumentException("Expected a json object or array but found " + token);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to parse json input", e);
+        }
+
+        Preconditions.checkState(!rows.isEmpty(), "No rows found in json input!");
+        return convertRows(allocator, schema, rows, transformProcess);
+    }
+
+    private Object[] readObjectRow(JsonParser parser, Schema schema, Map<String, DataType> dataTypes) throws IOException {
+        Object[] row = new Object[schema.numColumns()];
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if (!schema.hasColumn(name)) {
+                parser.skipChildren();
+                continue;
             }
 
-            jsonArray = newInput;
+            int column = schema.getIndexOfColumn(name);
+            row[column] = readValue(parser, schema, column, dataTypes);
         }
 
+        return row;
+    }
 
-        for (int i = 0; i < jsonArray.size(); i++) {
-            JsonObject jsonObject = jsonArray.getJsonObject(i);
+    private Object[] readArrayRow(JsonParser parser, Schema schema, int rowIndex, Map<String, DataType> dataTypes) throws IOException {
+        Object[] row = new Object[schema.numColumns()];
+        int column = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            Preconditions.checkState(column < schema.numColumns(), "Invalid row " + rowIndex + " did not match schema!");
+            row[column] = readValue(parser, schema, column, dataTypes);
+            column++;
+        }
+
+        Preconditions.checkState(column == schema.numColumns(), "Invalid row " + rowIndex + " did not match schema!");
+        return row;
+    }
+
+    private Object readValue(JsonParser parser, Schema schema, int column, Map<String, DataType> dataTypes) throws IOException {
+        ColumnType columnType = schema.getType(column);
+        switch (parser.getCurrentToken()) {
+            case START_ARRAY:
+                Preconditions.checkState(columnType == ColumnType.NDArray, "Json arrays are only supported for NDArray columns, found one for a " + columnType + " column");
+                DataType dataType = dataTypes.getOrDefault(schema.getName(column), DataType.FLOAT);
+                long[] shape = SchemaTypeUtils.fixedShape(schema.getMetaData(column));
+                if (shape != null) {
+                    return JsonNDArrayParser.parseInto(parser, Nd4j.createUninitialized(dataType, shape, 'c'));
+                }
+
+                return JsonNDArrayParser.parse(parser, dataType);
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            default:
+                throw new IllegalArgumentException("Unsupported json value " + parser.getCurrentToken() + " for a " + columnType + " column");
+        }
+    }
+
+    private ArrowWritableRecordBatch convertRows(BufferAllocator allocator, Schema schema, List<Object[]> rows, TransformProcess transformProcess) {
+        List<FieldVector> vectors = ArrowUtils.createFieldVectors(allocator, schema, rows.size());
+        try {
+            ArrowWritableRecordBatch writableRecordBatch = fill(vectors, schema, rows);
+            if (transformProcess == null)
+                return writableRecordBatch;
+
+            //the transform process executes into new vectors, the input ones are no longer needed
+            ArrowWritableRecordBatch transformed = (ArrowWritableRecordBatch) LocalTransformExecutor.execute(writableRecordBatch, transformProcess);
+            close(vectors);
+            return transformed;
+        } catch (RuntimeException e) {
+            close(vectors);
+            throw e;
+        }
+    }
+
+    private ArrowWritableRecordBatch fill(List<FieldVector> vectors, Schema schema, List<Object[]> rows) {
+        for (int i = 0; i < rows.size(); i++) {
+            Object[] row = rows.get(i);
             for (int j = 0; j < schema.numColumns(); j++) {
+                Object value = row[j];
                 if (schema.getType(j) == ColumnType.NDArray) {
-                    Object value = jsonObject.getValue(schema.getName(j));
-                    if (value instanceof String) {
-                        INDArray arr = Nd4j.scalar(Double.parseDouble(value.toString()));
-                        NDArrayWritable ndArrayWritable = new NDArrayWritable(arr);
-                        ArrowConverter.setValue(schema.getType(j), vectors.get(j), ndArrayWritable, i);
-
+                    INDArray arr;
+                    if (value instanceof INDArray) {
+                        arr = (INDArray) value;
+                    } else if (value instanceof String) {
+                        arr = Nd4j.scalar(Double.parseDouble(value.toString()));
                     } else if (value instanceof Number) {
-                        Number n = (Number) value;
-                        INDArray arr = Nd4j.scalar(n.doubleValue());
-                        NDArrayWritable ndArrayWritable = new NDArrayWritable(arr);
-                        ArrowConverter.setValue(schema.getType(j), vectors.get(j), ndArrayWritable, i);
+                        arr = Nd4j.scalar(((Number) value).doubleValue());
                     } else if (value instanceof JsonArray) {
-                        INDArray arr = JsonSerdeUtils.jsonToNDArray((JsonArray)value);
-                        NDArrayWritable ndArrayWritable = new NDArrayWritable(arr);
-                        ArrowConverter.setValue(schema.getType(j), vectors.get(j), ndArrayWritable, i);
-
+                        arr = JsonSerdeUtils.jsonToNDArray((JsonArray) value);
                     } else {
-                        throw new IllegalArgumentException("Illegal type found " + value.getClass());
+                        throw new IllegalArgumentException("Illegal type found " + (value == null ? "null" : value.getClass()));
                     }
+
+                    ArrowConverter.setValue(schema.getType(j), vectors.get(j), new NDArrayWritable(arr), i);
                 } else {
-                    ArrowConverter.setValue(schema.getType(j), vectors.get(j), jsonObject.getValue(jsonObject.fieldNames().iterator().next()), i);
+                    ArrowConverter.setValue(schema.getType(j), vectors.get(j), value, i);
                 }
             }
         }
 
-        ArrowWritableRecordBatch writableRecordBatch = ArrowConverter.toArrowWritables(vectors, schema);
-        if (transformProcess != null)
-            return (ArrowWritableRecordBatch) LocalTransformExecutor.execute(writableRecordBatch, transformProcess);
-        return writableRecordBatch;
+        return ArrowConverter.toArrowWritables(vectors, schema);
     }
 
 
@@ -197,53 +357,66 @@ public class JsonArrayMapConverter extends BaseJsonArrayConverter {
      */
     @Override
     public Pair<Map<Integer, Integer>, ArrowWritableRecordBatch> convertWithErrors(Schema schema, JsonArray jsonArray, TransformProcess transformProcess, DataPipelineErrorHandler dataPipelineErrorHandler) {
-        List<ArrowWritableRecordBatch> examples = new ArrayList<>();
+        return convertWithErrors(bufferAllocator, schema, jsonArray, transformProcess, dataPipelineErrorHandler);
+    }
+
+    /**
+     * Same as {@link #convertWithErrors(Schema, JsonArray, TransformProcess, DataPipelineErrorHandler)},
+     * allocating the arrow vectors of the result from the given allocator.
+     * The per row vectors are released before returning.
+     */
+    public Pair<Map<Integer, Integer>, ArrowWritableRecordBatch> convertWithErrors(BufferAllocator allocator, Schema schema, JsonArray jsonArray, TransformProcess transformProcess, DataPipelineErrorHandler dataPipelineErrorHandler) {
         Map<Integer, Integer> indexMappings = new LinkedHashMap<>();
-        int succeededCurrCount = 0;
-        List<FieldVector> vectorsIndividual = ArrowUtils.createFieldVectors(bufferAllocator, schema, 1);
+        Schema finalSchema = transformProcess != null ? transformProcess.getFinalSchema() : schema;
+        List<List<Writable>> examples = new ArrayList<>();
+        List<FieldVector> vectorsIndividual = ArrowUtils.createFieldVectors(allocator, schema, 1);
+        try {
+            for (int i = 0; i < jsonArray.size(); i++) {
+                try {
+                    JsonObject jsonObject = jsonArray.getJsonObject(i);
+                    for (int j = 0; j < schema.numColumns(); j++) {
+                        ArrowUtils.setValue(schema.getType(j), vectorsIndividual.get(j), jsonObject.getValue(schema.getName(j)), 0);
+                    }
 
-        for (int i = 0; i < jsonArray.size(); i++) {
-            try {
-                JsonObject jsonObject = jsonArray.getJsonObject(i);
-                for (int j = 0; j < schema.numColumns(); j++) {
-                    ArrowUtils.setValue(schema.getType(j), vectorsIndividual.get(j), jsonObject.getValue(schema.getName(j)), i);
-                }
+                    //copy the row out so the single row vectors can be reused for the next row
+                    ArrowWritableRecordBatch writableRecordBatch = ArrowConverter.toArrowWritables(vectorsIndividual, schema);
+                    if (transformProcess != null) {
+                        ArrowWritableRecordBatch transformed = (ArrowWritableRecordBatch) LocalTransformExecutor.execute(writableRecordBatch, transformProcess);
+                        examples.add(new ArrayList<>(transformed.get(0)));
+                        transformed.close();
+                    } else {
+                        examples.add(new ArrayList<>(writableRecordBatch.get(0)));
+                    }
 
-                ArrowWritableRecordBatch writableRecordBatch = ArrowConverter.toArrowWritables(vectorsIndividual, schema);
-                if (transformProcess != null) {
-                    writableRecordBatch = (ArrowWritableRecordBatch) LocalTransformExecutor.execute(writableRecordBatch, transformProcess);
+                    indexMappings.put(examples.size() - 1, i);
+                } catch (Exception e) {
+                    dataPipelineErrorHandler.onError(e, jsonArray.getJsonObject(i), i);
                 }
-
-                examples.add(writableRecordBatch);
-                indexMappings.put(succeededCurrCount, i);
-                succeededCurrCount++;
-
-            } catch (Exception e) {
-                dataPipelineErrorHandler.onError(e, jsonArray.getJsonObject(i), i);
-                continue;
             }
-
+        } finally {
+            close(vectorsIndividual);
         }
 
-        if (transformProcess != null) {
-            schema = transformProcess.getFinalSchema();
-        }
-
-
-        List<FieldVector> vectors = ArrowUtils.createFieldVectors(bufferAllocator, schema, indexMappings.size());
+        List<FieldVector> vectors = ArrowUtils.createFieldVectors(allocator, finalSchema, examples.size());
         for (int i = 0; i < examples.size(); i++) {
-            for (int j = 0; j < schema.numColumns(); j++) {
+            for (int j = 0; j < finalSchema.numColumns(); j++) {
                 try {
-                    ArrowUtils.setValue(schema.getType(j), vectors.get(j), examples.get(i).get(0).get(j), i);
+                    ArrowUtils.setValue(finalSchema.getType(j), vectors.get(j), examples.get(i).get(j), i);
                 } catch (Exception e) {
                     dataPipelineErrorHandler.onError(e, examples.get(i), i);
                 }
             }
         }
 
-        ArrowWritableRecordBatch finalBatch = ArrowConverter.toArrowWritables(vectors, schema);
+        ArrowWritableRecordBatch finalBatch = ArrowConverter.toArrowWritables(vectors, finalSchema);
         return Pair.of(indexMappings, finalBatch);
     }
 
+    private static void close(List<FieldVector> vectors) {
+        for (FieldVector vector : vectors) {
+            vector.close();
+        }
+    }
+
 
 }
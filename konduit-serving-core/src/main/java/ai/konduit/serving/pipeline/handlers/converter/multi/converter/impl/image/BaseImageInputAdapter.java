@@ -33,6 +33,10 @@ import org.datavec.image.transform.MultiImageTransform;
 import org.nd4j.linalg.api.ndarray.INDArray;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -45,6 +49,10 @@ import java.util.Map;
  */
 public abstract class BaseImageInputAdapter<T> implements InputAdapter<T, Writable> {
 
+    private static final int MAX_CACHED_LOADERS = 16;
+
+    private static final ThreadLocal<Map<List<Object>, NativeImageLoader>> IMAGE_LOADERS = ThreadLocal.withInitial(HashMap::new);
+
     @Override
     public Writable convert(T input, ConverterArgs parameters, Map<String, Object> contextData) throws IOException {
         NativeImageLoader imageLoader = getImageLoader(input, parameters);
@@ -69,36 +77,48 @@ public abstract class BaseImageInputAdapter<T> implements InputAdapter<T, Writab
     /**
      * Get the image loader
      * configuring it using the
-     * {@link ConverterArgs}
+     * {@link ConverterArgs}.
+     * <p>
+     * Loaders are created once per configuration and reused. A {@link NativeImageLoader}
+     * keeps conversion state between calls, so each thread has its own cache.
      *
      * @param input         the input to convert
      * @param converterArgs the converter args to use
      * @return the configured {@link NativeImageLoader}
      */
     public NativeImageLoader getImageLoader(T input, ConverterArgs converterArgs) {
-        if (converterArgs == null || converterArgs.getLongs().isEmpty())
-            return new NativeImageLoader();
-        else if (converterArgs.getLongs().size() == 3) {
-            if (converterArgs.getImageTransformProcess() != null) {
-                return new NativeImageLoader(converterArgs.getLongs().get(0), converterArgs.getLongs().get(1), converterArgs.getLongs().get(2), new MultiImageTransform(converterArgs.getImageTransformProcess().getTransformList().toArray(new ImageTransform[1])));
-
-            } else if (converterArgs.getImageTransformProcess() != null)
-                return new NativeImageLoader(converterArgs.getLongs().get(0), converterArgs.getLongs().get(1), converterArgs.getLongs().get(2), new MultiImageTransform(converterArgs.getImageTransformProcess().getTransformList().toArray(new ImageTransform[1])));
-            else {
-                return new NativeImageLoader(converterArgs.getLongs().get(0), converterArgs.getLongs().get(1), converterArgs.getLongs().get(2));
-
-            }
-        } else if (converterArgs.getLongs().size() == 3) {
-            if (converterArgs.getImageTransformProcess() != null) {
-                return new NativeImageLoader(converterArgs.getLongs().get(0).intValue(), converterArgs.getLongs().get(1).intValue()
-                        , converterArgs.getLongs().get(2).intValue(), new MultiImageTransform(converterArgs.getImageTransformProcess().getTransformList().toArray(new ImageTransform[1])));
-            } else
-                return new NativeImageLoader(converterArgs.getLongs().get(0).intValue(), converterArgs.getLongs().get(1).intValue()
-                        , converterArgs.getLongs().get(2).intValue());
+        List<Object> key = converterArgs == null ? Collections.emptyList()
+                : Arrays.asList(converterArgs.getLongs(), converterArgs.getImageTransformProcess());
+        Map<List<Object>, NativeImageLoader> loaders = IMAGE_LOADERS.get();
+        NativeImageLoader imageLoader = loaders.get(key);
+        if (imageLoader == null) {
+            if (loaders.size() >= MAX_CACHED_LOADERS)
+                loaders.clear();
+
+            imageLoader = createImageLoader(converterArgs);
+            loaders.put(key, imageLoader);
         }
 
+        return imageLoader;
+    }
+
+    /**
+     * Create a new image loader
+     * configured using the {@link ConverterArgs}
+     *
+     * @param converterArgs the converter args to use
+     * @return the configured {@link NativeImageLoader}
+     */
+    protected NativeImageLoader createImageLoader(ConverterArgs converterArgs) {
+        if (converterArgs == null || converterArgs.getLongs().size() != 3)
+            return new NativeImageLoader();
+
+        List<Long> longs = converterArgs.getLongs();
+        if (converterArgs.getImageTransformProcess() != null) {
+            return new NativeImageLoader(longs.get(0), longs.get(1), longs.get(2), new MultiImageTransform(converterArgs.getImageTransformProcess().getTransformList().toArray(new ImageTransform[1])));
+        }
 
-        return new NativeImageLoader();
+        return new NativeImageLoader(longs.get(0), longs.get(1), longs.get(2));
     }
 
 
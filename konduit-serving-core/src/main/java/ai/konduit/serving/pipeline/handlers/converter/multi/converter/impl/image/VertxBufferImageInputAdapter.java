@@ -30,7 +30,6 @@ import org.datavec.api.writable.Writable;
 import org.datavec.image.data.ImageWritable;
 import org.nd4j.linalg.api.ndarray.INDArray;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.Map;
 
@@ -43,13 +42,14 @@ public class VertxBufferImageInputAdapter extends BaseImageInputAdapter<Buffer>
 
     @Override
     public INDArray getArrayUsing(NativeImageLoader nativeImageLoader, Buffer input, ConverterArgs converterArgs) throws IOException {
-        return nativeImageLoader.asMatrix(new ByteArrayInputStream(input.getBytes()));
+        return nativeImageLoader.asMatrix(input.getByteBuf().nioBuffer());
     }
 
     @Override
     public Writable convert(Buffer input, ConverterArgs parameters, Map<String, Object> contextData) throws IOException {
         NativeImageLoader imageLoader = getImageLoader(input, parameters);
-        ImageWritable image = imageLoader.asWritable(new ByteArrayInputStream(input.getBytes()));
+        //decode straight from the buffer memory: no copy for direct buffers, one for heap buffers
+        ImageWritable image = imageLoader.asWritable(input.getByteBuf().nioBuffer());
         if (contextData != null) {
             contextData.put(VerticleConstants.ORIGINAL_IMAGE_HEIGHT, image.getHeight());
             contextData.put(VerticleConstants.ORIGINAL_IMAGE_WIDTH, image.getWidth());
@@ -23,8 +23,8 @@ package ai.konduit.serving.pipeline.steps;
 
 import ai.konduit.serving.pipeline.PipelineStep;
 import ai.konduit.serving.pipeline.step.WordTokenizerStep;
+import ai.konduit.serving.util.ObjectMappers;
 import ai.konduit.serving.util.WritableValueRetriever;
-import io.vertx.core.json.JsonObject;
 import org.datavec.api.records.Record;
 import org.datavec.api.writable.Writable;
 import org.deeplearning4j.iterator.BertIterator;
@@ -32,19 +32,32 @@ import org.deeplearning4j.iterator.LabeledSentenceProvider;
 import org.deeplearning4j.iterator.provider.CollectionLabeledSentenceProvider;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.BertWordPieceTokenizerFactory;
 import org.nd4j.base.Preconditions;
-import org.datavec.api.writable.Text;
+import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.api.MultiDataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.shade.jackson.core.JsonParser;
+import org.nd4j.shade.jackson.core.JsonToken;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 
+/**
+ * Tokenizes all the sentences of a request in one pass into
+ * a [batch, sentenceMaxLen] index array and mask array.
+ * Each input record is either a json object whose string values
+ * are sentences (in field order) or a plain sentence.
+ * <p>
+ * When {@link WordTokenizerStep#getTokenCacheSize()} is positive
+ * the index and mask rows of recently seen sentences are cached.
+ */
 public class WordTokenizerStepRunner extends BaseStepRunner
 {
     private BertWordPieceTokenizerFactory tokenizer;
     private WordTokenizerStep tokenizerStep;
     private int sentenceMaxLen;
+    private Map<String, INDArray[]> tokenCache;
 
     public WordTokenizerStepRunner(PipelineStep pipelineStep)
     {
@@ -65,6 +78,15 @@ public class WordTokenizerStepRunner extends BaseStepRunner
             throw new IllegalStateException("Failed to create BertWordPieceTokenizerFactory", e);
         }
 
+        int cacheSize = this.tokenizerStep.getTokenCacheSize();
+        if (cacheSize > 0) {
+            this.tokenCache = new LinkedHashMap<String, INDArray[]>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, INDArray[]> eldest) {
+                    return size() > cacheSize;
+                }
+            };
+        }
     }
 
     @Override
@@ -72,17 +94,23 @@ public class WordTokenizerStepRunner extends BaseStepRunner
         throw new UnsupportedOperationException();
     }
 
-    public BertIterator getToken(String input)
+    /**
+     * Create an iterator returning the given sentences, in order, as one minibatch
+     *
+     * @param sentences the sentences to tokenize
+     * @return the iterator
+     */
+    public BertIterator getTokens(List<String> sentences)
     {
-        List<String> inputList = Collections.singletonList(input);
-        List<String> labelList = Collections.singletonList("default");
+        List<String> labelList = Collections.nCopies(sentences.size(), "default");
 
-        LabeledSentenceProvider provider = new CollectionLabeledSentenceProvider(inputList, labelList, new Random(123));
+        //no random number generator: sentences are returned in order
+        LabeledSentenceProvider provider = new CollectionLabeledSentenceProvider(sentences, labelList);
 
         return BertIterator.builder()
                 .tokenizer(this.tokenizer)
                 .lengthHandling(BertIterator.LengthHandling.FIXED_LENGTH, this.sentenceMaxLen)
-                .minibatchSize(1)
+                .minibatchSize(sentences.size())
                 .sentenceProvider(provider)
                 .featureArrays(BertIterator.FeatureArrays.INDICES_MASK)
                 .vocabMap(tokenizer.getVocab())
@@ -90,40 +118,111 @@ public class WordTokenizerStepRunner extends BaseStepRunner
                 .build();
     }
 
+    public BertIterator getToken(String input)
+    {
+        return getTokens(Collections.singletonList(input));
+    }
+
 
     @Override
     public Record[] transform(Record[] input)
     {
         Preconditions.checkNotNull(input, "Input records were null!");
 
-        List<Record> recordList = new ArrayList<>();
-
+        List<String> sentences = new ArrayList<>();
         for(Record record : input)
         {
-            Text text = (Text) record.getRecord().get(0);
+            String text = record.getRecord().get(0).toString();
+            if (!text.isEmpty() && text.charAt(0) == '{')
+                readSentences(text, sentences);
+            else
+                sentences.add(text);
+        }
 
-            if (text.toString().charAt(0) == '{')
-            {
-                JsonObject jsonObject = new JsonObject(text.toString());
-                List<Writable> featureWritable = new ArrayList<>();
-                List<Writable> featureMaskWritable = new ArrayList<>();
+        if (sentences.isEmpty())
+            return new Record[0];
 
-                for (String field : jsonObject.fieldNames())
-                {
-                    String sentence = (String) jsonObject.getValue(field);
+        //rows of each sentence: cached, or tokenized together in one pass
+        INDArray[][] rows = new INDArray[sentences.size()][];
+        List<String> toTokenize = new ArrayList<>();
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = cached(sentences.get(i));
+            if (rows[i] == null)
+                toTokenize.add(sentences.get(i));
+        }
 
-                    MultiDataSet mds = this.getToken(sentence).next();
-                    featureWritable.add(WritableValueRetriever.writableFromValue(mds.getFeatures(0)));
-                    featureMaskWritable.add(WritableValueRetriever.writableFromValue(mds.getFeaturesMaskArray(0)));
+        INDArray features, mask;
+        if (toTokenize.size() == rows.length) {
+            MultiDataSet mds = getTokens(toTokenize).next();
+            features = mds.getFeatures(0);
+            mask = mds.getFeaturesMaskArray(0);
+            cache(toTokenize, features, mask);
+        } else {
+            INDArray tokenizedFeatures = null, tokenizedMask = null;
+            if (!toTokenize.isEmpty()) {
+                MultiDataSet mds = getTokens(toTokenize).next();
+                tokenizedFeatures = mds.getFeatures(0);
+                tokenizedMask = mds.getFeaturesMaskArray(0);
+                cache(toTokenize, tokenizedFeatures, tokenizedMask);
+            }
+
+            INDArray first = rows[0] != null ? rows[0][0] : tokenizedFeatures;
+            INDArray firstMask = rows[0] != null ? rows[0][1] : tokenizedMask;
+            features = Nd4j.create(first.dataType(), rows.length, first.size(1));
+            mask = Nd4j.create(firstMask.dataType(), rows.length, firstMask.size(1));
+            int tokenized = 0;
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i] != null) {
+                    features.putRow(i, rows[i][0]);
+                    mask.putRow(i, rows[i][1]);
+                } else {
+                    features.putRow(i, tokenizedFeatures.getRow(tokenized));
+                    mask.putRow(i, tokenizedMask.getRow(tokenized));
+                    tokenized++;
                 }
+            }
+        }
+
+        return new Record[]{
+                new org.datavec.api.records.impl.Record(Collections.singletonList(WritableValueRetriever.writableFromValue(features)), null),
+                new org.datavec.api.records.impl.Record(Collections.singletonList(WritableValueRetriever.writableFromValue(mask)), null)
+        };
+    }
 
-                recordList.add(new org.datavec.api.records.impl.Record(featureWritable, null));
-                recordList.add(new org.datavec.api.records.impl.Record(featureMaskWritable, null));
+    private static void readSentences(String json, List<String> sentences)
+    {
+        try (JsonParser parser = ObjectMappers.json().getFactory().createParser(json)) {
+            Preconditions.checkState(parser.nextToken() == JsonToken.START_OBJECT, "Expected a json object of sentences");
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                Preconditions.checkState(parser.nextToken() == JsonToken.VALUE_STRING,
+                        "Value of field %s is not a string", parser.getCurrentName());
+                sentences.add(parser.getText());
             }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read sentences from json input", e);
+        }
+    }
 
+    private INDArray[] cached(String sentence)
+    {
+        if (tokenCache == null)
+            return null;
+
+        synchronized (tokenCache) {
+            return tokenCache.get(sentence);
         }
+    }
+
+    private void cache(List<String> sentences, INDArray features, INDArray mask)
+    {
+        if (tokenCache == null)
+            return;
 
-        return recordList.toArray(new Record[recordList.size()]);
+        synchronized (tokenCache) {
+            for (int i = 0; i < sentences.size(); i++) {
+                tokenCache.put(sentences.get(i), new INDArray[]{features.getRow(i).dup(), mask.getRow(i).dup()});
+            }
+        }
     }
 
 }
@@ -0,0 +1,174 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+package ai.konduit.serving.threadpool.batching;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.Observer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Batching scheduler shared by the engine thread pools.
+ * <p>
+ * Requests are added to the currently open {@link BatchedObservable}.
+ * A batch is closed once it holds batchLimit requests or once a worker takes it,
+ * and a worker holding a partial batch waits until the batch is full or its
+ * latency budget (maxBatchWaitMillis, counted from when the batch was opened) runs out.
+ * <p>
+ * When a target latency is configured, the scheduler records the end to end latency
+ * of completed batches and adjusts the batch limit every {@link #WINDOW} batches:
+ * the limit is halved when the observed p99 exceeds the target, and grows by one
+ * (up to the configured batch limit) while the p99 stays below 80% of the target.
+ *
+ * @param <INPUT_TYPE>      the input of a single request
+ * @param <OBSERVABLE_TYPE> the batched observable type handed to the workers
+ * @author Adam Gibson
+ */
+@Slf4j
+public class AdaptiveBatchScheduler<INPUT_TYPE, OBSERVABLE_TYPE extends BatchedObservable<INPUT_TYPE>> {
+
+    public static final int WINDOW = 100;
+
+    private final Object locker = new Object();
+    private final Supplier<OBSERVABLE_TYPE> observableFactory;
+    private final BlockingQueue<? super OBSERVABLE_TYPE> targetQueue;
+    private final int maxBatchLimit;
+    private final long maxBatchWaitNanos;
+    private final long targetLatencyNanos;
+    private final long[] latencies = new long[WINDOW];
+    private int numLatencies;
+    private volatile int batchLimit;
+    private volatile OBSERVABLE_TYPE currentObservable;
+
+    /**
+     * @param observableFactory   creates an empty batch
+     * @param targetQueue         the queue the workers take batches from
+     * @param batchLimit          the maximum number of requests in a batch
+     * @param maxBatchWaitMillis  the maximum time a partial batch waits for more requests, 0 to never wait
+     * @param targetLatencyMillis the p99 latency to keep batches under, 0 to keep the batch limit fixed
+     */
+    public AdaptiveBatchScheduler(@NonNull Supplier<OBSERVABLE_TYPE> observableFactory,
+                                  @NonNull BlockingQueue<? super OBSERVABLE_TYPE> targetQueue,
+                                  int batchLimit, long maxBatchWaitMillis, long targetLatencyMillis) {
+        if (batchLimit < 1)
+            throw new IllegalStateException("Batch limit should be positive value");
+
+        this.observableFactory = observableFactory;
+        this.targetQueue = targetQueue;
+        this.maxBatchLimit = batchLimit;
+        this.batchLimit = batchLimit;
+        this.maxBatchWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxBatchWaitMillis);
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+    }
+
+    /**
+     * Add a request to the currently open batch, opening a new one if needed.
+     * New batches are put on the worker queue outside of the scheduler lock,
+     * so a full queue only blocks the request that opened the batch.
+     *
+     * @param observer the observer to notify once the batch completes
+     * @param input    the request input
+     * @return the batch the request was added to
+     */
+    public OBSERVABLE_TYPE setInput(@NonNull Observer observer, @NonNull INPUT_TYPE input) {
+        boolean isNew = false;
+        OBSERVABLE_TYPE observable;
+        synchronized (locker) {
+            if (currentObservable == null || currentObservable.getCounter() >= batchLimit
+                    || !currentObservable.canAccept(input) || currentObservable.isLocked()) {
+                isNew = true;
+                currentObservable = observableFactory.get();
+            }
+
+            currentObservable.addInput(input);
+            currentObservable.addObserver(observer);
+            observable = currentObservable;
+        }
+
+        if (isNew) {
+            try {
+                targetQueue.put(observable);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        return observable;
+    }
+
+    /**
+     * Called by a worker before it takes the inputs of a batch:
+     * waits for the batch to fill up within its latency budget.
+     *
+     * @param observable the batch taken from the queue
+     * @throws InterruptedException if the worker is interrupted
+     */
+    public void awaitBatch(@NonNull OBSERVABLE_TYPE observable) throws InterruptedException {
+        if (maxBatchWaitNanos > 0)
+            observable.awaitBatch(batchLimit, observable.getCreationNanos() + maxBatchWaitNanos);
+    }
+
+    /**
+     * Called by a worker once the outputs of a batch have been set.
+     *
+     * @param observable the completed batch
+     */
+    public void batchCompleted(@NonNull OBSERVABLE_TYPE observable) {
+        if (targetLatencyNanos <= 0)
+            return;
+
+        long latency = System.nanoTime() - observable.getCreationNanos();
+        synchronized (latencies) {
+            latencies[numLatencies++] = latency;
+            if (numLatencies < WINDOW)
+                return;
+
+            numLatencies = 0;
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            long p99 = sorted[(int) Math.ceil(0.99 * WINDOW) - 1];
+
+            int current = batchLimit;
+            if (p99 > targetLatencyNanos) {
+                batchLimit = Math.max(1, current / 2);
+            } else if (p99 < targetLatencyNanos * 0.8 && current < maxBatchLimit) {
+                batchLimit = current + 1;
+            }
+
+            if (batchLimit != current)
+                log.debug("Observed p99 latency of {} ms, batch limit changed from {} to {}",
+                        TimeUnit.NANOSECONDS.toMillis(p99), current, batchLimit);
+        }
+    }
+
+    /**
+     * @return the batch limit currently in use
+     */
+    public int getBatchLimit() {
+        return batchLimit;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+package ai.konduit.serving.threadpool.batching;
+
+import java.util.Observer;
+
+/**
+ * An observable that accumulates the inputs of several requests
+ * so that they can be executed by a thread pool worker as one batch.
+ * Implementations are fed by an {@link AdaptiveBatchScheduler}.
+ *
+ * @param <INPUT_TYPE> the input of a single request
+ * @author Adam Gibson
+ */
+public interface BatchedObservable<INPUT_TYPE> {
+
+    /**
+     * Add the input of a single request to this batch.
+     * This is invoked from the requesting thread, which
+     * later retrieves its own output from the observable.
+     *
+     * @param input the input to add
+     */
+    void addInput(INPUT_TYPE input);
+
+    void addObserver(Observer observer);
+
+    /**
+     * @return the number of requests added to this batch so far
+     */
+    int getCounter();
+
+    /**
+     * @return true if a worker has already taken the inputs of this batch
+     */
+    boolean isLocked();
+
+    /**
+     * @return the {@link System#nanoTime()} at which this batch was opened
+     */
+    long getCreationNanos();
+
+    /**
+     * Blocks until either batchLimit requests have been added
+     * or the given deadline has passed, whichever comes first.
+     *
+     * @param batchLimit    the number of requests after which the batch is considered full
+     * @param deadlineNanos the {@link System#nanoTime()} after which the batch is run regardless of its size
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    void awaitBatch(int batchLimit, long deadlineNanos) throws InterruptedException;
+
+    /**
+     * Whether the given input can be batched together with the inputs already added.
+     * When false, the scheduler closes this batch and opens a new one for the input.
+     *
+     * @param input the input to check
+     * @return true if the input can join this batch
+     */
+    default boolean canAccept(INPUT_TYPE input) {
+        return true;
+    }
+}
@@ -23,6 +23,7 @@ package ai.konduit.serving.threadpool.onnx;
 
 
 import ai.konduit.serving.model.loader.ModelLoader;
+import ai.konduit.serving.threadpool.batching.AdaptiveBatchScheduler;
 import ai.konduit.serving.threadpool.onnx.observables.BasicOnnxInferenceObservable;
 import ai.konduit.serving.threadpool.onnx.observables.BatchedOnnxInferenceObservable;
 import ai.konduit.serving.threadpool.onnx.observables.OnnxObservable;
@@ -63,16 +64,20 @@ public class ONNXThreadPool {
     public static final int DEFAULT_BATCH_LIMIT = 32;
     public static final InferenceMode DEFAULT_INFERENCE_MODE = InferenceMode.BATCHED;
     public static final int DEFAULT_QUEUE_LIMIT = 64;
+    public static final long DEFAULT_MAX_BATCH_WAIT_MILLIS = 0;
+    public static final long DEFAULT_TARGET_LATENCY_MILLIS = 0;
     private ModelLoader<Session> onnxModelLoader;
     private long nanos;
     private int workers;
     private int batchLimit;
     private InferenceMode inferenceMode;
     private int queueLimit;
+    private long maxBatchWaitMillis;
+    private long targetLatencyMillis;
     // this queue
     private BlockingQueue<OnnxObservable> observables;
     private InferenceWorker[] zoo;
-    private ObservablesProvider provider;
+    private AdaptiveBatchScheduler<List<Map<String, INDArray>>, BatchedOnnxInferenceObservable> provider;
 
 
     protected void init() {
@@ -98,7 +103,8 @@ public class ONNXThreadPool {
 
         if (inferenceMode == InferenceMode.BATCHED) {
             log.debug("Initializing ObservablesProvider...");
-            provider = new ObservablesProvider(batchLimit, observables);
+            provider = new AdaptiveBatchScheduler<>(BatchedOnnxInferenceObservable::new, observables,
+                    batchLimit, maxBatchWaitMillis, targetLatencyMillis);
         }
     }
 
@@ -174,6 +180,8 @@ public class ONNXThreadPool {
         private int batchLimit = DEFAULT_BATCH_LIMIT;
         private InferenceMode inferenceMode = DEFAULT_INFERENCE_MODE;
         private int queueLimit = DEFAULT_QUEUE_LIMIT;
+        private long maxBatchWaitMillis = DEFAULT_MAX_BATCH_WAIT_MILLIS;
+        private long targetLatencyMillis = DEFAULT_TARGET_LATENCY_MILLIS;
 
         public Builder(@NonNull ModelLoader<Session> onnxModelLoader) {
             this.onnxModelLoader = onnxModelLoader;
@@ -246,6 +254,47 @@ public class ONNXThreadPool {
             return this;
         }
 
+        /**
+         * This method defines how long a partial batch may wait
+         * for more inputs, counted from when the batch was opened.
+         * <p>
+         * Default value: 0 (run whatever has been queued immediately)
+         * <p>
+         * PLEASE NOTE: This value has no effect in
+         * SEQUENTIAL inference mode
+         *
+         * @param millis the maximum wait in milliseconds
+         * @return the builder
+         */
+        public Builder maxBatchWaitMillis(long millis) {
+            if (millis < 0)
+                throw new IllegalStateException("Max batch wait should be non-negative value");
+
+            this.maxBatchWaitMillis = millis;
+            return this;
+        }
+
+        /**
+         * This method defines the p99 latency the batch limit
+         * is adapted to. The batch limit set by {@link #batchLimit(int)}
+         * becomes the upper bound of the adapted limit.
+         * <p>
+         * Default value: 0 (fixed batch limit)
+         * <p>
+         * PLEASE NOTE: This value has no effect in
+         * SEQUENTIAL inference mode
+         *
+         * @param millis the target latency in milliseconds
+         * @return the builder
+         */
+        public Builder targetLatencyMillis(long millis) {
+            if (millis < 0)
+                throw new IllegalStateException("Target latency should be non-negative value");
+
+            this.targetLatencyMillis = millis;
+            return this;
+        }
+
         /**
          * This method builds new ONNXThreadPool instance
          *
@@ -255,6 +304,8 @@ public class ONNXThreadPool {
             ONNXThreadPool inference = new ONNXThreadPool();
             inference.batchLimit = this.batchLimit;
             inference.queueLimit = this.queueLimit;
+            inference.maxBatchWaitMillis = this.maxBatchWaitMillis;
+            inference.targetLatencyMillis = this.targetLatencyMillis;
             inference.inferenceMode = this.inferenceMode;
             inference.workers = this.workers;
             inference.onnxModelLoader = this.onnxModelLoader;
@@ -264,42 +315,6 @@ public class ONNXThreadPool {
         }
     }
 
-    protected static class ObservablesProvider {
-        private final Object locker = new Object();
-        private BlockingQueue<OnnxObservable> targetQueue;
-        private int batchLimit;
-        private volatile BatchedOnnxInferenceObservable currentObservable;
-
-        protected ObservablesProvider(int batchLimit, @NonNull BlockingQueue<OnnxObservable> queue) {
-            this.targetQueue = queue;
-            this.batchLimit = batchLimit;
-        }
-
-        protected OnnxObservable setInput(@NonNull Observer observer, List<Map<String, INDArray>> input) {
-            synchronized (locker) {
-                boolean isNew = false;
-                if (currentObservable == null || currentObservable.getCounter() >= batchLimit
-                        || currentObservable.isLocked()) {
-                    isNew = true;
-                    currentObservable = new BatchedOnnxInferenceObservable();
-                }
-
-                currentObservable.addInput(input);
-                currentObservable.addObserver(observer);
-
-                try {
-                    if (isNew)
-                        targetQueue.put(currentObservable);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException(e);
-                }
-
-                return currentObservable;
-            }
-        }
-    }
-
     /**
      * This class actually does inference with respect to device affinity
      */
@@ -337,6 +352,8 @@ public class ONNXThreadPool {
                      PointerPointer<BytePointer> outputNodeNames = new PointerPointer<>(numOutputNodes)) {
 
                     LongPointer[] inputNodeDims = new LongPointer[(int) numInputNodes];
+                    // inputs can only be concatenated when every input has a dynamic batch dimension
+                    boolean dynamicBatch = true;
 
                     for (int i = 0; i < numOutputNodes; i++) {
                         BytePointer outputName = replicatedModel.GetOutputName(i, allocator.asOrtAllocator());
@@ -357,20 +374,45 @@ public class ONNXThreadPool {
                         inputNodeDims[i] = tensorInfo.GetShape();
 
                         int acc = 1;
-                        for (long j = 0; j < inputNodeDims[i].capacity(); j++)
+                        for (long j = 0; j < inputNodeDims[i].capacity(); j++) {
+                            if (inputNodeDims[i].get(j) <= 0) {
+                                // dynamic dimension, the size is only known once an input arrives
+                                acc = -1;
+                                break;
+                            }
                             acc *= inputNodeDims[i].get(j);
+                        }
 
                         inputSizes[i] = acc;
+                        if (inputNodeDims[i].capacity() == 0 || inputNodeDims[i].get(0) > 0)
+                            dynamicBatch = false;
                     }
 
                     while (shouldWork.get()) {
                         OnnxObservable request = inputQueue.take();
                         counter.incrementAndGet();
 
-                        List<Map<String, INDArray>> out = doBatchInference(request, replicatedModel, inputNodeNames, outputNodeNames, inputTypes,
-                                inputSizes, inputNodeDims);
-
-                        request.setOutputBatches(out);
+                        try {
+                            BatchedOnnxInferenceObservable batched = null;
+                            if (request instanceof BatchedOnnxInferenceObservable) {
+                                batched = (BatchedOnnxInferenceObservable) request;
+                                batched.setConcatenate(dynamicBatch);
+                                provider.awaitBatch(batched);
+                            }
+
+                            List<Map<String, INDArray>> out = doBatchInference(request, replicatedModel, inputNodeNames, outputNodeNames, inputTypes,
+                                    inputSizes, inputNodeDims);
+
+                            request.setOutputBatches(out);
+                            if (batched != null)
+                                provider.batchCompleted(batched);
+                        } catch (InterruptedException e) {
+                            request.setOutputException(e);
+                            throw e;
+                        } catch (Exception e) {
+                            log.error("Error occurred doing inference", e);
+                            request.setOutputException(e);
+                        }
 
                     }
                 }
@@ -407,43 +449,56 @@ public class ONNXThreadPool {
 
             List<Map<String, INDArray>> out = new ArrayList<>(batches.size());
 
-            try {
-                for (Map<String, INDArray> inBatch : batches) {
-                    Value[] inputTensors = new Value[(int) numInputNodes];
+            for (Map<String, INDArray> inBatch : batches) {
+                Value[] inputTensors = new Value[(int) numInputNodes];
+                //the tensors point into these arrays, so they must stay reachable until Run returns
+                List<INDArray> tensorData = new ArrayList<>((int) numInputNodes);
 
-                    for (int i = 0; i < numInputNodes; i++) {
-                        BytePointer inputName = inputNodeNames.get(BytePointer.class, i);
-                        Value inputTensor = getTensor(inBatch.get(inputName.getString()), inputTypes[i], inputSizes[i], inputNodeDims[i]);
-                        inputTensors[i] = inputTensor;
-                    }
+                for (int i = 0; i < numInputNodes; i++) {
+                    BytePointer inputName = inputNodeNames.get(BytePointer.class, i);
+                    Value inputTensor = getTensor(inBatch.get(inputName.getString()), inputTypes[i], inputSizes[i], inputNodeDims[i], tensorData);
+                    inputTensors[i] = inputTensor;
+                }
 
-                    Value inputVal = new Value(numInputNodes);
+                Value inputVal = new Value(numInputNodes);
 
-                    for (int i = 0; i < numInputNodes; i++) {
-                        inputVal.position(i).put(inputTensors[i]);
-                    }
+                for (int i = 0; i < numInputNodes; i++) {
+                    inputVal.position(i).put(inputTensors[i]);
+                }
 
-                    ValueVector outputVector = replicatedModel.Run(new RunOptions(), inputNodeNames, inputVal.position(0), numInputNodes, outputNodeNames, numOutputNodes);
+                ValueVector outputVector = replicatedModel.Run(new RunOptions(), inputNodeNames, inputVal.position(0), numInputNodes, outputNodeNames, numOutputNodes);
+                tensorData.clear();
 
-                    Map<String, INDArray> output = new LinkedHashMap<>();
+                Map<String, INDArray> output = new LinkedHashMap<>();
 
-                    for (int i = 0; i < numOutputNodes; i++) {
-                        Value outValue = outputVector.get(i);
+                for (int i = 0; i < numOutputNodes; i++) {
+                    Value outValue = outputVector.get(i);
 
-                        DataBuffer buffer = getDataBuffer(outValue);
-                        INDArray outArray = Nd4j.create(buffer);
-                        output.put((outputNodeNames.get(BytePointer.class, i)).getString(), outArray);
+                    DataBuffer buffer = getDataBuffer(outValue);
+                    // keep the session's output shape, merged batches are also split back along dimension 0
+                    LongPointer outShape = outValue.GetTensorTypeAndShapeInfo().GetShape();
+                    long[] shape = new long[(int) outShape.capacity()];
+                    outShape.get(shape);
+                    INDArray outArray = Nd4j.create(buffer).reshape(shape);
+                    output.put((outputNodeNames.get(BytePointer.class, i)).getString(), outArray);
 
-                    }
-                    out.add(output);
                 }
-            } catch (Exception e) {
-                log.error("Error occurred doing inference", e);
+                out.add(output);
             }
             return out;
         }
 
-        private Value getTensor(INDArray ndArray, int type, long size, LongPointer dims) {
+        private Value getTensor(INDArray ndArray, int type, long size, LongPointer dims, List<INDArray> tensorData) {
+            if (ndArray.isView() || ndArray.ordering() != 'c')
+                ndArray = ndArray.dup('c');
+            tensorData.add(ndArray);
+
+            if (size <= 0) {
+                // dynamic dimensions in the model input, take the shape from the (possibly batched) array itself
+                size = ndArray.length();
+                dims = new LongPointer(ndArray.shape());
+            }
+
             Pointer inputTensorValuesPtr = ndArray.data().pointer();
 
             long sizeInBytes;
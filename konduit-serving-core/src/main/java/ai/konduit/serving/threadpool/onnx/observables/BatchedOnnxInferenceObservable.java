@@ -21,21 +21,34 @@
 
 package ai.konduit.serving.threadpool.onnx.observables;
 
+import ai.konduit.serving.threadpool.batching.BatchedObservable;
 import lombok.Data;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * This class holds the inputs of several requests and implements the BATCHED use case:
+ * compatible inputs are concatenated along dimension 0 so the session runs once,
+ * and the outputs are sliced back to each request by row offsets.
+ * <p>
+ * Inputs are compatible when every request supplies the same input names and,
+ * per name, arrays of the same data type whose shapes match on every dimension
+ * except dimension 0. Incompatible requests fall back to one run per request.
+ */
 @Data
 @NoArgsConstructor
-public class BatchedOnnxInferenceObservable extends Observable implements OnnxObservable {
+public class BatchedOnnxInferenceObservable extends Observable implements OnnxObservable, BatchedObservable<List<Map<String, INDArray>>> {
 
     private final Object locker = new Object();
     protected Exception exception;
@@ -49,6 +62,11 @@ public class BatchedOnnxInferenceObservable extends Observable implements OnnxOb
     private ReentrantReadWriteLock realLocker = new ReentrantReadWriteLock();
     private AtomicBoolean isLocked = new AtomicBoolean(false);
     private AtomicBoolean isReadLocked = new AtomicBoolean(false);
+    private long creationNanos = System.nanoTime();
+    //whether inputs may be concatenated along dimension 0, false for models with a fixed batch size
+    private boolean concatenate = true;
+    //whether the last call to getInputBatches() merged all inputs into a single batch
+    private boolean merged = false;
 
 
     public BatchedOnnxInferenceObservable(List<Map<String, INDArray>> inputs) {
@@ -66,8 +84,22 @@ public class BatchedOnnxInferenceObservable extends Observable implements OnnxOb
 
             if (isReadLocked.get())
                 realLocker.readLock().unlock();
+
+            locker.notifyAll();
+        }
+    }
+
+    @Override
+    public void awaitBatch(int batchLimit, long deadlineNanos) throws InterruptedException {
+        synchronized (locker) {
+            while (counter.get() < batchLimit) {
+                long remaining = deadlineNanos - System.nanoTime();
+                if (remaining <= 0)
+                    break;
+
+                TimeUnit.NANOSECONDS.timedWait(locker, remaining);
+            }
         }
-        this.input = input;
     }
 
 
@@ -76,32 +108,98 @@ public class BatchedOnnxInferenceObservable extends Observable implements OnnxOb
         realLocker.writeLock().lock();
         isLocked.set(true);
 
-        outputBatchInputArrays.clear();
+        try {
+            outputBatchInputArrays.clear();
+            merged = false;
 
-        // this method should pile individual examples into single batch
+            if (input.size() == 1) {
+                outputBatchInputArrays.add(new int[]{0, (int) rows(input.get(0))});
+                return Collections.singletonList(input.get(0));
+            }
 
-        if (counter.get() > 1) {
+            if (!concatenate || !canConcatenate(input)) {
+                return new ArrayList<>(input);
+            }
 
-            int pos = 0;
-            List<Map<String, INDArray>> out = new ArrayList<>(input);
-            realLocker.writeLock().unlock();
-            return out;
-        } else {
-            outputBatchInputArrays.add(new int[]{0, 0});
+            // pile individual examples into a single batch, recording the rows each request occupies
+            int offset = 0;
+            for (Map<String, INDArray> in : input) {
+                int numRows = (int) rows(in);
+                outputBatchInputArrays.add(new int[]{offset, offset + numRows});
+                offset += numRows;
+            }
+
+            Map<String, INDArray> batch = new LinkedHashMap<>();
+            for (String name : input.get(0).keySet()) {
+                INDArray[] toConcat = new INDArray[input.size()];
+                for (int i = 0; i < toConcat.length; i++) {
+                    toConcat[i] = input.get(i).get(name);
+                }
+
+                batch.put(name, Nd4j.concat(0, toConcat));
+            }
+
+            merged = true;
+            return Collections.singletonList(batch);
+        } finally {
             realLocker.writeLock().unlock();
-            return Collections.singletonList(input.get(0));
         }
     }
 
 
     @Override
     public void setOutputBatches(List<Map<String, INDArray>> output) {
-        //this method should split batched output INDArray[] into multiple separate INDArrays
-        this.output = output;
+        if (!merged) {
+            this.output = output;
+        } else {
+            // split the batched outputs back into one output per request
+            Map<String, INDArray> batch = output.get(0);
+            int totalRows = outputBatchInputArrays.get(outputBatchInputArrays.size() - 1)[1];
+            List<Map<String, INDArray>> split = new ArrayList<>(outputBatchInputArrays.size());
+            for (int i = 0; i < outputBatchInputArrays.size(); i++) {
+                split.add(new LinkedHashMap<>());
+            }
+
+            for (Map.Entry<String, INDArray> entry : batch.entrySet()) {
+                INDArray out = entry.getValue();
+                if (out.rank() == 0 || out.size(0) != totalRows) {
+                    setOutputException(new IllegalStateException("Output " + entry.getKey() + " with shape " + Arrays.toString(out.shape())
+                            + " does not have a batch dimension of " + totalRows + " rows"));
+                    return;
+                }
+
+                for (int i = 0; i < outputBatchInputArrays.size(); i++) {
+                    int[] rows = outputBatchInputArrays.get(i);
+                    split.get(i).put(entry.getKey(), out.get(NDArrayIndex.interval(rows[0], rows[1])).dup());
+                }
+            }
+
+            this.output = split;
+        }
+
         this.setChanged();
         notifyObservers();
     }
 
+    /**
+     * Returns the output belonging to the calling thread's input.
+     * The position is recorded by {@link #addInput(List)}, which is
+     * invoked from the same thread that later waits on the output.
+     *
+     * @return a singleton list with the output for the caller's input
+     */
+    @Override
+    public List<Map<String, INDArray>> getOutput() {
+        if (exception != null) {
+            if (exception instanceof RuntimeException)
+                throw (RuntimeException) exception;
+            throw new RuntimeException("Exception encountered while getting output: " + exception.getMessage(), exception);
+        }
+
+        Integer pos = position.get();
+        return Collections.singletonList(output.get(pos == null ? 0 : pos));
+    }
+
     @Override
     public Exception getOutputException() {
         return exception;
@@ -110,6 +208,8 @@ public class BatchedOnnxInferenceObservable extends Observable implements OnnxOb
     @Override
     public void setOutputException(Exception e) {
         this.exception = e;
+        this.setChanged();
+        notifyObservers();
     }
 
     /**
@@ -144,5 +244,37 @@ public class BatchedOnnxInferenceObservable extends Observable implements OnnxOb
         return result;
     }
 
+    private static long rows(Map<String, INDArray> in) {
+        INDArray first = in.values().iterator().next();
+        return first.rank() == 0 ? 1 : first.size(0);
+    }
+
+    private static boolean canConcatenate(List<Map<String, INDArray>> inputs) {
+        Map<String, INDArray> first = inputs.get(0);
+        for (Map<String, INDArray> in : inputs) {
+            if (!in.keySet().equals(first.keySet()))
+                return false;
+
+            long numRows = -1;
+            for (Map.Entry<String, INDArray> entry : in.entrySet()) {
+                INDArray arr = entry.getValue();
+                INDArray reference = first.get(entry.getKey());
+                if (arr == null || reference == null || arr.rank() == 0 || arr.rank() != reference.rank()
+                        || arr.dataType() != reference.dataType())
+                    return false;
 
+                for (int d = 1; d < arr.rank(); d++) {
+                    if (arr.size(d) != reference.size(d))
+                        return false;
+                }
+
+                //every input of a single request has to contribute the same number of rows
+                if (numRows >= 0 && arr.size(0) != numRows)
+                    return false;
+                numRows = arr.size(0);
+            }
+        }
+
+        return true;
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+package ai.konduit.serving.threadpool.replicas;
+
+import lombok.NonNull;
+import org.nd4j.base.Preconditions;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Function;
+
+/**
+ * A bounded pool of model replicas for models that are not thread safe.
+ * Each call to {@link #execute(Function)} borrows whichever replica is free,
+ * blocking while all replicas are in use, and returns it to the pool afterwards.
+ *
+ * @param <MODEL_TYPE> the model type to pool
+ * @author Adam Gibson
+ */
+public class ModelReplicaPool<MODEL_TYPE> {
+
+    private final BlockingQueue<MODEL_TYPE> replicas;
+    private final int numReplicas;
+
+    /**
+     * @param model       the model to replicate, used as the first replica
+     * @param numReplicas the total number of replicas including the model itself
+     * @param replicator  creates a new replica from the model
+     */
+    public ModelReplicaPool(@NonNull MODEL_TYPE model, int numReplicas, @NonNull Function<MODEL_TYPE, MODEL_TYPE> replicator) {
+        Preconditions.checkState(numReplicas > 0, "Number of replicas should be positive value, got %s", numReplicas);
+        this.numReplicas = numReplicas;
+        this.replicas = new ArrayBlockingQueue<>(numReplicas);
+        replicas.add(model);
+        for (int i = 1; i < numReplicas; i++) {
+            MODEL_TYPE replica = replicator.apply(model);
+            Preconditions.checkState(replica != null, "Unable to create model replica %s", i);
+            replicas.add(replica);
+        }
+    }
+
+    /**
+     * Run the given function on a free replica.
+     *
+     * @param function the inference to run
+     * @param <T>      the output type
+     * @return the output of the function
+     */
+    public <T> T execute(@NonNull Function<MODEL_TYPE, T> function) {
+        MODEL_TYPE replica;
+        try {
+            replica = replicas.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        try {
+            return function.apply(replica);
+        } finally {
+            replicas.add(replica);
+        }
+    }
+
+    /**
+     * @return the number of replicas in the pool
+     */
+    public int numReplicas() {
+        return numReplicas;
+    }
+}
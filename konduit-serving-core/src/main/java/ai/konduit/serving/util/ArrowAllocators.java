@@ -0,0 +1,155 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+
+package ai.konduit.serving.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.datavec.api.records.Record;
+import org.datavec.arrow.recordreader.ArrowRecord;
+import org.datavec.arrow.recordreader.ArrowWritableRecordBatch;
+import org.nd4j.base.Preconditions;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns the single arrow {@link RootAllocator} used for request conversion.
+ * <p>
+ * Each request gets its own child allocator from {@link #newRequestAllocator(String)},
+ * bounded by the per request limit. Closing the child allocator after the response
+ * has been written returns all of its vectors to the root, so a leaked vector shows up
+ * as an error at close time instead of as growing off-heap memory.
+ * Arrow recycles the released buffers through its pooled allocator,
+ * so repeated requests with the same schema reuse the same memory.
+ */
+@Slf4j
+public class ArrowAllocators {
+
+    private static final BufferAllocator ROOT = new RootAllocator(Long.MAX_VALUE);
+    private static final AtomicLong REQUEST_LIMIT = new AtomicLong(Long.MAX_VALUE);
+    private static final AtomicLong REQUEST_COUNTER = new AtomicLong();
+
+    private ArrowAllocators() {
+    }
+
+    /**
+     * @return the root allocator shared by the server
+     */
+    public static BufferAllocator root() {
+        return ROOT;
+    }
+
+    /**
+     * Set the memory limits in bytes. A limit of 0 or less means unbounded.
+     *
+     * @param maxMemory        the limit across all requests
+     * @param maxRequestMemory the limit for a single request
+     */
+    public static void configure(long maxMemory, long maxRequestMemory) {
+        ROOT.setLimit(maxMemory > 0 ? maxMemory : Long.MAX_VALUE);
+        REQUEST_LIMIT.set(maxRequestMemory > 0 ? maxRequestMemory : Long.MAX_VALUE);
+    }
+
+    /**
+     * Create a child allocator for a single request.
+     * The caller owns the allocator and must close it (and
+     * any vectors allocated from it) once the request is done.
+     *
+     * @param name a name to identify the request in allocator errors
+     * @return the child allocator
+     */
+    public static BufferAllocator newRequestAllocator(String name) {
+        Preconditions.checkNotNull(name, "Allocator name must not be null!");
+        return ROOT.newChildAllocator(name + "-" + REQUEST_COUNTER.incrementAndGet(), 0, REQUEST_LIMIT.get());
+    }
+
+    /**
+     * Close a request allocator, logging instead of throwing when
+     * vectors were not released, so a leak can't fail the response.
+     *
+     * @param allocator the allocator to close, may be null
+     */
+    public static void closeQuietly(BufferAllocator allocator) {
+        if (allocator == null || allocator == ROOT)
+            return;
+
+        try {
+            allocator.close();
+        } catch (Exception e) {
+            log.warn("Unable to close arrow allocator " + allocator.getName(), e);
+        }
+    }
+
+    /**
+     * Close the arrow batches behind the given records, then the allocator they were
+     * allocated from. Closing the allocator alone is not enough: vectors still
+     * referenced by a batch keep their buffers, and the allocator stays open under the root.
+     *
+     * @param allocator the allocator to close, may be null
+     * @param records   the records converted with the allocator, may be null
+     */
+    public static void release(BufferAllocator allocator, Record[] records) {
+        if (records != null) {
+            Set<ArrowWritableRecordBatch> batches = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Record record : records) {
+                if (record instanceof ArrowRecord) {
+                    batches.add(ArrowUtils.getBatchFromRecord((ArrowRecord) record));
+                }
+            }
+
+            for (ArrowWritableRecordBatch batch : batches) {
+                try {
+                    batch.close();
+                } catch (Exception e) {
+                    log.warn("Unable to close arrow batch", e);
+                }
+            }
+        }
+
+        closeQuietly(allocator);
+    }
+
+    /**
+     * @return the number of bytes currently allocated across all requests
+     */
+    public static long allocatedMemory() {
+        return ROOT.getAllocatedMemory();
+    }
+
+    /**
+     * @return the highest number of bytes allocated at any one time
+     */
+    public static long peakMemoryAllocation() {
+        return ROOT.getPeakMemoryAllocation();
+    }
+
+    /**
+     * @return the number of request allocators that are still open
+     */
+    public static int openRequestAllocators() {
+        return ROOT.getChildAllocators().size();
+    }
+}
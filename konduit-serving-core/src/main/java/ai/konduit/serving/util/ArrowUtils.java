@@ -229,8 +229,12 @@ public class ArrowUtils {
     }
 
     public static void writeRecordBatchTo(List<List<Writable>> recordBatch, Schema inputSchema, OutputStream outputStream) {
-        BufferAllocator bufferAllocator = new RootAllocator(9223372036854775807L);
-        writeRecordBatchTo(bufferAllocator, recordBatch, inputSchema, outputStream);
+        BufferAllocator bufferAllocator = ArrowAllocators.newRequestAllocator("arrow-response");
+        try {
+            writeRecordBatchTo(bufferAllocator, recordBatch, inputSchema, outputStream);
+        } finally {
+            ArrowAllocators.closeQuietly(bufferAllocator);
+        }
     }
 
     public static void writeRecordBatchTo(BufferAllocator bufferAllocator, List<List<Writable>> recordBatch, Schema inputSchema, OutputStream outputStream) {
@@ -250,14 +254,17 @@ public class ArrowUtils {
         convertedSchema = toArrowSchema(inputSchema);
         columns = toArrowColumns(bufferAllocator, inputSchema, recordBatch);
 
+        root = new VectorSchemaRoot(convertedSchema, columns, recordBatch.size());
         try {
-            root = new VectorSchemaRoot(convertedSchema, columns, recordBatch.size());
             writer = new ArrowFileWriter(root, providerForVectors(columns, convertedSchema.getFields()), Channels.newChannel(outputStream));
             writer.start();
             writer.writeBatch();
             writer.end();
         } catch (IOException var9) {
             throw new IllegalStateException(var9);
+        } finally {
+            //the columns were created for this write only
+            root.close();
         }
     }
 
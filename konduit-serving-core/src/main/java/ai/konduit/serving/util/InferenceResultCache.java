@@ -0,0 +1,451 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+
+package ai.konduit.serving.util;
+
+import ai.konduit.serving.config.ResultCacheConfig;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.web.RoutingContext;
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.base.Preconditions;
+import org.nd4j.shade.guava.hash.HashCode;
+import org.nd4j.shade.guava.hash.Hasher;
+import org.nd4j.shade.guava.hash.Hashing;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size bounded cache of encoded inference responses, see {@link ResultCacheConfig}.
+ * <p>
+ * Responses are keyed by a 128 bit murmur3 hash of the raw request body, or of the names and
+ * contents of multipart uploads (see {@link ContentHasher}), together with the endpoint and
+ * output format, and stored in direct (off heap) buffers.
+ * Eviction is least recently used by total response size.
+ * A response that is being written keeps its buffer alive until the write completes,
+ * even if it is evicted in the meantime.
+ * <p>
+ * The cache is shared by all verticles serving the same pipeline, see {@link #shared(String, ResultCacheConfig)},
+ * and its responses are released once the last of them calls {@link #release(String)}.
+ */
+@Slf4j
+public class InferenceResultCache implements MeterBinder {
+
+    private static final Map<String, InferenceResultCache> SHARED = new ConcurrentHashMap<>();
+
+    private final ResultCacheConfig config;
+    private final long ttlNanos;
+    private final LinkedHashMap<Key, CachedResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Key, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private long sizeBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    //number of verticles using the shared cache, guarded by SHARED
+    private int users;
+
+    public InferenceResultCache(ResultCacheConfig config) {
+        this.config = config;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(config.getTtlMillis());
+    }
+
+    /**
+     * The cache for the given pipeline, created on first use.
+     * Each caller must call {@link #release(String)} once it no longer uses the cache.
+     *
+     * @param pipelineId identifies the pipeline, for example its json configuration
+     * @param config     the cache configuration
+     * @return the cache shared by all callers with the same pipeline id
+     */
+    public static InferenceResultCache shared(String pipelineId, ResultCacheConfig config) {
+        return SHARED.compute(pipelineId, (id, cache) -> {
+            InferenceResultCache ret = cache == null ? new InferenceResultCache(config) : cache;
+            ret.users++;
+            return ret;
+        });
+    }
+
+    /**
+     * Stop using the shared cache of the given pipeline, see {@link #shared(String, ResultCacheConfig)}.
+     * The cache is removed and its responses released once it has no users left.
+     *
+     * @param pipelineId identifies the pipeline
+     */
+    public static void release(String pipelineId) {
+        InferenceResultCache[] removed = new InferenceResultCache[1];
+        SHARED.computeIfPresent(pipelineId, (id, cache) -> {
+            if (--cache.users > 0)
+                return cache;
+            removed[0] = cache;
+            return null;
+        });
+
+        if (removed[0] != null)
+            removed[0].clear();
+    }
+
+    /**
+     * @param pipelineId identifies the pipeline
+     * @return true if a shared cache exists for the pipeline
+     */
+    public static boolean isShared(String pipelineId) {
+        return SHARED.containsKey(pipelineId);
+    }
+
+    /**
+     * Create the key for a request
+     *
+     * @param endpoint     the endpoint, including the prediction type and input format
+     * @param outputFormat the output format of the response
+     * @param body         the raw request body
+     * @return the key
+     */
+    public static Key key(String endpoint, String outputFormat, Buffer body) {
+        ByteBuf bytes = body.getByteBuf();
+        HashCode hash;
+        if (bytes.hasArray()) {
+            hash = Hashing.murmur3_128().hashBytes(bytes.array(), bytes.arrayOffset() + bytes.readerIndex(), bytes.readableBytes());
+        } else {
+            hash = Hashing.murmur3_128().hashBytes(body.getBytes());
+        }
+
+        return key(endpoint, outputFormat, hash, body.length());
+    }
+
+    private static Key key(String endpoint, String outputFormat, HashCode hash, long length) {
+        ByteBuffer hashBytes = ByteBuffer.wrap(hash.asBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        return new Key(endpoint + "/" + outputFormat, hashBytes.getLong(), hashBytes.getLong(), length);
+    }
+
+    /**
+     * Write the cached response for the key, if there is one
+     *
+     * @param ctx the context to respond to
+     * @param key the key of the request
+     * @return true if a cached response was written
+     */
+    public boolean respond(RoutingContext ctx, Key key) {
+        CachedResponse cached = get(key);
+        if (cached == null) {
+            misses.incrementAndGet();
+            return false;
+        }
+
+        hits.incrementAndGet();
+        AtomicBoolean released = new AtomicBoolean(false);
+        Handler<Void> release = v -> {
+            if (released.compareAndSet(false, true))
+                cached.content.release();
+        };
+        ctx.addBodyEndHandler(release);
+        ctx.response().closeHandler(release);
+
+        if (cached.contentType != null)
+            ctx.response().putHeader("Content-Type", cached.contentType);
+        ctx.response().putHeader("Content-Length", String.valueOf(cached.content.readableBytes()));
+        ctx.response().end(Buffer.buffer(cached.content.duplicate()));
+        return true;
+    }
+
+    /**
+     * Register a computation of the response for the key.
+     * Only one caller at a time computes the response for a key, see
+     * {@link ResultCacheConfig#isCollapseConcurrentRequests()}.
+     *
+     * @param key the key of the request
+     * @return null if the caller should compute the response and then call
+     * {@link #complete(Key, String, Buffer)} or {@link #fail(Key)}.
+     * Otherwise a future completed once the response computed by another caller is available
+     */
+    public CompletableFuture<Void> joinInFlight(Key key) {
+        if (!config.isCollapseConcurrentRequests())
+            return null;
+
+        return inFlight.putIfAbsent(key, new CompletableFuture<>());
+    }
+
+    /**
+     * Cache a computed response and release callers waiting for it
+     *
+     * @param key         the key of the request
+     * @param contentType the content type of the response, may be null
+     * @param body        the encoded response
+     */
+    public void complete(Key key, String contentType, Buffer body) {
+        try {
+            put(key, contentType, body);
+        } finally {
+            finish(key);
+        }
+    }
+
+    /**
+     * Release callers waiting for a response that could not be computed
+     *
+     * @param key the key of the request
+     */
+    public void fail(Key key) {
+        finish(key);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("inference.cache.hits", hits, AtomicLong::get)
+                .description("Inference requests answered from the result cache")
+                .register(registry);
+        FunctionCounter.builder("inference.cache.misses", misses, AtomicLong::get)
+                .description("Inference requests not found in the result cache")
+                .register(registry);
+        FunctionCounter.builder("inference.cache.evictions", evictions, AtomicLong::get)
+                .description("Responses evicted from the result cache, by size or age")
+                .register(registry);
+        Gauge.builder("inference.cache.size", this, InferenceResultCache::sizeBytes)
+                .description("Bytes of responses held off heap by the result cache")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("inference.cache.entries", this, InferenceResultCache::size)
+                .description("Responses held by the result cache")
+                .register(registry);
+    }
+
+    /**
+     * @return the total size of the cached responses
+     */
+    public synchronized long sizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * @return the number of cached responses
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Remove all responses from the cache
+     */
+    public synchronized void clear() {
+        for (CachedResponse cached : entries.values()) {
+            cached.content.release();
+        }
+
+        entries.clear();
+        sizeBytes = 0;
+    }
+
+    /**
+     * @param key the key of the request
+     * @return true if a response that has not expired is cached for the key
+     */
+    public synchronized boolean contains(Key key) {
+        return lookup(key) != null;
+    }
+
+    private synchronized CachedResponse get(Key key) {
+        CachedResponse cached = lookup(key);
+        if (cached != null) {
+            //released once the response is written
+            cached.content.retain();
+        }
+
+        return cached;
+    }
+
+    private CachedResponse lookup(Key key) {
+        CachedResponse cached = entries.get(key);
+        if (cached != null && ttlNanos > 0 && System.nanoTime() - cached.createdNanos > ttlNanos) {
+            remove(key);
+            evictions.incrementAndGet();
+            return null;
+        }
+
+        return cached;
+    }
+
+    private void put(Key key, String contentType, Buffer body) {
+        if (body.length() > config.getMaxSizeBytes()) {
+            log.debug("Not caching response of {} bytes, larger than the cache", body.length());
+            return;
+        }
+
+        ByteBuf content = Unpooled.directBuffer(body.length());
+        content.writeBytes(body.getByteBuf());
+        synchronized (this) {
+            remove(key);
+            entries.put(key, new CachedResponse(contentType, content, System.nanoTime()));
+            sizeBytes += content.readableBytes();
+
+            Iterator<Map.Entry<Key, CachedResponse>> eldest = entries.entrySet().iterator();
+            while (sizeBytes > config.getMaxSizeBytes() && eldest.hasNext()) {
+                CachedResponse evicted = eldest.next().getValue();
+                eldest.remove();
+                sizeBytes -= evicted.content.readableBytes();
+                evicted.content.release();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private void remove(Key key) {
+        CachedResponse removed = entries.remove(key);
+        if (removed != null) {
+            sizeBytes -= removed.content.readableBytes();
+            removed.content.release();
+        }
+    }
+
+    private void finish(Key key) {
+        CompletableFuture<Void> waiting = inFlight.remove(key);
+        if (waiting != null)
+            waiting.complete(null);
+    }
+
+    /**
+     * The cache key of a request
+     */
+    public static final class Key {
+        private final String endpoint;
+        private final long hash1, hash2;
+        private final long length;
+
+        private Key(String endpoint, long hash1, long hash2, long length) {
+            this.endpoint = endpoint;
+            this.hash1 = hash1;
+            this.hash2 = hash2;
+            this.length = length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return hash1 == other.hash1 && hash2 == other.hash2 && length == other.length && endpoint.equals(other.endpoint);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(hash1) + endpoint.hashCode();
+        }
+    }
+
+    /**
+     * Hashes the parts of a multipart request as they arrive, so the
+     * request can be looked up in the cache without holding its body as one buffer.
+     * Every part is hashed as its name followed by its content and length.
+     */
+    public static final class ContentHasher {
+        private final Hasher hasher = Hashing.murmur3_128().newHasher();
+        private long length;
+        private long partLength;
+        private HashCode hash;
+
+        /**
+         * Start a new part
+         *
+         * @param name the name of the part
+         */
+        public void startPart(String name) {
+            Preconditions.checkState(hash == null, "Content was already hashed");
+            byte[] nameBytes = name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+            hasher.putInt(nameBytes.length).putBytes(nameBytes);
+            length += nameBytes.length;
+            partLength = 0;
+        }
+
+        /**
+         * Add content of the current part
+         *
+         * @param bytes the content, its reader index is not changed
+         */
+        public void putBytes(ByteBuf bytes) {
+            Preconditions.checkState(hash == null, "Content was already hashed");
+            hasher.putBytes(bytes.nioBuffer());
+            partLength += bytes.readableBytes();
+            length += bytes.readableBytes();
+        }
+
+        /**
+         * End the current part
+         */
+        public void endPart() {
+            Preconditions.checkState(hash == null, "Content was already hashed");
+            hasher.putLong(partLength);
+        }
+
+        /**
+         * Create the key for the hashed request. No content can be added after this
+         *
+         * @param endpoint     the endpoint, including the prediction type and input format
+         * @param outputFormat the output format of the response
+         * @return the key
+         */
+        public Key key(String endpoint, String outputFormat) {
+            if (hash == null)
+                hash = hasher.hash();
+            return InferenceResultCache.key(endpoint, outputFormat, hash, length);
+        }
+    }
+
+    private static final class CachedResponse {
+        private final String contentType;
+        private final ByteBuf content;
+        private final long createdNanos;
+
+        private CachedResponse(String contentType, ByteBuf content, long createdNanos) {
+            this.contentType = contentType;
+            this.content = content;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
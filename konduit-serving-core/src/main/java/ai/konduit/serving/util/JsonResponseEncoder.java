@@ -0,0 +1,182 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+
+package ai.konduit.serving.util;
+
+import ai.konduit.serving.output.types.BatchOutput;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import org.datavec.api.records.Record;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.NullWritable;
+import org.datavec.api.writable.Writable;
+import org.nd4j.shade.jackson.core.JsonGenerator;
+import org.nd4j.shade.jackson.databind.ObjectMapper;
+import org.nd4j.shade.jackson.databind.ObjectWriter;
+import org.nd4j.shade.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes inference results as JSON straight into a {@link Buffer}
+ * in a single pass, without building intermediate strings or
+ * {@link io.vertx.core.json.JsonObject} trees.
+ * Output is compact unless pretty printing is requested.
+ *
+ * @author Adam Gibson
+ */
+public class JsonResponseEncoder {
+
+    private static final int INITIAL_CAPACITY = 4096;
+
+    //same configuration as ObjectMappers.json() but without indentation, pretty printing is set per generator
+    private static final ObjectMapper compactMapper = ObjectMappers.json().copy().disable(SerializationFeature.INDENT_OUTPUT);
+    private static final ObjectWriter compactWriter = compactMapper.writer();
+    private static final ObjectWriter prettyWriter = compactMapper.writer().with(SerializationFeature.INDENT_OUTPUT);
+
+    private JsonResponseEncoder() {
+    }
+
+    /**
+     * Encode adapted outputs as a json object from output name to {@link BatchOutput}.
+     *
+     * @param outputs the adapted outputs
+     * @param pretty  whether to pretty print the json
+     * @return the encoded json
+     * @throws IOException if an output can't be serialized
+     */
+    public static Buffer encode(Map<String, BatchOutput> outputs, boolean pretty) throws IOException {
+        ByteBuf byteBuf = Unpooled.buffer(INITIAL_CAPACITY);
+        try (ByteBufOutputStream outputStream = new ByteBufOutputStream(byteBuf)) {
+            (pretty ? prettyWriter : compactWriter).writeValue(outputStream, outputs);
+        }
+
+        return Buffer.buffer(byteBuf);
+    }
+
+    /**
+     * Encode records as a json array with one object per record.
+     * Values are named and typed by the output schema when there is one,
+     * otherwise they are written as strings named by their column index.
+     * {@link NullWritable} values are written as json null.
+     *
+     * @param records      the records to encode
+     * @param outputSchema the schema of the records, may be null
+     * @param pretty       whether to pretty print the json
+     * @return the encoded json
+     * @throws IOException if the json can't be written
+     */
+    public static Buffer encode(Record[] records, Schema outputSchema, boolean pretty) throws IOException {
+        ByteBuf byteBuf = Unpooled.buffer(INITIAL_CAPACITY);
+        try (JsonGenerator generator = createGenerator(byteBuf, pretty)) {
+            generator.writeStartArray();
+            for (Record record : records) {
+                List<Writable> writables = record.getRecord();
+                generator.writeStartObject();
+                for (int i = 0; i < writables.size(); i++) {
+                    generator.writeFieldName(outputSchema == null ? String.valueOf(i) : outputSchema.getName(i));
+                    if (writables.get(i) instanceof NullWritable) {
+                        //missing values, for example from a PMML model
+                        generator.writeNull();
+                        continue;
+                    }
+
+                    if (outputSchema == null) {
+                        generator.writeString(writables.get(i).toString());
+                        continue;
+                    }
+
+                    switch (outputSchema.getType(i)) {
+                        case Integer:
+                            generator.writeNumber(writables.get(i).toInt());
+                            break;
+                        case Long:
+                            generator.writeNumber(writables.get(i).toLong());
+                            break;
+                        case Float:
+                            generator.writeNumber(writables.get(i).toFloat());
+                            break;
+                        case Double:
+                            generator.writeNumber(writables.get(i).toDouble());
+                            break;
+                        case Boolean:
+                            generator.writeBoolean(Boolean.parseBoolean(writables.get(i).toString()));
+                            break;
+                        default:
+                            generator.writeString(writables.get(i).toString());
+                    }
+                }
+
+                generator.writeEndObject();
+            }
+
+            generator.writeEndArray();
+        }
+
+        return Buffer.buffer(byteBuf);
+    }
+
+    /**
+     * Encode a record of text values as a json object named by the output schema.
+     * Values holding a json object or array are embedded as json, anything else as a string.
+     *
+     * @param record       the record to encode
+     * @param outputSchema the schema of the record
+     * @param pretty       whether to pretty print the json
+     * @return the encoded json
+     * @throws IOException if a value isn't valid json or the json can't be written
+     */
+    public static Buffer encodeText(Record record, Schema outputSchema, boolean pretty) throws IOException {
+        ByteBuf byteBuf = Unpooled.buffer(INITIAL_CAPACITY);
+        try (JsonGenerator generator = createGenerator(byteBuf, pretty)) {
+            generator.writeStartObject();
+            List<Writable> writables = record.getRecord();
+            for (int i = 0; i < writables.size(); i++) {
+                String text = writables.get(i).toString();
+                generator.writeFieldName(outputSchema.getName(i));
+                if (!text.isEmpty() && (text.charAt(0) == '{' || text.charAt(0) == '[')) {
+                    generator.writeTree(compactMapper.readTree(text));
+                } else {
+                    generator.writeString(text);
+                }
+            }
+
+            generator.writeEndObject();
+        }
+
+        return Buffer.buffer(byteBuf);
+    }
+
+    private static JsonGenerator createGenerator(ByteBuf byteBuf, boolean pretty) throws IOException {
+        JsonGenerator generator = compactMapper.getFactory().createGenerator(new ByteBufOutputStream(byteBuf));
+        generator.setCodec(compactMapper);
+        if (pretty) {
+            generator.useDefaultPrettyPrinter();
+        }
+
+        return generator;
+    }
+}
@@ -0,0 +1,519 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+
+package ai.konduit.serving.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.nd4j.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A read only, memory mapped view of an array stored on disk
+ * either as a numpy (.npy) file or in the nd4j binary format
+ * written by {@link org.nd4j.serde.binary.BinarySerde}.
+ * <p>
+ * The file is mapped with {@link FileChannel#map(FileChannel.MapMode, long, long)}
+ * and pages are loaded on demand through the operating system's page cache,
+ * so opening a store is cheap regardless of the file size. Files larger than
+ * 2GB are mapped as several regions, each holding a whole number of rows
+ * (slices along the first dimension).
+ * <p>
+ * Stores obtained from {@link #shared(File)} are process wide: every thread
+ * reads from the same mapping. Rows are copied out into new arrays, so callers
+ * never hold references into the mapping.
+ *
+ * @author Adam Gibson
+ */
+@Slf4j
+public class MemMapArrayStore {
+
+    private static final byte[] NPY_MAGIC = {(byte) 0x93, 'N', 'U', 'M', 'P', 'Y'};
+    private static final Pattern NPY_DESCR = Pattern.compile("'descr'\\s*:\\s*'([<>|=])([a-z])(\\d+)'");
+    private static final Pattern NPY_FORTRAN_ORDER = Pattern.compile("'fortran_order'\\s*:\\s*(True|False)");
+    private static final Pattern NPY_SHAPE = Pattern.compile("'shape'\\s*:\\s*\\(([^)]*)\\)");
+
+    private static final long MAX_REGION_BYTES = Integer.MAX_VALUE;
+
+    private static final Map<String, MemMapArrayStore> SHARED = new ConcurrentHashMap<>();
+
+    private final DataType dataType;
+    private final long[] shape;
+    private final long[] rowShape;
+    private final long rows;
+    private final long rowBytes;
+    private final long rowsPerRegion;
+    private final MappedByteBuffer[] regions;
+    private volatile HotRowCache hotRows;
+
+    private MemMapArrayStore(FileChannel channel, long dataOffset, DataType dataType, long[] shape) throws IOException {
+        this.dataType = dataType;
+        this.shape = shape;
+        //a vector is stored as rows of single elements
+        this.rows = shape.length == 0 ? 1 : shape[0];
+        this.rowShape = shape.length == 0 ? new long[0] : Arrays.copyOfRange(shape, 1, shape.length);
+        long rowLength = 1;
+        for (long l : rowShape) {
+            rowLength *= l;
+        }
+
+        this.rowBytes = rowLength * dataType.width();
+        Preconditions.checkState(rowBytes <= MAX_REGION_BYTES, "Rows of %s bytes are too large to be memory mapped", rowBytes);
+        Preconditions.checkState(dataOffset + rows * rowBytes <= channel.size(),
+                "File is smaller than the %s bytes required by an array of shape %s", rows * rowBytes, Arrays.toString(shape));
+
+        this.rowsPerRegion = Math.max(1, MAX_REGION_BYTES / Math.max(1, rowBytes));
+        int numRegions = (int) Math.max(1, (rows + rowsPerRegion - 1) / rowsPerRegion);
+        this.regions = new MappedByteBuffer[numRegions];
+        for (int i = 0; i < numRegions; i++) {
+            long firstRow = i * rowsPerRegion;
+            long regionRows = Math.min(rowsPerRegion, rows - firstRow);
+            regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + firstRow * rowBytes, regionRows * rowBytes);
+        }
+    }
+
+    /**
+     * Get the store for a file, mapping it on first use.
+     * All callers share the same mapping.
+     *
+     * @param file the .npy or nd4j binary file
+     * @return the shared store
+     * @throws IOException if the file can't be read or has an unsupported format
+     */
+    public static MemMapArrayStore shared(File file) throws IOException {
+        try {
+            return SHARED.computeIfAbsent(file.getCanonicalPath(), path -> {
+                try {
+                    return open(new File(path));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Map a file. Files ending in npy are read as numpy files,
+     * anything else as the nd4j binary format.
+     *
+     * @param file the file to map
+     * @return a new store for the file
+     * @throws IOException if the file can't be read or has an unsupported format
+     */
+    public static MemMapArrayStore open(File file) throws IOException {
+        if (!file.exists()) {
+            throw new IllegalStateException("File not found at path " + file.getAbsolutePath());
+        }
+
+        long start = System.currentTimeMillis();
+        MemMapArrayStore store;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            store = file.getName().endsWith("npy") ? openNumpy(channel) : openNd4j(channel);
+        }
+
+        log.info("Memory mapped array of shape " + Arrays.toString(store.shape) + " and type " + store.dataType
+                + " from " + file.getAbsolutePath() + " in " + (System.currentTimeMillis() - start) + " milliseconds");
+        return store;
+    }
+
+    private static MemMapArrayStore openNumpy(FileChannel channel) throws IOException {
+        ByteBuffer preamble = read(channel, 0, 12).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[NPY_MAGIC.length];
+        preamble.get(magic);
+        if (!Arrays.equals(magic, NPY_MAGIC)) {
+            throw new IOException("Not a numpy file: invalid magic string");
+        }
+
+        int majorVersion = preamble.get(6);
+        long headerLength;
+        int headerStart;
+        if (majorVersion == 1) {
+            headerLength = preamble.getShort(8) & 0xFFFF;
+            headerStart = 10;
+        } else {
+            headerLength = preamble.getInt(8) & 0xFFFFFFFFL;
+            headerStart = 12;
+        }
+
+        String header = StandardCharsets.ISO_8859_1.decode(read(channel, headerStart, (int) headerLength)).toString();
+        Matcher descr = NPY_DESCR.matcher(header);
+        Matcher fortranOrder = NPY_FORTRAN_ORDER.matcher(header);
+        Matcher shapeMatcher = NPY_SHAPE.matcher(header);
+        if (!descr.find() || !fortranOrder.find() || !shapeMatcher.find()) {
+            throw new IOException("Invalid numpy header " + header);
+        }
+
+        if (fortranOrder.group(1).equals("True")) {
+            throw new IOException("Fortran ordered numpy arrays are not supported");
+        }
+
+        if (descr.group(1).equals(">") && !descr.group(3).equals("1")) {
+            throw new IOException("Big endian numpy arrays are not supported");
+        }
+
+        DataType dataType = numpyDataType(descr.group(2), Integer.parseInt(descr.group(3)));
+        String[] dims = shapeMatcher.group(1).split(",");
+        long[] shape = Arrays.stream(dims).map(String::trim).filter(s -> !s.isEmpty()).mapToLong(Long::parseLong).toArray();
+        return new MemMapArrayStore(channel, headerStart + headerLength, dataType, shape);
+    }
+
+    private static MemMapArrayStore openNd4j(FileChannel channel) throws IOException {
+        //BinarySerde layout: int rank, int data type ordinal, the long shape info buffer, then the data
+        ByteBuffer preamble = read(channel, 0, 8).order(ByteOrder.nativeOrder());
+        int rank = preamble.getInt();
+        int dataTypeOrdinal = preamble.getInt();
+        if (rank < 0 || dataTypeOrdinal < 0 || dataTypeOrdinal >= DataType.values().length) {
+            throw new IOException("Invalid nd4j binary header");
+        }
+
+        int shapeInfoLength = rank * 2 + 4;
+        ByteBuffer shapeInfo = read(channel, 8, shapeInfoLength * 8).order(ByteOrder.nativeOrder());
+        long[] shape = new long[rank];
+        for (int i = 0; i < rank; i++) {
+            shape[i] = shapeInfo.getLong((i + 1) * 8);
+        }
+
+        char order = (char) shapeInfo.getLong((shapeInfoLength - 1) * 8);
+        if (rank > 1 && order != 'c') {
+            throw new IOException("Only c ordered nd4j arrays are supported, found order " + order);
+        }
+
+        return new MemMapArrayStore(channel, 8 + shapeInfoLength * 8L, DataType.values()[dataTypeOrdinal], shape);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer ret = ByteBuffer.allocate(length);
+        while (ret.hasRemaining()) {
+            if (channel.read(ret, position + ret.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+
+        ret.flip();
+        return ret;
+    }
+
+    private static DataType numpyDataType(String kind, int width) throws IOException {
+        switch (kind + width) {
+            case "f2": return DataType.HALF;
+            case "f4": return DataType.FLOAT;
+            case "f8": return DataType.DOUBLE;
+            case "i1": return DataType.BYTE;
+            case "i2": return DataType.SHORT;
+            case "i4": return DataType.INT;
+            case "i8": return DataType.LONG;
+            case "u1": return DataType.UBYTE;
+            case "b1": return DataType.BOOL;
+            default:
+                throw new IOException("Unsupported numpy data type " + kind + width);
+        }
+    }
+
+    /**
+     * @return the data type of the array
+     */
+    public DataType dataType() {
+        return dataType;
+    }
+
+    /**
+     * @return the shape of the whole array
+     */
+    public long[] shape() {
+        return shape.clone();
+    }
+
+    /**
+     * @return the shape of a single row. Empty for vectors
+     */
+    public long[] rowShape() {
+        return rowShape.clone();
+    }
+
+    /**
+     * @return the number of rows: the size of the first dimension
+     */
+    public long rows() {
+        return rows;
+    }
+
+    /**
+     * @return the size of a single row in bytes
+     */
+    public long rowBytes() {
+        return rowBytes;
+    }
+
+    /**
+     * A read only view of the memory of a row.
+     *
+     * @param row the row index
+     * @return a buffer positioned on the row, with the row size as its remaining bytes
+     */
+    public ByteBuffer row(long row) {
+        Preconditions.checkArgument(row >= 0 && row < rows, "Row %s out of bounds for array with %s rows", row, rows);
+        ByteBuffer region = regions[(int) (row / rowsPerRegion)].duplicate();
+        int offset = (int) ((row % rowsPerRegion) * rowBytes);
+        region.limit(offset + (int) rowBytes).position(offset);
+        return region;
+    }
+
+    /**
+     * Copy a single row into a new array of shape {@link #rowShape()}
+     *
+     * @param row the row index
+     * @return the row
+     */
+    public INDArray getRow(long row) {
+        INDArray ret = Nd4j.createUninitialized(dataType, rowShape, 'c');
+        ret.data().asNio().put(row(row));
+        return ret;
+    }
+
+    /**
+     * Copy the rows in the range [from, to) into a new array
+     *
+     * @param from the first row, inclusive
+     * @param to   the last row, exclusive
+     * @return the rows, with the same shape as the stored array apart from the first dimension
+     */
+    public INDArray getRows(long from, long to) {
+        Preconditions.checkArgument(from >= 0 && from <= to && to <= rows, "Invalid row range [%s, %s) for array with %s rows", from, to, rows);
+        Preconditions.checkState((to - from) * rowBytes <= MAX_REGION_BYTES, "Unable to copy %s rows into a single array", to - from);
+        long[] retShape = shape.length == 0 ? new long[0] : shape.clone();
+        if (retShape.length > 0) {
+            retShape[0] = to - from;
+        }
+
+        INDArray ret = Nd4j.createUninitialized(dataType, retShape, 'c');
+        ByteBuffer target = ret.data().asNio();
+        long row = from;
+        while (row < to) {
+            //copy as many rows as possible from each mapped region at once
+            long regionEnd = Math.min(to, (row / rowsPerRegion + 1) * rowsPerRegion);
+            ByteBuffer region = row(row);
+            region.limit(region.position() + (int) ((regionEnd - row) * rowBytes));
+            target.put(region);
+            row = regionEnd;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Copy the whole array
+     *
+     * @return the array
+     */
+    public INDArray getArray() {
+        return getRows(0, rows);
+    }
+
+    /**
+     * Enable a cache of the most recently used rows. Rows served from the
+     * cache don't touch the mapping, which keeps skewed lookups off the
+     * page cache. A size of 0 or less disables the cache.
+     *
+     * @param maxRows the maximum number of rows to keep
+     */
+    public synchronized void setHotRowCacheSize(int maxRows) {
+        if (maxRows <= 0) {
+            hotRows = null;
+        } else if (hotRows == null || hotRows.maxRows != maxRows) {
+            hotRows = new HotRowCache(maxRows);
+        }
+    }
+
+    /**
+     * The shape of the result of gathering the given number of rows
+     *
+     * @param numRows the number of rows
+     * @return the shape: the number of rows followed by {@link #rowShape()}
+     */
+    public long[] gatherShape(int numRows) {
+        long[] ret = new long[rowShape.length + 1];
+        ret[0] = numRows;
+        System.arraycopy(rowShape, 0, ret, 1, rowShape.length);
+        return ret;
+    }
+
+    /**
+     * Convert a row sized array (for example the vector returned for unknown indices)
+     * to the raw row bytes used by {@link #gather(long[], ByteBuffer, ByteBuffer)}
+     *
+     * @param row an array with the same length as a row
+     * @return the row as bytes in the data type of the store
+     */
+    public ByteBuffer toRowBytes(INDArray row) {
+        Preconditions.checkArgument(row.length() * dataType.width() == rowBytes,
+                "Array of length %s does not match rows of shape %s", row.length(), Arrays.toString(rowShape));
+        INDArray converted = row.castTo(dataType).dup('c');
+        ByteBuffer ret = ByteBuffer.allocate((int) rowBytes);
+        ret.put(converted.data().asNio());
+        ret.flip();
+        return ret.asReadOnlyBuffer();
+    }
+
+    /**
+     * Gather rows into a new array of shape {@link #gatherShape(int)}
+     *
+     * @param indices    the rows to gather. Negative indices are unknown rows
+     * @param unknownRow the row bytes to use for unknown rows, see {@link #toRowBytes(INDArray)}.
+     *                   May be null when all indices are known
+     * @return the gathered rows
+     */
+    public INDArray gather(long[] indices, ByteBuffer unknownRow) {
+        INDArray ret = Nd4j.createUninitialized(dataType, gatherShape(indices.length), 'c');
+        gather(indices, unknownRow, ret.data().asNio());
+        return ret;
+    }
+
+    /**
+     * Gather rows, writing them one after another into the target buffer.
+     * Each row is a single bulk copy from the mapping (or the hot row cache);
+     * no intermediate arrays or views are created.
+     *
+     * @param indices    the rows to gather. Negative indices are unknown rows
+     * @param unknownRow the row bytes to use for unknown rows. May be null when all indices are known
+     * @param target     the buffer to write to, with at least {@code indices.length * rowBytes()} remaining
+     */
+    public void gather(long[] indices, ByteBuffer unknownRow, ByteBuffer target) {
+        Preconditions.checkArgument(target.remaining() >= indices.length * rowBytes,
+                "Target buffer of %s bytes is too small for %s rows", target.remaining(), indices.length);
+        for (long index : indices) {
+            if (index < 0) {
+                Preconditions.checkArgument(unknownRow != null, "Unknown index %s found but no unknown row was specified", index);
+                Preconditions.checkArgument(unknownRow.remaining() == rowBytes, "Unknown row has %s bytes, expected %s", unknownRow.remaining(), rowBytes);
+            } else {
+                Preconditions.checkArgument(index < rows, "Row %s out of bounds for array with %s rows", index, rows);
+            }
+        }
+
+        HotRowCache cache = hotRows;
+        for (long index : indices) {
+            if (index < 0) {
+                target.put(unknownRow.duplicate());
+            } else if (cache == null) {
+                target.put(row(index));
+            } else {
+                byte[] cached = cache.get(index);
+                if (cached == null) {
+                    ByteBuffer row = row(index);
+                    cached = new byte[(int) rowBytes];
+                    row.get(cached);
+                    cache.put(index, cached);
+                }
+
+                target.put(cached);
+            }
+        }
+    }
+
+    /**
+     * Create the header of a numpy (.npy) file holding a c ordered
+     * array, for writing gathered rows straight after it.
+     *
+     * @param dataType the data type of the array
+     * @param shape    the shape of the array
+     * @return the header bytes, padded to a multiple of 64 bytes
+     */
+    public static byte[] numpyHeader(DataType dataType, long[] shape) {
+        StringBuilder dims = new StringBuilder();
+        for (long l : shape) {
+            dims.append(l).append(shape.length == 1 ? "," : ", ");
+        }
+
+        String dimString = dims.toString().replaceAll(", $", "");
+        String dict = "{'descr': '" + numpyDescr(dataType) + "', 'fortran_order': False, 'shape': (" + dimString + "), }";
+        //magic (6) + version (2) + header length (2) + dict + newline, padded with spaces
+        int unpadded = 10 + dict.length() + 1;
+        int padding = (64 - unpadded % 64) % 64;
+        StringBuilder header = new StringBuilder(dict);
+        for (int i = 0; i < padding; i++) {
+            header.append(' ');
+        }
+        header.append('\n');
+
+        byte[] headerBytes = header.toString().getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer ret = ByteBuffer.allocate(10 + headerBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        ret.put(NPY_MAGIC).put((byte) 1).put((byte) 0).putShort((short) headerBytes.length).put(headerBytes);
+        return ret.array();
+    }
+
+    private static String numpyDescr(DataType dataType) {
+        switch (dataType) {
+            case HALF: return "<f2";
+            case FLOAT: return "<f4";
+            case DOUBLE: return "<f8";
+            case BYTE: return "|i1";
+            case SHORT: return "<i2";
+            case INT: return "<i4";
+            case LONG: return "<i8";
+            case UBYTE: return "|u1";
+            case BOOL: return "|b1";
+            default:
+                throw new IllegalArgumentException("Data type " + dataType + " has no numpy equivalent");
+        }
+    }
+
+    private static class HotRowCache {
+        private final int maxRows;
+        private final Map<Long, byte[]> rows;
+
+        private HotRowCache(int maxRows) {
+            this.maxRows = maxRows;
+            this.rows = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                    return size() > HotRowCache.this.maxRows;
+                }
+            };
+        }
+
+        private synchronized byte[] get(long row) {
+            return rows.get(row);
+        }
+
+        private synchronized void put(long row, byte[] bytes) {
+            rows.put(row, bytes);
+        }
+    }
+}
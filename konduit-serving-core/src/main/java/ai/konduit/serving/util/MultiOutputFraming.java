@@ -0,0 +1,124 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+
+package ai.konduit.serving.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import org.nd4j.base.Preconditions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Packs several binary outputs into one response buffer.
+ * All integers are big endian. The layout is:
+ * <pre>
+ * int   header length in bytes (excluding this field)
+ * int   number of outputs
+ * for each output:
+ *   int    name length in bytes
+ *   byte[] utf-8 name
+ *   long   payload length in bytes
+ * payloads, in header order
+ * </pre>
+ * The payloads are not copied: the returned buffer is a composite of
+ * the header and the given output buffers.
+ *
+ * @author Adam Gibson
+ */
+public class MultiOutputFraming {
+
+    private MultiOutputFraming() {
+    }
+
+    /**
+     * Frame the given outputs.
+     *
+     * @param outputs the output buffers by name, written in iteration order
+     * @return the framed buffer
+     */
+    public static Buffer frame(Map<String, ByteBuf> outputs) {
+        int headerLength = 4;
+        byte[][] names = new byte[outputs.size()][];
+        int i = 0;
+        for (String name : outputs.keySet()) {
+            names[i] = name.getBytes(StandardCharsets.UTF_8);
+            headerLength += 4 + names[i].length + 8;
+            i++;
+        }
+
+        ByteBuf header = Unpooled.buffer(4 + headerLength);
+        header.writeInt(headerLength);
+        header.writeInt(outputs.size());
+        ByteBuf[] components = new ByteBuf[outputs.size() + 1];
+        components[0] = header;
+        i = 0;
+        for (ByteBuf payload : outputs.values()) {
+            header.writeInt(names[i].length);
+            header.writeBytes(names[i]);
+            header.writeLong(payload.readableBytes());
+            components[i + 1] = payload;
+            i++;
+        }
+
+        return Buffer.buffer(Unpooled.wrappedBuffer(components));
+    }
+
+    /**
+     * Read back the outputs of a buffer created with {@link #frame(Map)}.
+     *
+     * @param framed the framed buffer
+     * @return the output buffers by name, in framed order
+     */
+    public static Map<String, Buffer> unframe(Buffer framed) {
+        Preconditions.checkState(framed.length() >= 8, "Framed buffer of length %s has no header", framed.length());
+        int headerLength = framed.getInt(0);
+        int numOutputs = framed.getInt(4);
+        Preconditions.checkState(headerLength >= 4 && headerLength <= framed.length() - 4,
+                "Header length %s exceeds the framed buffer", headerLength);
+        int headerEnd = 4 + headerLength;
+        //each output takes at least 12 header bytes
+        Preconditions.checkState(numOutputs >= 0 && numOutputs <= (headerLength - 4) / 12,
+                "Invalid number of outputs %s for header length %s", numOutputs, headerLength);
+        Map<String, Buffer> ret = new LinkedHashMap<>(numOutputs);
+        int headerPosition = 8;
+        int payloadPosition = headerEnd;
+        for (int i = 0; i < numOutputs; i++) {
+            int nameLength = framed.getInt(headerPosition);
+            Preconditions.checkState(nameLength >= 0 && nameLength <= headerEnd - headerPosition - 12,
+                    "Name length %s of output %s exceeds the header", nameLength, i);
+            String name = framed.getString(headerPosition + 4, headerPosition + 4 + nameLength, StandardCharsets.UTF_8.name());
+            long payloadLength = framed.getLong(headerPosition + 4 + nameLength);
+            Preconditions.checkState(payloadLength >= 0 && payloadLength <= framed.length() - payloadPosition,
+                    "Output %s of length %s exceeds the framed buffer", name, payloadLength);
+            int payloadEnd = payloadPosition + (int) payloadLength;
+            ret.put(name, framed.slice(payloadPosition, payloadEnd));
+            headerPosition += 4 + nameLength + 8;
+            payloadPosition = payloadEnd;
+        }
+
+        return ret;
+    }
+}
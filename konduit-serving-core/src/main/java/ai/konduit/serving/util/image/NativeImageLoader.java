@@ -47,6 +47,7 @@ import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.linalg.util.ArrayUtil;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 import static org.bytedeco.leptonica.global.lept.*;
@@ -328,6 +329,57 @@ public class NativeImageLoader extends BaseImageLoader {
         return a;
     }
 
+    /**
+     * Decode an encoded image (png, jpg, ...) held in a {@link ByteBuffer}.
+     * Direct buffers are handed to OpenCV's {@code imdecode} through their
+     * native address without being copied to the java heap first.
+     *
+     * @param encoded the encoded image, from its position to its limit
+     * @return the decoded image as a matrix
+     * @throws IOException if the image can't be decoded
+     */
+    public INDArray asMatrix(ByteBuffer encoded) throws IOException {
+        try (BytePointer bytes = new BytePointer(encoded.slice());
+             Mat mat = new Mat(1, encoded.remaining(), CV_8UC1, bytes)) {
+            if (this.multiPageMode != null) {
+                return asMatrix(mat.data(), mat.cols());
+            }
+
+            Mat image = decode(mat);
+            INDArray a = asMatrix(image);
+            image.deallocate();
+            return a;
+        }
+    }
+
+    /**
+     * Same as {@link #asMatrix(ByteBuffer)} returning an {@link ImageWritable}
+     *
+     * @param encoded the encoded image, from its position to its limit
+     * @return {@link ImageWritable} representing the image
+     * @throws IOException if the image can't be decoded
+     */
+    public ImageWritable asWritable(ByteBuffer encoded) throws IOException {
+        try (BytePointer bytes = new BytePointer(encoded.slice());
+             Mat mat = new Mat(1, encoded.remaining(), CV_8UC1, bytes)) {
+            return new ImageWritable(converter.convert(decode(mat)));
+        }
+    }
+
+    private Mat decode(Mat encoded) throws IOException {
+        Mat image = imdecode(encoded, IMREAD_ANYDEPTH | IMREAD_ANYCOLOR);
+        if (image == null || image.empty()) {
+            PIX pix = pixReadMem(encoded.data(), encoded.cols());
+            if (pix == null) {
+                throw new IOException("Could not decode image from buffer");
+            }
+            image = convert(pix);
+            pixDestroy(pix);
+        }
+
+        return image;
+    }
+
     /**
      * Read the stream to the buffer, and return the number of bytes read
      *
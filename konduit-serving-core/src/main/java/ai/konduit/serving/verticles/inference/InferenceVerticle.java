@@ -66,6 +66,11 @@ public class InferenceVerticle extends BaseRoutableVerticle {
 
         if(pipelineRouteDefiner.getPipelineExecutioner() != null)
             pipelineRouteDefiner.getPipelineExecutioner().close();
+
+        if(pipelineRouteDefiner.getBlockingRequestExecutor() != null)
+            pipelineRouteDefiner.getBlockingRequestExecutor().close();
+
+        pipelineRouteDefiner.stop();
         
         log.debug("Stopping konduit server.");
     }
@@ -76,16 +81,13 @@ public class InferenceVerticle extends BaseRoutableVerticle {
 
         inferenceConfiguration = InferenceConfiguration.fromJson(context.config().encode());
         pipelineRouteDefiner = new PipelineRouteDefiner();
-        this.router = pipelineRouteDefiner.defineRoutes(vertx, inferenceConfiguration);
         //define the memory map endpoints if the user specifies the memory map configuration
         if (inferenceConfiguration.getMemMapConfig() != null) {
             this.router = new MemMapRouteDefiner().defineRoutes(vertx, inferenceConfiguration);
         } else {
+            // Each step runner is created exactly once here. Invalid configurations
+            // fail the deployment through the exception thrown by defineRoutes
             this.router = pipelineRouteDefiner.defineRoutes(vertx, inferenceConfiguration);
-
-            // Checking if the configuration runners can be created without problems or not
-            for (PipelineStep pipelineStep : inferenceConfiguration.getSteps())
-                pipelineStep.createRunner();
         }
     }
 
@@ -48,6 +48,20 @@ public class PmmlInferenceExecutioner implements
     private PMMLThreadPool inference;
     @Getter
     private ModelLoader<Evaluator> modelLoader;
+    @Getter
+    private boolean sharedEvaluator;
+
+    public PmmlInferenceExecutioner() {
+        this(false);
+    }
+
+    /**
+     * @param sharedEvaluator whether all workers share one evaluator,
+     *                        see {@link PMMLThreadPool.Builder#sharedEvaluator(boolean)}
+     */
+    public PmmlInferenceExecutioner(boolean sharedEvaluator) {
+        this.sharedEvaluator = sharedEvaluator;
+    }
 
 
     @Override
@@ -57,6 +71,10 @@ public class PmmlInferenceExecutioner implements
 
     @Override
     public Evaluator model() {
+        if (inference != null && inference.getSharedEvaluator() != null) {
+            return inference.getSharedEvaluator();
+        }
+
         try {
             return modelLoader.loadModel();
         } catch (Exception e) {
@@ -72,7 +90,10 @@ public class PmmlInferenceExecutioner implements
                 .batchLimit(config.getBatchLimit())
                 .queueLimit(config.getQueueLimit())
                 .inferenceMode(config.getInferenceMode())
+                .maxBatchWaitMillis(config.getMaxBatchWaitMillis())
+                .targetLatencyMillis(config.getTargetLatencyMillis())
                 .workers(config.getWorkers())
+                .sharedEvaluator(sharedEvaluator)
                 .build();
         this.modelLoader = model;
 
@@ -44,7 +44,7 @@ public class PmmlInferenceExecutionerFactory implements InferenceExecutionerFact
         String evaluationModelFactory = pmmlConfig.evaluatorFactoryName();
         String pmmlConfigPath = inferenceConfiguration.getModelConfigType().getModelLoadingPath();
         ModelEvaluatorFactory modelEvaluatorFactory = ModelEvaluatorFactory.newInstance();
-        PmmlInferenceExecutioner inferenceExecutioner = new PmmlInferenceExecutioner();
+        PmmlInferenceExecutioner inferenceExecutioner = new PmmlInferenceExecutioner(pmmlConfig.isSharedEvaluator());
         PmmlModelLoader modelLoader1 = new PmmlModelLoader(modelEvaluatorFactory, new File(pmmlConfigPath));
         inferenceExecutioner.initialize(modelLoader1, parallelInferenceConfig);
         return new InitializedInferenceExecutionerConfig(inferenceExecutioner, null, null);
@@ -26,14 +26,13 @@ import ai.konduit.serving.executioner.inference.PmmlInferenceExecutioner;
 import ai.konduit.serving.executioner.inference.factory.PmmlInferenceExecutionerFactory;
 import ai.konduit.serving.pipeline.step.PmmlStep;
 import ai.konduit.serving.pipeline.steps.BaseStepRunner;
-import ai.konduit.serving.util.ObjectMappers;
 import ai.konduit.serving.util.WritableValueRetriever;
 import org.datavec.api.records.Record;
+import org.datavec.api.transform.ColumnType;
 import org.datavec.api.transform.schema.Schema;
-import org.datavec.api.writable.Text;
-import org.datavec.api.writable.Writable;
+import org.datavec.api.writable.*;
 import org.dmg.pmml.FieldName;
-import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.EvaluatorUtil;
 import org.nd4j.base.Preconditions;
 
 import java.util.*;
@@ -42,7 +41,9 @@ import java.util.*;
 public class PmmlInferenceExecutionerStepRunner extends BaseStepRunner {
 
     private PmmlInferenceExecutioner pmmlInferenceExecutioner;
-    private Evaluator evaluator;
+    private List<FieldName> inputFieldNames;
+    private Schema outputSchema;
+    private List<FieldName> outputFieldNames;
 
     public PmmlInferenceExecutionerStepRunner(PipelineStep pipelineStep) {
         super(pipelineStep);
@@ -50,7 +51,6 @@ public class PmmlInferenceExecutionerStepRunner extends BaseStepRunner {
         PmmlInferenceExecutionerFactory inferenceExecutionerFactory = new PmmlInferenceExecutionerFactory();
         try {
             pmmlInferenceExecutioner = (PmmlInferenceExecutioner) inferenceExecutionerFactory.create(pmmlStepConfig).getInferenceExecutioner();
-            evaluator = pmmlInferenceExecutioner.model();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -64,6 +64,17 @@ public class PmmlInferenceExecutionerStepRunner extends BaseStepRunner {
         Preconditions.checkState(pmmlStepConfig.getOutputColumnNames() != null &&
                 !pmmlStepConfig.getOutputColumnNames().isEmpty(), "No output names found!");
 
+        Schema inputSchema = pipelineStep.inputSchemaForName("default");
+        inputFieldNames = new ArrayList<>(inputSchema.numColumns());
+        for (int i = 0; i < inputSchema.numColumns(); i++) {
+            inputFieldNames.add(FieldName.create(inputSchema.getName(i)));
+        }
+
+        outputSchema = pipelineStep.outputSchemaForName("default");
+        outputFieldNames = new ArrayList<>(outputSchema.numColumns());
+        for (int i = 0; i < outputSchema.numColumns(); i++) {
+            outputFieldNames.add(FieldName.create(outputSchema.getName(i)));
+        }
 
     }
 
@@ -77,31 +88,62 @@ public class PmmlInferenceExecutionerStepRunner extends BaseStepRunner {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Evaluates one row per input record and returns one typed record per row.
+     * The columns of each record are the columns of the default output schema:
+     * each value is looked up by column name in the evaluator results
+     * and converted to a writable of the column type.
+     * A column missing from the results fails the transform, an explicit missing
+     * value returned by the model is a {@link NullWritable}.
+     */
     @Override
     public Record[] transform(Record[] input) {
-        Schema schema = pipelineStep.inputSchemaForName("default");
         List<Map<FieldName, Object>> pmmlInput = new ArrayList<>(input.length);
-        List<FieldName> fieldNames = new ArrayList<>();
-        for (int i = 0; i < schema.numColumns(); i++) {
-            fieldNames.add(FieldName.create(schema.getName(i)));
-        }
-
         for (Record record : input) {
-            Map<FieldName, Object> pmmlRecord = new LinkedHashMap<>();
+            Map<FieldName, Object> pmmlRecord = new HashMap<>(inputFieldNames.size() * 2);
             for (int i = 0; i < record.getRecord().size(); i++) {
-                pmmlRecord.put(fieldNames.get(i), WritableValueRetriever.getUnderlyingValue(record.getRecord().get(i)));
+                pmmlRecord.put(inputFieldNames.get(i), WritableValueRetriever.getUnderlyingValue(record.getRecord().get(i)));
             }
 
             pmmlInput.add(pmmlRecord);
         }
 
         List<Map<FieldName, Object>> execute = pmmlInferenceExecutioner.execute(pmmlInput);
-        Record[] ret = new Record[1];
-        String json = ObjectMappers.toJson(execute);
-
-        ret[0] = new org.datavec.api.records.impl.Record(Collections.singletonList(new Text(json)), null);
+        Record[] ret = new Record[execute.size()];
+        for (int i = 0; i < ret.length; i++) {
+            Map<FieldName, Object> result = execute.get(i);
+            List<Writable> writables = new ArrayList<>(outputFieldNames.size());
+            for (int j = 0; j < outputFieldNames.size(); j++) {
+                FieldName fieldName = outputFieldNames.get(j);
+                Preconditions.checkState(result.containsKey(fieldName), "No result for output column %s, the model returned %s." +
+                        " Please make sure the output column names match the fields of the PMML model.", fieldName.getValue(), result.keySet());
+                writables.add(toWritable(EvaluatorUtil.decode(result.get(fieldName)), outputSchema.getType(j)));
+            }
 
+            ret[i] = new org.datavec.api.records.impl.Record(writables, null);
+        }
 
         return ret;
     }
+
+    private static Writable toWritable(Object value, ColumnType columnType) {
+        if (value == null) {
+            return NullWritable.INSTANCE;
+        }
+
+        switch (columnType) {
+            case Double:
+                return new DoubleWritable(((Number) value).doubleValue());
+            case Float:
+                return new FloatWritable(((Number) value).floatValue());
+            case Integer:
+                return new IntWritable(((Number) value).intValue());
+            case Long:
+                return new LongWritable(((Number) value).longValue());
+            case Boolean:
+                return new BooleanWritable(value instanceof Boolean ? (Boolean) value : Boolean.parseBoolean(value.toString()));
+            default:
+                return new Text(value.toString());
+        }
+    }
 }
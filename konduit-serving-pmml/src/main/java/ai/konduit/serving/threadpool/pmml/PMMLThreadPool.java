@@ -24,6 +24,7 @@ package ai.konduit.serving.threadpool.pmml;
 
 
 import ai.konduit.serving.model.loader.ModelLoader;
+import ai.konduit.serving.threadpool.batching.AdaptiveBatchScheduler;
 import ai.konduit.serving.threadpool.pmml.observables.BasicPmmlInferenceObservable;
 import ai.konduit.serving.threadpool.pmml.observables.BatchedPmmlInferenceObservable;
 import ai.konduit.serving.threadpool.pmml.observables.PmmlObservable;
@@ -35,11 +36,10 @@ import org.dmg.pmml.FieldName;
 import org.jpmml.evaluator.Evaluator;
 import org.nd4j.linalg.factory.Nd4j;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Observer;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -58,16 +58,24 @@ public class PMMLThreadPool {
     public final static int DEFAULT_BATCH_LIMIT = 32;
     public final static InferenceMode DEFAULT_INFERENCE_MODE = InferenceMode.BATCHED;
     public final static int DEFAULT_QUEUE_LIMIT = 64;
+    public final static long DEFAULT_MAX_BATCH_WAIT_MILLIS = 0;
+    public final static long DEFAULT_TARGET_LATENCY_MILLIS = 0;
     private ModelLoader<Evaluator> pmmlModelLoader;
     private long nanos;
     private int workers;
     private int batchLimit;
     private InferenceMode inferenceMode;
     private int queueLimit;
+    private long maxBatchWaitMillis;
+    private long targetLatencyMillis;
+    private boolean sharedEvaluator;
+    //set when all workers share one evaluator, see Builder#sharedEvaluator(boolean)
+    private PmmlBatchEvaluator batchEvaluator;
+    private ForkJoinPool evaluationPool;
     // this queue
     private BlockingQueue<PmmlObservable> observables;
     private InferenceWorker[] zoo;
-    private ObservablesProvider provider;
+    private AdaptiveBatchScheduler<List<Map<FieldName, Object>>, BatchedPmmlInferenceObservable> provider;
 
 
     protected PMMLThreadPool() {
@@ -77,6 +85,18 @@ public class PMMLThreadPool {
     protected void init() {
         observables = new LinkedBlockingQueue<>(queueLimit);
 
+        if (sharedEvaluator) {
+            Evaluator evaluator;
+            try {
+                evaluator = pmmlModelLoader.loadModel();
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to load pmml model", e);
+            }
+
+            evaluationPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            batchEvaluator = new PmmlBatchEvaluator(evaluator, evaluationPool, PmmlBatchEvaluator.DEFAULT_MIN_ROWS_PER_TASK);
+        }
+
         int numDevices = Nd4j.getAffinityManager().getNumberOfDevices();
         int currentDevice = Nd4j.getAffinityManager().getDeviceForCurrentThread();
         AtomicBoolean assignedRoot = new AtomicBoolean(false);
@@ -98,7 +118,8 @@ public class PMMLThreadPool {
         if (inferenceMode == InferenceMode.BATCHED) {
             log.debug("Initializing ObservablesProvider...");
             nanos = System.nanoTime();
-            provider = new ObservablesProvider(nanos, batchLimit, observables);
+            provider = new AdaptiveBatchScheduler<>(BatchedPmmlInferenceObservable::new, observables,
+                    batchLimit, maxBatchWaitMillis, targetLatencyMillis);
         }
     }
 
@@ -123,10 +144,24 @@ public class PMMLThreadPool {
         }
         zoo = null;
 
+        if (evaluationPool != null) {
+            evaluationPool.shutdownNow();
+            evaluationPool = null;
+        }
+
         System.gc();
     }
 
 
+    /**
+     * The evaluator shared by all workers
+     *
+     * @return the shared evaluator, or null when each worker loads its own
+     */
+    public Evaluator getSharedEvaluator() {
+        return batchEvaluator == null ? null : batchEvaluator.getEvaluator();
+    }
+
     /**
      * Generate predictions/outputSchema from the network, optionally using input masks for predictions
      *
@@ -174,6 +209,9 @@ public class PMMLThreadPool {
         private int batchLimit = DEFAULT_BATCH_LIMIT;
         private InferenceMode inferenceMode = DEFAULT_INFERENCE_MODE;
         private int queueLimit = DEFAULT_QUEUE_LIMIT;
+        private long maxBatchWaitMillis = DEFAULT_MAX_BATCH_WAIT_MILLIS;
+        private long targetLatencyMillis = DEFAULT_TARGET_LATENCY_MILLIS;
+        private boolean sharedEvaluator = false;
 
         public Builder(@NonNull ModelLoader<Evaluator> pmmlModelLoader) {
             this.pmmlModelLoader = pmmlModelLoader;
@@ -246,6 +284,62 @@ public class PMMLThreadPool {
             return this;
         }
 
+        /**
+         * This method defines how long a partial batch may wait
+         * for more inputs, counted from when the batch was opened.
+         * <p>
+         * Default value: 0 (run whatever has been queued immediately)
+         * <p>
+         * PLEASE NOTE: This value has no effect in
+         * SEQUENTIAL inference mode
+         *
+         * @param millis the maximum wait in milliseconds
+         * @return the builder
+         */
+        public Builder maxBatchWaitMillis(long millis) {
+            if (millis < 0)
+                throw new IllegalStateException("Max batch wait should be non-negative value");
+
+            this.maxBatchWaitMillis = millis;
+            return this;
+        }
+
+        /**
+         * This method defines the p99 latency the batch limit
+         * is adapted to. The batch limit set by {@link #batchLimit(int)}
+         * becomes the upper bound of the adapted limit.
+         * <p>
+         * Default value: 0 (fixed batch limit)
+         * <p>
+         * PLEASE NOTE: This value has no effect in
+         * SEQUENTIAL inference mode
+         *
+         * @param millis the target latency in milliseconds
+         * @return the builder
+         */
+        public Builder targetLatencyMillis(long millis) {
+            if (millis < 0)
+                throw new IllegalStateException("Target latency should be non-negative value");
+
+            this.targetLatencyMillis = millis;
+            return this;
+        }
+
+        /**
+         * This method defines whether all workers share one evaluator.
+         * The model is then loaded once, and batches are split across
+         * a fork join pool instead of each worker holding its own copy.
+         * <p>
+         * Default value: false (one evaluator per worker)
+         *
+         * @param sharedEvaluator whether to share one evaluator
+         * @return the builder
+         */
+        public Builder sharedEvaluator(boolean sharedEvaluator) {
+            this.sharedEvaluator = sharedEvaluator;
+            return this;
+        }
+
         /**
          * This method builds new PMMLThreadPool instance
          *
@@ -255,53 +349,18 @@ public class PMMLThreadPool {
             PMMLThreadPool inference = new PMMLThreadPool();
             inference.batchLimit = this.batchLimit;
             inference.queueLimit = this.queueLimit;
+            inference.maxBatchWaitMillis = this.maxBatchWaitMillis;
+            inference.targetLatencyMillis = this.targetLatencyMillis;
             inference.inferenceMode = this.inferenceMode;
             inference.workers = this.workers;
             inference.pmmlModelLoader = this.pmmlModelLoader;
+            inference.sharedEvaluator = this.sharedEvaluator;
             inference.init();
 
             return inference;
         }
     }
 
-    protected static class ObservablesProvider {
-        private final Object locker = new Object();
-        private BlockingQueue<PmmlObservable> targetQueue;
-        private long nanos;
-        private int batchLimit;
-        private volatile BatchedPmmlInferenceObservable currentObservable;
-
-        protected ObservablesProvider(long nanos, int batchLimit, @NonNull BlockingQueue<PmmlObservable> queue) {
-            this.targetQueue = queue;
-            this.nanos = nanos;
-            this.batchLimit = batchLimit;
-        }
-
-        protected PmmlObservable setInput(@NonNull Observer observer, List<Map<FieldName, Object>> input) {
-            synchronized (locker) {
-                boolean isNew = false;
-                if (currentObservable == null || currentObservable.getCounter() >= batchLimit
-                        || currentObservable.isLocked()) {
-                    isNew = true;
-                    currentObservable = new BatchedPmmlInferenceObservable();
-                }
-
-                currentObservable.addInput(input);
-                currentObservable.addObserver(observer);
-
-                try {
-                    if (isNew)
-                        targetQueue.put(currentObservable);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException(e);
-                }
-
-                return currentObservable;
-            }
-        }
-    }
-
     /**
      * This class actually does inference with respect to device affinity
      */
@@ -309,7 +368,7 @@ public class PMMLThreadPool {
         private BlockingQueue<PmmlObservable> inputQueue;
         private AtomicBoolean shouldWork = new AtomicBoolean(true);
         private AtomicBoolean isStopped = new AtomicBoolean(false);
-        private Evaluator replicatedModel;
+        private PmmlBatchEvaluator replicatedModel;
         private AtomicLong counter = new AtomicLong(0);
         private boolean rootDevice;
 
@@ -331,8 +390,9 @@ public class PMMLThreadPool {
         @Override
         public void run() {
             try {
-                // model should be replicated & initialized here
-                this.replicatedModel = pmmlModelLoader.loadModel();
+                // model should be replicated & initialized here, unless it is shared
+                this.replicatedModel = batchEvaluator != null ? batchEvaluator :
+                        new PmmlBatchEvaluator(pmmlModelLoader.loadModel(), null, PmmlBatchEvaluator.DEFAULT_MIN_ROWS_PER_TASK);
 
 
                 while (shouldWork.get()) {
@@ -341,15 +401,23 @@ public class PMMLThreadPool {
                     if (request != null) {
                         counter.incrementAndGet();
 
-                        List<Map<FieldName, Object>> batches = request.getInputBatches();
-                        List<Map<FieldName, Object>> out = new ArrayList<>(batches.size());
-                        try {
-                            for (Map<FieldName, Object> inBatch : batches) {
-                                Map<FieldName, ?> output = replicatedModel.evaluate(inBatch);
-                                out.add((Map<FieldName, Object>) output);
+                        BatchedPmmlInferenceObservable batched = null;
+                        if (request instanceof BatchedPmmlInferenceObservable) {
+                            batched = (BatchedPmmlInferenceObservable) request;
+                            try {
+                                provider.awaitBatch(batched);
+                            } catch (InterruptedException e) {
+                                //release the observers waiting on this batch before the worker exits
+                                request.setOutputException(e);
+                                throw e;
                             }
+                        }
 
-                            request.setOutputBatches(out);
+                        List<Map<FieldName, Object>> batches = request.getInputBatches();
+                        try {
+                            request.setOutputBatches(replicatedModel.evaluate(batches));
+                            if (batched != null)
+                                provider.batchCompleted(batched);
                         } catch (Exception e) {
                             log.error("Error occurred doing inference", e);
                             request.setOutputException(e);
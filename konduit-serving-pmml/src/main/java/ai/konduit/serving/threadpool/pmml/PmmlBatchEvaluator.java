@@ -0,0 +1,133 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+
+package ai.konduit.serving.threadpool.pmml;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.dmg.pmml.FieldName;
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.FieldValue;
+import org.jpmml.evaluator.InputField;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates batches of rows with a single {@link Evaluator}.
+ * JPMML evaluators are thread safe once built, so one instance
+ * can be shared by all the workers of a {@link PMMLThreadPool}.
+ * <p>
+ * The input fields of the model are resolved once up front and
+ * each row is prepared with {@link InputField#prepare(Object)}
+ * into an argument map that is reused for every row of a task.
+ * When a pool is given, batches of at least twice
+ * {@code minRowsPerTask} rows are split across it.
+ *
+ * @author Adam Gibson
+ */
+public class PmmlBatchEvaluator {
+
+    public final static int DEFAULT_MIN_ROWS_PER_TASK = 16;
+
+    @Getter
+    private final Evaluator evaluator;
+    private final InputField[] inputFields;
+    private final ForkJoinPool pool;
+    private final int minRowsPerTask;
+
+    /**
+     * @param evaluator      the evaluator to use
+     * @param pool           the pool to split batches across, may be null to evaluate on the calling thread
+     * @param minRowsPerTask the minimum number of rows evaluated by one task of the pool
+     */
+    public PmmlBatchEvaluator(@NonNull Evaluator evaluator, ForkJoinPool pool, int minRowsPerTask) {
+        if (minRowsPerTask < 1)
+            throw new IllegalStateException("Rows per task should be positive value");
+
+        this.evaluator = evaluator;
+        this.inputFields = evaluator.getInputFields().toArray(new InputField[0]);
+        this.pool = pool;
+        this.minRowsPerTask = minRowsPerTask;
+    }
+
+    /**
+     * Evaluate each row of the given batch
+     *
+     * @param rows the raw input values of each row, keyed by input field name
+     * @return the results for each row, in the order of the input
+     */
+    @SuppressWarnings("unchecked")
+    public List<Map<FieldName, Object>> evaluate(List<Map<FieldName, Object>> rows) {
+        Map<FieldName, Object>[] out = new Map[rows.size()];
+        if (pool == null || rows.size() < 2 * minRowsPerTask) {
+            evaluate(rows, out, 0, rows.size());
+        } else {
+            pool.invoke(new EvaluateTask(rows, out, 0, rows.size()));
+        }
+
+        return Arrays.asList(out);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void evaluate(List<Map<FieldName, Object>> rows, Map<FieldName, Object>[] out, int from, int to) {
+        Map<FieldName, FieldValue> arguments = new HashMap<>(inputFields.length * 2);
+        for (int i = from; i < to; i++) {
+            Map<FieldName, Object> row = rows.get(i);
+            for (InputField inputField : inputFields) {
+                FieldName name = inputField.getName();
+                arguments.put(name, inputField.prepare(row.get(name)));
+            }
+
+            out[i] = (Map<FieldName, Object>) evaluator.evaluate(arguments);
+            arguments.clear();
+        }
+    }
+
+    private class EvaluateTask extends RecursiveAction {
+        private final List<Map<FieldName, Object>> rows;
+        private final Map<FieldName, Object>[] out;
+        private final int from, to;
+
+        private EvaluateTask(List<Map<FieldName, Object>> rows, Map<FieldName, Object>[] out, int from, int to) {
+            this.rows = rows;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < 2 * minRowsPerTask) {
+                evaluate(rows, out, from, to);
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new EvaluateTask(rows, out, from, mid), new EvaluateTask(rows, out, mid, to));
+        }
+    }
+}
@@ -22,18 +22,24 @@
 
 package ai.konduit.serving.threadpool.pmml.observables;
 
+import ai.konduit.serving.threadpool.batching.BatchedObservable;
 import lombok.*;
 import org.dmg.pmml.FieldName;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Holds the rows of several requests so they can be evaluated by one worker.
+ * Each request retrieves only the output rows matching its own input rows.
+ */
 @Data
 @NoArgsConstructor
 @EqualsAndHashCode(callSuper = false)
-public class BatchedPmmlInferenceObservable extends Observable implements PmmlObservable {
+public class BatchedPmmlInferenceObservable extends Observable implements PmmlObservable, BatchedObservable<List<Map<FieldName, Object>>> {
 
     private final Object locker = new Object();
     protected Exception exception;
@@ -43,10 +49,12 @@ public class BatchedPmmlInferenceObservable extends Observable implements PmmlOb
     private List<Map<FieldName, Object>> output;
     private AtomicInteger counter = new AtomicInteger(0);
     private ThreadLocal<Integer> position = new ThreadLocal<>();
+    //the [start, end) rows of each request
     private List<int[]> outputBatchInputArrays = new ArrayList<>();
     private ReentrantReadWriteLock realLocker = new ReentrantReadWriteLock();
     private AtomicBoolean isLocked = new AtomicBoolean(false);
     private AtomicBoolean isReadLocked = new AtomicBoolean(false);
+    private long creationNanos = System.nanoTime();
 
 
     public BatchedPmmlInferenceObservable(List<Map<FieldName, Object>> inputs) {
@@ -59,13 +67,29 @@ public class BatchedPmmlInferenceObservable extends Observable implements PmmlOb
         synchronized (locker) {
             if (this.input == null)
                 this.input = new ArrayList<>();
+            int start = this.input.size();
             this.input.addAll(input);
+            outputBatchInputArrays.add(new int[]{start, this.input.size()});
             position.set(counter.getAndIncrement());
 
             if (isReadLocked.get())
                 realLocker.readLock().unlock();
+
+            locker.notifyAll();
+        }
+    }
+
+    @Override
+    public void awaitBatch(int batchLimit, long deadlineNanos) throws InterruptedException {
+        synchronized (locker) {
+            while (counter.get() < batchLimit) {
+                long remaining = deadlineNanos - System.nanoTime();
+                if (remaining <= 0)
+                    break;
+
+                TimeUnit.NANOSECONDS.timedWait(locker, remaining);
+            }
         }
-        this.input = input;
     }
 
 
@@ -74,33 +98,39 @@ public class BatchedPmmlInferenceObservable extends Observable implements PmmlOb
         realLocker.writeLock().lock();
         isLocked.set(true);
 
-        outputBatchInputArrays.clear();
-
-        // this method should pile individual examples into single batch
-
-        if (counter.get() > 1) {
-
-            int pos = 0;
-            List<Map<FieldName, Object>> out = new ArrayList<>(input);
+        try {
+            return new ArrayList<>(input);
+        } finally {
             realLocker.writeLock().unlock();
-            return out;
-        } else {
-            outputBatchInputArrays.add(new int[]{0, 0});
-            realLocker.writeLock().unlock();
-            return Collections.singletonList(input.get(0));
         }
     }
 
 
     @Override
     public void setOutputBatches(List<Map<FieldName, Object>> output) {
-        //this method should split batched output INDArray[] into multiple separate INDArrays
-        int countNumInputBatches = 0;   //Counter for total number of input batches processed
         this.output = output;
         this.setChanged();
         notifyObservers();
     }
 
+    /**
+     * Returns the output rows belonging to the calling thread's input.
+     *
+     * @return the outputs for the caller's input rows
+     */
+    @Override
+    public List<Map<FieldName, Object>> getOutput() {
+        if (exception != null) {
+            if (exception instanceof RuntimeException)
+                throw (RuntimeException) exception;
+            throw new RuntimeException("Exception encountered while getting output: " + exception.getMessage(), exception);
+        }
+
+        Integer pos = position.get();
+        int[] rows = outputBatchInputArrays.get(pos == null ? 0 : pos);
+        return output.subList(rows[0], rows[1]);
+    }
+
     @Override
     public Exception getOutputException() {
         return exception;
@@ -109,6 +139,8 @@ public class BatchedPmmlInferenceObservable extends Observable implements PmmlOb
     @Override
     public void setOutputException(Exception e) {
         this.exception = e;
+        this.setChanged();
+        notifyObservers();
     }
 
     /**
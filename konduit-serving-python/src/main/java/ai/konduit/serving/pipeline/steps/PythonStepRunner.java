@@ -26,10 +26,15 @@ import ai.konduit.serving.executioner.Pipeline;
 import ai.konduit.serving.model.PythonConfig;
 import ai.konduit.serving.pipeline.PipelineStep;
 import ai.konduit.serving.pipeline.step.PythonStep;
+import ai.konduit.serving.util.ObjectMappers;
+import ai.konduit.serving.util.WritableValueRetriever;
+import ai.konduit.serving.util.python.PythonProcessPool;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
 import org.datavec.api.records.Record;
 import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.NDArrayWritable;
+import org.datavec.api.writable.Text;
 import org.datavec.api.writable.Writable;
 import org.datavec.python.PythonExecutioner;
 import org.datavec.python.PythonTransform;
@@ -38,13 +43,12 @@ import org.datavec.python.PythonType;
 import org.datavec.python.PythonVariables;
 import org.nd4j.base.Preconditions;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
  * Run python code as part of a {@link Pipeline}
@@ -68,6 +72,11 @@ import java.util.Map;
  * in python and passes the values along to the next step in a
  * pipline.
  * <p>
+ * With {@link PythonConfig#isBatchMode()} the script runs once for all
+ * records of a request, receiving each input as a column for the whole batch.
+ * With {@link PythonConfig#getPythonWorkers()} set the script runs in a
+ * {@link PythonProcessPool} of separate python processes instead of the embedded interpreter.
+ * <p>
  * A common example is transforming numpy arrays with zero copy in to
  * an equivalent {@link org.nd4j.linalg.api.ndarray.INDArray}.
  * This allows for high performance interop in a production pipeline
@@ -80,11 +89,19 @@ import java.util.Map;
 public class PythonStepRunner extends BaseStepRunner {
 
     private Map<String, PythonTransform> pythonTransform;
+    //configurations run once per batch, see PythonConfig#isBatchMode()
+    private Map<String, BatchScript> batchScripts;
+    //configurations run in separate python processes, see PythonConfig#getPythonWorkers()
+    private Map<String, PythonProcessPool> processPools;
+    private Map<String, String[]> processInputNames;
 
     public PythonStepRunner(PipelineStep pipelineStep) throws Exception {
         super(pipelineStep);
         PythonStep pythonConfig = (PythonStep) pipelineStep;
         pythonTransform = new HashMap<>();
+        batchScripts = new HashMap<>();
+        processPools = new HashMap<>();
+        processInputNames = new HashMap<>();
 
         boolean setPath = false;
         for (Map.Entry<String, PythonConfig> configEntry : pythonConfig.getPythonConfigs().entrySet()) {
@@ -109,6 +126,40 @@ public class PythonStepRunner extends BaseStepRunner {
 
             Preconditions.checkNotNull(code, "No code to run!");
             Preconditions.checkState(!code.isEmpty(), "Code resolved to an empty string!");
+            PythonProcessPool pool = null;
+            if (currConfig.getPythonWorkers() > 0) {
+                Preconditions.checkState(currConfig.getPythonInputs() != null && !currConfig.getPythonInputs().isEmpty(),
+                        "Python worker processes require python inputs to be specified");
+                List<String> outputNames;
+                if (currConfig.getPythonOutputs() != null && !currConfig.getPythonOutputs().isEmpty())
+                    outputNames = new ArrayList<>(currConfig.getPythonOutputs().keySet());
+                else if (currConfig.isReturnAllInputs())
+                    outputNames = Collections.emptyList();
+                else
+                    outputNames = new ArrayList<>(currConfig.getPythonInputs().keySet());
+
+                pool = new PythonProcessPool(currConfig.getPythonExecutable(), currConfig.getPythonPath(), code,
+                        currConfig.isSetupAndRun(), outputNames, currConfig.getPythonWorkers(),
+                        currConfig.getPythonWorkerTimeoutMillis());
+                processPools.put(configEntry.getKey(), pool);
+                processInputNames.put(configEntry.getKey(), PythonVariables.schemaFromMap(currConfig.getPythonInputs()).getVariables());
+            }
+
+            if (currConfig.isBatchMode()) {
+                Preconditions.checkState(pipelineStep.getInputNames().size() == 1,
+                        "Batch mode requires a single input, found %s", pipelineStep.getInputNames());
+                Preconditions.checkState(currConfig.getPythonInputs() != null && !currConfig.getPythonInputs().isEmpty(),
+                        "Batch mode requires python inputs to be specified");
+                Map<String, String> outputs = currConfig.getPythonOutputs() == null || currConfig.getPythonOutputs().isEmpty() ?
+                        currConfig.getPythonInputs() : currConfig.getPythonOutputs();
+                batchScripts.put(configEntry.getKey(), new BatchScript(code, PythonVariables.schemaFromMap(currConfig.getPythonInputs()),
+                        outputs, currConfig.isSetupAndRun(), pool));
+                continue;
+            }
+
+            if (pool != null)
+                continue;
+
             PythonTransformBuilder pythonTransformBuilder = PythonTransform.builder();
             pythonTransformBuilder.code(code)
                     .returnAllInputs(currConfig.isReturnAllInputs())
@@ -173,13 +224,26 @@ public class PythonStepRunner extends BaseStepRunner {
     }
 
     @Override
-    public void close() { }
+    public void close() {
+        for (PythonProcessPool pool : processPools.values()) {
+            pool.close();
+        }
+    }
 
     @Override
     public Record[] transform(Record[] input) {
+        if (!batchScripts.isEmpty()) {
+            Record[] ret = transformBatch(batchScripts.get(pipelineStep.inputNameAt(0)), input);
+            log.debug("Post python batch execution");
+            return ret;
+        }
+
         Record[] ret = new Record[input.length];
         for (int i = 0; i < ret.length; i++) {
-            if (pythonTransform.containsKey(pipelineStep.inputNameAt(i))) {
+            if (processPools.containsKey(pipelineStep.inputNameAt(i))) {
+                Preconditions.checkState(input[i].getRecord() != null && !input[i].getRecord().isEmpty(), "Record should not be empty!");
+                ret[i] = transformInProcess(pipelineStep.inputNameAt(i), input[i]);
+            } else if (pythonTransform.containsKey(pipelineStep.inputNameAt(i))) {
                 PythonTransform transformProcess = pythonTransform.get(pipelineStep.inputNameAt(i));
                 Preconditions.checkState(input[i].getRecord() != null && !input[i].getRecord().isEmpty(), "Record should not be empty!");
                 List<Writable> execute = transformProcess.map(input[i].getRecord());
@@ -197,4 +261,186 @@ public class PythonStepRunner extends BaseStepRunner {
     public void processValidWritable(Writable writable, List<Writable> record, int inputIndex, Object... extraArgs) {
         throw new UnsupportedOperationException();
     }
+
+    /**
+     * Run the script once for all input records.
+     * Each input variable is passed as one column for the whole batch:
+     * ndarrays are stacked along a new leading dimension, numbers and booleans
+     * become 1d arrays, and strings a list. Arrays are shared with numpy
+     * without copying where the data type allows.
+     * <p>
+     * Output row i is slice i of each ndarray output and element i of each list output.
+     * Any other output is a single value for the batch and is added to every row.
+     */
+    protected Record[] transformBatch(BatchScript script, Record[] input) {
+        int batchSize = input.length;
+        Map<String, Object> columns = new LinkedHashMap<>();
+        String[] inputNames = script.inputs.getVariables();
+        for (int j = 0; j < inputNames.length; j++) {
+            String name = inputNames[j];
+            switch (script.inputs.getType(name).getName()) {
+                case NDARRAY:
+                    INDArray[] rows = new INDArray[batchSize];
+                    for (int i = 0; i < batchSize; i++) {
+                        rows[i] = ((NDArrayWritable) column(input[i], j, name)).get();
+                    }
+
+                    columns.put(name, Nd4j.pile(rows));
+                    break;
+                case INT:
+                    long[] longs = new long[batchSize];
+                    for (int i = 0; i < batchSize; i++) {
+                        longs[i] = column(input[i], j, name).toLong();
+                    }
+
+                    columns.put(name, Nd4j.createFromArray(longs));
+                    break;
+                case FLOAT:
+                    double[] doubles = new double[batchSize];
+                    for (int i = 0; i < batchSize; i++) {
+                        doubles[i] = column(input[i], j, name).toDouble();
+                    }
+
+                    columns.put(name, Nd4j.createFromArray(doubles));
+                    break;
+                case BOOL:
+                    boolean[] booleans = new boolean[batchSize];
+                    for (int i = 0; i < batchSize; i++) {
+                        booleans[i] = Boolean.parseBoolean(column(input[i], j, name).toString());
+                    }
+
+                    columns.put(name, Nd4j.createFromArray(booleans));
+                    break;
+                case STR:
+                    Object[] strings = new Object[batchSize];
+                    for (int i = 0; i < batchSize; i++) {
+                        strings[i] = column(input[i], j, name).toString();
+                    }
+
+                    columns.put(name, strings);
+                    break;
+                default:
+                    throw new IllegalStateException("Unable to support type " + script.inputs.getType(name).getName().name() + " in batch mode");
+            }
+        }
+
+        Map<String, Object> results = script.pool != null ? script.pool.execute(columns) : execEmbedded(script, columns);
+        List<List<Writable>> rows = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            rows.add(new ArrayList<>(results.size()));
+        }
+
+        for (Map.Entry<String, Object> result : results.entrySet()) {
+            String name = result.getKey();
+            if (result.getValue() instanceof INDArray) {
+                INDArray arr = (INDArray) result.getValue();
+                Preconditions.checkState(arr.rank() > 0 && arr.size(0) == batchSize,
+                        "Output %s has shape %s, expected a leading dimension of %s", name, arr.shape(), batchSize);
+                for (int i = 0; i < batchSize; i++) {
+                    rows.get(i).add(new NDArrayWritable(arr.slice(i)));
+                }
+            } else if (result.getValue() instanceof Object[]) {
+                Object[] list = (Object[]) result.getValue();
+                Preconditions.checkState(list.length == batchSize,
+                        "Output %s has %s elements, expected %s", name, list.length, batchSize);
+                for (int i = 0; i < batchSize; i++) {
+                    rows.get(i).add(WritableValueRetriever.writableFromValue(list[i]));
+                }
+            } else {
+                Writable value = WritableValueRetriever.writableFromValue(result.getValue());
+                for (int i = 0; i < batchSize; i++) {
+                    rows.get(i).add(value);
+                }
+            }
+        }
+
+        Record[] ret = new Record[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            ret[i] = new org.datavec.api.records.impl.Record(rows.get(i), null);
+        }
+
+        return ret;
+    }
+
+    private static Map<String, Object> execEmbedded(BatchScript script, Map<String, Object> columns) {
+        PythonVariables inputs = new PythonVariables();
+        for (Map.Entry<String, Object> column : columns.entrySet()) {
+            if (column.getValue() instanceof INDArray)
+                inputs.addNDArray(column.getKey(), (INDArray) column.getValue());
+            else
+                inputs.addList(column.getKey(), (Object[]) column.getValue());
+        }
+
+        //outputs are filled in by the execution, so a new instance is needed per call
+        PythonVariables outputs = PythonVariables.schemaFromMap(script.outputs);
+        try {
+            if (script.setupAndRun)
+                PythonExecutioner.execWithSetupAndRun(script.code, inputs, outputs);
+            else
+                PythonExecutioner.exec(script.code, inputs, outputs);
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to execute python batch", e);
+        }
+
+        Map<String, Object> ret = new LinkedHashMap<>();
+        for (String name : outputs.getVariables()) {
+            switch (outputs.getType(name).getName()) {
+                case NDARRAY:
+                    ret.put(name, outputs.getNDArrayValue(name));
+                    break;
+                case LIST:
+                    ret.put(name, outputs.getListValue(name));
+                    break;
+                default:
+                    ret.put(name, outputs.getValue(name));
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Run the code for one record in a python worker process
+     */
+    protected Record transformInProcess(String inputName, Record input) {
+        String[] inputNames = processInputNames.get(inputName);
+        Map<String, Object> inputs = new LinkedHashMap<>();
+        for (int j = 0; j < inputNames.length; j++) {
+            inputs.put(inputNames[j], WritableValueRetriever.getUnderlyingValue(column(input, j, inputNames[j])));
+        }
+
+        Map<String, Object> results = processPools.get(inputName).execute(inputs);
+        List<Writable> writables = new ArrayList<>(results.size());
+        for (Object value : results.values()) {
+            if (value instanceof Object[])
+                writables.add(new Text(ObjectMappers.toJson(value)));
+            else
+                writables.add(WritableValueRetriever.writableFromValue(value));
+        }
+
+        return new org.datavec.api.records.impl.Record(writables, null);
+    }
+
+    private static Writable column(Record record, int index, String name) {
+        List<Writable> writables = record.getRecord();
+        Preconditions.checkState(writables != null && writables.size() > index, "Record has no value for input %s", name);
+        return writables.get(index);
+    }
+
+    private static class BatchScript {
+        private final String code;
+        private final PythonVariables inputs;
+        private final Map<String, String> outputs;
+        private final boolean setupAndRun;
+        //null to run in the embedded interpreter
+        private final PythonProcessPool pool;
+
+        private BatchScript(String code, PythonVariables inputs, Map<String, String> outputs, boolean setupAndRun, PythonProcessPool pool) {
+            this.code = code;
+            this.inputs = inputs;
+            this.outputs = outputs;
+            this.setupAndRun = setupAndRun;
+            this.pool = pool;
+        }
+    }
 }
@@ -0,0 +1,414 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+
+package ai.konduit.serving.util.python;
+
+import ai.konduit.serving.util.ObjectMappers;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.nd4j.base.Preconditions;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.io.ClassPathResource;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs python code in a pool of separate python processes,
+ * so CPU heavy python code is not limited to the single
+ * interpreter (and its global interpreter lock) embedded in the JVM.
+ * <p>
+ * Each worker runs {@code pythonexec/worker.py} with the code compiled once up front.
+ * Requests and responses are single json lines on the worker's stdin and stdout.
+ * ndarrays are not serialized: their raw data is written to a memory mapped file in
+ * the shared memory directory ({@code /dev/shm} when available) and mapped by the other side.
+ * <p>
+ * Each request is handed to an idle worker. A worker that crashed
+ * or failed to respond is restarted before it is used again. With a timeout,
+ * a worker not responding within it is killed and the request fails.
+ *
+ * @author Adam Gibson
+ */
+@Slf4j
+public class PythonProcessPool implements Closeable {
+
+    public final static String DEFAULT_PYTHON_EXECUTABLE = "python3";
+    private final static String WORKER_SCRIPT = "pythonexec/worker.py";
+
+    private final List<String> command;
+    private final String pythonPath;
+    private final String initMessage;
+    private final File sharedMemoryDirectory;
+    private final File workerScript;
+    private final List<Worker> workers;
+    private final BlockingQueue<Worker> idle;
+    private final long timeoutMillis;
+    private final ExecutorService responseReaders;
+    private volatile boolean closed;
+
+    /**
+     * Create a pool without a response timeout,
+     * see {@link #PythonProcessPool(String, String, String, boolean, List, int, long)}
+     */
+    public PythonProcessPool(String pythonExecutable, String pythonPath, String code, boolean setupAndRun,
+                             List<String> outputNames, int numWorkers) throws IOException {
+        this(pythonExecutable, pythonPath, code, setupAndRun, outputNames, numWorkers, 0);
+    }
+
+    /**
+     * @param pythonExecutable the python executable to run, {@link #DEFAULT_PYTHON_EXECUTABLE} when null
+     * @param pythonPath       the python path for the workers, may be null
+     * @param code             the code to run
+     * @param setupAndRun      whether the code defines setup() and run(inputs) functions
+     * @param outputNames      the names of the variables to return, all variables when empty
+     * @param numWorkers       the number of worker processes
+     * @param timeoutMillis    the time to wait for a worker to start or respond, 0 to wait indefinitely
+     * @throws IOException if the workers can't be started
+     */
+    public PythonProcessPool(String pythonExecutable, String pythonPath, String code, boolean setupAndRun,
+                             List<String> outputNames, int numWorkers, long timeoutMillis) throws IOException {
+        Preconditions.checkState(numWorkers > 0, "Number of python workers should be positive, got %s", numWorkers);
+        Preconditions.checkState(timeoutMillis >= 0, "Python worker timeout should not be negative, got %s", timeoutMillis);
+        this.timeoutMillis = timeoutMillis;
+        this.responseReaders = timeoutMillis > 0 ? Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "konduit-python-worker-reader");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        File shm = new File("/dev/shm");
+        this.sharedMemoryDirectory = shm.isDirectory() && shm.canWrite() ? shm : new File(System.getProperty("java.io.tmpdir"));
+        this.workerScript = File.createTempFile("konduit-python-worker", ".py");
+        this.workerScript.deleteOnExit();
+        try (InputStream is = new ClassPathResource(WORKER_SCRIPT).getInputStream()) {
+            FileUtils.copyInputStreamToFile(is, workerScript);
+        }
+
+        this.command = Arrays.asList(pythonExecutable == null ? DEFAULT_PYTHON_EXECUTABLE : pythonExecutable,
+                "-u", workerScript.getAbsolutePath());
+        this.pythonPath = pythonPath;
+
+        Map<String, Object> init = new LinkedHashMap<>();
+        init.put("shm_dir", sharedMemoryDirectory.getAbsolutePath());
+        init.put("code", code);
+        init.put("setup_and_run", setupAndRun);
+        init.put("outputs", outputNames);
+        this.initMessage = ObjectMappers.json().writeValueAsString(init).replace("\n", "");
+
+        this.workers = new ArrayList<>(numWorkers);
+        this.idle = new ArrayBlockingQueue<>(numWorkers);
+        try {
+            for (int i = 0; i < numWorkers; i++) {
+                Worker worker = new Worker(i);
+                worker.start();
+                workers.add(worker);
+                idle.add(worker);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Run the code once with the given inputs.
+     * Inputs and outputs are {@link INDArray}s, lists ({@code Object[]})
+     * or plain values (numbers, booleans and strings).
+     *
+     * @param inputs the input variables
+     * @return the output variables
+     */
+    public Map<String, Object> execute(Map<String, Object> inputs) {
+        Preconditions.checkState(!closed, "Python process pool was closed");
+        List<File> files = new ArrayList<>();
+        Worker worker;
+        try {
+            worker = idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a python worker", e);
+        }
+
+        try {
+            String response;
+            try {
+                String request = encodeRequest(inputs, files);
+                worker.ensureStarted();
+                response = worker.call(request);
+            } catch (IOException e) {
+                log.error("Python worker " + worker.id + " failed, it will be restarted", e);
+                worker.destroy();
+                throw new IllegalStateException("Python worker failed", e);
+            }
+
+            return decodeResponse(response, files);
+        } finally {
+            idle.offer(worker);
+            for (File file : files) {
+                if (!file.delete() && file.exists())
+                    log.warn("Unable to delete shared memory file {}", file);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Worker worker : workers) {
+            worker.destroy();
+        }
+
+        if (responseReaders != null)
+            responseReaders.shutdownNow();
+        workerScript.delete();
+    }
+
+    private String encodeRequest(Map<String, Object> inputs, List<File> files) throws IOException {
+        Map<String, Object> encoded = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : inputs.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof INDArray) {
+                encoded.put(entry.getKey(), Collections.singletonMap("ndarray", writeArray((INDArray) value, files)));
+            } else {
+                encoded.put(entry.getKey(), Collections.singletonMap("value", value));
+            }
+        }
+
+        return ObjectMappers.json().writeValueAsString(Collections.singletonMap("inputs", encoded)).replace("\n", "");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> decodeResponse(String response, List<File> files) {
+        Map<String, Object> message;
+        try {
+            message = ObjectMappers.json().readValue(response, Map.class);
+        } catch (IOException e) {
+            throw new IllegalStateException("Invalid response from python worker: " + response, e);
+        }
+
+        //output files are created by the worker, collect them before anything can fail
+        Map<String, Map<String, Object>> outputs = (Map<String, Map<String, Object>>) message.get("outputs");
+        if (outputs != null) {
+            for (Map<String, Object> output : outputs.values()) {
+                Map<String, Object> spec = (Map<String, Object>) output.get("ndarray");
+                if (spec != null && spec.get("path") != null)
+                    files.add(new File((String) spec.get("path")));
+            }
+        }
+
+        if (message.containsKey("error")) {
+            throw new IllegalStateException("Error executing python code:\n" + message.get("error"));
+        }
+
+        Preconditions.checkState(outputs != null, "No outputs in response from python worker");
+        Map<String, Object> ret = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, Object>> entry : outputs.entrySet()) {
+            Map<String, Object> spec = (Map<String, Object>) entry.getValue().get("ndarray");
+            ret.put(entry.getKey(), spec != null ? readArray(spec) : plainValue(entry.getValue().get("value")));
+        }
+
+        return ret;
+    }
+
+    private Map<String, Object> writeArray(INDArray arr, List<File> files) throws IOException {
+        INDArray c = arr.isView() || arr.ordering() != 'c' ? arr.dup('c') : arr;
+        Map<String, Object> spec = new LinkedHashMap<>();
+        spec.put("dtype", numpyDataType(c.dataType()));
+        spec.put("shape", c.shape());
+        if (c.length() == 0) {
+            spec.put("path", null);
+            return spec;
+        }
+
+        File file = File.createTempFile("konduit-jvm-", ".bin", sharedMemoryDirectory);
+        files.add(file);
+        long bytes = c.length() * c.dataType().width();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            ByteBuffer data = c.data().asNio();
+            data.limit(data.position() + (int) bytes);
+            mapped.put(data);
+        }
+
+        spec.put("path", file.getAbsolutePath());
+        return spec;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static INDArray readArray(Map<String, Object> spec) {
+        DataType dataType = dataTypeForNumpy((String) spec.get("dtype"));
+        List<Number> dims = (List<Number>) spec.get("shape");
+        long[] shape = new long[dims.size()];
+        for (int i = 0; i < shape.length; i++) {
+            shape[i] = dims.get(i).longValue();
+        }
+
+        if (spec.get("path") == null) {
+            return Nd4j.create(dataType, shape);
+        }
+
+        INDArray ret = Nd4j.createUninitialized(dataType, shape, 'c');
+        File file = new File((String) spec.get("path"));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long bytes = ret.length() * dataType.width();
+            Preconditions.checkState(channel.size() >= bytes, "Shared memory file %s is too small for array of shape %s", file, shape);
+            ret.data().asNio().put(channel.map(FileChannel.MapMode.READ_ONLY, 0, bytes));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read array from shared memory file " + file, e);
+        }
+
+        return ret;
+    }
+
+    private static Object plainValue(Object value) {
+        if (value instanceof Integer)
+            return ((Integer) value).longValue();
+        if (value instanceof List)
+            return ((List<?>) value).toArray();
+        return value;
+    }
+
+    private static String numpyDataType(DataType dataType) {
+        switch (dataType) {
+            case DOUBLE:
+                return "float64";
+            case FLOAT:
+                return "float32";
+            case HALF:
+                return "float16";
+            case LONG:
+                return "int64";
+            case INT:
+                return "int32";
+            case SHORT:
+                return "int16";
+            case BYTE:
+                return "int8";
+            case UBYTE:
+                return "uint8";
+            case UINT16:
+                return "uint16";
+            case UINT32:
+                return "uint32";
+            case UINT64:
+                return "uint64";
+            case BOOL:
+                return "bool";
+            default:
+                throw new IllegalArgumentException("Data type " + dataType + " can't be passed to python workers");
+        }
+    }
+
+    private static DataType dataTypeForNumpy(String name) {
+        for (DataType dataType : new DataType[]{DataType.DOUBLE, DataType.FLOAT, DataType.HALF, DataType.LONG,
+                DataType.INT, DataType.SHORT, DataType.BYTE, DataType.UBYTE, DataType.UINT16, DataType.UINT32,
+                DataType.UINT64, DataType.BOOL}) {
+            if (numpyDataType(dataType).equals(name))
+                return dataType;
+        }
+
+        throw new IllegalArgumentException("Numpy data type " + name + " is not supported");
+    }
+
+    private class Worker {
+        private final int id;
+        private Process process;
+        private BufferedWriter writer;
+        private BufferedReader reader;
+
+        private Worker(int id) {
+            this.id = id;
+        }
+
+        private void start() throws IOException {
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+            if (pythonPath != null) {
+                String current = builder.environment().get("PYTHONPATH");
+                builder.environment().put("PYTHONPATH", current == null ? pythonPath : pythonPath + File.pathSeparator + current);
+            }
+
+            process = builder.start();
+            writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            String ready = call(initMessage);
+            if (!ready.contains("\"ready\"")) {
+                destroy();
+                throw new IOException("Python worker " + id + " failed to start: " + ready);
+            }
+
+            log.info("Started python worker {}", id);
+        }
+
+        private void ensureStarted() throws IOException {
+            if (process == null || !process.isAlive()) {
+                if (process != null)
+                    log.warn("Python worker {} exited with code {}, restarting", id, process.exitValue());
+                destroy();
+                start();
+            }
+        }
+
+        private String call(String message) throws IOException {
+            writer.write(message);
+            writer.write('\n');
+            writer.flush();
+            String line = timeoutMillis > 0 ? readLine(reader) : reader.readLine();
+            if (line == null)
+                throw new EOFException("Python worker " + id + " exited");
+            return line;
+        }
+
+        private String readLine(BufferedReader reader) throws IOException {
+            Future<String> line = responseReaders.submit(reader::readLine);
+            try {
+                return line.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                //killing the process also ends the pending read
+                destroy();
+                throw new IOException("Python worker " + id + " did not respond within " + timeoutMillis + " milliseconds");
+            } catch (InterruptedException e) {
+                destroy();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for python worker " + id);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException) e.getCause();
+                throw new IOException("Unable to read response of python worker " + id, e.getCause());
+            }
+        }
+
+        private void destroy() {
+            if (process != null) {
+                process.destroyForcibly();
+                process = null;
+            }
+        }
+    }
+}
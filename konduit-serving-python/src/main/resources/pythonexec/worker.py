@@ -0,0 +1,134 @@
+# Python worker process used by ai.konduit.serving.util.python.PythonProcessPool
+#
+# Requests and responses are single json lines on stdin/stdout.
+# ndarrays are passed through files in a shared memory directory:
+# {"ndarray": {"path": ..., "dtype": "float32", "shape": [2, 3]}}
+# any other value is passed inline as {"value": ...}
+import json
+import os
+import sys
+import traceback
+
+np = None
+
+
+def _numpy():
+    # numpy is only needed once ndarrays are passed
+    global np
+    if np is None:
+        import numpy
+        np = numpy
+    return np
+
+
+def _size(shape):
+    size = 1
+    for dim in shape:
+        size *= dim
+    return size
+
+
+def _read_array(spec):
+    numpy = _numpy()
+    shape = tuple(spec['shape'])
+    if spec.get('path') is None:
+        return numpy.zeros(shape, dtype=spec['dtype'])
+    # copy on write: in place updates by the code never touch the shared file
+    flat = numpy.memmap(spec['path'], dtype=spec['dtype'], mode='c', shape=(_size(shape),))
+    return flat.reshape(shape)
+
+
+def _write_array(value, path):
+    numpy = _numpy()
+    value = numpy.ascontiguousarray(value)
+    spec = {'dtype': str(value.dtype), 'shape': list(value.shape), 'path': None}
+    if value.size > 0:
+        out = numpy.memmap(path, dtype=value.dtype, mode='w+', shape=(value.size,))
+        out[:] = value.reshape(-1)
+        out.flush()
+        del out
+        spec['path'] = path
+    return {'ndarray': spec}
+
+
+def _plain(value):
+    if hasattr(value, 'item') and hasattr(value, 'dtype'):
+        return value.item()
+    if isinstance(value, (list, tuple)):
+        return [_plain(v) for v in value]
+    return value
+
+
+def _returnable(name, value):
+    # all variables are returned when no outputs are given: skip modules, functions and internals
+    if name.startswith('__'):
+        return False
+    if isinstance(value, (bool, int, float, str, list, tuple, dict)):
+        return True
+    return type(value).__module__ == 'numpy'
+
+
+def _decode(value):
+    if 'ndarray' in value:
+        return _read_array(value['ndarray'])
+    return value['value']
+
+
+def _encode(value, path):
+    if type(value).__name__ == 'ndarray' and type(value).__module__ == 'numpy':
+        return _write_array(value, path)
+    return {'value': _plain(value)}
+
+
+def main():
+    # user code may print: keep the real stdout for the protocol only
+    protocol = os.fdopen(os.dup(1), 'w')
+    sys.stdout = sys.stderr
+
+    init = json.loads(sys.stdin.readline())
+    prefix = os.path.join(init['shm_dir'], 'konduit-py-%d-' % os.getpid())
+    code = compile(init['code'], '<python step>', 'exec')
+    setup_and_run = init['setup_and_run']
+    outputs = init['outputs']
+    namespace = {}
+    if setup_and_run:
+        exec(code, namespace)
+        if 'setup' in namespace:
+            namespace['setup']()
+
+    protocol.write(json.dumps({'ready': True}) + '\n')
+    protocol.flush()
+
+    counter = 0
+    for line in sys.stdin:
+        written = []
+        try:
+            request = json.loads(line)
+            inputs = dict((name, _decode(value)) for name, value in request['inputs'].items())
+            if setup_and_run:
+                results = namespace['run'](inputs)
+            else:
+                results = inputs
+                exec(code, results)
+
+            names = outputs if outputs else [name for name in results if _returnable(name, results[name])]
+            encoded = {}
+            for name in names:
+                counter += 1
+                path = prefix + str(counter)
+                written.append(path)
+                encoded[name] = _encode(results[name], path)
+            response = {'outputs': encoded}
+        except Exception:
+            # the jvm only deletes the output files it is told about
+            for path in written:
+                if os.path.exists(path):
+                    os.remove(path)
+            response = {'error': traceback.format_exc()}
+
+        protocol.write(json.dumps(response) + '\n')
+        protocol.flush()
+
+
+if __name__ == '__main__':
+    main()
@@ -258,6 +258,12 @@ public class ConfigJsonCoverageTrackingTests {
         testConfigSerDe(MemMapConfig.builder().arrayPath("/my/array/path").initialMemmapSize(100000).unkVectorPath("/my/array/unknown").build());
     }
 
+    @Test
+    public void testResultCacheConfig() {
+        testConfigSerDe(ResultCacheConfig.builder().build());
+        testConfigSerDe(ResultCacheConfig.builder().maxSizeBytes(1024).ttlMillis(5000).collapseConcurrentRequests(false).build());
+    }
+
     @Test
     public void testParallelInferenceConfig(){
         testConfigSerDe(ParallelInferenceConfig.defaultConfig());
@@ -301,6 +307,7 @@ public class ConfigJsonCoverageTrackingTests {
     public void testPmmlConfig(){
         testConfigSerDe(PmmlConfig.defaultConfig());
         testConfigSerDe(PmmlConfig.builder().evaluatorFactoryName("my.factory.class").build());
+        testConfigSerDe(PmmlConfig.builder().sharedEvaluator(true).build());
     }
 
     @Test
@@ -0,0 +1,147 @@
+/*
+ *       Copyright (c) 2020 Konduit AI.
+ *
+ *       This program and the accompanying materials are made available under the
+ *       terms of the Apache License, Version 2.0 which is available at
+ *       https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *       Unless required by applicable law or agreed to in writing, software
+ *       distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *       WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *       License for the specific language governing permissions and limitations
+ *       under the License.
+ *
+ *       SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+
+package ai.konduit.serving.configprovider;
+
+import ai.konduit.serving.config.ExecutionStrategy;
+import ai.konduit.serving.config.ServingConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpServer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Router;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(VertxUnitRunner.class)
+@NotThreadSafe
+public class BlockingRequestExecutorTest {
+
+    private Vertx vertx;
+    private HttpServer server;
+    private SimpleMeterRegistry registry;
+    private BlockingRequestExecutor executor;
+    private CountDownLatch blockingStarted;
+    private CountDownLatch proceed;
+
+    @Before
+    public void before(TestContext context) {
+        vertx = Vertx.vertx();
+        registry = new SimpleMeterRegistry();
+        blockingStarted = new CountDownLatch(1);
+        proceed = new CountDownLatch(1);
+
+        ServingConfig servingConfig = ServingConfig.builder()
+                .executionStrategy(ExecutionStrategy.DEDICATED_WORKER_POOL)
+                .workerPoolSize(1)
+                .maxQueuedRequests(1)
+                .build();
+        executor = new BlockingRequestExecutor(vertx, servingConfig, registry);
+
+        Router router = Router.router(vertx);
+        router.get("/blocking").handler(ctx -> executor.<Void>executeBlocking(ctx, promise -> {
+            blockingStarted.countDown();
+            try {
+                proceed.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            promise.complete();
+        }, result -> ctx.response().end()));
+
+        server = vertx.createHttpServer()
+                .requestHandler(router)
+                .listen(0, context.asyncAssertSuccess());
+    }
+
+    @After
+    public void after(TestContext context) {
+        proceed.countDown();
+        executor.close();
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test(timeout = 60000)
+    public void testFullQueueIsRejected(TestContext context) throws Exception {
+        HttpClient client = vertx.createHttpClient();
+        Async completed = context.async(2);
+
+        //the only worker thread is busy with the first request
+        client.getNow(server.actualPort(), "localhost", "/blocking", response -> {
+            context.assertEquals(200, response.statusCode());
+            completed.countDown();
+        });
+        context.assertTrue(blockingStarted.await(30, TimeUnit.SECONDS), "Blocking call did not start");
+
+        //the second request fills the queue
+        client.getNow(server.actualPort(), "localhost", "/blocking", response -> {
+            context.assertEquals(200, response.statusCode());
+            completed.countDown();
+        });
+        long deadline = System.currentTimeMillis() + 10000;
+        while (executor.queueDepth() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        context.assertEquals(1, executor.queueDepth());
+        context.assertEquals(1.0, registry.get("blocking_queue_depth").tag("pool", executor.getPoolName()).gauge().value());
+
+        //the third one is answered right away
+        Async rejected = context.async();
+        client.getNow(server.actualPort(), "localhost", "/blocking", response -> {
+            context.assertEquals(503, response.statusCode());
+            rejected.complete();
+        });
+        rejected.await();
+
+        proceed.countDown();
+        completed.await();
+
+        Timer wait = registry.get("blocking_queue_wait").tag("pool", executor.getPoolName()).timer();
+        context.assertEquals(2L, wait.count());
+        context.assertEquals(0, executor.queueDepth());
+    }
+
+    @Test
+    public void testUnnamedPipelinesGetTheirOwnPool(TestContext context) {
+        BlockingRequestExecutor other = new BlockingRequestExecutor(vertx, ServingConfig.builder().build(), registry);
+        try {
+            context.assertNotEquals(executor.getPoolName(), other.getPoolName());
+            context.assertTrue(other.getPoolName().startsWith(BlockingRequestExecutor.DEFAULT_POOL_NAME_PREFIX));
+
+            //each executor publishes its own queue metrics
+            for (String pool : new String[]{executor.getPoolName(), other.getPoolName()}) {
+                Gauge depth = registry.find("blocking_queue_depth").tag("pool", pool).gauge();
+                context.assertNotNull(depth);
+                context.assertNotNull(registry.find("blocking_queue_wait").tag("pool", pool).timer());
+            }
+        } finally {
+            other.close();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *       Copyright (c) 2020 Konduit AI.
+ *
+ *       This program and the accompanying materials are made available under the
+ *       terms of the Apache License, Version 2.0 which is available at
+ *       https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *       Unless required by applicable law or agreed to in writing, software
+ *       distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *       WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *       License for the specific language governing permissions and limitations
+ *       under the License.
+ *
+ *       SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+
+package ai.konduit.serving.configprovider;
+
+import ai.konduit.serving.config.ServingConfig;
+import ai.konduit.serving.input.conversion.StreamedUpload;
+import ai.konduit.serving.verticles.VerticleConstants;
+import io.netty.util.ReferenceCounted;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpServer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.Router;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(VertxUnitRunner.class)
+@NotThreadSafe
+public class StreamingUploadHandlerTest {
+
+    private static final String BOUNDARY = "konduit-boundary";
+    private static final String CONTENT = "in memory upload content";
+
+    private Vertx vertx;
+    private HttpServer server;
+    private CountDownLatch blockingStarted;
+    private CountDownLatch proceed;
+    private AtomicReference<ReferenceCounted> buffers;
+    private AtomicReference<String> readInBlockingCall;
+
+    @Before
+    public void before(TestContext context) {
+        vertx = Vertx.vertx();
+        blockingStarted = new CountDownLatch(1);
+        proceed = new CountDownLatch(1);
+        buffers = new AtomicReference<>();
+        readInBlockingCall = new AtomicReference<>();
+
+        ServingConfig servingConfig = ServingConfig.builder().build();
+        BlockingRequestExecutor executor = new BlockingRequestExecutor(vertx, servingConfig, null);
+
+        Router router = Router.router(vertx);
+        router.post("/upload").handler(new StreamingUploadHandler(servingConfig));
+        router.post("/upload").handler(ctx -> {
+            buffers.set(ctx.get(VerticleConstants.STREAMED_UPLOAD_BUFFERS));
+            List<StreamedUpload> uploads = ctx.get(VerticleConstants.STREAMED_UPLOADS);
+            executor.<String>executeBlocking(ctx, promise -> {
+                blockingStarted.countDown();
+                try {
+                    proceed.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                String read = uploads.get(0).getName() + "=" + uploads.get(0).getContent().toString();
+                readInBlockingCall.set(read);
+                promise.complete(read);
+            }, result -> ctx.response().end(result.result()));
+        });
+
+        server = vertx.createHttpServer()
+                .requestHandler(router)
+                .listen(0, context.asyncAssertSuccess());
+    }
+
+    @After
+    public void after(TestContext context) {
+        proceed.countDown();
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test(timeout = 60000)
+    public void testInMemoryUpload(TestContext context) throws Exception {
+        proceed.countDown();
+        Async async = context.async();
+        vertx.createHttpClient().post(server.actualPort(), "localhost", "/upload", response -> {
+            context.assertEquals(200, response.statusCode());
+            response.bodyHandler(body -> {
+                context.assertEquals("part=" + CONTENT, body.toString());
+                async.complete();
+            });
+        }).putHeader("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .putHeader("Content-Length", String.valueOf(multipartBody().length()))
+                .end(multipartBody());
+        async.await();
+
+        context.assertNotNull(buffers.get(), "Upload was not decoded in memory");
+        awaitRefCnt(buffers.get(), 0);
+        context.assertEquals(0, buffers.get().refCnt());
+    }
+
+    @Test(timeout = 60000)
+    public void testClientDisconnectDuringBlockingCall(TestContext context) throws Exception {
+        HttpClient client = vertx.createHttpClient();
+        client.post(server.actualPort(), "localhost", "/upload", response -> {})
+                .putHeader("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .putHeader("Content-Length", String.valueOf(multipartBody().length()))
+                .end(multipartBody());
+
+        context.assertTrue(blockingStarted.await(30, TimeUnit.SECONDS), "Blocking call did not start");
+        ReferenceCounted uploadBuffers = buffers.get();
+        context.assertEquals(2, uploadBuffers.refCnt());
+
+        //the request drops its reference when the connection closes, the running call keeps its own
+        client.close();
+        awaitRefCnt(uploadBuffers, 1);
+        context.assertEquals(1, uploadBuffers.refCnt());
+
+        proceed.countDown();
+        awaitRefCnt(uploadBuffers, 0);
+        context.assertEquals("part=" + CONTENT, readInBlockingCall.get());
+        context.assertEquals(0, uploadBuffers.refCnt());
+    }
+
+    private static Buffer multipartBody() {
+        return Buffer.buffer("--" + BOUNDARY + "\r\n" +
+                "Content-Disposition: form-data; name=\"part\"; filename=\"part.bin\"\r\n" +
+                "Content-Type: application/octet-stream\r\n\r\n" +
+                CONTENT + "\r\n" +
+                "--" + BOUNDARY + "--\r\n");
+    }
+
+    private static void awaitRefCnt(ReferenceCounted referenceCounted, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (referenceCounted.refCnt() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ *       Copyright (c) 2020 Konduit AI.
+ *
+ *       This program and the accompanying materials are made available under the
+ *       terms of the Apache License, Version 2.0 which is available at
+ *       https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *       Unless required by applicable law or agreed to in writing, software
+ *       distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *       WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *       License for the specific language governing permissions and limitations
+ *       under the License.
+ *
+ *       SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package ai.konduit.serving.executioner;
+
+import ai.konduit.serving.pipeline.PipelineStep;
+import ai.konduit.serving.pipeline.PipelineStepRunner;
+import ai.konduit.serving.pipeline.step.CustomPipelineStep;
+import ai.konduit.serving.pipeline.step.PythonStep;
+import org.datavec.api.records.Record;
+import org.datavec.api.writable.Writable;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class PipelineCreationTest {
+
+    @Test
+    public void testParallelCreationKeepsStepOrder() {
+        //later steps finish first when created in parallel
+        List<PipelineStep> steps = Arrays.asList(
+                sleepingStep(300),
+                sleepingStep(200),
+                sleepingStep(100),
+                sleepingStep(0));
+
+        Pipeline pipeline = Pipeline.getPipeline(steps, true);
+
+        assertEquals(steps.size(), pipeline.getSteps().size());
+        for (int i = 0; i < steps.size(); i++) {
+            assertSame(steps.get(i), pipeline.getSteps().get(i).getPipelineStep());
+        }
+
+        List<Long> startupMillis = pipeline.getStepStartupMillis();
+        assertEquals(steps.size(), startupMillis.size());
+        assertTrue(startupMillis.get(0) >= 300);
+        assertTrue(startupMillis.get(1) >= 200);
+        assertTrue(startupMillis.get(2) >= 100);
+        assertTrue(startupMillis.get(3) >= 0);
+    }
+
+    @Test
+    public void testPythonStepCreatedOnCallingThread() {
+        AtomicReference<Thread> creatingThread = new AtomicReference<>();
+        PythonStep pythonStep = new PythonStep() {
+            @Override
+            public PipelineStepRunner createRunner() {
+                creatingThread.set(Thread.currentThread());
+                return new TestRunner(this, null);
+            }
+        };
+
+        Pipeline pipeline = Pipeline.getPipeline(Arrays.asList(sleepingStep(0), pythonStep), true);
+
+        assertEquals(2, pipeline.getSteps().size());
+        assertSame(Thread.currentThread(), creatingThread.get());
+    }
+
+    @Test
+    public void testSequentialFailureClosesCreatedRunners() {
+        CountDownLatch closed = new CountDownLatch(1);
+        AtomicInteger created = new AtomicInteger();
+        List<PipelineStep> steps = Arrays.asList(
+                step(self -> {
+                    created.incrementAndGet();
+                    return new TestRunner(self, closed);
+                }),
+                step(self -> {
+                    throw new IllegalStateException("Unable to load model");
+                }),
+                step(self -> {
+                    created.incrementAndGet();
+                    return new TestRunner(self, null);
+                }));
+
+        try {
+            Pipeline.getPipeline(steps);
+            fail("Expected pipeline creation to fail");
+        } catch (IllegalStateException e) {
+            assertEquals("Unable to load model", e.getMessage());
+        }
+
+        assertEquals(0, closed.getCount());
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void testParallelFailureClosesRunnersFinishingLater() throws Exception {
+        assumeTrue(Runtime.getRuntime().availableProcessors() >= 2);
+
+        CountDownLatch slowStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        List<PipelineStep> steps = Arrays.asList(
+                step(self -> {
+                    awaitUninterruptibly(slowStarted);
+                    throw new IllegalStateException("Unable to load model");
+                }),
+                step(self -> {
+                    slowStarted.countDown();
+                    //keeps loading after the pipeline gave up on it
+                    awaitUninterruptibly(release);
+                    return new TestRunner(self, closed);
+                }));
+
+        try {
+            Pipeline.getPipeline(steps, true);
+            fail("Expected pipeline creation to fail");
+        } catch (IllegalStateException e) {
+            assertEquals("Unable to load model", e.getMessage());
+        }
+
+        assertEquals(1, closed.getCount());
+        release.countDown();
+        assertTrue("Runner created after the failure was not closed", closed.await(10, TimeUnit.SECONDS));
+    }
+
+    private static PipelineStep step(RunnerFactory factory) {
+        return new CustomPipelineStep() {
+            @Override
+            public PipelineStepRunner createRunner() {
+                return factory.create(this);
+            }
+        };
+    }
+
+    private static PipelineStep sleepingStep(long millis) {
+        return step(self -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return new TestRunner(self, null);
+        });
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private interface RunnerFactory {
+        PipelineStepRunner create(PipelineStep<?> self);
+    }
+
+    private static class TestRunner implements PipelineStepRunner {
+        private final PipelineStep<?> step;
+        private final CountDownLatch closed;
+
+        private TestRunner(PipelineStep<?> step, CountDownLatch closed) {
+            this.step = step;
+            this.closed = closed;
+        }
+
+        @Override
+        public void close() {
+            if (closed != null) {
+                closed.countDown();
+            }
+        }
+
+        @Override
+        public PipelineStep<?> getPipelineStep() {
+            return step;
+        }
+
+        @Override
+        public Writable[][] transform(Object... input) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Writable[][] transform(Object[][] input) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Record[] transform(Record[] input) {
+            return input;
+        }
+    }
+}
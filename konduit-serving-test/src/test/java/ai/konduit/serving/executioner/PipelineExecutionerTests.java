@@ -29,11 +29,14 @@ import ai.konduit.serving.model.PythonConfig.PythonConfigBuilder;
 import ai.konduit.serving.pipeline.config.ObjectDetectionConfig;
 import ai.konduit.serving.pipeline.step.ImageLoadingStep;
 import ai.konduit.serving.pipeline.step.ModelStep;
+import ai.konduit.serving.pipeline.step.PmmlStep;
 import ai.konduit.serving.pipeline.step.PythonStep;
 import ai.konduit.serving.util.PortUtils;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import junit.framework.TestCase;
+import ai.konduit.serving.output.adapter.MultiOutputAdapter;
+import org.datavec.api.writable.Text;
 import org.datavec.python.PythonType;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -42,10 +45,16 @@ import org.nd4j.linalg.io.ClassPathResource;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class PipelineExecutionerTests {
 
@@ -264,4 +273,72 @@ public class PipelineExecutionerTests {
     }
 
 
+
+    @Test
+    public void testSingleTextRecordIsWrittenAsObject() {
+        org.datavec.api.records.Record[] jsonText = {
+                new org.datavec.api.records.impl.Record(Collections.singletonList(new Text("{\"key\": 1}")), null)};
+        org.datavec.api.records.Record[] plainText = {
+                new org.datavec.api.records.impl.Record(Collections.singletonList(new Text("Iris-setosa")), null)};
+        org.datavec.api.records.Record[] twoRecords = {plainText[0], plainText[0]};
+        PythonStep pythonStep = PythonStep.builder().build();
+
+        //text from other steps keeps the {"name": "text"} shape
+        assertTrue(PipelineExecutioner.isTextObjectRecord(jsonText, pythonStep));
+        assertTrue(PipelineExecutioner.isTextObjectRecord(plainText, pythonStep));
+        assertTrue(PipelineExecutioner.isTextObjectRecord(plainText, null));
+        assertFalse(PipelineExecutioner.isTextObjectRecord(twoRecords, pythonStep));
+
+        //typed PMML rows are always an array: [{"class": "Iris-setosa"}]
+        assertFalse(PipelineExecutioner.isTextObjectRecord(plainText, PmmlStep.builder().build()));
+        ModelStep pmmlModelStep = ModelStep.builder()
+                .modelConfig(PmmlConfig.builder()
+                        .modelConfigType(ModelConfigType.pmml("model.pmml"))
+                        .build())
+                .build();
+        assertFalse(PipelineExecutioner.isTextObjectRecord(plainText, pmmlModelStep));
+    }
+
+    @Test
+    public void testOutputAdaptersCreatedOnce() throws Exception {
+        PipelineExecutioner pipelineExecutioner = new PipelineExecutioner(InferenceConfiguration.builder().build());
+        ObjectDetectionConfig config = ObjectDetectionConfig.builder().numLabels(80).build();
+
+        MultiOutputAdapter raw = pipelineExecutioner.outputAdapterFor(Output.PredictionType.RAW, config);
+        MultiOutputAdapter yolo = pipelineExecutioner.outputAdapterFor(Output.PredictionType.YOLO, config);
+        assertSame(raw, pipelineExecutioner.outputAdapterFor(Output.PredictionType.RAW, config));
+        assertSame(yolo, pipelineExecutioner.outputAdapterFor(Output.PredictionType.YOLO,
+                ObjectDetectionConfig.builder().numLabels(80).build()));
+
+        //concurrent requests share the same adapter
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<MultiOutputAdapter>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                futures.add(executorService.submit(() -> pipelineExecutioner.outputAdapterFor(Output.PredictionType.SSD, config)));
+            }
+
+            MultiOutputAdapter ssd = futures.get(0).get();
+            for (Future<MultiOutputAdapter> future : futures) {
+                assertSame(ssd, future.get());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testOutputAdaptersRebuiltAfterConfigChange() throws Exception {
+        PipelineExecutioner pipelineExecutioner = new PipelineExecutioner(InferenceConfiguration.builder().build());
+        ObjectDetectionConfig first = ObjectDetectionConfig.builder().numLabels(80).threshold(0.5).build();
+        ObjectDetectionConfig second = ObjectDetectionConfig.builder().numLabels(80).threshold(0.8).build();
+
+        MultiOutputAdapter raw = pipelineExecutioner.outputAdapterFor(Output.PredictionType.RAW, first);
+        MultiOutputAdapter yolo = pipelineExecutioner.outputAdapterFor(Output.PredictionType.YOLO, first);
+
+        MultiOutputAdapter rebuilt = pipelineExecutioner.outputAdapterFor(Output.PredictionType.YOLO, second);
+        assertNotSame(yolo, rebuilt);
+        assertNotSame(raw, pipelineExecutioner.outputAdapterFor(Output.PredictionType.RAW, second));
+        assertSame(rebuilt, pipelineExecutioner.outputAdapterFor(Output.PredictionType.YOLO, second));
+    }
 }
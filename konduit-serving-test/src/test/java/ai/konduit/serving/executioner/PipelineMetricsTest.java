@@ -0,0 +1,131 @@
+/*
+ *       Copyright (c) 2020 Konduit AI.
+ *
+ *       This program and the accompanying materials are made available under the
+ *       terms of the Apache License, Version 2.0 which is available at
+ *       https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *       Unless required by applicable law or agreed to in writing, software
+ *       distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *       WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *       License for the specific language governing permissions and limitations
+ *       under the License.
+ *
+ *       SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package ai.konduit.serving.executioner;
+
+import ai.konduit.serving.model.ModelConfigType;
+import ai.konduit.serving.model.OnnxConfig;
+import ai.konduit.serving.pipeline.PipelineStep;
+import ai.konduit.serving.pipeline.PipelineStepRunner;
+import ai.konduit.serving.pipeline.step.ModelStep;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.datavec.api.records.Record;
+import org.datavec.api.writable.IntWritable;
+import org.datavec.api.writable.Writable;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PipelineMetricsTest {
+
+    @Test
+    public void testStepMetrics() {
+        ModelStep modelStep = ModelStep.builder()
+                .modelConfig(OnnxConfig.builder().modelConfigType(ModelConfigType.onnx("/models/squeezenet.onnx")).build())
+                .build();
+        Pipeline pipeline = Pipeline.builder()
+                .step(new DuplicatingRunner(null))
+                .step(new DuplicatingRunner(modelStep))
+                .build();
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        pipeline.bindMetrics(registry);
+
+        Record[] outputs = pipeline.doPipeline(new Record[]{record(1), record(2)});
+        assertEquals(8, outputs.length);
+        pipeline.doPipeline(new Record[]{record(3)});
+
+        Timer first = registry.get(PipelineMetrics.STEP_LATENCY)
+                .tags("step", "0", "type", "DuplicatingRunner", "model", "none")
+                .timer();
+        assertEquals(2, first.count());
+        assertTrue(first.totalTime(TimeUnit.NANOSECONDS) > 0);
+
+        Timer second = registry.get(PipelineMetrics.STEP_LATENCY)
+                .tags("step", "1", "type", "ModelStep", "model", "squeezenet.onnx")
+                .timer();
+        assertEquals(2, second.count());
+
+        assertEquals(3.0, registry.get(PipelineMetrics.STEP_RECORDS_IN).tag("step", "0").counter().count(), 0.0);
+        assertEquals(6.0, registry.get(PipelineMetrics.STEP_RECORDS_OUT).tag("step", "0").counter().count(), 0.0);
+        assertEquals(6.0, registry.get(PipelineMetrics.STEP_RECORDS_IN).tag("step", "1").counter().count(), 0.0);
+        assertEquals(12.0, registry.get(PipelineMetrics.STEP_RECORDS_OUT).tag("step", "1").counter().count(), 0.0);
+
+        if (new PipelineMetrics(new SimpleMeterRegistry(), pipeline.getSteps()).isAllocationTracked()) {
+            //each step allocates at least its output array
+            assertEquals(2, registry.get(PipelineMetrics.STEP_ALLOCATED).tag("step", "0").summary().count());
+            assertTrue(registry.get(PipelineMetrics.STEP_ALLOCATED).tag("step", "0").summary().totalAmount() > 0);
+        }
+    }
+
+    @Test
+    public void testUnboundPipelineIsNotTimed() {
+        Pipeline pipeline = Pipeline.builder()
+                .step(new DuplicatingRunner(null))
+                .build();
+        assertEquals(2, pipeline.doPipeline(new Record[]{record(1)}).length);
+    }
+
+    private static Record record(int value) {
+        return new org.datavec.api.records.impl.Record(Collections.singletonList(new IntWritable(value)), null);
+    }
+
+    /**
+     * Returns each input record twice
+     */
+    private static class DuplicatingRunner implements PipelineStepRunner {
+        private final PipelineStep<?> step;
+
+        private DuplicatingRunner(PipelineStep<?> step) {
+            this.step = step;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public PipelineStep<?> getPipelineStep() {
+            return step;
+        }
+
+        @Override
+        public Writable[][] transform(Object... input) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Writable[][] transform(Object[][] input) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Record[] transform(Record[] input) {
+            Record[] ret = new Record[input.length * 2];
+            for (int i = 0; i < input.length; i++) {
+                ret[2 * i] = input[i];
+                ret[2 * i + 1] = input[i];
+            }
+
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+package ai.konduit.serving.executioner.inference;
+
+import ai.konduit.serving.config.ParallelInferenceConfig;
+import ai.konduit.serving.model.loader.OnnxModelLoader;
+import ai.konduit.serving.util.TestOnnxModels;
+import org.deeplearning4j.parallelism.inference.InferenceMode;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that concurrent callers of {@link OnnxInferenceExecutioner},
+ * with one or several workers configured in {@link ParallelInferenceConfig}
+ * and with requests run one by one or merged into batches,
+ * each get the output for their own input, in its own shape.
+ */
+public class OnnxInferenceExecutionerConcurrencyTest {
+
+    private static final int FEATURES = 16;
+    private static final int NUM_REQUESTS = 200;
+    private static final int NUM_CALLERS = 8;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(timeout = 120000)
+    public void testConcurrentRequestsWithOneWorker() throws Exception {
+        testConcurrentRequests(1, InferenceMode.SEQUENTIAL);
+    }
+
+    @Test(timeout = 120000)
+    public void testConcurrentRequestsWithSeveralWorkers() throws Exception {
+        testConcurrentRequests(4, InferenceMode.SEQUENTIAL);
+    }
+
+    @Test(timeout = 120000)
+    public void testConcurrentBatchedRequestsWithOneWorker() throws Exception {
+        testConcurrentRequests(1, InferenceMode.BATCHED);
+    }
+
+    @Test(timeout = 120000)
+    public void testConcurrentBatchedRequestsWithSeveralWorkers() throws Exception {
+        testConcurrentRequests(4, InferenceMode.BATCHED);
+    }
+
+    private void testConcurrentRequests(int workers, InferenceMode inferenceMode) throws Exception {
+        Nd4j.getRandom().setSeed(12345);
+        INDArray weights = Nd4j.rand(DataType.FLOAT, FEATURES, FEATURES).subi(0.5);
+        File model = TestOnnxModels.matMulRelu(folder.newFolder(), weights);
+
+        OnnxInferenceExecutioner executioner = new OnnxInferenceExecutioner();
+        executioner.initialize(new OnnxModelLoader(model.getAbsolutePath()), ParallelInferenceConfig.builder()
+                .workers(workers)
+                .inferenceMode(inferenceMode)
+                .build());
+
+        ExecutorService executorService = Executors.newFixedThreadPool(NUM_CALLERS);
+        try {
+            //a distinct input for every request, with a varying batch size
+            List<INDArray> inputs = new ArrayList<>(NUM_REQUESTS);
+            List<Future<INDArray[]>> futures = new ArrayList<>(NUM_REQUESTS);
+            for (int i = 0; i < NUM_REQUESTS; i++) {
+                INDArray input = Nd4j.rand(DataType.FLOAT, 1 + i % 3, FEATURES).subi(0.5).addi(i / (double) NUM_REQUESTS);
+                inputs.add(input);
+                futures.add(executorService.submit(() -> executioner.execute(new INDArray[]{input})));
+            }
+
+            for (int i = 0; i < NUM_REQUESTS; i++) {
+                INDArray[] output = futures.get(i).get();
+                INDArray expected = Transforms.relu(inputs.get(i).mmul(weights));
+                assertEquals(1, output.length);
+                assertArrayEquals(expected.shape(), output[0].shape());
+                assertTrue("Output of request " + i, expected.equalsWithEps(output[0].castTo(DataType.FLOAT), 1e-4));
+            }
+        } finally {
+            executorService.shutdownNow();
+            executioner.stop();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *       Copyright (c) 2020 Konduit AI.
+ *
+ *       This program and the accompanying materials are made available under the
+ *       terms of the Apache License, Version 2.0 which is available at
+ *       https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *       Unless required by applicable law or agreed to in writing, software
+ *       distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *       WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *       License for the specific language governing permissions and limitations
+ *       under the License.
+ *
+ *       SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+
+package ai.konduit.serving.executioner.inference;
+
+import ai.konduit.serving.model.PythonConfig;
+import ai.konduit.serving.pipeline.step.PythonStep;
+import ai.konduit.serving.pipeline.steps.PythonStepRunner;
+import org.datavec.api.records.Record;
+import org.datavec.api.writable.DoubleWritable;
+import org.datavec.api.writable.NDArrayWritable;
+import org.datavec.api.writable.Writable;
+import org.datavec.python.PythonType;
+import org.junit.Test;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@NotThreadSafe
+public class PythonBatchModeTest {
+
+    @Test
+    public void testColumnsPassedOnce() throws Exception {
+        PythonConfig pythonConfig = PythonConfig.builder()
+                .pythonCode("output = first * scale[:, None]")
+                .pythonInput("first", PythonType.TypeName.NDARRAY.name())
+                .pythonInput("scale", PythonType.TypeName.FLOAT.name())
+                .pythonOutput("output", PythonType.TypeName.NDARRAY.name())
+                .batchMode(true)
+                .build();
+
+        PythonStepRunner runner = new PythonStepRunner(new PythonStep(pythonConfig));
+
+        Record[] input = new Record[3];
+        for (int i = 0; i < input.length; i++) {
+            List<Writable> writables = Arrays.asList(
+                    new NDArrayWritable(Nd4j.ones(DataType.DOUBLE, 2).muli(i)),
+                    new DoubleWritable(10));
+            input[i] = new org.datavec.api.records.impl.Record(writables, null);
+        }
+
+        Record[] output = runner.transform(input);
+        assertEquals(input.length, output.length);
+        for (int i = 0; i < output.length; i++) {
+            INDArray row = ((NDArrayWritable) output[i].getRecord().get(0)).get();
+            assertEquals(Nd4j.valueArrayOf(new long[]{2}, 10.0 * i).castTo(row.dataType()), row);
+        }
+    }
+}
@@ -34,11 +34,19 @@ import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 public class SameDiffInferenceExecutionerTests {
 
@@ -76,4 +84,60 @@ public class SameDiffInferenceExecutionerTests {
         assertEquals(outputs.values().iterator().next(), execute[0]);
     }
 
+    @Test(timeout = 300000)
+    public void testConcurrentRequestsGetTheirOwnOutput() throws Exception {
+        SameDiff sameDiff = SameDiff.create();
+        SDVariable input = sameDiff.placeHolder("input", DataType.FLOAT, -1, 64);
+        SDVariable hidden = input.mul(2.0).add(1.0);
+        for (int i = 0; i < 16; i++) {
+            hidden = hidden.mul(1.0).add(0.25);
+        }
+        hidden.rename("output");
+
+        File newFile = temporary.newFile();
+        sameDiff.asFlatFile(newFile);
+        SameDiffModelLoader loader = new SameDiffModelLoader(newFile, Arrays.asList("input"), Arrays.asList("output"));
+
+        SameDiffInferenceExecutioner executioner = new SameDiffInferenceExecutioner();
+        executioner.initialize(loader, ParallelInferenceConfig.builder().workers(4).build());
+
+        int numRequests = 2000;
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+        try {
+            List<Future<INDArray>> futures = new ArrayList<>(numRequests);
+            for (int i = 0; i < numRequests; i++) {
+                float value = i;
+                futures.add(executorService.submit(() ->
+                        executioner.execute(new INDArray[]{Nd4j.valueArrayOf(new long[]{8, 64}, value, DataType.FLOAT)})[0]));
+            }
+
+            //every request has to get the output computed from its own input: 2 * value + 1 + 16 * 0.25
+            for (int i = 0; i < numRequests; i++) {
+                INDArray expected = Nd4j.valueArrayOf(new long[]{8, 64}, 2.0f * i + 5.0f, DataType.FLOAT);
+                assertEquals("Wrong output for request " + i, expected, futures.get(i).get());
+            }
+        } finally {
+            executorService.shutdownNow();
+            executioner.stop();
+        }
+    }
+
+    @Test
+    public void testReplicasShareWeights() {
+        SameDiff sameDiff = SameDiff.create();
+        SDVariable input = sameDiff.placeHolder("input", DataType.FLOAT, -1, 4);
+        SDVariable weights = sameDiff.var("weights", Nd4j.rand(DataType.FLOAT, 4, 3));
+        SDVariable bias = sameDiff.constant("bias", Nd4j.rand(DataType.FLOAT, 1, 3));
+        input.mmul(weights).add("output", bias);
+
+        SameDiff replica = SameDiffInferenceExecutioner.replicate(sameDiff);
+        assertNotSame(sameDiff, replica);
+        assertSame(sameDiff.getArrForVarName("weights"), replica.getArrForVarName("weights"));
+        assertSame(sameDiff.getArrForVarName("bias"), replica.getArrForVarName("bias"));
+
+        INDArray inputArr = Nd4j.rand(DataType.FLOAT, 2, 4);
+        assertEquals(sameDiff.output(Collections.singletonMap("input", inputArr), "output").get("output"),
+                replica.output(Collections.singletonMap("input", inputArr), "output").get("output"));
+    }
+
 }
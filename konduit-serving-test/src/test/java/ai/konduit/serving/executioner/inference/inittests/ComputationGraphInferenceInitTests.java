@@ -27,16 +27,25 @@ import ai.konduit.serving.executioner.inference.ComputationGraphInferenceExecuti
 import ai.konduit.serving.model.loader.dl4j.cg.InMemoryComputationGraphModelLoader;
 import ai.konduit.serving.train.TrainUtils;
 import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
 import org.nd4j.linalg.dataset.api.preprocessor.DataNormalization;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.primitives.Pair;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
 
 
 public class ComputationGraphInferenceInitTests {
@@ -68,4 +77,35 @@ public class ComputationGraphInferenceInitTests {
 
     }
 
+    @Test(timeout = 60000)
+    public void testComputationGraphReplicas() throws Exception {
+        ComputationGraphInferenceExecutioner computationGraphInferenceExecutioner = new ComputationGraphInferenceExecutioner();
+        ParallelInferenceConfig parallelInferenceConfig = ParallelInferenceConfig.builder().workers(4).build();
+
+        DataSet dataSet = new IrisDataSetIterator(150, 150).next();
+        Pair<MultiLayerNetwork, DataNormalization> trainedNetwork = TrainUtils.getTrainedNetwork();
+        trainedNetwork.getSecond().transform(dataSet.getFeatures());
+        ComputationGraph computationGraph = trainedNetwork.getFirst().toComputationGraph();
+        INDArray expected = computationGraph.outputSingle(dataSet.getFeatures());
+
+        InMemoryComputationGraphModelLoader computationGraphModelLoader = new InMemoryComputationGraphModelLoader(computationGraph);
+        computationGraphInferenceExecutioner.initialize(computationGraphModelLoader, parallelInferenceConfig);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<INDArray>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                futures.add(executorService.submit(() -> computationGraphInferenceExecutioner.execute(dataSet.getFeatures())));
+            }
+
+            //every replica shares the trained parameters, so each must match the original graph
+            for (Future<INDArray> future : futures) {
+                assertEquals(expected, future.get());
+            }
+        } finally {
+            executorService.shutdownNow();
+            computationGraphInferenceExecutioner.stop();
+        }
+    }
+
 }
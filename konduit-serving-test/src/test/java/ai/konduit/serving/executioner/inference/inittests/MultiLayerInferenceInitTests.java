@@ -31,12 +31,20 @@ import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
 import org.nd4j.linalg.dataset.api.preprocessor.DataNormalization;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.primitives.Pair;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
 
 
 public class MultiLayerInferenceInitTests {
@@ -68,4 +76,34 @@ public class MultiLayerInferenceInitTests {
 
     }
 
+    @Test(timeout = 60000)
+    public void testMultiLayerNetworkReplicas() throws Exception {
+        MultiLayerNetworkInferenceExecutioner multiLayerNetworkInferenceExecutioner = new MultiLayerNetworkInferenceExecutioner();
+        ParallelInferenceConfig parallelInferenceConfig = ParallelInferenceConfig.builder().workers(4).build();
+
+        DataSet dataSet = new IrisDataSetIterator(150, 150).next();
+        Pair<MultiLayerNetwork, DataNormalization> trainedNetwork = TrainUtils.getTrainedNetwork();
+        trainedNetwork.getSecond().transform(dataSet.getFeatures());
+        INDArray expected = trainedNetwork.getFirst().output(dataSet.getFeatures());
+
+        InMemoryMultiLayernetworkModelLoader memoryMultiLayernetworkModelLoader = new InMemoryMultiLayernetworkModelLoader(trainedNetwork.getFirst());
+        multiLayerNetworkInferenceExecutioner.initialize(memoryMultiLayernetworkModelLoader, parallelInferenceConfig);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<INDArray>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                futures.add(executorService.submit(() -> multiLayerNetworkInferenceExecutioner.execute(new INDArray[]{dataSet.getFeatures()})[0]));
+            }
+
+            //every replica shares the trained parameters, so each must match the original network
+            for (Future<INDArray> future : futures) {
+                assertEquals(expected, future.get());
+            }
+        } finally {
+            executorService.shutdownNow();
+            multiLayerNetworkInferenceExecutioner.stop();
+        }
+    }
+
 }
@@ -0,0 +1,58 @@
+/*
+ *       Copyright (c) 2020 Konduit AI.
+ *
+ *       This program and the accompanying materials are made available under the
+ *       terms of the Apache License, Version 2.0 which is available at
+ *       https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *       Unless required by applicable law or agreed to in writing, software
+ *       distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *       WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *       License for the specific language governing permissions and limitations
+ *       under the License.
+ *
+ *       SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package ai.konduit.serving.input.image;
+
+import ai.konduit.serving.pipeline.handlers.converter.multi.converter.impl.image.VertxBufferImageInputAdapter;
+import ai.konduit.serving.util.image.NativeImageLoader;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.vertx.core.buffer.Buffer;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.io.ClassPathResource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class VertxBufferImageInputAdapterTest {
+
+    @Test
+    public void testDirectAndHeapBuffersDecodeTheSame() throws Exception {
+        byte[] png = FileUtils.readFileToByteArray(new ClassPathResource("data/5.png").getFile());
+        INDArray expected = new NativeImageLoader().asMatrix(new ClassPathResource("data/5.png").getFile());
+
+        VertxBufferImageInputAdapter adapter = new VertxBufferImageInputAdapter();
+        NativeImageLoader imageLoader = adapter.getImageLoader(null, null);
+        assertEquals(expected, adapter.getArrayUsing(imageLoader, Buffer.buffer(png), null));
+
+        ByteBuf direct = PooledByteBufAllocator.DEFAULT.directBuffer(png.length);
+        try {
+            direct.writeBytes(png);
+            assertEquals(expected, adapter.getArrayUsing(imageLoader, Buffer.buffer(direct), null));
+        } finally {
+            direct.release();
+        }
+    }
+
+    @Test
+    public void testImageLoaderIsReused() {
+        VertxBufferImageInputAdapter adapter = new VertxBufferImageInputAdapter();
+        assertSame(adapter.getImageLoader(null, null), new VertxBufferImageInputAdapter().getImageLoader(null, null));
+    }
+}
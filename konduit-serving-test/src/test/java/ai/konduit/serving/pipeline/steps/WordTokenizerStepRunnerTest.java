@@ -0,0 +1,140 @@
+/*
+ *       Copyright (c) 2020 Konduit AI.
+ *
+ *       This program and the accompanying materials are made available under the
+ *       terms of the Apache License, Version 2.0 which is available at
+ *       https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *       Unless required by applicable law or agreed to in writing, software
+ *       distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *       WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *       License for the specific language governing permissions and limitations
+ *       under the License.
+ *
+ *       SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package ai.konduit.serving.pipeline.steps;
+
+import ai.konduit.serving.pipeline.step.WordTokenizerStep;
+import ai.konduit.serving.util.SchemaTypeUtils;
+import org.apache.commons.io.FileUtils;
+import org.datavec.api.records.Record;
+import org.datavec.api.writable.Text;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.api.MultiDataSet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class WordTokenizerStepRunnerTest {
+
+    private static final int SENTENCE_MAX_LEN = 8;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File vocab;
+
+    @Before
+    public void before() throws Exception {
+        vocab = folder.newFile("vocab.txt");
+        FileUtils.writeLines(vocab, StandardCharsets.UTF_8.name(), Arrays.asList(
+                "[PAD]", "[UNK]", "[CLS]", "[SEP]", "[MASK]",
+                "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "hello", "world", "cat"));
+    }
+
+    @Test
+    public void testBatchMatchesPerSentenceTokenization() {
+        WordTokenizerStepRunner runner = runner(0);
+
+        Record[] output = runner.transform(new Record[]{
+                record("the quick fox"),
+                record("{\"first\":\"hello world\",\"second\":\"the lazy dog\"}"),
+                record("cat jumps over")
+        });
+
+        assertTokenized(runner, output, "the quick fox", "hello world", "the lazy dog", "cat jumps over");
+    }
+
+    @Test
+    public void testSentenceOrderAcrossRecordsAndFields() {
+        WordTokenizerStepRunner runner = runner(0);
+
+        Record[] output = runner.transform(new Record[]{
+                record("{\"second\":\"the lazy dog\",\"first\":\"hello world\"}"),
+                record("cat jumps over"),
+                record("{\"first\":\"brown fox\",\"second\":\"quick cat\",\"third\":\"dog\"}")
+        });
+
+        assertTokenized(runner, output, "the lazy dog", "hello world", "cat jumps over", "brown fox", "quick cat", "dog");
+    }
+
+    @Test
+    public void testMixedCacheHitsAndMisses() {
+        WordTokenizerStepRunner runner = runner(3);
+
+        Record[] first = runner.transform(new Record[]{record("the quick fox"), record("hello world")});
+        assertTokenized(runner, first, "the quick fox", "hello world");
+        //changing an earlier output must not change the cached rows
+        SchemaTypeUtils.toArrays(first)[0].assign(-1);
+
+        Record[] second = runner.transform(new Record[]{
+                record("cat jumps over"),
+                record("the quick fox"),
+                record("{\"first\":\"the lazy dog\",\"second\":\"hello world\"}")
+        });
+        assertTokenized(runner, second, "cat jumps over", "the quick fox", "the lazy dog", "hello world");
+
+        //all cached
+        Record[] third = runner.transform(new Record[]{record("hello world"), record("the lazy dog")});
+        assertTokenized(runner, third, "hello world", "the lazy dog");
+
+        //"cat jumps over" and "the quick fox" were evicted
+        Record[] fourth = runner.transform(new Record[]{record("the quick fox"), record("the lazy dog"), record("cat jumps over")});
+        assertTokenized(runner, fourth, "the quick fox", "the lazy dog", "cat jumps over");
+    }
+
+    @Test
+    public void testEmptyInput() {
+        assertEquals(0, runner(3).transform(new Record[]{record("{}")}).length);
+    }
+
+    private WordTokenizerStepRunner runner(int tokenCacheSize) {
+        return new WordTokenizerStepRunner(WordTokenizerStep.builder()
+                .vocabPath(vocab.getAbsolutePath())
+                .sentenceMaxLen(SENTENCE_MAX_LEN)
+                .tokenCacheSize(tokenCacheSize)
+                .build());
+    }
+
+    private static void assertTokenized(WordTokenizerStepRunner runner, Record[] output, String... sentences) {
+        assertEquals(2, output.length);
+        INDArray[] arrays = SchemaTypeUtils.toArrays(output);
+        INDArray features = arrays[0];
+        INDArray mask = arrays[1];
+        assertArrayEquals(new long[]{sentences.length, SENTENCE_MAX_LEN}, features.shape());
+        assertArrayEquals(new long[]{sentences.length, SENTENCE_MAX_LEN}, mask.shape());
+
+        //each row is what tokenizing the sentence on its own returns
+        for (int i = 0; i < sentences.length; i++) {
+            MultiDataSet expected = runner.getToken(sentences[i]).next();
+            assertEquals(sentences[i], expected.getFeatures(0).getRow(0), features.getRow(i));
+            assertEquals(sentences[i], expected.getFeaturesMaskArray(0).getRow(0), mask.getRow(i));
+        }
+    }
+
+    private static Record record(String text) {
+        return new org.datavec.api.records.impl.Record(Collections.singletonList(new Text(text)), null);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+package ai.konduit.serving.threadpool.batching;
+
+import ai.konduit.serving.threadpool.onnx.observables.BatchedOnnxInferenceObservable;
+import org.deeplearning4j.parallelism.inference.observers.BasicInferenceObserver;
+import org.junit.Test;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveBatchSchedulerTest {
+
+    private static List<Map<String, INDArray>> input() {
+        return Collections.singletonList(Collections.singletonMap("x", Nd4j.rand(DataType.FLOAT, 1, 4)));
+    }
+
+    @Test
+    public void testBatchClosesAtSizeCap() {
+        BlockingQueue<BatchedOnnxInferenceObservable> queue = new LinkedBlockingQueue<>();
+        AdaptiveBatchScheduler<List<Map<String, INDArray>>, BatchedOnnxInferenceObservable> scheduler =
+                new AdaptiveBatchScheduler<>(BatchedOnnxInferenceObservable::new, queue, 2, 0, 0);
+
+        BatchedOnnxInferenceObservable first = scheduler.setInput(new BasicInferenceObserver(), input());
+        assertSame(first, scheduler.setInput(new BasicInferenceObserver(), input()));
+        BatchedOnnxInferenceObservable third = scheduler.setInput(new BasicInferenceObserver(), input());
+
+        assertNotSame(first, third);
+        assertEquals(2, queue.size());
+        assertEquals(2, first.getCounter());
+    }
+
+    @Test(timeout = 10000)
+    public void testPartialBatchFlushedWithinBudget() throws Exception {
+        BlockingQueue<BatchedOnnxInferenceObservable> queue = new LinkedBlockingQueue<>();
+        AdaptiveBatchScheduler<List<Map<String, INDArray>>, BatchedOnnxInferenceObservable> scheduler =
+                new AdaptiveBatchScheduler<>(BatchedOnnxInferenceObservable::new, queue, 32, 20, 0);
+
+        scheduler.setInput(new BasicInferenceObserver(), input());
+        long start = System.nanoTime();
+        scheduler.awaitBatch(queue.take());
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("Waited " + waited + " ms for a partial batch", waited < 5000);
+    }
+
+    @Test
+    public void testBatchLimitAdaptsToTargetLatency() {
+        BlockingQueue<BatchedOnnxInferenceObservable> queue = new LinkedBlockingQueue<>();
+        AdaptiveBatchScheduler<List<Map<String, INDArray>>, BatchedOnnxInferenceObservable> scheduler =
+                new AdaptiveBatchScheduler<>(BatchedOnnxInferenceObservable::new, queue, 32, 0, 10);
+
+        //every batch took a second, well above the 10 ms target
+        for (int i = 0; i < AdaptiveBatchScheduler.WINDOW; i++) {
+            BatchedOnnxInferenceObservable slow = new BatchedOnnxInferenceObservable();
+            slow.setCreationNanos(System.nanoTime() - TimeUnit.SECONDS.toNanos(1));
+            scheduler.batchCompleted(slow);
+        }
+        assertEquals(16, scheduler.getBatchLimit());
+
+        //fast batches grow the limit back one step per window
+        for (int i = 0; i < AdaptiveBatchScheduler.WINDOW; i++) {
+            scheduler.batchCompleted(new BatchedOnnxInferenceObservable());
+        }
+        assertEquals(17, scheduler.getBatchLimit());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+package ai.konduit.serving.threadpool.onnx;
+
+import ai.konduit.serving.threadpool.onnx.observables.BatchedOnnxInferenceObservable;
+import org.junit.Test;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BatchedOnnxInferenceObservableTest {
+
+    @Test
+    public void testConcatAndSplit() {
+        INDArray first = Nd4j.rand(DataType.FLOAT, 1, 4);
+        INDArray second = Nd4j.rand(DataType.FLOAT, 2, 4);
+
+        BatchedOnnxInferenceObservable observable = new BatchedOnnxInferenceObservable();
+        observable.addInput(Collections.singletonList(Collections.singletonMap("x", first)));
+        observable.addInput(Collections.singletonList(Collections.singletonMap("x", second)));
+
+        List<Map<String, INDArray>> batches = observable.getInputBatches();
+        assertEquals(1, batches.size());
+        INDArray batch = batches.get(0).get("x");
+        assertArrayEquals(new long[]{3, 4}, batch.shape());
+
+        //identity "model": each request gets its own rows back, keeping the trailing dimensions
+        observable.setOutputBatches(Collections.singletonList(Collections.singletonMap("y", batch)));
+
+        observable.setPosition(0);
+        assertEquals(first, observable.getOutput().get(0).get("y"));
+        observable.setPosition(1);
+        assertEquals(second, observable.getOutput().get(0).get("y"));
+    }
+
+    @Test
+    public void testSplitKeepsTrailingDimensions() {
+        INDArray first = Nd4j.rand(DataType.FLOAT, 1, 4);
+        INDArray second = Nd4j.rand(DataType.FLOAT, 2, 4);
+
+        BatchedOnnxInferenceObservable observable = new BatchedOnnxInferenceObservable();
+        observable.addInput(Collections.singletonList(Collections.singletonMap("x", first)));
+        observable.addInput(Collections.singletonList(Collections.singletonMap("x", second)));
+        observable.getInputBatches();
+
+        INDArray output = Nd4j.rand(DataType.FLOAT, 3, 2, 5);
+        observable.setOutputBatches(Collections.singletonList(Collections.singletonMap("y", output)));
+
+        observable.setPosition(0);
+        assertArrayEquals(new long[]{1, 2, 5}, observable.getOutput().get(0).get("y").shape());
+        observable.setPosition(1);
+        INDArray secondOut = observable.getOutput().get(0).get("y");
+        assertArrayEquals(new long[]{2, 2, 5}, secondOut.shape());
+        assertEquals(output.get(NDArrayIndex.interval(1, 3)), secondOut);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOutputWithoutBatchDimensionFails() {
+        BatchedOnnxInferenceObservable observable = new BatchedOnnxInferenceObservable();
+        observable.addInput(Collections.singletonList(Collections.singletonMap("x", Nd4j.rand(DataType.FLOAT, 1, 4))));
+        observable.addInput(Collections.singletonList(Collections.singletonMap("x", Nd4j.rand(DataType.FLOAT, 2, 4))));
+        observable.getInputBatches();
+
+        //a flat output can not be attributed to the requests of the batch
+        observable.setOutputBatches(Collections.singletonList(Collections.singletonMap("y", Nd4j.rand(DataType.FLOAT, 1, 12))));
+        observable.getOutput();
+    }
+
+    @Test
+    public void testIncompatibleShapesAreNotConcatenated() {
+        BatchedOnnxInferenceObservable observable = new BatchedOnnxInferenceObservable();
+        observable.addInput(Collections.singletonList(Collections.singletonMap("x", Nd4j.rand(DataType.FLOAT, 1, 4))));
+        observable.addInput(Collections.singletonList(Collections.singletonMap("x", Nd4j.rand(DataType.FLOAT, 1, 5))));
+
+        assertEquals(2, observable.getInputBatches().size());
+    }
+
+    @Test(timeout = 10000)
+    public void testPartialBatchIsFlushedAfterDeadline() throws Exception {
+        BatchedOnnxInferenceObservable observable = new BatchedOnnxInferenceObservable();
+        observable.addInput(Collections.singletonList(Collections.singletonMap("x", Nd4j.rand(DataType.FLOAT, 1, 4))));
+
+        //batch limit can not be reached, the wait has to return once the deadline passes
+        observable.awaitBatch(32, System.nanoTime() + 50_000_000L);
+        assertEquals(1, observable.getInputBatches().size());
+    }
+}
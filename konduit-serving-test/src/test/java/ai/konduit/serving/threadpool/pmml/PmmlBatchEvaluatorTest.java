@@ -0,0 +1,66 @@
+/*
+ *       Copyright (c) 2020 Konduit AI.
+ *
+ *       This program and the accompanying materials are made available under the
+ *       terms of the Apache License, Version 2.0 which is available at
+ *       https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *       Unless required by applicable law or agreed to in writing, software
+ *       distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *       WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *       License for the specific language governing permissions and limitations
+ *       under the License.
+ *
+ *       SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+
+package ai.konduit.serving.threadpool.pmml;
+
+import ai.konduit.serving.model.loader.pmml.PmmlModelLoader;
+import org.dmg.pmml.FieldName;
+import org.jpmml.evaluator.Evaluator;
+import org.jpmml.evaluator.EvaluatorUtil;
+import org.jpmml.evaluator.ModelEvaluatorFactory;
+import org.junit.Test;
+import org.nd4j.linalg.io.ClassPathResource;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class PmmlBatchEvaluatorTest {
+
+    @Test
+    public void testSplitBatchMatchesSequential() throws Exception {
+        Evaluator evaluator = new PmmlModelLoader(ModelEvaluatorFactory.newInstance(),
+                new ClassPathResource("/inference/iris/classification/IrisTree.xml").getFile()).loadModel();
+
+        Random random = new Random(12345);
+        List<Map<FieldName, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Map<FieldName, Object> row = new HashMap<>();
+            row.put(FieldName.create("sepal_length"), 4.0 + 4 * random.nextDouble());
+            row.put(FieldName.create("sepal_width"), 2.0 + 2 * random.nextDouble());
+            row.put(FieldName.create("petal_length"), 1.0 + 6 * random.nextDouble());
+            row.put(FieldName.create("petal_width"), 0.1 + 2.4 * random.nextDouble());
+            rows.add(row);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<Map<FieldName, Object>> sequential = new PmmlBatchEvaluator(evaluator, null, 1).evaluate(rows);
+            List<Map<FieldName, Object>> split = new PmmlBatchEvaluator(evaluator, pool, 4).evaluate(rows);
+
+            assertEquals(rows.size(), split.size());
+            FieldName target = FieldName.create("class");
+            for (int i = 0; i < rows.size(); i++) {
+                assertEquals(EvaluatorUtil.decode(sequential.get(i).get(target)), EvaluatorUtil.decode(split.get(i).get(target)));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
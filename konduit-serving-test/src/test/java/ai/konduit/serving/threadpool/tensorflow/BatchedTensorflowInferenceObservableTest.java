@@ -0,0 +1,123 @@
+/*
+ *       Copyright (c) 2020 Konduit AI.
+ *
+ *       This program and the accompanying materials are made available under the
+ *       terms of the Apache License, Version 2.0 which is available at
+ *       https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *       Unless required by applicable law or agreed to in writing, software
+ *       distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *       WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *       License for the specific language governing permissions and limitations
+ *       under the License.
+ *
+ *       SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+
+package ai.konduit.serving.threadpool.tensorflow;
+
+import ai.konduit.serving.threadpool.tensorflow.observables.BatchedTensorflowInferenceObservable;
+import org.junit.Test;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.tensorflow.framework.AttrValue;
+import org.tensorflow.framework.GraphDef;
+import org.tensorflow.framework.NodeDef;
+import org.tensorflow.framework.TensorShapeProto;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchedTensorflowInferenceObservableTest {
+
+    @Test
+    public void testConcatAndSplit() {
+        INDArray first = Nd4j.rand(DataType.FLOAT, 1, 4);
+        INDArray second = Nd4j.rand(DataType.FLOAT, 2, 4);
+
+        BatchedTensorflowInferenceObservable observable = new BatchedTensorflowInferenceObservable();
+        observable.addInput(new INDArray[]{first});
+        assertTrue(observable.canAccept(new INDArray[]{second}));
+        observable.addInput(new INDArray[]{second});
+
+        INDArray[] batch = observable.getInputBatches();
+        assertArrayEquals(new long[]{3, 4}, batch[0].shape());
+
+        observable.setOutputBatches(batch);
+        observable.setPosition(0);
+        assertEquals(first, observable.getOutput()[0]);
+        observable.setPosition(1);
+        assertEquals(second, observable.getOutput()[0]);
+    }
+
+    @Test
+    public void testRequestsWithUnequalRowCountsAreNotAccepted() {
+        BatchedTensorflowInferenceObservable observable = new BatchedTensorflowInferenceObservable();
+        observable.addInput(new INDArray[]{Nd4j.rand(DataType.FLOAT, 1, 4), Nd4j.rand(DataType.FLOAT, 1, 2)});
+
+        assertTrue(observable.canAccept(new INDArray[]{Nd4j.rand(DataType.FLOAT, 2, 4), Nd4j.rand(DataType.FLOAT, 2, 2)}));
+        assertFalse(observable.canAccept(new INDArray[]{Nd4j.rand(DataType.FLOAT, 2, 4), Nd4j.rand(DataType.FLOAT, 3, 2)}));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOutputWithoutBatchDimensionFails() {
+        BatchedTensorflowInferenceObservable observable = new BatchedTensorflowInferenceObservable();
+        observable.addInput(new INDArray[]{Nd4j.rand(DataType.FLOAT, 1, 4)});
+        observable.addInput(new INDArray[]{Nd4j.rand(DataType.FLOAT, 2, 4)});
+        observable.getInputBatches();
+
+        //a scalar output, e.g. a reduced loss, can not be attributed to the requests of the batch
+        observable.setOutputBatches(new INDArray[]{Nd4j.scalar(1.0f)});
+        observable.setPosition(0);
+        observable.getOutput();
+    }
+
+    @Test
+    public void testFixedBatchSizeIsNotConcatenated() {
+        BatchedTensorflowInferenceObservable observable = new BatchedTensorflowInferenceObservable();
+        observable.setConcatenate(false);
+        assertTrue(observable.canAccept(new INDArray[]{Nd4j.rand(DataType.FLOAT, 1, 4)}));
+        observable.addInput(new INDArray[]{Nd4j.rand(DataType.FLOAT, 1, 4)});
+
+        assertFalse(observable.canAccept(new INDArray[]{Nd4j.rand(DataType.FLOAT, 1, 4)}));
+    }
+
+    @Test
+    public void testDynamicBatchFromPlaceholderShapes() {
+        GraphDef graph = GraphDef.newBuilder()
+                .addNode(placeholder("dynamic", -1, 4))
+                .addNode(placeholder("fixed", 1, 4))
+                .addNode(placeholder("scalar"))
+                .addNode(NodeDef.newBuilder().setName("unknownRank").setOp("Placeholder")
+                        .putAttr("shape", AttrValue.newBuilder().setShape(TensorShapeProto.newBuilder().setUnknownRank(true)).build()))
+                .build();
+
+        assertTrue(TensorFlowThreadPool.hasDynamicBatch(graph, Collections.singletonList("dynamic")));
+        assertTrue(TensorFlowThreadPool.hasDynamicBatch(graph, Arrays.asList("dynamic:0", "unknownRank")));
+        assertFalse(TensorFlowThreadPool.hasDynamicBatch(graph, Arrays.asList("dynamic", "fixed")));
+        assertFalse(TensorFlowThreadPool.hasDynamicBatch(graph, Collections.singletonList("scalar")));
+        assertFalse(TensorFlowThreadPool.hasDynamicBatch(graph, Collections.singletonList("missing")));
+        assertFalse(TensorFlowThreadPool.hasDynamicBatch(null, Collections.singletonList("dynamic")));
+    }
+
+    private static NodeDef placeholder(String name, long... shape) {
+        TensorShapeProto.Builder shapeProto = TensorShapeProto.newBuilder();
+        for (long size : shape) {
+            shapeProto.addDim(TensorShapeProto.Dim.newBuilder().setSize(size));
+        }
+
+        return NodeDef.newBuilder()
+                .setName(name)
+                .setOp("Placeholder")
+                .putAttr("shape", AttrValue.newBuilder().setShape(shapeProto).build())
+                .build();
+    }
+}
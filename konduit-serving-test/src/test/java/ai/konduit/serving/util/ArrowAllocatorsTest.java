@@ -0,0 +1,87 @@
+/*
+ *       Copyright (c) 2020 Konduit AI.
+ *
+ *       This program and the accompanying materials are made available under the
+ *       terms of the Apache License, Version 2.0 which is available at
+ *       https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *       Unless required by applicable law or agreed to in writing, software
+ *       distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *       WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *       License for the specific language governing permissions and limitations
+ *       under the License.
+ *
+ *       SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package ai.konduit.serving.util;
+
+import ai.konduit.serving.pipeline.handlers.converter.JsonArrayMapConverter;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.apache.arrow.memory.BufferAllocator;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.arrow.recordreader.ArrowWritableRecordBatch;
+import org.junit.Test;
+import org.nd4j.linalg.primitives.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ArrowAllocatorsTest {
+
+    private final Schema schema = new Schema.Builder()
+            .addColumnDouble("first")
+            .addColumnDouble("second")
+            .build();
+
+    @Test
+    public void testConvertReleasesRequestMemory() throws Exception {
+        JsonArray rows = new JsonArray()
+                .add(new JsonObject().put("first", 1.0).put("second", 2.0))
+                .add(new JsonObject().put("first", 3.0).put("second", 4.0));
+
+        for (int i = 0; i < 100; i++) {
+            BufferAllocator allocator = ArrowAllocators.newRequestAllocator("test");
+            ArrowWritableRecordBatch batch = new JsonArrayMapConverter().convert(allocator, schema, rows, null);
+            assertEquals(2, batch.size());
+            assertEquals(2.0, batch.get(0).get(1).toDouble(), 1e-6);
+            assertEquals(4.0, batch.get(1).get(1).toDouble(), 1e-6);
+            assertTrue(allocator.getAllocatedMemory() > 0);
+
+            batch.close();
+            //closing throws if any vector allocated for the request was leaked
+            allocator.close();
+        }
+    }
+
+    @Test
+    public void testConvertWithErrorsKeepsEveryRow() throws Exception {
+        JsonArray rows = new JsonArray()
+                .add(new JsonObject().put("first", 1.0).put("second", 2.0))
+                .add(new JsonObject().put("first", 3.0).put("second", 4.0))
+                .add(new JsonObject().put("first", 5.0).put("second", 6.0));
+
+        List<Integer> failed = new ArrayList<>();
+        BufferAllocator allocator = ArrowAllocators.newRequestAllocator("test");
+        Pair<Map<Integer, Integer>, ArrowWritableRecordBatch> converted = new JsonArrayMapConverter()
+                .convertWithErrors(allocator, schema, rows, null, (e, row, index) -> failed.add(index));
+
+        ArrowWritableRecordBatch batch = converted.getRight();
+        assertTrue(failed.isEmpty());
+        assertEquals(3, batch.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, (int) converted.getFirst().get(i));
+            assertEquals(2 * i + 1.0, batch.get(i).get(0).toDouble(), 1e-6);
+            assertEquals(2 * i + 2.0, batch.get(i).get(1).toDouble(), 1e-6);
+        }
+
+        batch.close();
+        allocator.close();
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ *       Copyright (c) 2020 Konduit AI.
+ *
+ *       This program and the accompanying materials are made available under the
+ *       terms of the Apache License, Version 2.0 which is available at
+ *       https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *       Unless required by applicable law or agreed to in writing, software
+ *       distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *       WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *       License for the specific language governing permissions and limitations
+ *       under the License.
+ *
+ *       SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package ai.konduit.serving.util;
+
+import ai.konduit.serving.config.ResultCacheConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class InferenceResultCacheTest {
+
+    @Test
+    public void testKeyDependsOnBodyAndEndpoint() {
+        Buffer body = Buffer.buffer("{\"first\": [1.0, 2.0]}");
+        InferenceResultCache.Key key = InferenceResultCache.key("/raw/json", "JSON", body);
+
+        assertEquals(key, InferenceResultCache.key("/raw/json", "JSON", Buffer.buffer("{\"first\": [1.0, 2.0]}")));
+        assertEquals(key.hashCode(), InferenceResultCache.key("/raw/json", "JSON", body.copy()).hashCode());
+        assertNotEquals(key, InferenceResultCache.key("/raw/json", "JSON", Buffer.buffer("{\"first\": [1.0, 3.0]}")));
+        assertNotEquals(key, InferenceResultCache.key("/classification/json", "JSON", body));
+        assertNotEquals(key, InferenceResultCache.key("/raw/json", "ARROW", body));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedBySize() {
+        InferenceResultCache cache = new InferenceResultCache(ResultCacheConfig.builder().maxSizeBytes(20).build());
+        InferenceResultCache.Key first = key("first"), second = key("second"), third = key("third");
+
+        cache.complete(first, "application/json", Buffer.buffer(new byte[8]));
+        cache.complete(second, "application/json", Buffer.buffer(new byte[8]));
+        assertEquals(16, cache.sizeBytes());
+
+        //touch the first response so the second is the least recently used
+        assertTrue(cache.contains(first));
+        cache.complete(third, "application/json", Buffer.buffer(new byte[8]));
+
+        assertTrue(cache.contains(first));
+        assertFalse(cache.contains(second));
+        assertTrue(cache.contains(third));
+        assertEquals(16, cache.sizeBytes());
+        assertEquals(1, cache.evictions());
+
+        //larger than the whole cache: not stored
+        cache.complete(key("large"), "application/json", Buffer.buffer(new byte[21]));
+        assertEquals(2, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.sizeBytes());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        InferenceResultCache cache = new InferenceResultCache(ResultCacheConfig.builder().ttlMillis(50).build());
+        InferenceResultCache.Key key = key("expiring");
+        cache.complete(key, "application/json", Buffer.buffer("{}"));
+        assertTrue(cache.contains(key));
+
+        Thread.sleep(100);
+        assertFalse(cache.contains(key));
+        assertEquals(0, cache.sizeBytes());
+        assertEquals(1, cache.evictions());
+    }
+
+    @Test
+    public void testCollapsesConcurrentRequests() {
+        InferenceResultCache cache = new InferenceResultCache(ResultCacheConfig.builder().build());
+        InferenceResultCache.Key key = key("collapsed");
+
+        assertNull(cache.joinInFlight(key));
+        CompletableFuture<Void> follower = cache.joinInFlight(key);
+        assertNotNull(follower);
+        assertFalse(follower.isDone());
+
+        cache.complete(key, "application/json", Buffer.buffer("{}"));
+        assertTrue(follower.isDone());
+        assertTrue(cache.contains(key));
+
+        //the next request computes again once the previous computation failed
+        InferenceResultCache.Key failed = key("failed");
+        assertNull(cache.joinInFlight(failed));
+        CompletableFuture<Void> waiting = cache.joinInFlight(failed);
+        cache.fail(failed);
+        assertTrue(waiting.isDone());
+        assertFalse(cache.contains(failed));
+        assertNull(cache.joinInFlight(failed));
+
+        InferenceResultCache uncollapsed = new InferenceResultCache(ResultCacheConfig.builder().collapseConcurrentRequests(false).build());
+        assertNull(uncollapsed.joinInFlight(key));
+        assertNull(uncollapsed.joinInFlight(key));
+    }
+
+    @Test
+    public void testMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        InferenceResultCache cache = new InferenceResultCache(ResultCacheConfig.builder().build());
+        cache.bindTo(registry);
+        cache.complete(key("metrics"), "application/json", Buffer.buffer(new byte[10]));
+
+        assertEquals(10.0, registry.get("inference.cache.size").gauge().value(), 0.0);
+        assertEquals(1.0, registry.get("inference.cache.entries").gauge().value(), 0.0);
+        assertEquals(0.0, registry.get("inference.cache.hits").functionCounter().count(), 0.0);
+        assertEquals(0.0, registry.get("inference.cache.evictions").functionCounter().count(), 0.0);
+    }
+
+    @Test
+    public void testContentHasherKeys() {
+        InferenceResultCache.Key key = hashParts("first", "1.0, 2.0", "second", "3.0");
+
+        assertEquals(key, hashParts("first", "1.0, 2.0", "second", "3.0"));
+        assertNotEquals(key, hashParts("first", "1.0, 2.0", "second", "4.0"));
+        //the same bytes split differently between parts or names are different requests
+        assertNotEquals(key, hashParts("first", "1.0, 2.", "second", "03.0"));
+        assertNotEquals(key, hashParts("firs", "t1.0, 2.0", "second", "3.0"));
+        assertNotEquals(key, hashParts("second", "3.0", "first", "1.0, 2.0"));
+
+        //chunks of a part hash like the whole part
+        InferenceResultCache.ContentHasher chunked = new InferenceResultCache.ContentHasher();
+        chunked.startPart("first");
+        chunked.putBytes(Unpooled.wrappedBuffer("1.0, ".getBytes()));
+        chunked.putBytes(Unpooled.directBuffer().writeBytes("2.0".getBytes()));
+        chunked.endPart();
+        chunked.startPart("second");
+        chunked.putBytes(Unpooled.wrappedBuffer("3.0".getBytes()));
+        chunked.endPart();
+        assertEquals(key, chunked.key("/raw/nd4j", "NUMPY"));
+        assertEquals(key, chunked.key("/raw/nd4j", "NUMPY"));
+        assertNotEquals(key, chunked.key("/raw/numpy", "NUMPY"));
+    }
+
+    @Test
+    public void testSharedCacheReleasedByLastUser() {
+        String pipelineId = "testSharedCacheReleasedByLastUser";
+        ResultCacheConfig config = ResultCacheConfig.builder().build();
+        InferenceResultCache first = InferenceResultCache.shared(pipelineId, config);
+        InferenceResultCache second = InferenceResultCache.shared(pipelineId, config);
+        assertSame(first, second);
+
+        first.complete(key("shared"), "application/json", Buffer.buffer(new byte[10]));
+        InferenceResultCache.release(pipelineId);
+        assertTrue(InferenceResultCache.isShared(pipelineId));
+        assertTrue(second.contains(key("shared")));
+
+        InferenceResultCache.release(pipelineId);
+        assertFalse(InferenceResultCache.isShared(pipelineId));
+        assertEquals(0, second.size());
+        assertEquals(0, second.sizeBytes());
+
+        //a verticle started later gets a new cache
+        assertNotSame(first, InferenceResultCache.shared(pipelineId, config));
+        InferenceResultCache.release(pipelineId);
+        assertFalse(InferenceResultCache.isShared(pipelineId));
+    }
+
+    private static InferenceResultCache.Key hashParts(String... namesAndContents) {
+        InferenceResultCache.ContentHasher hasher = new InferenceResultCache.ContentHasher();
+        for (int i = 0; i < namesAndContents.length; i += 2) {
+            hasher.startPart(namesAndContents[i]);
+            hasher.putBytes(Unpooled.wrappedBuffer(namesAndContents[i + 1].getBytes()));
+            hasher.endPart();
+        }
+
+        return hasher.key("/raw/nd4j", "NUMPY");
+    }
+
+    private static InferenceResultCache.Key key(String body) {
+        return InferenceResultCache.key("/raw/json", "JSON", Buffer.buffer(body));
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ *       Copyright (c) 2020 Konduit AI.
+ *
+ *       This program and the accompanying materials are made available under the
+ *       terms of the Apache License, Version 2.0 which is available at
+ *       https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *       Unless required by applicable law or agreed to in writing, software
+ *       distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *       WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *       License for the specific language governing permissions and limitations
+ *       under the License.
+ *
+ *       SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package ai.konduit.serving.util;
+
+import ai.konduit.serving.pipeline.handlers.converter.JsonArrayMapConverter;
+import io.vertx.core.json.JsonArray;
+import org.apache.arrow.memory.BufferAllocator;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.NDArrayWritable;
+import org.datavec.arrow.recordreader.ArrowWritableRecordBatch;
+import org.junit.Test;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.shade.jackson.core.JsonParser;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class JsonNDArrayParserTest {
+
+    @Test
+    public void testParseMatchesJsonArrayConversion() throws Exception {
+        INDArray expected = Nd4j.linspace(1, 24, 24, DataType.FLOAT).reshape(2, 3, 4);
+        String json = toJson(expected);
+
+        INDArray parsed = JsonNDArrayParser.parse(json, DataType.FLOAT);
+        assertArrayEquals(new long[]{2, 3, 4}, parsed.shape());
+        assertEquals(expected, parsed);
+        assertEquals(expected, JsonSerdeUtils.jsonToNDArray(new JsonArray(json)));
+        assertEquals(expected.castTo(DataType.DOUBLE), JsonNDArrayParser.parse(json, DataType.DOUBLE));
+    }
+
+    @Test
+    public void testParseIntoPreallocated() throws Exception {
+        INDArray target = Nd4j.create(DataType.FLOAT, 2, 2);
+        try (JsonParser parser = ObjectMappers.json().getFactory().createParser("[[1, 2.5], [3, 4]]")) {
+            parser.nextToken();
+            JsonNDArrayParser.parseInto(parser, target);
+        }
+
+        assertEquals(Nd4j.createFromArray(new float[][]{{1, 2.5f}, {3, 4}}), target);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRaggedArray() throws Exception {
+        JsonNDArrayParser.parse("[[1, 2], [3]]", DataType.FLOAT);
+    }
+
+    @Test(expected = IOException.class)
+    public void testMixedDepth() throws Exception {
+        JsonNDArrayParser.parse("[[1, 2], 3]", DataType.FLOAT);
+    }
+
+    @Test
+    public void testStreamingRowConversion() throws Exception {
+        Schema schema = new Schema.Builder()
+                .addColumnNDArray("image", new long[]{2, 2})
+                .addColumnDouble("scale")
+                .build();
+
+        BufferAllocator allocator = ArrowAllocators.newRequestAllocator("test");
+        try {
+            ArrowWritableRecordBatch batch = new JsonArrayMapConverter().convert(allocator, schema,
+                    "[{\"scale\": 0.5, \"ignored\": {\"a\": [1]}, \"image\": [[1, 2], [3, 4]]}, [[[5, 6], [7, 8]], 2]]", null);
+            assertEquals(2, batch.size());
+            INDArray first = ((NDArrayWritable) batch.get(0).get(0)).get();
+            assertEquals(Nd4j.createFromArray(new float[][]{{1, 2}, {3, 4}}), first);
+            assertEquals(0.5, batch.get(0).get(1).toDouble(), 1e-6);
+            INDArray second = ((NDArrayWritable) batch.get(1).get(0)).get();
+            assertEquals(Nd4j.createFromArray(new float[][]{{5, 6}, {7, 8}}), second);
+            assertEquals(2.0, batch.get(1).get(1).toDouble(), 1e-6);
+            batch.close();
+        } finally {
+            allocator.close();
+        }
+    }
+
+    @Test
+    public void testSchemaShapeAndDataType() throws Exception {
+        Schema schema = new Schema.Builder()
+                .addColumnNDArray("image", new long[]{2, 2})
+                .addColumnNDArray("features", new long[]{1, 1})
+                .build();
+
+        BufferAllocator allocator = ArrowAllocators.newRequestAllocator("test");
+        try {
+            ArrowWritableRecordBatch batch = new JsonArrayMapConverter().convert(allocator, schema,
+                    "{\"image\": [[1, 2], [3, 4]], \"features\": [1, 2, 3]}", null,
+                    Collections.singletonMap("image", DataType.DOUBLE));
+            INDArray image = ((NDArrayWritable) batch.get(0).get(0)).get();
+            assertEquals(Nd4j.createFromArray(new double[][]{{1, 2}, {3, 4}}), image);
+            //the placeholder shape of columns configured without one does not constrain the array
+            INDArray features = ((NDArrayWritable) batch.get(0).get(1)).get();
+            assertEquals(Nd4j.createFromArray(new float[]{1, 2, 3}), features);
+            batch.close();
+        } finally {
+            allocator.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testArrayNotMatchingSchemaShape() {
+        Schema schema = new Schema.Builder()
+                .addColumnNDArray("image", new long[]{2, 2})
+                .build();
+
+        BufferAllocator allocator = ArrowAllocators.newRequestAllocator("test");
+        try {
+            new JsonArrayMapConverter().convert(allocator, schema, "{\"image\": [[1, 2, 3], [4, 5, 6]]}", null);
+        } finally {
+            allocator.close();
+        }
+    }
+
+    private static String toJson(INDArray arr) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < arr.size(0); i++) {
+            if (i > 0)
+                sb.append(",");
+            sb.append(arr.rank() == 1 ? String.valueOf(arr.getDouble(i)) : toJson(arr.slice(i)));
+        }
+
+        return sb.append("]").toString();
+    }
+}
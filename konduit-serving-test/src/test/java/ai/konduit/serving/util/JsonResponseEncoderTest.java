@@ -0,0 +1,135 @@
+/*
+ *       Copyright (c) 2020 Konduit AI.
+ *
+ *       This program and the accompanying materials are made available under the
+ *       terms of the Apache License, Version 2.0 which is available at
+ *       https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *       Unless required by applicable law or agreed to in writing, software
+ *       distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *       WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *       License for the specific language governing permissions and limitations
+ *       under the License.
+ *
+ *       SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package ai.konduit.serving.util;
+
+import ai.konduit.serving.output.types.BatchOutput;
+import ai.konduit.serving.output.types.ClassifierOutput;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.datavec.api.records.impl.Record;
+import org.datavec.api.transform.schema.Schema;
+import org.datavec.api.writable.DoubleWritable;
+import org.datavec.api.writable.LongWritable;
+import org.datavec.api.writable.NullWritable;
+import org.datavec.api.writable.Text;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JsonResponseEncoderTest {
+
+    @Test
+    public void testEncodeBatchOutput() throws Exception {
+        ClassifierOutput classifierOutput = ClassifierOutput.builder()
+                .decisions(new int[]{1})
+                .probabilities(new double[][]{{0.25, 0.75}})
+                .labels(new String[]{"a", "b"})
+                .batchId("batch")
+                .build();
+        Map<String, BatchOutput> outputs = new LinkedHashMap<>();
+        outputs.put("output", classifierOutput);
+
+        Buffer compact = JsonResponseEncoder.encode(outputs, false);
+        Buffer pretty = JsonResponseEncoder.encode(outputs, true);
+
+        assertFalse(compact.toString().contains("\n"));
+        assertTrue(pretty.toString().contains("\n"));
+        assertEquals(new JsonObject(compact), new JsonObject(pretty));
+        assertEquals(new JsonObject(ObjectMappers.toJson(classifierOutput)), new JsonObject(compact).getJsonObject("output"));
+    }
+
+    @Test
+    public void testEncodeRecords() throws Exception {
+        Schema schema = new Schema.Builder()
+                .addColumnLong("count")
+                .addColumnDouble("score")
+                .addColumnString("label")
+                .build();
+        org.datavec.api.records.Record[] records = {
+                new Record(Arrays.asList(new LongWritable(Long.MAX_VALUE), new DoubleWritable(0.5), new Text("a")), null),
+                new Record(Arrays.asList(new LongWritable(1), new DoubleWritable(1.5), new Text("b")), null)
+        };
+
+        JsonArray encoded = new JsonArray(JsonResponseEncoder.encode(records, schema, false));
+        assertEquals(2, encoded.size());
+        assertEquals(Long.MAX_VALUE, (long) encoded.getJsonObject(0).getLong("count"));
+        assertEquals(1.5, encoded.getJsonObject(1).getDouble("score"), 1e-6);
+        assertEquals("b", encoded.getJsonObject(1).getString("label"));
+    }
+
+    @Test
+    public void testEncodeMissingValues() throws Exception {
+        Schema schema = new Schema.Builder()
+                .addColumnInteger("int")
+                .addColumnLong("long")
+                .addColumnFloat("float")
+                .addColumnDouble("double")
+                .addColumnBoolean("boolean")
+                .addColumnString("string")
+                .build();
+        org.datavec.api.records.Record record = new Record(Collections.nCopies(schema.numColumns(), NullWritable.INSTANCE), null);
+        org.datavec.api.records.Record[] records = {record};
+
+        JsonObject encoded = new JsonArray(JsonResponseEncoder.encode(records, schema, false)).getJsonObject(0);
+        for (String name : schema.getColumnNames()) {
+            assertTrue(name, encoded.containsKey(name));
+            assertNull(name, encoded.getValue(name));
+        }
+
+        JsonObject withoutSchema = new JsonArray(JsonResponseEncoder.encode(records, null, false)).getJsonObject(0);
+        assertTrue(withoutSchema.containsKey("0"));
+        assertNull(withoutSchema.getValue("0"));
+    }
+
+    @Test
+    public void testEncodeText() throws Exception {
+        Schema schema = new Schema.Builder()
+                .addColumnString("object")
+                .addColumnString("array")
+                .addColumnString("text")
+                .build();
+        org.datavec.api.records.Record record = new Record(Arrays.asList(
+                new Text("{\"key\": 1}"), new Text("[1, 2]"), new Text("plain")), null);
+
+        JsonObject encoded = new JsonObject(JsonResponseEncoder.encodeText(record, schema, false));
+        assertEquals(new JsonObject(Collections.singletonMap("key", 1)), encoded.getJsonObject("object"));
+        assertEquals(new JsonArray(Arrays.asList(1, 2)), encoded.getJsonArray("array"));
+        assertEquals("plain", encoded.getString("text"));
+    }
+
+    @Test
+    public void testEncodeSinglePlainTextRecord() throws Exception {
+        Schema schema = new Schema.Builder()
+                .addColumnString("class")
+                .build();
+        org.datavec.api.records.Record record = new Record(Collections.singletonList(new Text("Iris-setosa")), null);
+
+        JsonArray encoded = new JsonArray(JsonResponseEncoder.encode(new org.datavec.api.records.Record[]{record}, schema, false));
+        assertEquals(1, encoded.size());
+        assertEquals("Iris-setosa", encoded.getJsonObject(0).getString("class"));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *       Copyright (c) 2020 Konduit AI.
+ *
+ *       This program and the accompanying materials are made available under the
+ *       terms of the Apache License, Version 2.0 which is available at
+ *       https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *       Unless required by applicable law or agreed to in writing, software
+ *       distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *       WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *       License for the specific language governing permissions and limitations
+ *       under the License.
+ *
+ *       SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package ai.konduit.serving.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+import org.nd4j.serde.binary.BinarySerde;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class MemMapArrayStoreTest {
+
+    @Rule
+    public TemporaryFolder temporary = new TemporaryFolder();
+
+    @Test
+    public void testNumpyRows() throws Exception {
+        INDArray arr = Nd4j.linspace(1, 24, 24, DataType.FLOAT).reshape(4, 3, 2);
+        File file = new File(temporary.getRoot(), "table.npy");
+        FileUtils.writeByteArrayToFile(file, Nd4j.toNpyByteArray(arr));
+
+        MemMapArrayStore store = MemMapArrayStore.open(file);
+        assertArrayEquals(new long[]{4, 3, 2}, store.shape());
+        assertArrayEquals(new long[]{3, 2}, store.rowShape());
+        assertEquals(DataType.FLOAT, store.dataType());
+        assertEquals(arr.slice(2), store.getRow(2));
+        assertEquals(arr.get(NDArrayIndex.interval(1, 3)), store.getRows(1, 3));
+        assertEquals(arr, store.getArray());
+    }
+
+    @Test
+    public void testNd4jBinaryVector() throws Exception {
+        INDArray arr = Nd4j.linspace(1, 10, 10, DataType.DOUBLE);
+        File file = new File(temporary.getRoot(), "table.bin");
+        BinarySerde.writeArrayToDisk(arr, file);
+
+        MemMapArrayStore store = MemMapArrayStore.open(file);
+        assertEquals(10, store.rows());
+        assertEquals(DataType.DOUBLE, store.dataType());
+        assertEquals(arr.getDouble(4), store.getRow(4).getDouble(0), 1e-12);
+        assertEquals(arr, store.getArray());
+    }
+
+    @Test
+    public void testSharedMapping() throws Exception {
+        File file = new File(temporary.getRoot(), "shared.npy");
+        FileUtils.writeByteArrayToFile(file, Nd4j.toNpyByteArray(Nd4j.ones(DataType.FLOAT, 2, 2)));
+        assertSame(MemMapArrayStore.shared(file), MemMapArrayStore.shared(new File(file.getParentFile(), "./shared.npy")));
+    }
+
+    @Test
+    public void testGatherWithUnknownRow() throws Exception {
+        INDArray arr = Nd4j.linspace(1, 12, 12, DataType.FLOAT).reshape(4, 3);
+        File file = new File(temporary.getRoot(), "gather.npy");
+        FileUtils.writeByteArrayToFile(file, Nd4j.toNpyByteArray(arr));
+
+        MemMapArrayStore store = MemMapArrayStore.open(file);
+        store.setHotRowCacheSize(2);
+        ByteBuffer unknown = store.toRowBytes(Nd4j.zeros(DataType.DOUBLE, 3));
+        INDArray expected = Nd4j.vstack(arr.getRow(3, true), Nd4j.zeros(DataType.FLOAT, 1, 3), arr.getRow(1, true), arr.getRow(3, true));
+
+        //twice, so the second gather is served from the hot row cache
+        for (int i = 0; i < 2; i++) {
+            assertEquals(expected, store.gather(new long[]{3, -1, 1, 3}, unknown));
+        }
+    }
+
+    @Test
+    public void testGatherNumpyHeader() throws Exception {
+        INDArray arr = Nd4j.linspace(1, 8, 8, DataType.DOUBLE).reshape(4, 2);
+        File file = new File(temporary.getRoot(), "header.npy");
+        FileUtils.writeByteArrayToFile(file, Nd4j.toNpyByteArray(arr));
+
+        MemMapArrayStore store = MemMapArrayStore.open(file);
+        long[] indices = {2, 0};
+        byte[] header = MemMapArrayStore.numpyHeader(store.dataType(), store.gatherShape(indices.length));
+        assertEquals(0, header.length % 64);
+
+        ByteBuffer out = ByteBuffer.allocate(header.length + (int) (indices.length * store.rowBytes()));
+        out.put(header);
+        store.gather(indices, null, out.slice());
+
+        INDArray read = Nd4j.createNpyFromByteArray(out.array());
+        assertEquals(Nd4j.vstack(arr.getRow(2, true), arr.getRow(0, true)), read);
+    }
+}
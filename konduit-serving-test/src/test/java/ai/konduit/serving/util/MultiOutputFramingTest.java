@@ -0,0 +1,103 @@
+/*
+ *       Copyright (c) 2020 Konduit AI.
+ *
+ *       This program and the accompanying materials are made available under the
+ *       terms of the Apache License, Version 2.0 which is available at
+ *       https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *       Unless required by applicable law or agreed to in writing, software
+ *       distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *       WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *       License for the specific language governing permissions and limitations
+ *       under the License.
+ *
+ *       SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package ai.konduit.serving.util;
+
+import ai.konduit.serving.config.Output;
+import ai.konduit.serving.executioner.PipelineExecutioner;
+import ai.konduit.serving.output.types.BatchOutput;
+import ai.konduit.serving.output.types.NDArrayOutput;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class MultiOutputFramingTest {
+
+    @Test
+    public void testFramedBufferRoundTrip() {
+        INDArray scores = Nd4j.rand(DataType.FLOAT, 2, 3);
+        INDArray boxes = Nd4j.linspace(1, 8, 8, DataType.DOUBLE).reshape(2, 4);
+        Map<String, BatchOutput> outputs = new LinkedHashMap<>();
+        outputs.put("scores", NDArrayOutput.builder().ndArray(scores).build());
+        outputs.put("boxes", NDArrayOutput.builder().ndArray(boxes).build());
+
+        Buffer framed = PipelineExecutioner.framedBuffer(outputs, Output.DataFormat.NUMPY);
+        Map<String, Buffer> unframed = MultiOutputFraming.unframe(framed);
+
+        assertEquals(Arrays.asList("scores", "boxes"), Arrays.asList(unframed.keySet().toArray()));
+        assertEquals(scores, Nd4j.createNpyFromByteArray(unframed.get("scores").getBytes()));
+        assertEquals(boxes, Nd4j.createNpyFromByteArray(unframed.get("boxes").getBytes()));
+    }
+
+    @Test
+    public void testEmptyOutput() {
+        Map<String, ByteBuf> outputs = new LinkedHashMap<>();
+        outputs.put("empty", Unpooled.EMPTY_BUFFER);
+        outputs.put("bytes", Unpooled.wrappedBuffer(new byte[]{1, 2, 3}));
+
+        Map<String, Buffer> unframed = MultiOutputFraming.unframe(MultiOutputFraming.frame(outputs));
+        assertEquals(0, unframed.get("empty").length());
+        assertEquals(Buffer.buffer(new byte[]{1, 2, 3}), unframed.get("bytes"));
+    }
+
+    @Test
+    public void testPayloadLengthBeyondBufferFails() {
+        assertUnframeFails(withFirstPayloadLength(4));
+        assertUnframeFails(withFirstPayloadLength(Integer.MAX_VALUE + 1L));
+        assertUnframeFails(withFirstPayloadLength(Long.MAX_VALUE));
+        assertUnframeFails(withFirstPayloadLength(-1));
+    }
+
+    @Test
+    public void testHeaderBeyondBufferFails() {
+        Buffer framed = withFirstPayloadLength(3);
+        assertUnframeFails(framed.copy().setInt(0, framed.length()));
+        assertUnframeFails(framed.copy().setInt(4, 1000));
+        assertUnframeFails(framed.copy().setInt(8, 1000));
+        assertUnframeFails(Buffer.buffer(new byte[]{0, 0, 0, 4}));
+    }
+
+    /**
+     * A framed buffer with one output named "out" holding 3 bytes, claiming the given payload length
+     */
+    private static Buffer withFirstPayloadLength(long payloadLength) {
+        Map<String, ByteBuf> outputs = new LinkedHashMap<>();
+        outputs.put("out", Unpooled.wrappedBuffer(new byte[]{1, 2, 3}));
+        Buffer framed = Buffer.buffer().appendBuffer(MultiOutputFraming.frame(outputs));
+        return framed.setLong(8 + 4 + 3, payloadLength);
+    }
+
+    private static void assertUnframeFails(Buffer framed) {
+        try {
+            MultiOutputFraming.unframe(framed);
+            fail("Expected an invalid framed buffer to be rejected");
+        } catch (IllegalStateException e) {
+            //expected
+        }
+    }
+}
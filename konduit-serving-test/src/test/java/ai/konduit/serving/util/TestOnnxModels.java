@@ -0,0 +1,142 @@
+/*
+ *       Copyright (c) 2020 Konduit AI.
+ *
+ *       This program and the accompanying materials are made available under the
+ *       terms of the Apache License, Version 2.0 which is available at
+ *       https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *       Unless required by applicable law or agreed to in writing, software
+ *       distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *       WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *       License for the specific language governing permissions and limitations
+ *       under the License.
+ *
+ *       SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package ai.konduit.serving.util;
+
+import org.nd4j.base.Preconditions;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Writes tiny onnx models for tests, so no model has to be downloaded.
+ * The model computes {@code output = relu(input x weights)} over float inputs
+ * with a variable batch size. The input is named {@value #INPUT_NAME}
+ * and the output {@value #OUTPUT_NAME}.
+ */
+public class TestOnnxModels {
+
+    public static final String INPUT_NAME = "input";
+    public static final String OUTPUT_NAME = "output";
+
+    private TestOnnxModels() {
+    }
+
+    /**
+     * Write an onnx model (ir version 6, opset 11) made of a MatMul and a Relu node.
+     * The protobuf is encoded here, which avoids a dependency on the onnx java classes.
+     *
+     * @param dir     the directory to write to
+     * @param weights the [inputs, outputs] weight matrix
+     * @return the model file
+     */
+    public static File matMulRelu(File dir, INDArray weights) throws IOException {
+        Preconditions.checkState(weights.rank() == 2, "Expected a weight matrix, got shape %s", weights.shape());
+        int inputs = (int) weights.size(0);
+        int outputs = (int) weights.size(1);
+        ByteBuffer data = ByteBuffer.allocate(4 * inputs * outputs).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < inputs; i++) {
+            for (int j = 0; j < outputs; j++) {
+                data.putFloat(weights.getFloat(i, j));
+            }
+        }
+
+        Proto weightsTensor = new Proto()
+                .int64(1, inputs)
+                .int64(1, outputs)
+                .int64(2, 1) //FLOAT
+                .string(8, "weights")
+                .bytes(9, data.array());
+
+        Proto graph = new Proto()
+                .message(1, new Proto().string(1, INPUT_NAME).string(1, "weights").string(2, "hidden").string(3, "matmul").string(4, "MatMul"))
+                .message(1, new Proto().string(1, "hidden").string(2, OUTPUT_NAME).string(3, "relu").string(4, "Relu"))
+                .string(2, "test")
+                .message(5, weightsTensor)
+                .message(11, valueInfo(INPUT_NAME, inputs))
+                .message(12, valueInfo(OUTPUT_NAME, outputs));
+
+        Proto model = new Proto()
+                .int64(1, 6)
+                .string(2, "konduit-serving-test")
+                .message(7, graph)
+                .message(8, new Proto().string(1, "").int64(2, 11));
+
+        File file = new File(dir, "matmul-relu-" + inputs + "x" + outputs + ".onnx");
+        Files.write(file.toPath(), model.toByteArray());
+        return file;
+    }
+
+    private static Proto valueInfo(String name, int features) {
+        Proto shape = new Proto()
+                .message(1, new Proto().string(2, "batch"))
+                .message(1, new Proto().int64(1, features));
+        Proto tensorType = new Proto()
+                .int64(1, 1) //FLOAT
+                .message(2, shape);
+        return new Proto()
+                .string(1, name)
+                .message(2, new Proto().message(1, tensorType));
+    }
+
+    /**
+     * Minimal protobuf writer: varint and length delimited fields only
+     */
+    private static class Proto {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Proto int64(int field, long value) {
+            varint(field << 3);
+            varint(value);
+            return this;
+        }
+
+        Proto string(int field, String value) {
+            return bytes(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Proto message(int field, Proto value) {
+            return bytes(field, value.toByteArray());
+        }
+
+        Proto bytes(int field, byte[] value) {
+            varint((field << 3) | 2);
+            varint(value.length);
+            out.write(value, 0, value.length);
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        private void varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+
+            out.write((int) value);
+        }
+    }
+}
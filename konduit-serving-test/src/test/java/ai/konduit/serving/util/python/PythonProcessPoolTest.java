@@ -0,0 +1,133 @@
+/*
+ *       Copyright (c) 2020 Konduit AI.
+ *
+ *       This program and the accompanying materials are made available under the
+ *       terms of the Apache License, Version 2.0 which is available at
+ *       https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ *       Unless required by applicable law or agreed to in writing, software
+ *       distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *       WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *       License for the specific language governing permissions and limitations
+ *       under the License.
+ *
+ *       SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+
+package ai.konduit.serving.util.python;
+
+import org.junit.Test;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class PythonProcessPoolTest {
+
+    @Test(timeout = 60000)
+    public void testValuesAndRestart() throws Exception {
+        assumeTrue(canRun("import json"));
+        String code = "if x < 0:\n    import os\n    os._exit(1)\ny = x * 2\nz = s.upper()\n";
+        try (PythonProcessPool pool = new PythonProcessPool(null, null, code, false, Arrays.asList("y", "z"), 2)) {
+            Map<String, Object> out = pool.execute(inputs(3L, "ab"));
+            assertEquals(6L, out.get("y"));
+            assertEquals("AB", out.get("z"));
+
+            try {
+                pool.execute(inputs(-1L, "ab"));
+                fail("Expected the crashed worker to fail the request");
+            } catch (IllegalStateException e) {
+                //expected
+            }
+
+            //the crashed worker is restarted
+            for (int i = 0; i < 4; i++) {
+                assertEquals((long) i * 2, pool.execute(inputs(i, "ab")).get("y"));
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testArraysThroughSharedMemory() throws Exception {
+        assumeTrue(canRun("import numpy"));
+        try (PythonProcessPool pool = new PythonProcessPool(null, null, "x += 1\ny = x.sum(axis=1)", false,
+                Arrays.asList("x", "y"), 1)) {
+            INDArray x = Nd4j.linspace(1, 6, 6, DataType.FLOAT).reshape(2, 3);
+            Map<String, Object> out = pool.execute(Collections.singletonMap("x", x));
+            assertEquals(x.add(1), out.get("x"));
+            assertEquals(x.add(1).sum(1), out.get("y"));
+            //the input is mapped copy on write, updates in python don't change it
+            assertEquals(Nd4j.linspace(1, 6, 6, DataType.FLOAT).reshape(2, 3), x);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testUnresponsiveWorkerIsKilledAndRestarted() throws Exception {
+        assumeTrue(canRun("import json"));
+        String code = "import time\ntime.sleep(x)\ny = x\n";
+        try (PythonProcessPool pool = new PythonProcessPool(null, null, code, false,
+                Collections.singletonList("y"), 1, 2000)) {
+            long start = System.currentTimeMillis();
+            try {
+                pool.execute(inputs(30L, "ab"));
+                fail("Expected the unresponsive worker to fail the request");
+            } catch (IllegalStateException e) {
+                //expected
+            }
+            assertTrue(System.currentTimeMillis() - start < 30000);
+
+            //the only worker was restarted
+            assertEquals(0L, pool.execute(inputs(0L, "ab")).get("y"));
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testOutputFilesDeletedOnError() throws Exception {
+        assumeTrue(canRun("import numpy"));
+        File shm = new File("/dev/shm");
+        File sharedMemoryDirectory = shm.isDirectory() && shm.canWrite() ? shm : new File(System.getProperty("java.io.tmpdir"));
+        //y is written to shared memory before the missing output z fails the request
+        try (PythonProcessPool pool = new PythonProcessPool(null, null, "y = x * 2", false,
+                Arrays.asList("y", "z"), 1)) {
+            Set<String> before = workerFiles(sharedMemoryDirectory);
+            try {
+                pool.execute(Collections.singletonMap("x", Nd4j.linspace(1, 6, 6, DataType.FLOAT)));
+                fail("Expected the missing output to fail the request");
+            } catch (IllegalStateException e) {
+                //expected
+            }
+
+            assertEquals(before, workerFiles(sharedMemoryDirectory));
+        }
+    }
+
+    private static Set<String> workerFiles(File directory) {
+        String[] names = directory.list((dir, name) -> name.startsWith("konduit-py-"));
+        return names == null ? Collections.emptySet() : new HashSet<>(Arrays.asList(names));
+    }
+
+    private static Map<String, Object> inputs(long x, String s) {
+        Map<String, Object> ret = new HashMap<>();
+        ret.put("x", x);
+        ret.put("s", s);
+        return ret;
+    }
+
+    private static boolean canRun(String code) {
+        try {
+            Process process = new ProcessBuilder(PythonProcessPool.DEFAULT_PYTHON_EXECUTABLE, "-c", code).start();
+            return process.waitFor() == 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
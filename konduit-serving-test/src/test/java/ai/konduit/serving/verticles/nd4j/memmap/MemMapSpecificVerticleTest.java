@@ -36,6 +36,8 @@ import org.nd4j.linalg.factory.Nd4j;
 
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import static com.jayway.restassured.RestAssured.given;
 import static org.junit.Assert.assertEquals;
@@ -65,6 +67,44 @@ public class MemMapSpecificVerticleTest extends BaseMemMapTest {
         assertEquals(first,numpyTest);
     }
 
+    @Test(timeout = 60000)
+    public void testIndexOutOfRangeIsBadRequest(TestContext context) {
+        JsonArray jsonArray = new JsonArray();
+        jsonArray.add(0);
+        jsonArray.add(2);
+        given().contentType(ContentType.JSON)
+                .body(jsonArray.toString())
+                .port(port)
+                .post("/array/indices/numpy")
+                .then().statusCode(400);
+    }
+
+    @Test(timeout = 60000)
+    public void testNonBinaryContentTypeIsParsedAsJson(TestContext context) {
+        Response response = given().contentType("text/plain")
+                .body("[1]")
+                .port(port)
+                .post("/array/indices/numpy")
+                .andReturn();
+        assertEquals(200, response.getStatusCode());
+        INDArray numpyTest = Nd4j.createNpyFromByteArray(response.getBody().asByteArray()).reshape(1, 4);
+        assertEquals(Nd4j.create(new float[]{5, 6, 7, 8}).reshape(1, 4), numpyTest);
+    }
+
+    @Test(timeout = 60000)
+    public void testBinaryIndices(TestContext context) {
+        ByteBuffer indices = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        indices.putLong(1).putLong(0);
+        Response response = given().contentType("application/octet-stream")
+                .body(indices.array())
+                .port(port)
+                .post("/array/indices/numpy")
+                .andReturn();
+        assertEquals(200, response.getStatusCode());
+        INDArray numpyTest = Nd4j.createNpyFromByteArray(response.getBody().asByteArray()).reshape(2, 4);
+        assertEquals(Nd4j.create(new float[]{5, 6, 7, 8, 1, 2, 3, 4}).reshape(2, 4), numpyTest);
+    }
+
     @Override
     public JsonObject getConfigObject() throws Exception {
         File unkVectorPath = temporary.newFile();
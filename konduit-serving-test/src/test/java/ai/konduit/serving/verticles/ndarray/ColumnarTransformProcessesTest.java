@@ -32,6 +32,7 @@ import ai.konduit.serving.pipeline.PipelineStep;
 import ai.konduit.serving.pipeline.step.ModelStep;
 import ai.konduit.serving.pipeline.step.TransformProcessStep;
 import ai.konduit.serving.train.TrainUtils;
+import ai.konduit.serving.util.ArrowAllocators;
 import ai.konduit.serving.verticles.inference.InferenceVerticle;
 import com.jayway.restassured.http.ContentType;
 import io.vertx.core.DeploymentOptions;
@@ -156,5 +157,32 @@ public class ColumnarTransformProcessesTest extends BaseDl4JVerticalTest {
 
     }
 
+    @Test(timeout = 60000)
+    public void testArrowMemoryReleasedAfterRequests(TestContext context) throws Exception {
+        double[] vals = {5.1, 3.5, 1.4, 0.2};
+        JsonObject wrapper = new JsonObject();
+        for (int i = 0; i < vals.length; i++) {
+            wrapper.put(inputSchema.getName(i), vals[i]);
+        }
+
+        for (int i = 0; i < 20; i++) {
+            given().contentType(ContentType.JSON)
+                    .body(wrapper.toString())
+                    .port(port)
+                    .post("/classification/json")
+                    .then().statusCode(200);
+        }
+
+        //the converted input is released on the event loop once the metrics have seen the records
+        long deadline = System.currentTimeMillis() + 10000;
+        while ((ArrowAllocators.openRequestAllocators() > 0 || ArrowAllocators.allocatedMemory() > 0)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        context.assertEquals(0, ArrowAllocators.openRequestAllocators());
+        context.assertEquals(0L, ArrowAllocators.allocatedMemory());
+    }
+
 
 }
\ No newline at end of file
@@ -168,11 +168,11 @@ public class OnnxMultipleOutputsTest extends BaseVerticleTest {
 
         INDArray bodyResult = Nd4j.createNpyFromByteArray(bytes);
         assert Math.abs(bodyResult.getFloat(0) - 0.9539676) < 1e-6;
-        assertArrayEquals(new long[]{1, 8840}, bodyResult.shape());
+        assertArrayEquals(new long[]{1, 4420, 2}, bodyResult.shape());
 
         INDArray bodyResult2 = Nd4j.createNpyFromByteArray(bytes2);
         assert Math.abs(bodyResult2.getFloat(0) - 0.002913665) < 1e-6;
-        assertArrayEquals(new long[]{1, 17680}, bodyResult2.shape());
+        assertArrayEquals(new long[]{1, 4420, 4}, bodyResult2.shape());
     }
 
     @After
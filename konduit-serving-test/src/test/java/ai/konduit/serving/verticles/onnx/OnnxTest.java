@@ -57,7 +57,6 @@ import java.nio.file.Paths;
 import java.util.Arrays;
 
 import static com.jayway.restassured.RestAssured.given;
-import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 
@@ -143,7 +142,8 @@ public class OnnxTest extends BaseVerticleTest {
 
             assert Math.abs(bodyResult.getFloat(0) - 1.99018) < 1e-4;
 
-            assertArrayEquals(new long[]{1, 1000}, bodyResult.shape());
+            assertEquals(1, bodyResult.size(0));
+            assertEquals(1000, bodyResult.length());
         }
     }
 
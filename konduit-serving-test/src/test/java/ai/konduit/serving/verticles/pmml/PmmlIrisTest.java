@@ -35,6 +35,7 @@ import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Handler;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
@@ -51,6 +52,8 @@ import java.util.List;
 
 import static ai.konduit.serving.executioner.PipelineExecutioner.convertBatchOutput;
 import static com.jayway.restassured.RestAssured.given;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(VertxUnitRunner.class)
 @NotThreadSafe
@@ -73,6 +76,11 @@ public class PmmlIrisTest extends BaseVerticleTest {
                 .then()
                 .statusCode(200).extract().body().asString();
         System.out.println("Final response for pmml " + extract);
+
+        //one typed object per input row, named by the output schema
+        JsonArray results = new JsonArray(extract);
+        assertEquals(input.rows(), results.size());
+        assertTrue(results.getJsonObject(0).getValue("class") instanceof String);
     }
 
     @Override
@@ -0,0 +1,160 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+
+package ai.konduit.serving.verticles.samediff;
+
+import ai.konduit.serving.InferenceConfiguration;
+import ai.konduit.serving.config.Output;
+import ai.konduit.serving.config.ServingConfig;
+import ai.konduit.serving.model.ModelConfig;
+import ai.konduit.serving.model.ModelConfigType;
+import ai.konduit.serving.model.SameDiffConfig;
+import ai.konduit.serving.pipeline.step.ModelStep;
+import ai.konduit.serving.verticles.BaseVerticleTest;
+import ai.konduit.serving.verticles.inference.InferenceVerticle;
+import com.jayway.restassured.response.Response;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nd4j.autodiff.samediff.SDVariable;
+import org.nd4j.autodiff.samediff.SameDiff;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.serde.binary.BinarySerde;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.jayway.restassured.RestAssured.given;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Sends concurrent requests with different input data formats and
+ * prediction types to one verticle and checks every response
+ * matches its own request.
+ */
+@RunWith(VertxUnitRunner.class)
+@NotThreadSafe
+public class SameDiffVerticleConcurrencyTest extends BaseVerticleTest {
+
+    @Override
+    public Class<? extends AbstractVerticle> getVerticalClazz() {
+        return InferenceVerticle.class;
+    }
+
+    @Override
+    public Handler<HttpServerRequest> getRequest() {
+        return null;
+    }
+
+    @Override
+    public JsonObject getConfigObject() throws Exception {
+        SameDiff sameDiff = SameDiff.create();
+        SDVariable x = sameDiff.placeHolder("x", DataType.FLOAT, 2);
+        SDVariable y = sameDiff.placeHolder("y", DataType.FLOAT, 2);
+        SDVariable add = x.add("output", y);
+        File tmpSameDiffFile = temporary.newFile();
+        sameDiff.asFlatFile(tmpSameDiffFile);
+
+        ServingConfig servingConfig = ServingConfig.builder()
+                .outputDataFormat(Output.DataFormat.NUMPY)
+                .httpPort(port)
+                .build();
+
+        SameDiffConfig modelConfig = SameDiffConfig.builder()
+                .modelConfigType(
+                        ModelConfigType.builder()
+                                .modelType(ModelConfig.ModelType.SAMEDIFF)
+                                .modelLoadingPath(tmpSameDiffFile.getAbsolutePath())
+                                .build()
+                ).build();
+
+        ModelStep config = ModelStep.builder()
+                .modelConfig(modelConfig)
+                .inputNames(Arrays.asList("x", "y"))
+                .outputNames(Arrays.asList("output"))
+                .build();
+
+        InferenceConfiguration inferenceConfiguration = InferenceConfiguration.builder()
+                .servingConfig(servingConfig)
+                .step(config)
+                .build();
+
+        return new JsonObject(inferenceConfiguration.toJson());
+    }
+
+    @Test
+    public void testConcurrentRequests(TestContext testContext) throws Exception {
+        int numRequests = 200;
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>(numRequests);
+            for (int i = 0; i < numRequests; i++) {
+                int request = i;
+                futures.add(executorService.submit(() -> {
+                    INDArray x = Nd4j.create(new float[]{request, request + 1});
+                    INDArray y = Nd4j.create(new float[]{2 * request, 1});
+
+                    //alternate input formats and prediction types between requests
+                    boolean nd4j = request % 2 == 0;
+                    String path = (request % 3 == 0 ? "/raw/" : "/numpy/") + (nd4j ? "nd4j" : "numpy");
+                    Response response = given().port(port)
+                            .multiPart("x", "x", nd4j ? toNd4jBytes(x) : Nd4j.toNpyByteArray(x))
+                            .multiPart("y", "y", nd4j ? toNd4jBytes(y) : Nd4j.toNpyByteArray(y))
+                            .post(path)
+                            .andReturn();
+
+                    assertEquals("Response failed for " + path, 200, response.getStatusCode());
+                    INDArray bodyResult = Nd4j.createNpyFromByteArray(response.getBody().asByteArray());
+                    assertEquals(x.add(y), bodyResult);
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static byte[] toNd4jBytes(INDArray array) {
+        ByteBuffer byteBuffer = BinarySerde.toByteBuffer(array);
+        byte[] bytes = new byte[byteBuffer.remaining()];
+        byteBuffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  *  * Copyright (c) 2020 Konduit AI.
+ *  *  *
+ *  *  * This program and the accompanying materials are made available under the
+ *  *  * terms of the Apache License, Version 2.0 which is available at
+ *  *  * https://www.apache.org/licenses/LICENSE-2.0.
+ *  *  *
+ *  *  * Unless required by applicable law or agreed to in writing, software
+ *  *  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  *  * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  *  * License for the specific language governing permissions and limitations
+ *  *  * under the License.
+ *  *  *
+ *  *  * SPDX-License-Identifier: Apache-2.0
+ *  *  *****************************************************************************
+ *
+ *
+ */
+
+
+package ai.konduit.serving.verticles.samediff;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.runner.RunWith;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Runs {@link SameDiffVerticleNumpyTest} with uploads above the in memory
+ * limit, so multipart parts are spooled to the uploads directory.
+ */
+@RunWith(VertxUnitRunner.class)
+@NotThreadSafe
+public class SameDiffVerticleSpooledUploadTest extends SameDiffVerticleNumpyTest {
+
+    @Override
+    public JsonObject getConfigObject() throws Exception {
+        JsonObject config = super.getConfigObject();
+        config.getJsonObject("servingConfig").put("maxInMemoryUploadBytes", 1);
+        return config;
+    }
+}
@@ -68,6 +68,8 @@ public class TensorflowInferenceExecutioner implements
                 .inferenceMode(config.getInferenceMode())
                 .queueLimit(config.getQueueLimit())
                 .batchLimit(config.getBatchLimit())
+                .maxBatchWaitMillis(config.getMaxBatchWaitMillis())
+                .targetLatencyMillis(config.getTargetLatencyMillis())
                 .build();
         this.modelLoader = model;
 
@@ -24,6 +24,7 @@ package ai.konduit.serving.threadpool.tensorflow;
 
 
 import ai.konduit.serving.model.loader.ModelLoader;
+import ai.konduit.serving.threadpool.batching.AdaptiveBatchScheduler;
 import ai.konduit.serving.model.loader.tensorflow.TensorflowGraphHolder;
 import ai.konduit.serving.threadpool.tensorflow.observables.BasicTensorflowInferenceObservable;
 import ai.konduit.serving.threadpool.tensorflow.observables.BatchedTensorflowInferenceObservable;
@@ -37,11 +38,14 @@ import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.tensorflow.conversion.TensorflowConversion;
 import org.nd4j.tensorflow.conversion.graphrunner.GraphRunner;
+import org.tensorflow.framework.AttrValue;
+import org.tensorflow.framework.GraphDef;
+import org.tensorflow.framework.NodeDef;
+import org.tensorflow.framework.TensorShapeProto;
 
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Observer;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -63,18 +67,24 @@ public class TensorFlowThreadPool {
     public final static int DEFAULT_BATCH_LIMIT = 32;
     public final static InferenceMode DEFAULT_INFERENCE_MODE = InferenceMode.BATCHED;
     public final static int DEFAULT_QUEUE_LIMIT = 64;
+    public final static long DEFAULT_MAX_BATCH_WAIT_MILLIS = 0;
+    public final static long DEFAULT_TARGET_LATENCY_MILLIS = 0;
     private ModelLoader<TensorflowGraphHolder> tensorFlowModelLoader;
     private long nanos;
     private int workers;
     private int batchLimit;
     private InferenceMode inferenceMode;
     private int queueLimit;
+    private long maxBatchWaitMillis;
+    private long targetLatencyMillis;
     // this queue
     private BlockingQueue<TensorflowObservable> observables;
     private GraphRunner replicatedModel;
     private InferenceWorker[] zoo;
-    private ObservablesProvider provider;
+    private AdaptiveBatchScheduler<INDArray[], BatchedTensorflowInferenceObservable> provider;
     private String[] inputNames, outputNames;
+    // inputs can only be concatenated when every input has a dynamic batch dimension
+    private boolean dynamicBatch;
 
 
     protected TensorFlowThreadPool() {
@@ -101,6 +111,10 @@ public class TensorFlowThreadPool {
             throw new IllegalStateException("Outputs not resolved!");
         }
 
+        dynamicBatch = hasDynamicBatch(graphHolder.getGraphDef(), replicatedModel.getInputOrder());
+        if (inferenceMode == InferenceMode.BATCHED && !dynamicBatch)
+            log.info("Graph inputs {} do not all have a dynamic batch dimension, requests will not be batched together", replicatedModel.getInputOrder());
+
         int numDevices = Nd4j.getAffinityManager().getNumberOfDevices();
         int currentDevice = Nd4j.getAffinityManager().getDeviceForCurrentThread();
         AtomicBoolean assignedRoot = new AtomicBoolean(false);
@@ -126,7 +140,11 @@ public class TensorFlowThreadPool {
         if (inferenceMode == InferenceMode.BATCHED) {
             log.debug("Initializing ObservablesProvider...");
             nanos = System.nanoTime();
-            provider = new ObservablesProvider(nanos, batchLimit, observables);
+            provider = new AdaptiveBatchScheduler<>(() -> {
+                BatchedTensorflowInferenceObservable observable = new BatchedTensorflowInferenceObservable();
+                observable.setConcatenate(dynamicBatch);
+                return observable;
+            }, observables, batchLimit, maxBatchWaitMillis, targetLatencyMillis);
         }
     }
 
@@ -134,6 +152,44 @@ public class TensorFlowThreadPool {
         return inputNames;
     }
 
+    /**
+     * Whether every input placeholder of the graph has a dynamic (-1) first dimension,
+     * so the inputs of several requests can be concatenated along it.
+     * Placeholders without a known rank accept any batch size.
+     *
+     * @param graphDef   the graph, null for saved models whose graph is not available
+     * @param inputNames the input names, optionally with an output index suffix (e.g. input:0)
+     * @return true if inputs can be concatenated along dimension 0
+     */
+    static boolean hasDynamicBatch(GraphDef graphDef, List<String> inputNames) {
+        if (graphDef == null)
+            return false;
+
+        for (String inputName : inputNames) {
+            String nodeName = inputName.contains(":") ? inputName.substring(0, inputName.lastIndexOf(':')) : inputName;
+            NodeDef placeholder = null;
+            for (NodeDef node : graphDef.getNodeList()) {
+                if (node.getName().equals(nodeName)) {
+                    placeholder = node;
+                    break;
+                }
+            }
+
+            if (placeholder == null)
+                return false;
+
+            AttrValue shape = placeholder.getAttrMap().get("shape");
+            if (shape == null || shape.getShape().getUnknownRank())
+                continue;
+
+            TensorShapeProto shapeProto = shape.getShape();
+            if (shapeProto.getDimCount() == 0 || shapeProto.getDim(0).getSize() != -1)
+                return false;
+        }
+
+        return true;
+    }
+
     public String[] outputNames() {
         return outputNames;
     }
@@ -210,6 +266,8 @@ public class TensorFlowThreadPool {
         private int batchLimit = DEFAULT_BATCH_LIMIT;
         private InferenceMode inferenceMode = DEFAULT_INFERENCE_MODE;
         private int queueLimit = DEFAULT_QUEUE_LIMIT;
+        private long maxBatchWaitMillis = DEFAULT_MAX_BATCH_WAIT_MILLIS;
+        private long targetLatencyMillis = DEFAULT_TARGET_LATENCY_MILLIS;
 
         public Builder(@NonNull ModelLoader<TensorflowGraphHolder> tensorflowModelLoader) {
             this.tensorflowModelLoader = tensorflowModelLoader;
@@ -283,6 +341,47 @@ public class TensorFlowThreadPool {
             return this;
         }
 
+        /**
+         * This method defines how long a partial batch may wait
+         * for more inputs, counted from when the batch was opened.
+         * <p>
+         * Default value: 0 (run whatever has been queued immediately)
+         * <p>
+         * PLEASE NOTE: This value has no effect in
+         * SEQUENTIAL inference mode
+         *
+         * @param millis the maximum wait in milliseconds
+         * @return the builder
+         */
+        public Builder maxBatchWaitMillis(long millis) {
+            if (millis < 0)
+                throw new IllegalStateException("Max batch wait should be non-negative value");
+
+            this.maxBatchWaitMillis = millis;
+            return this;
+        }
+
+        /**
+         * This method defines the p99 latency the batch limit
+         * is adapted to. The batch limit set by {@link #batchLimit(int)}
+         * becomes the upper bound of the adapted limit.
+         * <p>
+         * Default value: 0 (fixed batch limit)
+         * <p>
+         * PLEASE NOTE: This value has no effect in
+         * SEQUENTIAL inference mode
+         *
+         * @param millis the target latency in milliseconds
+         * @return the builder
+         */
+        public Builder targetLatencyMillis(long millis) {
+            if (millis < 0)
+                throw new IllegalStateException("Target latency should be non-negative value");
+
+            this.targetLatencyMillis = millis;
+            return this;
+        }
+
         /**
          * This method builds new TensorFlowThreadPool instance
          *
@@ -292,6 +391,8 @@ public class TensorFlowThreadPool {
             TensorFlowThreadPool inference = new TensorFlowThreadPool();
             inference.batchLimit = this.batchLimit;
             inference.queueLimit = this.queueLimit;
+            inference.maxBatchWaitMillis = this.maxBatchWaitMillis;
+            inference.targetLatencyMillis = this.targetLatencyMillis;
             inference.inferenceMode = this.inferenceMode;
             inference.workers = this.workers;
             inference.tensorFlowModelLoader = this.tensorflowModelLoader;
@@ -305,44 +406,6 @@ public class TensorFlowThreadPool {
         }
     }
 
-    protected static class ObservablesProvider {
-        private final Object locker = new Object();
-        private BlockingQueue<TensorflowObservable> targetQueue;
-        private long nanos;
-        private int batchLimit;
-        private volatile BatchedTensorflowInferenceObservable currentObservable;
-
-        protected ObservablesProvider(long nanos, int batchLimit, @NonNull BlockingQueue<TensorflowObservable> queue) {
-            this.targetQueue = queue;
-            this.nanos = nanos;
-            this.batchLimit = batchLimit;
-        }
-
-        protected BatchedTensorflowInferenceObservable setInput(@NonNull Observer observer, INDArray[] input) {
-            synchronized (locker) {
-                boolean isNew = false;
-                if (currentObservable == null || currentObservable.getCounter() >= batchLimit
-                        || currentObservable.isLocked()) {
-                    isNew = true;
-                    currentObservable = new BatchedTensorflowInferenceObservable();
-                }
-
-                currentObservable.addInput(input);
-                currentObservable.addObserver(observer);
-
-                try {
-                    if (isNew)
-                        targetQueue.put(currentObservable);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException(e);
-                }
-
-                return currentObservable;
-            }
-        }
-    }
-
     /**
      * This class actually does inference with respect to device affinity
      */
@@ -376,6 +439,20 @@ public class TensorFlowThreadPool {
                     if (request != null) {
                         counter.incrementAndGet();
 
+                        BatchedTensorflowInferenceObservable batched = null;
+                        if (request instanceof BatchedTensorflowInferenceObservable) {
+                            batched = (BatchedTensorflowInferenceObservable) request;
+                            try {
+                                //a batch that can not take more requests is run right away
+                                if (batched.isConcatenate())
+                                    provider.awaitBatch(batched);
+                            } catch (InterruptedException e) {
+                                //release the observers waiting on this batch before the worker exits
+                                request.setOutputException(e);
+                                throw e;
+                            }
+                        }
+
                         INDArray[] batches = request.getInputBatches();
                         if (batches == null) {
                             request.setOutputException(new IllegalArgumentException("No batches found!"));
@@ -427,6 +504,8 @@ public class TensorFlowThreadPool {
                             log.info("NDArray from tensor timing in ms " + diff);
 
                             request.setOutputBatches(outputsArr);
+                            if (batched != null)
+                                provider.batchCompleted(batched);
 
                             //delete after the batches are done allowing cleanup to happen
                             //while the next execution can begin
@@ -22,51 +22,113 @@
 
 package ai.konduit.serving.threadpool.tensorflow.observables;
 
+import ai.konduit.serving.threadpool.batching.BatchedObservable;
 import lombok.*;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Observable;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Holds the inputs of several requests. The inputs are concatenated along
+ * dimension 0 so the graph runs once, and each request retrieves the rows
+ * of the outputs that match its own input rows.
+ * Only inputs with matching data types and trailing dimensions, and
+ * requests whose inputs all have the same number of rows, are
+ * accepted into the same batch, see {@link #canAccept(INDArray[])}.
+ * Graphs with a fixed batch size can not be fed concatenated inputs,
+ * every request then gets its own batch, see {@link #setConcatenate(boolean)}.
+ */
 @Data
 @NoArgsConstructor
 @EqualsAndHashCode(callSuper = false)
-public class BatchedTensorflowInferenceObservable extends Observable implements TensorflowObservable {
+public class BatchedTensorflowInferenceObservable extends Observable implements TensorflowObservable, BatchedObservable<INDArray[]> {
 
     private final Object locker = new Object();
     protected Exception exception;
-    private INDArray[] input;
+    private List<INDArray[]> input = new ArrayList<>();
     @Getter
     private long id;
     private INDArray[] output;
     private AtomicInteger counter = new AtomicInteger(0);
     private ThreadLocal<Integer> position = new ThreadLocal<>();
+    //the [start, end) rows of each request
     private List<int[]> outputBatchInputArrays = new ArrayList<>();
     private ReentrantReadWriteLock realLocker = new ReentrantReadWriteLock();
     private AtomicBoolean isLocked = new AtomicBoolean(false);
     private AtomicBoolean isReadLocked = new AtomicBoolean(false);
+    private long creationNanos = System.nanoTime();
+    //whether inputs may be concatenated along dimension 0, false for graphs with a fixed batch size
+    private boolean concatenate = true;
 
 
     public BatchedTensorflowInferenceObservable(INDArray[] inputs) {
-        this.input = inputs;
+        this.input.add(inputs);
     }
 
 
     @Override
     public void addInput(@NonNull INDArray[] input) {
         synchronized (locker) {
-            if (this.input == null)
-                this.input = input;
+            this.input.add(input);
             position.set(counter.getAndIncrement());
 
             if (isReadLocked.get())
                 realLocker.readLock().unlock();
+
+            locker.notifyAll();
+        }
+    }
+
+    @Override
+    public boolean canAccept(INDArray[] in) {
+        synchronized (locker) {
+            if (input.isEmpty())
+                return true;
+            if (!concatenate)
+                return false;
+
+            INDArray[] first = input.get(0);
+            if (first.length != in.length)
+                return false;
+
+            //the rows of each request are tracked through its first input, so all of its inputs need the same row count
+            if (rows(in) < 0 || rows(first) < 0)
+                return false;
+
+            for (int i = 0; i < in.length; i++) {
+                if (in[i].rank() == 0 || in[i].rank() != first[i].rank() || in[i].dataType() != first[i].dataType())
+                    return false;
+
+                for (int d = 1; d < in[i].rank(); d++) {
+                    if (in[i].size(d) != first[i].size(d))
+                        return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    @Override
+    public void awaitBatch(int batchLimit, long deadlineNanos) throws InterruptedException {
+        synchronized (locker) {
+            while (counter.get() < batchLimit) {
+                long remaining = deadlineNanos - System.nanoTime();
+                if (remaining <= 0)
+                    break;
+
+                TimeUnit.NANOSECONDS.timedWait(locker, remaining);
+            }
         }
-        this.input = input;
     }
 
 
@@ -75,32 +137,75 @@ public class BatchedTensorflowInferenceObservable extends Observable implements
         realLocker.writeLock().lock();
         isLocked.set(true);
 
-        outputBatchInputArrays.clear();
+        try {
+            outputBatchInputArrays.clear();
 
-        // this method should pile individual examples into single batch
+            // this method piles individual examples into single batch
+            int offset = 0;
+            for (INDArray[] in : input) {
+                int numRows = in[0].rank() == 0 ? 1 : (int) in[0].size(0);
+                outputBatchInputArrays.add(new int[]{offset, offset + numRows});
+                offset += numRows;
+            }
 
-        if (counter.get() > 1) {
+            if (input.size() == 1)
+                return input.get(0);
 
-            int pos = 0;
-            realLocker.writeLock().unlock();
-            return input;
-        } else {
-            outputBatchInputArrays.add(new int[]{0, 0});
+            INDArray[] batch = new INDArray[input.get(0).length];
+            for (int i = 0; i < batch.length; i++) {
+                INDArray[] toConcat = new INDArray[input.size()];
+                for (int j = 0; j < toConcat.length; j++) {
+                    toConcat[j] = input.get(j)[i];
+                }
+
+                batch[i] = Nd4j.concat(0, toConcat);
+            }
+
+            return batch;
+        } finally {
             realLocker.writeLock().unlock();
-            return input;
         }
     }
 
 
     @Override
     public void setOutputBatches(INDArray[] output) {
-        //this method should split batched output INDArray[] into multiple separate INDArrays
-        int countNumInputBatches = 0;   //Counter for total number of input batches processed
         this.output = output;
         this.setChanged();
         notifyObservers();
     }
 
+    /**
+     * Returns the output rows belonging to the calling thread's input.
+     *
+     * @return the outputs for the caller's input
+     */
+    @Override
+    public INDArray[] getOutput() {
+        if (exception != null) {
+            if (exception instanceof RuntimeException)
+                throw (RuntimeException) exception;
+            throw new RuntimeException("Exception encountered while getting output: " + exception.getMessage(), exception);
+        }
+
+        if (input.size() == 1)
+            return output;
+
+        //split the batched output INDArray[] into the rows of the calling request
+        int totalRows = outputBatchInputArrays.get(outputBatchInputArrays.size() - 1)[1];
+        Integer pos = position.get();
+        int[] rows = outputBatchInputArrays.get(pos == null ? 0 : pos);
+        INDArray[] ret = new INDArray[output.length];
+        for (int i = 0; i < ret.length; i++) {
+            if (output[i].rank() == 0 || output[i].size(0) != totalRows)
+                throw new IllegalStateException("Output " + i + " with shape " + Arrays.toString(output[i].shape())
+                        + " does not have a batch dimension of " + totalRows + " rows");
+            ret[i] = output[i].get(NDArrayIndex.interval(rows[0], rows[1])).dup();
+        }
+
+        return ret;
+    }
+
     @Override
     public Exception getOutputException() {
         return exception;
@@ -109,6 +214,8 @@ public class BatchedTensorflowInferenceObservable extends Observable implements
     @Override
     public void setOutputException(Exception e) {
         this.exception = e;
+        this.setChanged();
+        notifyObservers();
     }
 
     /**
@@ -132,6 +239,21 @@ public class BatchedTensorflowInferenceObservable extends Observable implements
         counter.set(value);
     }
 
+    /**
+     * @return the number of rows shared by all inputs of a request, or -1 if they differ
+     */
+    private static long rows(INDArray[] in) {
+        long rows = -1;
+        for (INDArray arr : in) {
+            long numRows = arr.rank() == 0 ? 1 : arr.size(0);
+            if (rows >= 0 && numRows != rows)
+                return -1;
+            rows = numRows;
+        }
+
+        return rows;
+    }
+
     /**
      * @return true if the observable is locked or not
      */